@@ -19,9 +19,16 @@
 
 package org.apache.james.backends.cassandra.init;
 
+import java.util.Map;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.KeyspaceMetadata;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.datastax.driver.core.schemabuilder.SchemaBuilder;
 import org.apache.james.backends.cassandra.components.CassandraModule;
+import org.apache.james.backends.cassandra.components.CassandraTable;
 
 public class CassandraTableManager {
 
@@ -36,11 +43,28 @@ public class CassandraTableManager {
     public CassandraTableManager ensureAllTables() {
         module.moduleTables().stream()
             .forEach(table -> session.execute(table.getCreateStatement()));
+        module.moduleTables().stream()
+            .forEach(this::ensureAddedColumns);
         module.moduleIndex().stream()
             .forEach(index -> session.execute(index.getCreateIndexStatement()));
         return this;
     }
 
+    /**
+     * Tables are created if not exists, so that the ones created by a previous release miss the columns added since.
+     */
+    private void ensureAddedColumns(CassandraTable table) {
+        KeyspaceMetadata keyspace = session.getCluster().getMetadata().getKeyspace(session.getLoggedKeyspace());
+        TableMetadata tableMetadata = keyspace.getTable(table.getName());
+        for (Map.Entry<String, DataType> column : table.getAddedColumns().entrySet()) {
+            if (tableMetadata.getColumn(column.getKey()) == null) {
+                session.execute(SchemaBuilder.alterTable(table.getName())
+                    .addColumn(column.getKey())
+                    .type(column.getValue()));
+            }
+        }
+    }
+
     public void clearAllTables() {
         module.moduleTables().stream()
             .forEach(table -> clearTable(table.getName()));
@@ -0,0 +1,51 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.backends.cassandra.init;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Session;
+
+/**
+ * Keeps the {@link PreparedStatement}s of a {@link Session}, so that each query is only prepared once on the cluster.
+ *
+ * Statements are expected to be built with bind markers in place of values, so that the same query string
+ * is shared by all executions.
+ */
+public class PreparedStatementRegistry {
+
+    private final Session session;
+    private final ConcurrentHashMap<String, PreparedStatement> preparedStatements;
+
+    @Inject
+    public PreparedStatementRegistry(Session session) {
+        this.session = session;
+        this.preparedStatements = new ConcurrentHashMap<>();
+    }
+
+    public PreparedStatement get(RegularStatement statement) {
+        return preparedStatements.computeIfAbsent(statement.getQueryString(), query -> session.prepare(statement));
+    }
+
+}
@@ -25,6 +25,7 @@ import org.apache.james.backends.cassandra.init.CassandraTableManager;
 import org.apache.james.backends.cassandra.init.CassandraTypesProvider;
 import org.apache.james.backends.cassandra.init.ClusterFactory;
 import org.apache.james.backends.cassandra.init.ClusterWithKeyspaceCreatedFactory;
+import org.apache.james.backends.cassandra.init.PreparedStatementRegistry;
 import org.apache.james.backends.cassandra.init.SessionWithInitializedTablesFactory;
 import org.apache.james.backends.cassandra.utils.FunctionRunnerWithRetry;
 import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
@@ -46,6 +47,7 @@ public final class CassandraCluster {
     private final CassandraModule module;
     private Session session;
     private CassandraTypesProvider typesProvider;
+    private PreparedStatementRegistry preparedStatementRegistry;
 
     public static CassandraCluster create(CassandraModule module) throws RuntimeException {
         return new CassandraCluster(module);
@@ -59,6 +61,7 @@ public final class CassandraCluster {
             session = new FunctionRunnerWithRetry(MAX_RETRY)
                 .executeAndRetrieveObject(CassandraCluster.this::tryInitializeSession);
             typesProvider = new CassandraTypesProvider(module, session);
+            preparedStatementRegistry = new PreparedStatementRegistry(session);
         } catch(Exception exception) {
             Throwables.propagate(exception);
         }
@@ -102,4 +105,8 @@ public final class CassandraCluster {
     public CassandraTypesProvider getTypesProvider() {
         return typesProvider;
     }
+
+    public PreparedStatementRegistry getPreparedStatementRegistry() {
+        return preparedStatementRegistry;
+    }
 }
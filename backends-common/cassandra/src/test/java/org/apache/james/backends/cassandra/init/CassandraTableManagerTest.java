@@ -0,0 +1,109 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.backends.cassandra.init;
+
+import static com.datastax.driver.core.DataType.bigint;
+import static com.datastax.driver.core.DataType.text;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.apache.james.backends.cassandra.CassandraCluster;
+import org.apache.james.backends.cassandra.components.CassandraIndex;
+import org.apache.james.backends.cassandra.components.CassandraModule;
+import org.apache.james.backends.cassandra.components.CassandraTable;
+import org.apache.james.backends.cassandra.components.CassandraType;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class CassandraTableManagerTest {
+
+    private static final String TABLE_NAME = "migrated";
+    private static final String NAME = "name";
+    private static final String VALUE = "value";
+    private static final String ADDED = "addedColumn";
+
+    private static final CassandraTable FIRST_RELEASE = new CassandraTable(TABLE_NAME, SchemaBuilder.createTable(TABLE_NAME)
+        .ifNotExists()
+        .addPartitionKey(NAME, text())
+        .addColumn(VALUE, bigint()));
+    private static final CassandraTable NEXT_RELEASE = new CassandraTable(TABLE_NAME, SchemaBuilder.createTable(TABLE_NAME)
+            .ifNotExists()
+            .addPartitionKey(NAME, text())
+            .addColumn(VALUE, bigint())
+            .addColumn(ADDED, text()),
+        ImmutableMap.of(ADDED, text()));
+
+    private Session session;
+
+    @Before
+    public void setUp() {
+        CassandraCluster cassandra = CassandraCluster.create(module(FIRST_RELEASE));
+        session = cassandra.getConf();
+        session.execute(SchemaBuilder.dropTable(TABLE_NAME).ifExists());
+    }
+
+    @Test
+    public void ensureAllTablesShouldAddTheAddedColumnsToExistingTables() {
+        new CassandraTableManager(module(FIRST_RELEASE), session).ensureAllTables();
+        session.execute(insertInto(TABLE_NAME).value(NAME, "old").value(VALUE, 42L));
+
+        new CassandraTableManager(module(NEXT_RELEASE), session).ensureAllTables();
+        session.execute(insertInto(TABLE_NAME).value(NAME, "new").value(VALUE, 43L).value(ADDED, "added"));
+
+        assertThat(session.execute(select(ADDED).from(TABLE_NAME).where(eq(NAME, "new"))).one().getString(ADDED))
+            .isEqualTo("added");
+        assertThat(session.execute(select(ADDED).from(TABLE_NAME).where(eq(NAME, "old"))).one().isNull(ADDED))
+            .isTrue();
+    }
+
+    @Test
+    public void ensureAllTablesShouldBeIdempotentWhenTablesAlreadyHaveTheAddedColumns() {
+        new CassandraTableManager(module(NEXT_RELEASE), session).ensureAllTables();
+        new CassandraTableManager(module(NEXT_RELEASE), session).ensureAllTables();
+
+        session.execute(insertInto(TABLE_NAME).value(NAME, "new").value(VALUE, 43L).value(ADDED, "added"));
+        assertThat(session.execute(select(ADDED).from(TABLE_NAME).where(eq(NAME, "new"))).one().getString(ADDED))
+            .isEqualTo("added");
+    }
+
+    private CassandraModule module(CassandraTable table) {
+        return new CassandraModule() {
+            @Override public List<CassandraTable> moduleTables() {
+                return ImmutableList.of(table);
+            }
+
+            @Override public List<CassandraIndex> moduleIndex() {
+                return ImmutableList.of();
+            }
+
+            @Override public List<CassandraType> moduleTypes() {
+                return ImmutableList.of();
+            }
+        };
+    }
+}
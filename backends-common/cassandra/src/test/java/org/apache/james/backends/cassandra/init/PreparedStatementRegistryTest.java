@@ -0,0 +1,105 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.backends.cassandra.init;
+
+import static com.datastax.driver.core.DataType.bigint;
+import static com.datastax.driver.core.DataType.text;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.apache.james.backends.cassandra.CassandraCluster;
+import org.apache.james.backends.cassandra.components.CassandraIndex;
+import org.apache.james.backends.cassandra.components.CassandraModule;
+import org.apache.james.backends.cassandra.components.CassandraTable;
+import org.apache.james.backends.cassandra.components.CassandraType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import com.google.common.collect.ImmutableList;
+
+public class PreparedStatementRegistryTest {
+
+    private static final String TABLE_NAME = "registry";
+    private static final String NAME = "name";
+    private static final String VALUE = "value";
+
+    private CassandraCluster cassandra;
+    private PreparedStatementRegistry testee;
+
+    @Before
+    public void setUp() {
+        CassandraModule module = new CassandraModule() {
+            @Override public List<CassandraTable> moduleTables() {
+                return ImmutableList.of(new CassandraTable(TABLE_NAME, SchemaBuilder.createTable(TABLE_NAME)
+                    .ifNotExists()
+                    .addPartitionKey(NAME, text())
+                    .addColumn(VALUE, bigint())));
+            }
+
+            @Override public List<CassandraIndex> moduleIndex() {
+                return ImmutableList.of();
+            }
+
+            @Override public List<CassandraType> moduleTypes() {
+                return ImmutableList.of();
+            }
+        };
+        cassandra = CassandraCluster.create(module);
+        cassandra.ensureAllTables();
+        testee = new PreparedStatementRegistry(cassandra.getConf());
+    }
+
+    @After
+    public void tearDown() {
+        cassandra.clearAllTables();
+    }
+
+    @Test
+    public void getShouldReturnTheSamePreparedStatementForTheSameQuery() {
+        assertThat(testee.get(select(VALUE).from(TABLE_NAME).where(eq(NAME, bindMarker()))))
+            .isSameAs(testee.get(select(VALUE).from(TABLE_NAME).where(eq(NAME, bindMarker()))));
+    }
+
+    @Test
+    public void getShouldReturnDistinctPreparedStatementsForDistinctQueries() {
+        assertThat(testee.get(select(VALUE).from(TABLE_NAME).where(eq(NAME, bindMarker()))))
+            .isNotSameAs(testee.get(select(NAME).from(TABLE_NAME).where(eq(NAME, bindMarker()))));
+    }
+
+    @Test
+    public void preparedStatementsShouldBeBindable() {
+        cassandra.getConf().execute(testee.get(insertInto(TABLE_NAME).value(NAME, bindMarker()).value(VALUE, bindMarker()))
+            .bind("key", 42L));
+
+        assertThat(cassandra.getConf().execute(testee.get(select(VALUE).from(TABLE_NAME).where(eq(NAME, bindMarker())))
+                .bind("key"))
+            .one()
+            .getLong(VALUE))
+            .isEqualTo(42L);
+    }
+
+}
@@ -21,6 +21,8 @@ package org.apache.james.mailbox.model;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.apache.james.mailbox.exception.MailboxException;
 
@@ -38,6 +40,17 @@ public interface Content {
      * @throws IOException
      */
     InputStream getInputStream() throws IOException;
+
+    /**
+     * Return the content as read-only {@link ByteBuffer}s which, written in
+     * order, make up the whole content. This allows to write content which is
+     * already held in memory without copying it.
+     * 
+     * @return buffers or <code>null</code> if the content is not available
+     *         in memory. In this case {@link #getInputStream()} must be used
+     * @throws IOException
+     */
+    List<ByteBuffer> asByteBuffers() throws IOException;
     
     /**
      * Size (in octets) of the content.
@@ -23,14 +23,17 @@ import java.util.Arrays;
 import java.util.List;
 
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import com.google.common.collect.ImmutableMap;
 import org.apache.james.backends.cassandra.components.CassandraIndex;
 import org.apache.james.backends.cassandra.components.CassandraModule;
 import org.apache.james.backends.cassandra.components.CassandraTable;
 import org.apache.james.backends.cassandra.components.CassandraType;
 import org.apache.james.mailbox.cassandra.table.CassandraACLTable;
+import org.apache.james.mailbox.cassandra.table.CassandraBlobTable;
 import org.apache.james.mailbox.cassandra.table.CassandraCurrentQuota;
 import org.apache.james.mailbox.cassandra.table.CassandraDefaultMaxQuota;
 import org.apache.james.mailbox.cassandra.table.CassandraMailboxCountersTable;
+import org.apache.james.mailbox.cassandra.table.CassandraMailboxSizeOffsetTable;
 import org.apache.james.mailbox.cassandra.table.CassandraMailboxTable;
 import org.apache.james.mailbox.cassandra.table.CassandraMaxQuota;
 import org.apache.james.mailbox.cassandra.table.CassandraMessageModseqTable;
@@ -68,7 +71,14 @@ public class CassandraMailboxModule implements CassandraModule {
                     .ifNotExists()
                     .addPartitionKey(CassandraMailboxCountersTable.MAILBOX_ID, timeuuid())
                     .addColumn(CassandraMailboxCountersTable.COUNT, counter())
-                    .addColumn(CassandraMailboxCountersTable.UNSEEN, counter())),
+                    .addColumn(CassandraMailboxCountersTable.UNSEEN, counter())
+                    .addColumn(CassandraMailboxCountersTable.SIZE, counter()),
+                ImmutableMap.of(CassandraMailboxCountersTable.SIZE, counter())),
+            new CassandraTable(CassandraMailboxSizeOffsetTable.TABLE_NAME,
+                SchemaBuilder.createTable(CassandraMailboxSizeOffsetTable.TABLE_NAME)
+                    .ifNotExists()
+                    .addPartitionKey(CassandraMailboxSizeOffsetTable.MAILBOX_ID, timeuuid())
+                    .addColumn(CassandraMailboxSizeOffsetTable.OFFSET, bigint())),
             new CassandraTable(CassandraMessageUidTable.TABLE_NAME,
                 SchemaBuilder.createTable(CassandraMessageUidTable.TABLE_NAME)
                     .ifNotExists()
@@ -86,6 +96,7 @@ public class CassandraMailboxModule implements CassandraModule {
                     .addColumn(CassandraMessageTable.MOD_SEQ, bigint())
                     .addColumn(CassandraMessageTable.FULL_CONTENT_OCTETS, cint())
                     .addColumn(CassandraMessageTable.BODY_CONTENT, blob())
+                    .addColumn(CassandraMessageTable.BODY_BLOB_ID, text())
                     .addColumn(CassandraMessageTable.HEADER_CONTENT, blob())
                     .addColumn(CassandraMessageTable.Flag.ANSWERED, cboolean())
                     .addColumn(CassandraMessageTable.Flag.DELETED, cboolean())
@@ -95,7 +106,15 @@ public class CassandraMailboxModule implements CassandraModule {
                     .addColumn(CassandraMessageTable.Flag.SEEN, cboolean())
                     .addColumn(CassandraMessageTable.Flag.USER, cboolean())
                     .addColumn(CassandraMessageTable.Flag.USER_FLAGS, set(text()))
-                    .addUDTListColumn(CassandraMessageTable.PROPERTIES, SchemaBuilder.frozen(CassandraMessageTable.PROPERTIES))),
+                    .addUDTListColumn(CassandraMessageTable.PROPERTIES, SchemaBuilder.frozen(CassandraMessageTable.PROPERTIES)),
+                ImmutableMap.of(CassandraMessageTable.BODY_BLOB_ID, text())),
+            new CassandraTable(CassandraBlobTable.TABLE_NAME,
+                SchemaBuilder.createTable(CassandraBlobTable.TABLE_NAME)
+                    .ifNotExists()
+                    .addPartitionKey(CassandraBlobTable.ID, text())
+                    .addClusteringColumn(CassandraBlobTable.CHUNK_NUMBER, cint())
+                    .addStaticColumn(CassandraBlobTable.CHUNK_SIZE, cint())
+                    .addColumn(CassandraBlobTable.DATA, blob())),
             new CassandraTable(CassandraSubscriptionTable.TABLE_NAME,
                 SchemaBuilder.createTable(CassandraSubscriptionTable.TABLE_NAME)
                     .ifNotExists()
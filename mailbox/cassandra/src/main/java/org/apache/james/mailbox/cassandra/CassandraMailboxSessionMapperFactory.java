@@ -20,8 +20,10 @@
 package org.apache.james.mailbox.cassandra;
 
 import org.apache.james.backends.cassandra.init.CassandraTypesProvider;
+import org.apache.james.backends.cassandra.init.PreparedStatementRegistry;
 import javax.inject.Inject;
 import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.cassandra.mail.CassandraBlobStore;
 import org.apache.james.mailbox.cassandra.mail.CassandraMailboxMapper;
 import org.apache.james.mailbox.cassandra.mail.CassandraMessageMapper;
 import org.apache.james.mailbox.cassandra.user.CassandraSubscriptionMapper;
@@ -44,15 +46,17 @@ public class CassandraMailboxSessionMapperFactory extends MailboxSessionMapperFa
     private final UidProvider<CassandraId> uidProvider;
     private final ModSeqProvider<CassandraId> modSeqProvider;
     private final CassandraTypesProvider typesProvider;
+    private final PreparedStatementRegistry preparedStatements;
     private int maxRetry;
 
     @Inject
-    public CassandraMailboxSessionMapperFactory(UidProvider<CassandraId> uidProvider, ModSeqProvider<CassandraId> modSeqProvider, Session session, CassandraTypesProvider typesProvider) {
+    public CassandraMailboxSessionMapperFactory(UidProvider<CassandraId> uidProvider, ModSeqProvider<CassandraId> modSeqProvider, Session session, CassandraTypesProvider typesProvider, PreparedStatementRegistry preparedStatements) {
         this.uidProvider = uidProvider;
         this.modSeqProvider = modSeqProvider;
         this.session = session;
         this.maxRetry = DEFAULT_MAX_RETRY;
         this.typesProvider = typesProvider;
+        this.preparedStatements = preparedStatements;
     }
 
     public void setMaxRetry(int maxRetry) {
@@ -61,17 +65,17 @@ public class CassandraMailboxSessionMapperFactory extends MailboxSessionMapperFa
 
     @Override
     public CassandraMessageMapper createMessageMapper(MailboxSession mailboxSession) {
-        return new CassandraMessageMapper(session, uidProvider, modSeqProvider, null, maxRetry, typesProvider);
+        return new CassandraMessageMapper(session, preparedStatements, new CassandraBlobStore(session, preparedStatements), uidProvider, modSeqProvider, null, maxRetry, typesProvider);
     }
 
     @Override
     public MailboxMapper<CassandraId> createMailboxMapper(MailboxSession mailboxSession) {
-        return new CassandraMailboxMapper(session, typesProvider, maxRetry);
+        return new CassandraMailboxMapper(session, preparedStatements, typesProvider, maxRetry);
     }
 
     @Override
     public SubscriptionMapper createSubscriptionMapper(MailboxSession mailboxSession) {
-        return new CassandraSubscriptionMapper(session);
+        return new CassandraSubscriptionMapper(session, preparedStatements);
     }
 
     public ModSeqProvider<CassandraId> getModSeqProvider() {
@@ -19,6 +19,7 @@
 
 package org.apache.james.mailbox.cassandra.mail;
 
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
@@ -28,6 +29,7 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.update;
 import java.io.IOException;
 import java.util.Optional;
 
+import org.apache.james.backends.cassandra.init.PreparedStatementRegistry;
 import org.apache.james.backends.cassandra.utils.CassandraConstants;
 import org.apache.james.backends.cassandra.utils.LightweightTransactionException;
 import org.apache.james.mailbox.cassandra.CassandraId;
@@ -43,7 +45,9 @@ import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -57,28 +61,56 @@ public class CassandraACLMapper {
         void inject();
     }
 
+    private static final RegularStatement SELECT_ACL = select(CassandraACLTable.ACL, CassandraACLTable.VERSION)
+        .from(CassandraACLTable.TABLE_NAME)
+        .where(eq(CassandraMailboxTable.ID, bindMarker()));
+    private static final RegularStatement UPDATE_ACL = update(CassandraACLTable.TABLE_NAME)
+        .with(set(CassandraACLTable.ACL, bindMarker()))
+        .and(set(CassandraACLTable.VERSION, bindMarker()))
+        .where(eq(CassandraACLTable.ID, bindMarker()))
+        .onlyIf(eq(CassandraACLTable.VERSION, bindMarker()));
+    private static final RegularStatement INSERT_ACL = insertInto(CassandraACLTable.TABLE_NAME)
+        .value(CassandraACLTable.ID, bindMarker())
+        .value(CassandraACLTable.ACL, bindMarker())
+        .value(CassandraACLTable.VERSION, 0)
+        .ifNotExists();
+
     private final Mailbox<CassandraId> mailbox;
     private final Session session;
+    private final PreparedStatementRegistry preparedStatements;
     private final int maxRetry;
     private final CodeInjector codeInjector;
 
     private static final Logger LOG = LoggerFactory.getLogger(CassandraACLMapper.class);
 
-    public CassandraACLMapper(Mailbox<CassandraId> mailbox, Session session, int maxRetry) {
-        this(mailbox, session, maxRetry, () -> {});
+    public CassandraACLMapper(Mailbox<CassandraId> mailbox, Session session, PreparedStatementRegistry preparedStatements, int maxRetry) {
+        this(mailbox, session, preparedStatements, maxRetry, () -> {});
     }
 
-    public CassandraACLMapper(Mailbox<CassandraId> mailbox, Session session, int maxRetry, CodeInjector codeInjector) {
+    public CassandraACLMapper(Mailbox<CassandraId> mailbox, Session session, PreparedStatementRegistry preparedStatements, int maxRetry, CodeInjector codeInjector) {
         Preconditions.checkArgument(maxRetry > 0);
         Preconditions.checkArgument(mailbox.getMailboxId() != null);
         this.mailbox = mailbox;
         this.session = session;
+        this.preparedStatements = preparedStatements;
         this.maxRetry = maxRetry;
         this.codeInjector = codeInjector;
     }
 
     public MailboxACL getACL() {
-        ResultSet resultSet = getStoredACLRow();
+        return getACL(getStoredACLRow());
+    }
+
+    /**
+     * Start reading the ACL without waiting for it, so that the ACL of several mailboxes can be read concurrently.
+     * The result is then given to {@link #getACL(ResultSet)}.
+     */
+    public ResultSetFuture getACLAsync() {
+        return session.executeAsync(preparedStatements.get(SELECT_ACL)
+            .bind(mailbox.getMailboxId().asUuid()));
+    }
+
+    public MailboxACL getACL(ResultSet resultSet) {
         if (resultSet.isExhausted()) {
             return SimpleMailboxACL.EMPTY;
         }
@@ -112,22 +144,17 @@ public class CassandraACLMapper {
     }
 
     private ResultSet getStoredACLRow() {
-        return session.execute(
-            select(CassandraACLTable.ACL, CassandraACLTable.VERSION)
-                .from(CassandraACLTable.TABLE_NAME)
-                .where(eq(CassandraMailboxTable.ID, mailbox.getMailboxId().asUuid()))
-        );
+        return session.execute(preparedStatements.get(SELECT_ACL)
+            .bind(mailbox.getMailboxId().asUuid()));
     }
 
     private ResultSet updateStoredACL(ACLWithVersion aclWithVersion) {
         try {
-            return session.execute(
-                update(CassandraACLTable.TABLE_NAME)
-                    .with(set(CassandraACLTable.ACL, SimpleMailboxACLJsonConverter.toJson(aclWithVersion.mailboxACL)))
-                    .and(set(CassandraACLTable.VERSION, aclWithVersion.version + 1))
-                    .where(eq(CassandraACLTable.ID, mailbox.getMailboxId().asUuid()))
-                    .onlyIf(eq(CassandraACLTable.VERSION, aclWithVersion.version))
-            );
+            return session.execute(preparedStatements.get(UPDATE_ACL).bind(
+                SimpleMailboxACLJsonConverter.toJson(aclWithVersion.mailboxACL),
+                aclWithVersion.version + 1,
+                mailbox.getMailboxId().asUuid(),
+                aclWithVersion.version));
         } catch (JsonProcessingException exception) {
             throw Throwables.propagate(exception);
         }
@@ -135,13 +162,9 @@ public class CassandraACLMapper {
 
     private ResultSet insertACL(MailboxACL acl) {
         try {
-            return session.execute(
-                insertInto(CassandraACLTable.TABLE_NAME)
-                    .value(CassandraACLTable.ID, mailbox.getMailboxId().asUuid())
-                    .value(CassandraACLTable.ACL, SimpleMailboxACLJsonConverter.toJson(acl))
-                    .value(CassandraACLTable.VERSION, 0)
-                    .ifNotExists()
-            );
+            return session.execute(preparedStatements.get(INSERT_ACL).bind(
+                mailbox.getMailboxId().asUuid(),
+                SimpleMailboxACLJsonConverter.toJson(acl)));
         } catch (JsonProcessingException exception) {
             throw Throwables.propagate(exception);
         }
@@ -0,0 +1,186 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.cassandra.mail;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
+import static org.apache.james.mailbox.cassandra.table.CassandraBlobTable.CHUNK_NUMBER;
+import static org.apache.james.mailbox.cassandra.table.CassandraBlobTable.CHUNK_SIZE;
+import static org.apache.james.mailbox.cassandra.table.CassandraBlobTable.DATA;
+import static org.apache.james.mailbox.cassandra.table.CassandraBlobTable.ID;
+import static org.apache.james.mailbox.cassandra.table.CassandraBlobTable.TABLE_NAME;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+
+import org.apache.james.backends.cassandra.init.PreparedStatementRegistry;
+import org.apache.james.mailbox.cassandra.mail.utils.ChunkedSharedInputStream;
+
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Stores contents as fixed size chunks, addressed by the SHA-256 of the content.
+ *
+ * Saving a content that is already stored does not write it again, so that a message delivered to several recipients
+ * only has its body stored once. Contents are streamed: only the chunks being written or read are held in memory.
+ */
+public class CassandraBlobStore {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_PENDING_CHUNK_WRITES = 4;
+
+    private static final RegularStatement SELECT_CHUNK_SIZE = select(CHUNK_SIZE)
+        .from(TABLE_NAME)
+        .where(eq(ID, bindMarker()))
+        .limit(1);
+    private static final RegularStatement SELECT_CHUNK_NUMBER = select(CHUNK_NUMBER)
+        .from(TABLE_NAME)
+        .where(eq(ID, bindMarker()))
+        .and(eq(CHUNK_NUMBER, bindMarker()));
+    private static final RegularStatement SELECT_CHUNK = select(DATA)
+        .from(TABLE_NAME)
+        .where(eq(ID, bindMarker()))
+        .and(eq(CHUNK_NUMBER, bindMarker()));
+    private static final RegularStatement INSERT_CHUNK = insertInto(TABLE_NAME)
+        .value(ID, bindMarker())
+        .value(CHUNK_NUMBER, bindMarker())
+        .value(CHUNK_SIZE, bindMarker())
+        .value(DATA, bindMarker());
+
+    private final Session session;
+    private final PreparedStatementRegistry preparedStatements;
+    private final int chunkSize;
+
+    public CassandraBlobStore(Session session, PreparedStatementRegistry preparedStatements, int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0);
+        this.session = session;
+        this.preparedStatements = preparedStatements;
+        this.chunkSize = chunkSize;
+    }
+
+    public CassandraBlobStore(Session session, PreparedStatementRegistry preparedStatements) {
+        this(session, preparedStatements, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Store the given content and return its id. The content is read twice: a first time to compute its id, and a
+     * second time to write its chunks, if it is not already stored.
+     */
+    public String save(ByteSource content) throws IOException {
+        HashingInputStream hashingStream = new HashingInputStream(Hashing.sha256(), content.openStream());
+        long length;
+        try {
+            length = ByteStreams.copy(hashingStream, ByteStreams.nullOutputStream());
+        } finally {
+            hashingStream.close();
+        }
+        String id = hashingStream.hash().toString();
+        int lastChunkNumber = (int) Math.max(0, (length - 1) / chunkSize);
+        if (chunkExists(id, lastChunkNumber)) {
+            return id;
+        }
+        InputStream in = content.openStream();
+        try {
+            Deque<ResultSetFuture> pendingWrites = new ArrayDeque<>();
+            for (int chunkNumber = 0; chunkNumber < lastChunkNumber; chunkNumber++) {
+                if (pendingWrites.size() >= MAX_PENDING_CHUNK_WRITES) {
+                    pendingWrites.removeFirst().getUninterruptibly();
+                }
+                pendingWrites.add(writeChunk(id, chunkNumber, readNextChunk(in, chunkSize)));
+            }
+            pendingWrites.forEach(ResultSetFuture::getUninterruptibly);
+            // The last chunk is written once all the others are stored, as its presence marks the blob as complete
+            writeChunk(id, lastChunkNumber, readNextChunk(in, (int) (length - (long) lastChunkNumber * chunkSize)))
+                .getUninterruptibly();
+        } finally {
+            in.close();
+        }
+        return id;
+    }
+
+    public ChunkedSharedInputStream.Chunks read(String id) {
+        return new ChunkedSharedInputStream.Chunks() {
+            private Integer storedChunkSize;
+
+            @Override
+            public int chunkSize() throws IOException {
+                if (storedChunkSize == null) {
+                    storedChunkSize = readChunkSize(id);
+                }
+                return storedChunkSize;
+            }
+
+            @Override
+            public byte[] chunk(int chunkNumber) throws IOException {
+                return readChunk(id, chunkNumber)
+                    .orElseThrow(() -> new IOException("Chunk " + chunkNumber + " of blob " + id + " is not stored"));
+            }
+        };
+    }
+
+    private byte[] readNextChunk(InputStream in, int length) throws IOException {
+        byte[] chunk = new byte[length];
+        ByteStreams.readFully(in, chunk);
+        return chunk;
+    }
+
+    private ResultSetFuture writeChunk(String id, int chunkNumber, byte[] chunk) {
+        return session.executeAsync(preparedStatements.get(INSERT_CHUNK)
+            .bind(id, chunkNumber, chunkSize, ByteBuffer.wrap(chunk)));
+    }
+
+    private boolean chunkExists(String id, int chunkNumber) {
+        return !session.execute(preparedStatements.get(SELECT_CHUNK_NUMBER).bind(id, chunkNumber)).isExhausted();
+    }
+
+    private int readChunkSize(String id) throws IOException {
+        ResultSet results = session.execute(preparedStatements.get(SELECT_CHUNK_SIZE).bind(id));
+        if (results.isExhausted()) {
+            throw new IOException("Blob " + id + " is not stored");
+        }
+        return results.one().getInt(CHUNK_SIZE);
+    }
+
+    private Optional<byte[]> readChunk(String id, int chunkNumber) {
+        Row row = session.execute(preparedStatements.get(SELECT_CHUNK).bind(id, chunkNumber)).one();
+        if (row == null) {
+            return Optional.empty();
+        }
+        ByteBuffer buffer = row.getBytes(DATA);
+        byte[] chunk = new byte[buffer.remaining()];
+        buffer.get(chunk);
+        return Optional.of(chunk);
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.apache.james.mailbox.cassandra.mail;
 
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
@@ -30,6 +31,7 @@ import static org.apache.james.mailbox.cassandra.table.CassandraMailboxTable.PAT
 import static org.apache.james.mailbox.cassandra.table.CassandraMailboxTable.TABLE_NAME;
 import static org.apache.james.mailbox.cassandra.table.CassandraMailboxTable.UIDVALIDITY;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.StringTokenizer;
@@ -38,6 +40,7 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.james.backends.cassandra.init.CassandraTypesProvider;
+import org.apache.james.backends.cassandra.init.PreparedStatementRegistry;
 import org.apache.james.backends.cassandra.utils.CassandraUtils;
 import org.apache.james.mailbox.cassandra.CassandraId;
 import org.apache.james.mailbox.cassandra.table.CassandraMailboxTable;
@@ -50,7 +53,9 @@ import org.apache.james.mailbox.store.mail.MailboxMapper;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.impl.SimpleMailbox;
 
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
@@ -62,27 +67,46 @@ import com.google.common.base.Preconditions;
 public class CassandraMailboxMapper implements MailboxMapper<CassandraId> {
 
     public static final String WILDCARD = "%";
+
+    private static final RegularStatement DELETE_MAILBOX = QueryBuilder.delete()
+        .from(TABLE_NAME)
+        .where(eq(ID, bindMarker()));
+    private static final RegularStatement SELECT_BY_PATH = select(FIELDS)
+        .from(TABLE_NAME)
+        .where(eq(PATH, bindMarker()));
+    private static final RegularStatement SELECT_BY_MAILBOX_BASE = select(FIELDS)
+        .from(TABLE_NAME)
+        .where(eq(MAILBOX_BASE, bindMarker()));
+    private static final RegularStatement SELECT_ALL = select(FIELDS)
+        .from(TABLE_NAME);
+    private static final RegularStatement INSERT_MAILBOX = insertInto(TABLE_NAME)
+        .value(ID, bindMarker())
+        .value(NAME, bindMarker())
+        .value(UIDVALIDITY, bindMarker())
+        .value(MAILBOX_BASE, bindMarker())
+        .value(PATH, bindMarker());
+
     private final Session session;
+    private final PreparedStatementRegistry preparedStatements;
     private final int maxRetry;
     private final CassandraTypesProvider typesProvider;
 
-    public CassandraMailboxMapper(Session session, CassandraTypesProvider typesProvider, int maxRetry) {
+    public CassandraMailboxMapper(Session session, PreparedStatementRegistry preparedStatements, CassandraTypesProvider typesProvider, int maxRetry) {
         this.session = session;
+        this.preparedStatements = preparedStatements;
         this.maxRetry = maxRetry;
         this.typesProvider = typesProvider;
     }
 
     @Override
     public void delete(Mailbox<CassandraId> mailbox) throws MailboxException {
-        session.execute(
-            QueryBuilder.delete()
-                .from(TABLE_NAME)
-                .where(eq(ID, mailbox.getMailboxId().asUuid())));
+        session.execute(preparedStatements.get(DELETE_MAILBOX)
+            .bind(mailbox.getMailboxId().asUuid()));
     }
 
     @Override
     public Mailbox<CassandraId> findMailboxByPath(MailboxPath path) throws MailboxException {
-        ResultSet resultSet = session.execute(select(FIELDS).from(TABLE_NAME).where(eq(PATH, path.toString())));
+        ResultSet resultSet = session.execute(preparedStatements.get(SELECT_BY_PATH).bind(path.toString()));
         if (resultSet.isExhausted()) {
             throw new MailboxNotFoundException(path);
         } else {
@@ -93,10 +117,10 @@ public class CassandraMailboxMapper implements MailboxMapper<CassandraId> {
     @Override
     public List<Mailbox<CassandraId>> findMailboxWithPathLike(MailboxPath path) throws MailboxException {
         Pattern regex = Pattern.compile(constructEscapedRegexForMailboxNameMatching(path));
-        return getMailboxFilteredByNamespaceAndUserStream(path.getNamespace(), path.getUser())
+        return withACL(getMailboxFilteredByNamespaceAndUserStream(path.getNamespace(), path.getUser())
             .filter((row) -> regex.matcher(row.getString(NAME)).matches())
-            .map(this::mailbox)
-            .collect(Collectors.toList());
+            .map(this::mailboxWithoutACL)
+            .collect(Collectors.toList()));
     }
 
     @Override
@@ -111,18 +135,17 @@ public class CassandraMailboxMapper implements MailboxMapper<CassandraId> {
 
     @Override
     public boolean hasChildren(Mailbox<CassandraId> mailbox, char delimiter) {
-        final Pattern regex = Pattern.compile(Pattern.quote( mailbox.getName() + String.valueOf(delimiter)) + ".*");
+        String childPrefix = mailbox.getName() + delimiter;
         return getMailboxFilteredByNamespaceAndUserStream(mailbox.getNamespace(), mailbox.getUser())
-            .anyMatch((row) -> regex.matcher(row.getString(NAME)).matches());
+            .anyMatch((row) -> row.getString(NAME).startsWith(childPrefix));
     }
 
     @Override
     public List<Mailbox<CassandraId>> list() throws MailboxException {
-        return CassandraUtils.convertToStream(
-            session.execute(
-                select(FIELDS).from(TABLE_NAME)))
-            .map(this::mailbox)
-            .collect(Collectors.toList());
+        return withACL(CassandraUtils.convertToStream(
+            session.execute(preparedStatements.get(SELECT_ALL).bind()))
+            .map(this::mailboxWithoutACL)
+            .collect(Collectors.toList()));
     }
 
     @Override
@@ -132,7 +155,7 @@ public class CassandraMailboxMapper implements MailboxMapper<CassandraId> {
 
     @Override
     public void updateACL(Mailbox<CassandraId> mailbox, MailboxACL.MailboxACLCommand mailboxACLCommand) throws MailboxException {
-        new CassandraACLMapper(mailbox, session, maxRetry).updateACL(mailboxACLCommand);
+        new CassandraACLMapper(mailbox, session, preparedStatements, maxRetry).updateACL(mailboxACLCommand);
     }
 
     @Override
@@ -141,6 +164,12 @@ public class CassandraMailboxMapper implements MailboxMapper<CassandraId> {
     }
 
     private SimpleMailbox<CassandraId> mailbox(Row row) {
+        SimpleMailbox<CassandraId> mailbox = mailboxWithoutACL(row);
+        mailbox.setACL(aclMapper(mailbox).getACL());
+        return mailbox;
+    }
+
+    private SimpleMailbox<CassandraId> mailboxWithoutACL(Row row) {
         SimpleMailbox<CassandraId> mailbox = new SimpleMailbox<>(
             new MailboxPath(
                 row.getUDTValue(MAILBOX_BASE).getString(MailboxBase.NAMESPACE),
@@ -148,10 +177,32 @@ public class CassandraMailboxMapper implements MailboxMapper<CassandraId> {
                 row.getString(NAME)),
             row.getLong(UIDVALIDITY));
         mailbox.setMailboxId(CassandraId.of(row.getUUID(ID)));
-        mailbox.setACL(new CassandraACLMapper(mailbox, session, maxRetry).getACL());
         return mailbox;
     }
 
+    /**
+     * Read the ACL of all the given mailboxes concurrently, instead of waiting for each of them in turn.
+     */
+    private List<Mailbox<CassandraId>> withACL(List<SimpleMailbox<CassandraId>> mailboxes) {
+        List<CassandraACLMapper> aclMappers = mailboxes.stream()
+            .map(this::aclMapper)
+            .collect(Collectors.toList());
+        List<ResultSetFuture> acls = aclMappers.stream()
+            .map(CassandraACLMapper::getACLAsync)
+            .collect(Collectors.toList());
+        List<Mailbox<CassandraId>> result = new ArrayList<>(mailboxes.size());
+        for (int i = 0; i < mailboxes.size(); i++) {
+            SimpleMailbox<CassandraId> mailbox = mailboxes.get(i);
+            mailbox.setACL(aclMappers.get(i).getACL(acls.get(i).getUninterruptibly()));
+            result.add(mailbox);
+        }
+        return result;
+    }
+
+    private CassandraACLMapper aclMapper(Mailbox<CassandraId> mailbox) {
+        return new CassandraACLMapper(mailbox, session, preparedStatements, maxRetry);
+    }
+
     private String constructEscapedRegexForMailboxNameMatching(MailboxPath path) {
         return Collections
             .list(new StringTokenizer(path.getName(), WILDCARD, true))
@@ -167,17 +218,15 @@ public class CassandraMailboxMapper implements MailboxMapper<CassandraId> {
     }
 
     private void upsertMailbox(SimpleMailbox<CassandraId> mailbox) throws MailboxException {
-        session.execute(
-            insertInto(TABLE_NAME)
-                .value(ID, mailbox.getMailboxId().asUuid())
-                .value(NAME, mailbox.getName())
-                .value(UIDVALIDITY, mailbox.getUidValidity())
-                .value(MAILBOX_BASE, typesProvider.getDefinedUserType(CassandraMailboxTable.MAILBOX_BASE)
-                    .newValue()
-                    .setString(MailboxBase.NAMESPACE, mailbox.getNamespace())
-                    .setString(MailboxBase.USER, mailbox.getUser()))
-                .value(PATH, path(mailbox).toString())
-        );
+        session.execute(preparedStatements.get(INSERT_MAILBOX).bind(
+            mailbox.getMailboxId().asUuid(),
+            mailbox.getName(),
+            mailbox.getUidValidity(),
+            typesProvider.getDefinedUserType(CassandraMailboxTable.MAILBOX_BASE)
+                .newValue()
+                .setString(MailboxBase.NAMESPACE, mailbox.getNamespace())
+                .setString(MailboxBase.USER, mailbox.getUser()),
+            path(mailbox).toString()));
     }
 
     private MailboxPath path(Mailbox<?> mailbox) {
@@ -185,10 +234,8 @@ public class CassandraMailboxMapper implements MailboxMapper<CassandraId> {
     }
 
     private Stream<Row> getMailboxFilteredByNamespaceAndUserStream (String namespace, String user) {
-        return CassandraUtils.convertToStream(session.execute(
-            select(FIELDS)
-                .from(TABLE_NAME)
-                .where(eq(MAILBOX_BASE, typesProvider.getDefinedUserType(CassandraMailboxTable.MAILBOX_BASE).newValue().setString(MailboxBase.NAMESPACE, namespace).setString(MailboxBase.USER, user)))));
+        return CassandraUtils.convertToStream(session.execute(preparedStatements.get(SELECT_BY_MAILBOX_BASE)
+            .bind(typesProvider.getDefinedUserType(CassandraMailboxTable.MAILBOX_BASE).newValue().setString(MailboxBase.NAMESPACE, namespace).setString(MailboxBase.USER, user))));
     }
 
 }
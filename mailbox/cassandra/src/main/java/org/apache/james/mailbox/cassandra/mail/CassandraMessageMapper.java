@@ -29,15 +29,18 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.lte;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.set;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.update;
+import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.BODY_BLOB_ID;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.BODY_CONTENT;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.BODY_OCTECTS;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.BODY_START_OCTET;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.FIELDS;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.FULL_CONTENT_OCTETS;
+import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.HEADERS;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.HEADER_CONTENT;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.IMAP_UID;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.INTERNAL_DATE;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.MAILBOX_ID;
+import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.METADATA;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.MOD_SEQ;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.PROPERTIES;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageTable.TABLE_NAME;
@@ -55,28 +58,31 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.mail.Flags;
 import javax.mail.Flags.Flag;
-import javax.mail.util.SharedByteArrayInputStream;
+import javax.mail.internet.SharedInputStream;
 
 import com.google.common.base.Throwables;
 import org.apache.james.backends.cassandra.init.CassandraTypesProvider;
+import org.apache.james.backends.cassandra.init.PreparedStatementRegistry;
 import org.apache.james.backends.cassandra.utils.CassandraConstants;
 import org.apache.james.backends.cassandra.utils.CassandraUtils;
 import org.apache.james.mailbox.FlagsBuilder;
 import org.apache.james.mailbox.MailboxSession;
 import org.apache.james.mailbox.cassandra.CassandraId;
 import org.apache.james.backends.cassandra.utils.FunctionRunnerWithRetry;
+import org.apache.james.mailbox.cassandra.mail.utils.ChunkedSharedInputStream;
 import org.apache.james.mailbox.cassandra.mail.utils.MessageDeletedDuringFlagsUpdateException;
 import org.apache.james.mailbox.cassandra.table.CassandraMailboxCountersTable;
+import org.apache.james.mailbox.cassandra.table.CassandraMailboxSizeOffsetTable;
 import org.apache.james.mailbox.cassandra.table.CassandraMessageTable;
 import org.apache.james.mailbox.cassandra.table.CassandraMessageTable.Properties;
 import org.apache.james.mailbox.exception.MailboxException;
@@ -85,6 +91,7 @@ import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.store.FlagsUpdateCalculator;
 import org.apache.james.mailbox.store.SimpleMessageMetaData;
+import org.apache.james.mailbox.store.mail.MailboxSizeCounter;
 import org.apache.james.mailbox.store.mail.MessageMapper;
 import org.apache.james.mailbox.store.mail.ModSeqProvider;
 import org.apache.james.mailbox.store.mail.UidProvider;
@@ -93,31 +100,100 @@ import org.apache.james.mailbox.store.mail.model.Message;
 import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
 import org.apache.james.mailbox.store.mail.model.impl.SimpleMessage;
 import org.apache.james.mailbox.store.mail.model.impl.SimpleProperty;
+import org.apache.james.mailbox.store.streaming.ExposedSharedByteArrayInputStream;
 
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.UDTValue;
 import com.datastax.driver.core.querybuilder.Assignment;
-import com.datastax.driver.core.querybuilder.Insert;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.datastax.driver.core.querybuilder.Select.Where;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteSource;
 import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Bytes;
 
-public class CassandraMessageMapper implements MessageMapper<CassandraId> {
+public class CassandraMessageMapper implements MessageMapper<CassandraId>, MailboxSizeCounter<CassandraId> {
+
+    private static final RegularStatement SELECT_COUNT = select(CassandraMailboxCountersTable.COUNT)
+        .from(CassandraMailboxCountersTable.TABLE_NAME)
+        .where(eq(CassandraMailboxCountersTable.MAILBOX_ID, bindMarker()));
+    private static final RegularStatement SELECT_UNSEEN = select(CassandraMailboxCountersTable.UNSEEN)
+        .from(CassandraMailboxCountersTable.TABLE_NAME)
+        .where(eq(CassandraMailboxCountersTable.MAILBOX_ID, bindMarker()));
+    private static final RegularStatement SELECT_SIZE = select(CassandraMailboxCountersTable.SIZE)
+        .from(CassandraMailboxCountersTable.TABLE_NAME)
+        .where(eq(CassandraMailboxCountersTable.MAILBOX_ID, bindMarker()));
+    private static final RegularStatement SELECT_SIZE_OFFSET = select(CassandraMailboxSizeOffsetTable.OFFSET)
+        .from(CassandraMailboxSizeOffsetTable.TABLE_NAME)
+        .where(eq(CassandraMailboxSizeOffsetTable.MAILBOX_ID, bindMarker()));
+    private static final RegularStatement INSERT_SIZE_OFFSET = insertInto(CassandraMailboxSizeOffsetTable.TABLE_NAME)
+        .value(CassandraMailboxSizeOffsetTable.MAILBOX_ID, bindMarker())
+        .value(CassandraMailboxSizeOffsetTable.OFFSET, bindMarker());
+    private static final RegularStatement INCREMENT_COUNT = updateMailboxCounters(incr(CassandraMailboxCountersTable.COUNT));
+    private static final RegularStatement DECREMENT_COUNT = updateMailboxCounters(decr(CassandraMailboxCountersTable.COUNT));
+    private static final RegularStatement INCREMENT_UNSEEN = updateMailboxCounters(incr(CassandraMailboxCountersTable.UNSEEN));
+    private static final RegularStatement DECREMENT_UNSEEN = updateMailboxCounters(decr(CassandraMailboxCountersTable.UNSEEN));
+    private static final RegularStatement INCREMENT_SIZE = updateMailboxCounters(incr(CassandraMailboxCountersTable.SIZE, bindMarker()));
+    private static final RegularStatement DECREMENT_SIZE = updateMailboxCounters(decr(CassandraMailboxCountersTable.SIZE, bindMarker()));
+    private static final RegularStatement DELETE_MESSAGE = QueryBuilder.delete()
+        .from(TABLE_NAME)
+        .where(eq(MAILBOX_ID, bindMarker()))
+        .and(eq(IMAP_UID, bindMarker()));
+    private static final RegularStatement SELECT_RECENT = selectMessages(FetchType.Metadata, MessageRange.Type.ALL).and(eq(RECENT, true));
+    private static final RegularStatement SELECT_UNSEEN_MESSAGES = selectMessages(FetchType.Metadata, MessageRange.Type.ALL).and(eq(SEEN, false));
+    private static final RegularStatement INSERT_MESSAGE = insertInto(TABLE_NAME)
+        .value(MAILBOX_ID, bindMarker())
+        .value(IMAP_UID, bindMarker())
+        .value(MOD_SEQ, bindMarker())
+        .value(INTERNAL_DATE, bindMarker())
+        .value(BODY_START_OCTET, bindMarker())
+        .value(FULL_CONTENT_OCTETS, bindMarker())
+        .value(BODY_OCTECTS, bindMarker())
+        .value(ANSWERED, bindMarker())
+        .value(DELETED, bindMarker())
+        .value(DRAFT, bindMarker())
+        .value(FLAGGED, bindMarker())
+        .value(RECENT, bindMarker())
+        .value(SEEN, bindMarker())
+        .value(USER, bindMarker())
+        .value(USER_FLAGS, bindMarker())
+        .value(BODY_BLOB_ID, bindMarker())
+        .value(HEADER_CONTENT, bindMarker())
+        .value(PROPERTIES, bindMarker())
+        .value(TEXTUAL_LINE_COUNT, bindMarker());
+    private static final RegularStatement UPDATE_FLAGS = update(TABLE_NAME)
+        .with(set(ANSWERED, bindMarker()))
+        .and(set(DELETED, bindMarker()))
+        .and(set(DRAFT, bindMarker()))
+        .and(set(FLAGGED, bindMarker()))
+        .and(set(RECENT, bindMarker()))
+        .and(set(SEEN, bindMarker()))
+        .and(set(USER, bindMarker()))
+        .and(set(USER_FLAGS, bindMarker()))
+        .and(set(MOD_SEQ, bindMarker()))
+        .where(eq(IMAP_UID, bindMarker()))
+        .and(eq(MAILBOX_ID, bindMarker()))
+        .onlyIf(eq(MOD_SEQ, bindMarker()));
 
     private final Session session;
+    private final PreparedStatementRegistry preparedStatements;
+    private final CassandraBlobStore blobStore;
     private final ModSeqProvider<CassandraId> modSeqProvider;
     private final MailboxSession mailboxSession;
     private final UidProvider<CassandraId> uidProvider;
     private final CassandraTypesProvider typesProvider;
     private final int maxRetries;
 
-    public CassandraMessageMapper(Session session, UidProvider<CassandraId> uidProvider, ModSeqProvider<CassandraId> modSeqProvider, MailboxSession mailboxSession, int maxRetries, CassandraTypesProvider typesProvider) {
+    public CassandraMessageMapper(Session session, PreparedStatementRegistry preparedStatements, CassandraBlobStore blobStore, UidProvider<CassandraId> uidProvider, ModSeqProvider<CassandraId> modSeqProvider, MailboxSession mailboxSession, int maxRetries, CassandraTypesProvider typesProvider) {
         this.session = session;
+        this.preparedStatements = preparedStatements;
+        this.blobStore = blobStore;
         this.uidProvider = uidProvider;
         this.modSeqProvider = modSeqProvider;
         this.mailboxSession = mailboxSession;
@@ -127,19 +203,62 @@ public class CassandraMessageMapper implements MessageMapper<CassandraId> {
 
     @Override
     public long countMessagesInMailbox(Mailbox<CassandraId> mailbox) throws MailboxException {
-        ResultSet results = session.execute(
-            select(CassandraMailboxCountersTable.COUNT)
-                .from(CassandraMailboxCountersTable.TABLE_NAME)
-                .where(eq(CassandraMailboxCountersTable.MAILBOX_ID, mailbox.getMailboxId().asUuid())));
+        ResultSet results = session.execute(preparedStatements.get(SELECT_COUNT)
+            .bind(mailbox.getMailboxId().asUuid()));
         return results.isExhausted() ? 0 : results.one().getLong(CassandraMailboxCountersTable.COUNT);
     }
 
+    /**
+     * The size counter of a mailbox created before sizes were counted misses the messages added before. It is only
+     * used once the offset to add to it has been stored by {@link #initializeMailboxSize(Mailbox)}.
+     */
+    @Override
+    public com.google.common.base.Optional<Long> getMailboxSize(Mailbox<CassandraId> mailbox) throws MailboxException {
+        ResultSet offset = session.execute(preparedStatements.get(SELECT_SIZE_OFFSET)
+            .bind(mailbox.getMailboxId().asUuid()));
+        if (offset.isExhausted()) {
+            return com.google.common.base.Optional.absent();
+        }
+        return com.google.common.base.Optional.of(readSizeCounter(mailbox) + offset.one().getLong(CassandraMailboxSizeOffsetTable.OFFSET));
+    }
+
+    @Override
+    public long initializeMailboxSize(Mailbox<CassandraId> mailbox) throws MailboxException {
+        // Messages added or deleted while the mailbox is read would be counted twice, or not at all: the offset is
+        // only stored when the size counter did not change meanwhile
+        long size = 0;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            long counterBefore = readSizeCounter(mailbox);
+            size = sumMessageSizes(mailbox);
+            long counterAfter = readSizeCounter(mailbox);
+            if (counterBefore == counterAfter) {
+                session.execute(preparedStatements.get(INSERT_SIZE_OFFSET)
+                    .bind(mailbox.getMailboxId().asUuid(), size - counterAfter));
+                return size;
+            }
+        }
+        return size;
+    }
+
+    private long readSizeCounter(Mailbox<CassandraId> mailbox) {
+        ResultSet results = session.execute(preparedStatements.get(SELECT_SIZE)
+            .bind(mailbox.getMailboxId().asUuid()));
+        return results.isExhausted() ? 0 : results.one().getLong(CassandraMailboxCountersTable.SIZE);
+    }
+
+    private long sumMessageSizes(Mailbox<CassandraId> mailbox) throws MailboxException {
+        long size = 0;
+        Iterator<Message<CassandraId>> messages = findInMailbox(mailbox, MessageRange.all(), FetchType.Metadata, -1);
+        while (messages.hasNext()) {
+            size += messages.next().getFullContentOctets();
+        }
+        return size;
+    }
+
     @Override
     public long countUnseenMessagesInMailbox(Mailbox<CassandraId> mailbox) throws MailboxException {
-        ResultSet results = session.execute(
-            select(CassandraMailboxCountersTable.UNSEEN)
-                .from(CassandraMailboxCountersTable.TABLE_NAME)
-                .where(eq(CassandraMailboxCountersTable.MAILBOX_ID, mailbox.getMailboxId().asUuid())));
+        ResultSet results = session.execute(preparedStatements.get(SELECT_UNSEEN)
+            .bind(mailbox.getMailboxId().asUuid()));
         if (!results.isExhausted()) {
             Row row = results.one();
             if (row.getColumnDefinitions().contains(CassandraMailboxCountersTable.UNSEEN)) {
@@ -151,28 +270,34 @@ public class CassandraMessageMapper implements MessageMapper<CassandraId> {
 
     @Override
     public void delete(Mailbox<CassandraId> mailbox, Message<CassandraId> message) {
-        session.execute(
-            QueryBuilder.delete()
-                .from(TABLE_NAME)
-                .where(eq(MAILBOX_ID, mailbox.getMailboxId().asUuid()))
-                .and(eq(IMAP_UID, message.getUid())));
-        decrementCount(mailbox);
+        ImmutableList.Builder<ResultSetFuture> writes = ImmutableList.builder();
+        writes.add(session.executeAsync(preparedStatements.get(DELETE_MESSAGE)
+            .bind(mailbox.getMailboxId().asUuid(), message.getUid())));
+        writes.add(decrementCount(mailbox));
+        writes.add(decrementSize(mailbox, message.getFullContentOctets()));
         if (!message.isSeen()) {
-            decrementUnseen(mailbox);
+            writes.add(decrementUnseen(mailbox));
         }
+        awaitAll(writes.build());
     }
 
     @Override
     public Iterator<Message<CassandraId>> findInMailbox(Mailbox<CassandraId> mailbox, MessageRange set, FetchType ftype, int max) throws MailboxException {
-        return CassandraUtils.convertToStream(session.execute(buildQuery(mailbox, set)))
-            .map(this::message)
-            .sorted(Comparator.comparingLong(Message::getUid))
+        BoundStatement statement = bindRange(selectMessages(ftype, set.getType()), mailbox, set);
+        if (max > 0) {
+            statement.setFetchSize(max);
+        }
+        Stream<Row> rows = CassandraUtils.convertToStream(session.execute(statement)).sequential();
+        if (max > 0) {
+            rows = rows.limit(max);
+        }
+        return rows.map(this::message)
             .iterator();
     }
 
     @Override
     public List<Long> findRecentMessageUidsInMailbox(Mailbox<CassandraId> mailbox) throws MailboxException {
-        return CassandraUtils.convertToStream(session.execute(selectAll(mailbox).and((eq(RECENT, true)))))
+        return CassandraUtils.convertToStream(session.execute(preparedStatements.get(SELECT_RECENT).bind(mailbox.getMailboxId().asUuid())))
             .map((row) -> row.getLong(IMAP_UID))
             .sorted()
             .collect(Collectors.toList());
@@ -180,7 +305,7 @@ public class CassandraMessageMapper implements MessageMapper<CassandraId> {
 
     @Override
     public Long findFirstUnseenMessageUid(Mailbox<CassandraId> mailbox) throws MailboxException {
-        return CassandraUtils.convertToStream(session.execute(selectAll(mailbox).and((eq(SEEN, false)))))
+        return CassandraUtils.convertToStream(session.execute(preparedStatements.get(SELECT_UNSEEN_MESSAGES).bind(mailbox.getMailboxId().asUuid())))
             .map((row) -> row.getLong(IMAP_UID))
             .sorted()
             .findFirst()
@@ -189,7 +314,7 @@ public class CassandraMessageMapper implements MessageMapper<CassandraId> {
 
     @Override
     public Map<Long, MessageMetaData> expungeMarkedForDeletionInMailbox(final Mailbox<CassandraId> mailbox, MessageRange set) throws MailboxException {
-        return CassandraUtils.convertToStream(session.execute(buildQuery(mailbox, set).and(eq(DELETED, true))))
+        return CassandraUtils.convertToStream(session.execute(bindRange(selectMessages(FetchType.Metadata, set.getType()).and(eq(DELETED, true)), mailbox, set)))
             .map(this::message)
             .peek((message) -> delete(mailbox, message))
             .collect(Collectors.toMap(Message::getUid, SimpleMessageMetaData::new));
@@ -214,17 +339,12 @@ public class CassandraMessageMapper implements MessageMapper<CassandraId> {
     public MessageMetaData add(Mailbox<CassandraId> mailbox, Message<CassandraId> message) throws MailboxException {
         message.setUid(uidProvider.nextUid(mailboxSession, mailbox));
         message.setModSeq(modSeqProvider.nextModSeq(mailboxSession, mailbox));
-        MessageMetaData messageMetaData = save(mailbox, message);
-        if (!message.isSeen()) {
-            incrementUnseen(mailbox);
-        }
-        incrementCount(mailbox);
-        return messageMetaData;
+        return save(mailbox, message);
     }
 
     @Override
     public Iterator<UpdatedFlags> updateFlags(Mailbox<CassandraId> mailbox, FlagsUpdateCalculator flagUpdateCalculator, MessageRange set) throws MailboxException {
-        return CassandraUtils.convertToStream(session.execute(buildQuery(mailbox, set)))
+        return CassandraUtils.convertToStream(session.execute(bindRange(selectMessages(FetchType.Metadata, set.getType()), mailbox, set)))
             .map((row) -> updateFlagsOnMessage(mailbox, flagUpdateCalculator, row))
             .filter(Optional::isPresent)
             .map(Optional::get)
@@ -243,10 +363,6 @@ public class CassandraMessageMapper implements MessageMapper<CassandraId> {
 
         original.setUid(uidProvider.nextUid(mailboxSession, mailbox));
         original.setModSeq(modSeqProvider.nextModSeq(mailboxSession, mailbox));
-        incrementCount(mailbox);
-        if(!original.isSeen()) {
-            incrementUnseen(mailbox);
-        }
         original.setFlags(new FlagsBuilder().add(original.createFlags()).add(Flag.RECENT).build());
         return save(mailbox, original);
     }
@@ -256,24 +372,42 @@ public class CassandraMessageMapper implements MessageMapper<CassandraId> {
         return uidProvider.lastUid(mailboxSession, mailbox);
     }
 
-    private void decrementCount(Mailbox<CassandraId> mailbox) {
-        updateMailbox(mailbox, decr(CassandraMailboxCountersTable.COUNT));
+    private ResultSetFuture decrementCount(Mailbox<CassandraId> mailbox) {
+        return updateMailbox(mailbox, DECREMENT_COUNT);
+    }
+
+    private ResultSetFuture incrementCount(Mailbox<CassandraId> mailbox) {
+        return updateMailbox(mailbox, INCREMENT_COUNT);
     }
 
-    private void incrementCount(Mailbox<CassandraId> mailbox) {
-        updateMailbox(mailbox, incr(CassandraMailboxCountersTable.COUNT));
+    private ResultSetFuture decrementUnseen(Mailbox<CassandraId> mailbox) {
+        return updateMailbox(mailbox, DECREMENT_UNSEEN);
     }
 
-    private void decrementUnseen(Mailbox<CassandraId> mailbox) {
-        updateMailbox(mailbox, decr(CassandraMailboxCountersTable.UNSEEN));
+    private ResultSetFuture incrementUnseen(Mailbox<CassandraId> mailbox) {
+        return updateMailbox(mailbox, INCREMENT_UNSEEN);
     }
 
-    private void incrementUnseen(Mailbox<CassandraId> mailbox) {
-        updateMailbox(mailbox, incr(CassandraMailboxCountersTable.UNSEEN));
+    private ResultSetFuture decrementSize(Mailbox<CassandraId> mailbox, long size) {
+        return session.executeAsync(preparedStatements.get(DECREMENT_SIZE).bind(size, mailbox.getMailboxId().asUuid()));
     }
 
-    private void updateMailbox(Mailbox<CassandraId> mailbox, Assignment operation) {
-        session.execute(update(CassandraMailboxCountersTable.TABLE_NAME).with(operation).where(eq(CassandraMailboxCountersTable.MAILBOX_ID, mailbox.getMailboxId().asUuid())));
+    private ResultSetFuture incrementSize(Mailbox<CassandraId> mailbox, long size) {
+        return session.executeAsync(preparedStatements.get(INCREMENT_SIZE).bind(size, mailbox.getMailboxId().asUuid()));
+    }
+
+    private ResultSetFuture updateMailbox(Mailbox<CassandraId> mailbox, RegularStatement operation) {
+        return session.executeAsync(preparedStatements.get(operation).bind(mailbox.getMailboxId().asUuid()));
+    }
+
+    private void awaitAll(List<ResultSetFuture> writes) {
+        writes.forEach(ResultSetFuture::getUninterruptibly);
+    }
+
+    private static RegularStatement updateMailboxCounters(Assignment operation) {
+        return update(CassandraMailboxCountersTable.TABLE_NAME)
+            .with(operation)
+            .where(eq(CassandraMailboxCountersTable.MAILBOX_ID, bindMarker()));
     }
 
     private Message<CassandraId> message(Row row) {
@@ -282,7 +416,7 @@ public class CassandraMessageMapper implements MessageMapper<CassandraId> {
                 row.getDate(INTERNAL_DATE),
                 row.getInt(FULL_CONTENT_OCTETS),
                 row.getInt(BODY_START_OCTET),
-                new SharedByteArrayInputStream(getFullContent(row)),
+                getContent(row),
                 getFlags(row),
                 getPropertyBuilder(row),
                 CassandraId.of(row.getUUID(MAILBOX_ID)));
@@ -291,12 +425,25 @@ public class CassandraMessageMapper implements MessageMapper<CassandraId> {
         return message;
     }
 
+    private SharedInputStream getContent(Row row) {
+        if (row.getColumnDefinitions().contains(BODY_BLOB_ID) && !row.isNull(BODY_BLOB_ID)) {
+            return new ChunkedSharedInputStream(getContent(row, HEADER_CONTENT), row.getInt(BODY_OCTECTS), blobStore.read(row.getString(BODY_BLOB_ID)));
+        }
+        return new ExposedSharedByteArrayInputStream(getFullContent(row));
+    }
+
     private byte[] getFullContent(Row row) {
-        byte[] headerContent = new byte[row.getBytes(HEADER_CONTENT).remaining()];
-        byte[] bodyContent = new byte[row.getBytes(BODY_CONTENT).remaining()];
-        row.getBytes(HEADER_CONTENT).get(headerContent);
-        row.getBytes(BODY_CONTENT).get(bodyContent);
-        return Bytes.concat(headerContent, bodyContent);
+        return Bytes.concat(getContent(row, HEADER_CONTENT), getContent(row, BODY_CONTENT));
+    }
+
+    private byte[] getContent(Row row, String column) {
+        if (!row.getColumnDefinitions().contains(column)) {
+            return new byte[0];
+        }
+        ByteBuffer buffer = row.getBytes(column);
+        byte[] content = new byte[buffer.remaining()];
+        buffer.get(content);
+        return content;
     }
 
     private Flags getFlags(Row row) {
@@ -323,37 +470,39 @@ public class CassandraMessageMapper implements MessageMapper<CassandraId> {
 
     private MessageMetaData save(Mailbox<CassandraId> mailbox, Message<CassandraId> message) throws MailboxException {
         try {
-            Insert query = insertInto(TABLE_NAME)
-                .value(MAILBOX_ID, mailbox.getMailboxId().asUuid())
-                .value(IMAP_UID, message.getUid())
-                .value(MOD_SEQ, message.getModSeq())
-                .value(INTERNAL_DATE, message.getInternalDate())
-                .value(BODY_START_OCTET, message.getFullContentOctets() - message.getBodyOctets())
-                .value(FULL_CONTENT_OCTETS, message.getFullContentOctets())
-                .value(BODY_OCTECTS, message.getBodyOctets())
-                .value(ANSWERED, message.isAnswered())
-                .value(DELETED, message.isDeleted())
-                .value(DRAFT, message.isDraft())
-                .value(FLAGGED, message.isFlagged())
-                .value(RECENT, message.isRecent())
-                .value(SEEN, message.isSeen())
-                .value(USER, message.createFlags().contains(Flag.USER))
-                .value(USER_FLAGS, userFlagsSet(message))
-                .value(BODY_CONTENT, bindMarker())
-                .value(HEADER_CONTENT, bindMarker())
-                .value(PROPERTIES, message.getProperties().stream()
+            ImmutableList.Builder<ResultSetFuture> writes = ImmutableList.builder();
+            writes.add(session.executeAsync(preparedStatements.get(INSERT_MESSAGE).bind(
+                mailbox.getMailboxId().asUuid(),
+                message.getUid(),
+                message.getModSeq(),
+                message.getInternalDate(),
+                (int) (message.getFullContentOctets() - message.getBodyOctets()),
+                (int) message.getFullContentOctets(),
+                (int) message.getBodyOctets(),
+                message.isAnswered(),
+                message.isDeleted(),
+                message.isDraft(),
+                message.isFlagged(),
+                message.isRecent(),
+                message.isSeen(),
+                message.createFlags().contains(Flag.USER),
+                userFlagsSet(message),
+                blobStore.save(bodyContent(message)),
+                toByteBuffer(message.getHeaderContent()),
+                message.getProperties().stream()
                     .map(x -> typesProvider.getDefinedUserType(PROPERTIES)
                         .newValue()
                         .setString(Properties.NAMESPACE, x.getNamespace())
                         .setString(Properties.NAME, x.getLocalName())
                         .setString(Properties.VALUE, x.getValue()))
-                    .collect(Collectors.toList()))
-                .value(TEXTUAL_LINE_COUNT, message.getTextualLineCount());
-            PreparedStatement preparedStatement = session.prepare(query.toString());
-
-
-            BoundStatement boundStatement = preparedStatement.bind(toByteBuffer(message.getBodyContent()), toByteBuffer(message.getHeaderContent()));
-            session.execute(boundStatement);
+                    .collect(Collectors.toList()),
+                message.getTextualLineCount())));
+            writes.add(incrementCount(mailbox));
+            writes.add(incrementSize(mailbox, message.getFullContentOctets()));
+            if (!message.isSeen()) {
+                writes.add(incrementUnseen(mailbox));
+            }
+            awaitAll(writes.build());
             return new SimpleMessageMetaData(message);
         } catch (IOException e) {
             throw new MailboxException("Error saving mail", e);
@@ -366,10 +515,10 @@ public class CassandraMessageMapper implements MessageMapper<CassandraId> {
 
     private void manageUnseenMessageCounts(Mailbox<CassandraId> mailbox, Flags oldFlags, Flags newFlags) {
         if (oldFlags.contains(Flag.SEEN) && !newFlags.contains(Flag.SEEN)) {
-            incrementUnseen(mailbox);
+            incrementUnseen(mailbox).getUninterruptibly();
         }
         if (!oldFlags.contains(Flag.SEEN) && newFlags.contains(Flag.SEEN)) {
-            decrementUnseen(mailbox);
+            decrementUnseen(mailbox).getUninterruptibly();
         }
     }
 
@@ -410,72 +559,81 @@ public class CassandraMessageMapper implements MessageMapper<CassandraId> {
     }
 
     private Optional<UpdatedFlags> retryMessageFlagsUpdate(Mailbox<CassandraId> mailbox, long uid, FlagsUpdateCalculator flagUpdateCalculator) {
-        return tryMessageFlagsUpdate(flagUpdateCalculator, mailbox, message(Optional.ofNullable(session.execute(selectMessage(mailbox, uid)).one()).orElseThrow(() -> new MessageDeletedDuringFlagsUpdateException(mailbox.getMailboxId(), uid))));
+        return tryMessageFlagsUpdate(flagUpdateCalculator, mailbox, message(Optional.ofNullable(session.execute(bindRange(selectMessages(FetchType.Metadata, MessageRange.Type.ONE), mailbox, MessageRange.one(uid))).one()).orElseThrow(() -> new MessageDeletedDuringFlagsUpdateException(mailbox.getMailboxId(), uid))));
     }
 
     private boolean conditionalSave(Message<CassandraId> message, long oldModSeq) {
-        ResultSet resultSet = session.execute(
-            update(TABLE_NAME)
-                .with(set(ANSWERED, message.isAnswered()))
-                .and(set(DELETED, message.isDeleted()))
-                .and(set(DRAFT, message.isDraft()))
-                .and(set(FLAGGED, message.isFlagged()))
-                .and(set(RECENT, message.isRecent()))
-                .and(set(SEEN, message.isSeen()))
-                .and(set(USER, message.createFlags().contains(Flag.USER)))
-                .and(set(USER_FLAGS, userFlagsSet(message)))
-                .and(set(MOD_SEQ, message.getModSeq()))
-                .where(eq(IMAP_UID, message.getUid()))
-                .and(eq(MAILBOX_ID, message.getMailboxId().asUuid()))
-                .onlyIf(eq(MOD_SEQ, oldModSeq)));
+        ResultSet resultSet = session.execute(preparedStatements.get(UPDATE_FLAGS).bind(
+            message.isAnswered(),
+            message.isDeleted(),
+            message.isDraft(),
+            message.isFlagged(),
+            message.isRecent(),
+            message.isSeen(),
+            message.createFlags().contains(Flag.USER),
+            userFlagsSet(message),
+            message.getModSeq(),
+            message.getUid(),
+            message.getMailboxId().asUuid(),
+            oldModSeq));
         return resultSet.one().getBool(CassandraConstants.LIGHTWEIGHT_TRANSACTION_APPLIED);
     }
 
+    private ByteSource bodyContent(Message<CassandraId> message) {
+        return new ByteSource() {
+            @Override
+            public InputStream openStream() throws IOException {
+                return message.getBodyContent();
+            }
+        };
+    }
+
     private ByteBuffer toByteBuffer(InputStream stream) throws IOException {
         return ByteBuffer.wrap(ByteStreams.toByteArray(stream));
     }
 
-    private Where buildQuery(Mailbox<CassandraId> mailbox, MessageRange set) {
-        final MessageRange.Type type = set.getType();
-        switch (type) {
+    private BoundStatement bindRange(RegularStatement statement, Mailbox<CassandraId> mailbox, MessageRange set) {
+        PreparedStatement preparedStatement = preparedStatements.get(statement);
+        switch (set.getType()) {
         case ALL:
-            return selectAll(mailbox);
+            return preparedStatement.bind(mailbox.getMailboxId().asUuid());
         case FROM:
-            return selectFrom(mailbox, set.getUidFrom());
-        case RANGE:
-            return selectRange(mailbox, set.getUidFrom(), set.getUidTo());
         case ONE:
-            return selectMessage(mailbox, set.getUidFrom());
+            return preparedStatement.bind(mailbox.getMailboxId().asUuid(), set.getUidFrom());
+        case RANGE:
+            return preparedStatement.bind(mailbox.getMailboxId().asUuid(), set.getUidFrom(), set.getUidTo());
         }
         throw new UnsupportedOperationException();
     }
 
-    private Where selectAll(Mailbox<CassandraId> mailbox) {
-        return select(FIELDS)
-            .from(TABLE_NAME)
-            .where(eq(MAILBOX_ID, mailbox.getMailboxId().asUuid()));
-    }
-
-    private Where selectFrom(Mailbox<CassandraId> mailbox, long uid) {
-        return select(FIELDS)
-            .from(TABLE_NAME)
-            .where(eq(MAILBOX_ID, mailbox.getMailboxId().asUuid()))
-            .and(gte(IMAP_UID, uid));
-    }
-
-    private Where selectRange(Mailbox<CassandraId> mailbox, long from, long to) {
-        return select(FIELDS)
+    private static Where selectMessages(FetchType fetchType, MessageRange.Type type) {
+        Where selectAll = select(fields(fetchType))
             .from(TABLE_NAME)
-            .where(eq(MAILBOX_ID, mailbox.getMailboxId().asUuid()))
-            .and(gte(IMAP_UID, from))
-            .and(lte(IMAP_UID, to));
+            .where(eq(MAILBOX_ID, bindMarker()));
+        switch (type) {
+        case ALL:
+            return selectAll;
+        case FROM:
+            return selectAll.and(gte(IMAP_UID, bindMarker()));
+        case RANGE:
+            return selectAll.and(gte(IMAP_UID, bindMarker()))
+                .and(lte(IMAP_UID, bindMarker()));
+        case ONE:
+            return selectAll.and(eq(IMAP_UID, bindMarker()));
+        }
+        throw new UnsupportedOperationException();
     }
 
-    private Where selectMessage(Mailbox<CassandraId> mailbox, long uid) {
-        return select(FIELDS)
-            .from(TABLE_NAME)
-            .where(eq(MAILBOX_ID, mailbox.getMailboxId().asUuid()))
-            .and(eq(IMAP_UID, uid));
+    private static String[] fields(FetchType fetchType) {
+        switch (fetchType) {
+        case Metadata:
+            return METADATA;
+        case Headers:
+            return HEADERS;
+        case Body:
+        case Full:
+            return FIELDS;
+        }
+        throw new UnsupportedOperationException();
     }
-
 }
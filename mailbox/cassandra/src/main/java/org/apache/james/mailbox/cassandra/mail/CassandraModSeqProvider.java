@@ -19,6 +19,7 @@
 
 package org.apache.james.mailbox.cassandra.mail;
 
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
@@ -31,6 +32,7 @@ import static org.apache.james.mailbox.cassandra.table.CassandraMessageModseqTab
 import java.util.Optional;
 import javax.inject.Inject;
 
+import org.apache.james.backends.cassandra.init.PreparedStatementRegistry;
 import org.apache.james.backends.cassandra.utils.CassandraConstants;
 import org.apache.james.backends.cassandra.utils.LightweightTransactionException;
 import org.apache.james.mailbox.MailboxSession;
@@ -42,28 +44,42 @@ import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Session;
-import com.datastax.driver.core.querybuilder.BuiltStatement;
 import com.google.common.base.Throwables;
 
 public class CassandraModSeqProvider implements ModSeqProvider<CassandraId> {
 
-    private static final int DEFAULT_MAX_RETRY = 100000;
+    public static final int DEFAULT_MAX_RETRY = 100000;
     private static final Logger LOG = LoggerFactory.getLogger(CassandraModSeqProvider.class);
     private static final ModSeq FIRST_MODSEQ = new ModSeq(0);
+    private static final RegularStatement SELECT_MODSEQ = select(NEXT_MODSEQ)
+        .from(TABLE_NAME)
+        .where(eq(MAILBOX_ID, bindMarker()));
+    private static final RegularStatement INSERT_MODSEQ = insertInto(TABLE_NAME)
+        .value(NEXT_MODSEQ, bindMarker())
+        .value(MAILBOX_ID, bindMarker())
+        .ifNotExists();
+    private static final RegularStatement UPDATE_MODSEQ = update(TABLE_NAME)
+        .onlyIf(eq(NEXT_MODSEQ, bindMarker()))
+        .with(set(NEXT_MODSEQ, bindMarker()))
+        .where(eq(MAILBOX_ID, bindMarker()));
     
     private final Session session;
+    private final PreparedStatementRegistry preparedStatements;
     private final FunctionRunnerWithRetry runner;
 
-    public CassandraModSeqProvider(Session session, int maxRetry) {
+    public CassandraModSeqProvider(Session session, PreparedStatementRegistry preparedStatements, int maxRetry) {
         this.session = session;
+        this.preparedStatements = preparedStatements;
         this.runner = new FunctionRunnerWithRetry(maxRetry);
     }
 
     @Inject
-    public CassandraModSeqProvider(Session session) {
-        this(session, DEFAULT_MAX_RETRY);
+    public CassandraModSeqProvider(Session session, PreparedStatementRegistry preparedStatements) {
+        this(session, preparedStatements, DEFAULT_MAX_RETRY);
     }
 
     @Override
@@ -97,10 +113,8 @@ public class CassandraModSeqProvider implements ModSeqProvider<CassandraId> {
     }
     
     private ModSeq findHighestModSeq(MailboxSession mailboxSession, Mailbox<CassandraId> mailbox) throws MailboxException {
-        ResultSet result = session.execute(
-                select(NEXT_MODSEQ)
-                    .from(TABLE_NAME)
-                    .where(eq(MAILBOX_ID, mailbox.getMailboxId().asUuid())));
+        ResultSet result = session.execute(preparedStatements.get(SELECT_MODSEQ)
+                .bind(mailbox.getMailboxId().asUuid()));
         if (result.isExhausted()) {
             return FIRST_MODSEQ;
         } else {
@@ -111,22 +125,18 @@ public class CassandraModSeqProvider implements ModSeqProvider<CassandraId> {
     private Optional<ModSeq> tryInsertModSeq(Mailbox<CassandraId> mailbox, ModSeq modSeq) {
         ModSeq nextModSeq = modSeq.next();
         return transactionalStatementToOptionalModSeq(nextModSeq,
-                insertInto(TABLE_NAME)
-                    .value(NEXT_MODSEQ, nextModSeq.getValue())
-                    .value(MAILBOX_ID, mailbox.getMailboxId().asUuid())
-                    .ifNotExists());
+                preparedStatements.get(INSERT_MODSEQ)
+                    .bind(nextModSeq.getValue(), mailbox.getMailboxId().asUuid()));
     }
     
     private Optional<ModSeq> tryUpdateModSeq(Mailbox<CassandraId> mailbox, ModSeq modSeq) {
         ModSeq nextModSeq = modSeq.next();
         return transactionalStatementToOptionalModSeq(nextModSeq,
-                update(TABLE_NAME)
-                    .onlyIf(eq(NEXT_MODSEQ, modSeq.getValue()))
-                    .with(set(NEXT_MODSEQ, nextModSeq.getValue()))
-                    .where(eq(MAILBOX_ID, mailbox.getMailboxId().asUuid())));
+                preparedStatements.get(UPDATE_MODSEQ)
+                    .bind(nextModSeq.getValue(), mailbox.getMailboxId().asUuid(), modSeq.getValue()));
     }
 
-    private Optional<ModSeq> transactionalStatementToOptionalModSeq(ModSeq modSeq, BuiltStatement statement) {
+    private Optional<ModSeq> transactionalStatementToOptionalModSeq(ModSeq modSeq, BoundStatement statement) {
         if(session.execute(statement).one().getBool(CassandraConstants.LIGHTWEIGHT_TRANSACTION_APPLIED)) {
             return Optional.of(modSeq);
         }
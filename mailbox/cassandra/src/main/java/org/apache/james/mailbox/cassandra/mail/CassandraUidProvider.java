@@ -19,6 +19,7 @@
 
 package org.apache.james.mailbox.cassandra.mail;
 
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
@@ -27,8 +28,10 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.update;
 import org.apache.james.backends.cassandra.utils.CassandraConstants;
 import static org.apache.james.mailbox.cassandra.table.CassandraMessageUidTable.NEXT_UID;
 
-import com.datastax.driver.core.querybuilder.BuiltStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.RegularStatement;
 import com.google.common.base.Throwables;
+import org.apache.james.backends.cassandra.init.PreparedStatementRegistry;
 import org.apache.james.backends.cassandra.utils.LightweightTransactionException;
 
 import java.util.Optional;
@@ -51,18 +54,31 @@ public class CassandraUidProvider implements UidProvider<CassandraId> {
     public final static int DEFAULT_MAX_RETRY = 100000;
     private static final Logger LOG = LoggerFactory.getLogger(CassandraUidProvider.class);
     private static final Uid FIRST_UID = new Uid(0);
+    private static final RegularStatement SELECT_UID = select(NEXT_UID)
+        .from(CassandraMessageUidTable.TABLE_NAME)
+        .where(eq(CassandraMessageUidTable.MAILBOX_ID, bindMarker()));
+    private static final RegularStatement INSERT_UID = insertInto(CassandraMessageUidTable.TABLE_NAME)
+        .value(NEXT_UID, bindMarker())
+        .value(CassandraMessageUidTable.MAILBOX_ID, bindMarker())
+        .ifNotExists();
+    private static final RegularStatement UPDATE_UID = update(CassandraMessageUidTable.TABLE_NAME)
+        .onlyIf(eq(NEXT_UID, bindMarker()))
+        .with(set(NEXT_UID, bindMarker()))
+        .where(eq(CassandraMessageUidTable.MAILBOX_ID, bindMarker()));
 
     private final Session session;
+    private final PreparedStatementRegistry preparedStatements;
     private final FunctionRunnerWithRetry runner;
 
-    public CassandraUidProvider(Session session, int maxRetry) {
+    public CassandraUidProvider(Session session, PreparedStatementRegistry preparedStatements, int maxRetry) {
         this.session = session;
+        this.preparedStatements = preparedStatements;
         this.runner = new FunctionRunnerWithRetry(maxRetry);
     }
 
     @Inject
-    public CassandraUidProvider(Session session) {
-        this(session, DEFAULT_MAX_RETRY);
+    public CassandraUidProvider(Session session, PreparedStatementRegistry preparedStatements) {
+        this(session, preparedStatements, DEFAULT_MAX_RETRY);
     }
 
     @Override
@@ -96,10 +112,8 @@ public class CassandraUidProvider implements UidProvider<CassandraId> {
     }
 
     private Uid findHighestUid(Mailbox<CassandraId> mailbox) throws MailboxException {
-        ResultSet result = session.execute(
-            select(NEXT_UID)
-                .from(CassandraMessageUidTable.TABLE_NAME)
-                .where(eq(CassandraMessageUidTable.MAILBOX_ID, mailbox.getMailboxId().asUuid())));
+        ResultSet result = session.execute(preparedStatements.get(SELECT_UID)
+            .bind(mailbox.getMailboxId().asUuid()));
         if (result.isExhausted()) {
             return FIRST_UID;
         } else {
@@ -110,22 +124,18 @@ public class CassandraUidProvider implements UidProvider<CassandraId> {
     private Optional<Uid> tryInsertUid(Mailbox<CassandraId> mailbox, Uid uid) {
         Uid nextUid = uid.next();
         return transactionalStatementToOptionalUid(nextUid,
-            insertInto(CassandraMessageUidTable.TABLE_NAME)
-                .value(NEXT_UID, nextUid.getValue())
-                .value(CassandraMessageUidTable.MAILBOX_ID, mailbox.getMailboxId().asUuid())
-                .ifNotExists());
+            preparedStatements.get(INSERT_UID)
+                .bind(nextUid.getValue(), mailbox.getMailboxId().asUuid()));
     }
 
     private Optional<Uid> tryUpdateUid(Mailbox<CassandraId> mailbox, Uid uid) {
         Uid nextUid = uid.next();
         return transactionalStatementToOptionalUid(nextUid,
-            update(CassandraMessageUidTable.TABLE_NAME)
-                .onlyIf(eq(NEXT_UID, uid.getValue()))
-                .with(set(NEXT_UID, nextUid.getValue()))
-                .where(eq(CassandraMessageUidTable.MAILBOX_ID, mailbox.getMailboxId().asUuid())));
+            preparedStatements.get(UPDATE_UID)
+                .bind(nextUid.getValue(), mailbox.getMailboxId().asUuid(), uid.getValue()));
     }
 
-    private Optional<Uid> transactionalStatementToOptionalUid(Uid uid, BuiltStatement statement) {
+    private Optional<Uid> transactionalStatementToOptionalUid(Uid uid, BoundStatement statement) {
         if(session.execute(statement).one().getBool(CassandraConstants.LIGHTWEIGHT_TRANSACTION_APPLIED)) {
             return Optional.of(uid);
         }
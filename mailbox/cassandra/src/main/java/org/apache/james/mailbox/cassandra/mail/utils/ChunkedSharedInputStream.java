@@ -0,0 +1,140 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.cassandra.mail.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.mail.internet.SharedInputStream;
+
+/**
+ * {@link SharedInputStream} over a message whose headers are held in memory and whose body is stored as chunks.
+ *
+ * Body chunks are only read when the stream reaches them: skipping over a part of the body, or stopping before its end,
+ * avoids reading the corresponding chunks. Only the chunk being read is kept in memory.
+ */
+public class ChunkedSharedInputStream extends InputStream implements SharedInputStream {
+
+    public interface Chunks {
+
+        int chunkSize() throws IOException;
+
+        /**
+         * Return the given chunk, or fail if it is not stored: a missing chunk must not silently truncate the body
+         */
+        byte[] chunk(int chunkNumber) throws IOException;
+    }
+
+    private final byte[] header;
+    private final Chunks body;
+    private final long start;
+    private final long end;
+    private long position;
+    private int currentChunkNumber;
+    private byte[] currentChunk;
+
+    public ChunkedSharedInputStream(byte[] header, long bodyLength, Chunks body) {
+        this(header, body, 0, header.length + bodyLength);
+    }
+
+    private ChunkedSharedInputStream(byte[] header, Chunks body, long start, long end) {
+        this.header = header;
+        this.body = body;
+        this.start = start;
+        this.end = end;
+        this.position = start;
+        this.currentChunkNumber = -1;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] buffer = new byte[1];
+        if (read(buffer, 0, 1) == -1) {
+            return -1;
+        }
+        return buffer[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (position >= end) {
+            return -1;
+        }
+        int toRead = (int) Math.min(length, end - position);
+        int read = position < header.length ? readHeader(buffer, offset, toRead) : readBody(buffer, offset, toRead);
+        if (read <= 0) {
+            throw new IOException("Body ends before its expected length of " + (end - header.length) + " bytes");
+        }
+        position += read;
+        return read;
+    }
+
+    private int readHeader(byte[] buffer, int offset, int length) {
+        int read = (int) Math.min(length, header.length - position);
+        System.arraycopy(header, (int) position, buffer, offset, read);
+        return read;
+    }
+
+    private int readBody(byte[] buffer, int offset, int length) throws IOException {
+        int chunkSize = body.chunkSize();
+        long bodyPosition = position - header.length;
+        int chunkNumber = (int) (bodyPosition / chunkSize);
+        int positionInChunk = (int) (bodyPosition % chunkSize);
+        byte[] chunk = chunk(chunkNumber);
+        int read = Math.min(length, chunk.length - positionInChunk);
+        if (read > 0) {
+            System.arraycopy(chunk, positionInChunk, buffer, offset, read);
+        }
+        return read;
+    }
+
+    private byte[] chunk(int chunkNumber) throws IOException {
+        if (chunkNumber != currentChunkNumber) {
+            currentChunk = body.chunk(chunkNumber);
+            currentChunkNumber = chunkNumber;
+        }
+        return currentChunk;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public long getPosition() {
+        return position - start;
+    }
+
+    @Override
+    public InputStream newStream(long start, long end) {
+        if (start < 0) {
+            throw new IllegalArgumentException("start must be positive");
+        }
+        long newStart = Math.min(this.start + start, this.end);
+        long newEnd = end == -1 ? this.end : Math.min(this.start + end, this.end);
+        return new ChunkedSharedInputStream(header, body, newStart, Math.max(newStart, newEnd));
+    }
+}
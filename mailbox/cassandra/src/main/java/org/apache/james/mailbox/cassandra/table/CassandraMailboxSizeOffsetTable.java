@@ -0,0 +1,31 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.cassandra.table;
+
+/**
+ * Stores, for each mailbox whose size counter was initialized, the value to add to the size counter of
+ * {@link CassandraMailboxCountersTable} to get the size of the mailbox. Mailboxes without a row here were created
+ * before their size was counted.
+ */
+public interface CassandraMailboxSizeOffsetTable {
+    String TABLE_NAME = "mailboxSizeOffset";
+    String MAILBOX_ID = "mailboxId";
+    String OFFSET = "sizeOffset";
+}
\ No newline at end of file
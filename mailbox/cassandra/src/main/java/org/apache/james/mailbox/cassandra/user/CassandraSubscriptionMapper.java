@@ -19,6 +19,7 @@
 
 package org.apache.james.mailbox.cassandra.user;
 
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
@@ -30,61 +31,76 @@ import static org.apache.james.mailbox.cassandra.table.CassandraSubscriptionTabl
 import java.util.List;
 import java.util.stream.Collectors;
 
+import org.apache.james.backends.cassandra.init.PreparedStatementRegistry;
 import org.apache.james.backends.cassandra.utils.CassandraUtils;
 import org.apache.james.mailbox.store.transaction.NonTransactionalMapper;
 import org.apache.james.mailbox.store.user.SubscriptionMapper;
 import org.apache.james.mailbox.store.user.model.Subscription;
 import org.apache.james.mailbox.store.user.model.impl.SimpleSubscription;
 
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 
 public class CassandraSubscriptionMapper extends NonTransactionalMapper implements SubscriptionMapper {
+    private static final RegularStatement DELETE_SUBSCRIPTION = QueryBuilder.delete()
+        .from(TABLE_NAME)
+        .where(eq(USER, bindMarker()))
+        .and(eq(MAILBOX, bindMarker()));
+    private static final RegularStatement SELECT_SUBSCRIPTION = select(MAILBOX)
+        .from(TABLE_NAME)
+        .where(eq(USER, bindMarker()))
+        .and(eq(MAILBOX, bindMarker()));
+    private static final RegularStatement SELECT_USER_SUBSCRIPTIONS = select(MAILBOX)
+        .from(TABLE_NAME)
+        .where(eq(USER, bindMarker()));
+    private static final RegularStatement INSERT_SUBSCRIPTION = insertInto(TABLE_NAME)
+        .value(USER, bindMarker())
+        .value(MAILBOX, bindMarker());
+    private static final RegularStatement SELECT_ALL = select(FIELDS)
+        .from(TABLE_NAME);
+
     private Session session;
+    private PreparedStatementRegistry preparedStatements;
 
-    public CassandraSubscriptionMapper(Session session) {
+    public CassandraSubscriptionMapper(Session session, PreparedStatementRegistry preparedStatements) {
         this.session = session;
+        this.preparedStatements = preparedStatements;
     }
 
     @Override
     public synchronized void delete(Subscription subscription) {
-        session.execute(QueryBuilder.delete()
-            .from(TABLE_NAME)
-            .where(eq(USER, subscription.getUser()))
-            .and(eq(MAILBOX, subscription.getMailbox())));
+        session.execute(preparedStatements.get(DELETE_SUBSCRIPTION)
+            .bind(subscription.getUser(), subscription.getMailbox()));
     }
 
     @Override
     public Subscription findMailboxSubscriptionForUser(String user, String mailbox) {
-        ResultSet results = session.execute(select(MAILBOX)
-            .from(TABLE_NAME)
-            .where(eq(USER, user))
-            .and(eq(MAILBOX, mailbox)));
+        ResultSet results = session.execute(preparedStatements.get(SELECT_SUBSCRIPTION)
+            .bind(user, mailbox));
         return !results.isExhausted() ? new SimpleSubscription(user, mailbox) : null;
     }
 
     @Override
     public List<Subscription> findSubscriptionsForUser(String user) {
         return CassandraUtils.convertToStream(
-            session.execute(select(MAILBOX)
-                .from(TABLE_NAME)
-                .where(eq(USER, user))))
+            session.execute(preparedStatements.get(SELECT_USER_SUBSCRIPTIONS)
+                .bind(user)))
             .map((row) -> new SimpleSubscription(user, row.getString(MAILBOX)))
             .collect(Collectors.toList());
     }
 
     @Override
     public synchronized void save(Subscription subscription) {
-        session.execute(insertInto(TABLE_NAME)
-            .value(USER, subscription.getUser())
-            .value(MAILBOX, subscription.getMailbox()));
+        session.execute(preparedStatements.get(INSERT_SUBSCRIPTION)
+            .bind(subscription.getUser(), subscription.getMailbox()));
     }
 
     public List<SimpleSubscription> list() {
         return CassandraUtils.convertToStream(
-            session.execute(select(FIELDS)
-                .from(TABLE_NAME)))
+            session.execute(preparedStatements.get(SELECT_ALL)
+                .bind()))
             .map((row) -> new SimpleSubscription(row.getString(USER), row.getString(MAILBOX)))
             .collect(Collectors.toList());
     }
@@ -70,12 +70,13 @@ public class CassandraMailboxManagerTest extends AbstractMailboxManagerTest {
      */
     @Override
     protected void createMailboxManager() throws MailboxException {
-        final CassandraUidProvider uidProvider = new CassandraUidProvider(CASSANDRA.getConf());
-        final CassandraModSeqProvider modSeqProvider = new CassandraModSeqProvider(CASSANDRA.getConf());
+        final CassandraUidProvider uidProvider = new CassandraUidProvider(CASSANDRA.getConf(), CASSANDRA.getPreparedStatementRegistry());
+        final CassandraModSeqProvider modSeqProvider = new CassandraModSeqProvider(CASSANDRA.getConf(), CASSANDRA.getPreparedStatementRegistry());
         final CassandraMailboxSessionMapperFactory mapperFactory = new CassandraMailboxSessionMapperFactory(uidProvider,
             modSeqProvider,
             CASSANDRA.getConf(),
-            CASSANDRA.getTypesProvider());
+            CASSANDRA.getTypesProvider(),
+            CASSANDRA.getPreparedStatementRegistry());
 
         final CassandraMailboxManager manager = new CassandraMailboxManager(mapperFactory, null, new JVMMailboxPathLocker());
         manager.init();
@@ -0,0 +1,66 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.cassandra;
+
+import org.apache.james.backends.cassandra.CassandraCluster;
+import org.apache.james.mailbox.AbstractStressTest;
+import org.apache.james.mailbox.MailboxManager;
+import org.apache.james.mailbox.cassandra.mail.CassandraModSeqProvider;
+import org.apache.james.mailbox.cassandra.mail.CassandraUidProvider;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.store.JVMMailboxPathLocker;
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * Append concurrently to a single mailbox, so that all the UID and MODSEQ allocations contend on the same
+ * lightweight transactions.
+ */
+public class CassandraStressTest extends AbstractStressTest {
+
+    private static final CassandraCluster CASSANDRA = CassandraCluster.create(new CassandraMailboxModule());
+
+    private CassandraMailboxManager mailboxManager;
+
+    @Before
+    public void setUp() throws MailboxException {
+        CASSANDRA.ensureAllTables();
+        CASSANDRA.clearAllTables();
+        CassandraUidProvider uidProvider = new CassandraUidProvider(CASSANDRA.getConf(), CASSANDRA.getPreparedStatementRegistry());
+        CassandraModSeqProvider modSeqProvider = new CassandraModSeqProvider(CASSANDRA.getConf(), CASSANDRA.getPreparedStatementRegistry());
+        CassandraMailboxSessionMapperFactory mapperFactory = new CassandraMailboxSessionMapperFactory(uidProvider,
+            modSeqProvider,
+            CASSANDRA.getConf(),
+            CASSANDRA.getTypesProvider(),
+            CASSANDRA.getPreparedStatementRegistry());
+        mailboxManager = new CassandraMailboxManager(mapperFactory, null, new JVMMailboxPathLocker());
+        mailboxManager.init();
+    }
+
+    @After
+    public void tearDown() {
+        CASSANDRA.clearAllTables();
+    }
+
+    @Override
+    protected MailboxManager getMailboxManager() {
+        return mailboxManager;
+    }
+
+}
@@ -36,10 +36,11 @@ public class CassandraSubscriptionManagerTest extends AbstractSubscriptionManage
     public SubscriptionManager createSubscriptionManager() {
         return new CassandraSubscriptionManager(
             new CassandraMailboxSessionMapperFactory(
-                new CassandraUidProvider(cassandra.getConf()),
-                new CassandraModSeqProvider(cassandra.getConf()),
+                new CassandraUidProvider(cassandra.getConf(), cassandra.getPreparedStatementRegistry()),
+                new CassandraModSeqProvider(cassandra.getConf(), cassandra.getPreparedStatementRegistry()),
                 cassandra.getConf(),
-                cassandra.getTypesProvider()
+                cassandra.getTypesProvider(),
+                cassandra.getPreparedStatementRegistry()
             )
         );
     }
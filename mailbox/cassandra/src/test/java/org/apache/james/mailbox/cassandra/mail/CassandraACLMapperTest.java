@@ -62,7 +62,7 @@ public class CassandraACLMapperTest {
         mailbox = new SimpleMailbox<>(new MailboxPath("#private", "benwa@linagora.com", "INBOX"), uidValidity);
         mailbox.setMailboxId(CassandraId.of(UUID.fromString("464765a0-e4e7-11e4-aba4-710c1de3782b")));
         maxRetry = 100;
-        cassandraACLMapper = new CassandraACLMapper(mailbox, cassandra.getConf(), maxRetry);
+        cassandraACLMapper = new CassandraACLMapper(mailbox, cassandra.getConf(), cassandra.getPreparedStatementRegistry(), maxRetry);
         executor = Executors.newFixedThreadPool(2);
     }
 
@@ -74,17 +74,17 @@ public class CassandraACLMapperTest {
 
     @Test(expected = IllegalArgumentException.class)
     public void creatingACLMapperWithNegativeMaxRetryShouldFail() {
-        new CassandraACLMapper(mailbox, cassandra.getConf(), -1);
+        new CassandraACLMapper(mailbox, cassandra.getConf(), cassandra.getPreparedStatementRegistry(), -1);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void creatingACLMapperWithNullMaxRetryShouldFail() {
-        new CassandraACLMapper(mailbox, cassandra.getConf(), 0);
+        new CassandraACLMapper(mailbox, cassandra.getConf(), cassandra.getPreparedStatementRegistry(), 0);
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void creatingACLMapperWithNoMailboxIdShouldFail() {
-        new CassandraACLMapper(new SimpleMailbox<>(new MailboxPath("#private", "user", "name"), uidValidity), cassandra.getConf(), maxRetry);
+        new CassandraACLMapper(new SimpleMailbox<>(new MailboxPath("#private", "user", "name"), uidValidity), cassandra.getConf(), cassandra.getPreparedStatementRegistry(), maxRetry);
     }
 
     @Test
@@ -212,7 +212,7 @@ public class CassandraACLMapperTest {
 
     private Future<Boolean> performACLUpdateInExecutor(ExecutorService executor, SimpleMailboxACL.SimpleMailboxACLEntryKey key, SimpleMailboxACL.Rfc4314Rights rights, CassandraACLMapper.CodeInjector runnable) {
         return executor.submit(() -> {
-            CassandraACLMapper aclMapper = new CassandraACLMapper(mailbox, cassandra.getConf(), maxRetry, runnable);
+            CassandraACLMapper aclMapper = new CassandraACLMapper(mailbox, cassandra.getConf(), cassandra.getPreparedStatementRegistry(), maxRetry, runnable);
             try {
                 aclMapper.updateACL(new SimpleMailboxACL.SimpleMailboxACLCommand(key, MailboxACL.EditMode.ADD, rights));
             } catch (MailboxException exception) {
@@ -0,0 +1,146 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.cassandra.mail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.james.backends.cassandra.CassandraCluster;
+import org.apache.james.mailbox.cassandra.CassandraMailboxModule;
+import org.apache.james.mailbox.cassandra.mail.utils.ChunkedSharedInputStream;
+import org.apache.james.mailbox.cassandra.table.CassandraBlobTable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+
+public class CassandraBlobStoreTest {
+
+    private static final int CHUNK_SIZE = 10;
+    private static final byte[] HEADER = "Subject: test\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+
+    private CassandraCluster cassandra;
+    private CassandraBlobStore blobStore;
+
+    @Before
+    public void setUp() {
+        cassandra = CassandraCluster.create(new CassandraMailboxModule());
+        cassandra.ensureAllTables();
+        blobStore = new CassandraBlobStore(cassandra.getConf(), cassandra.getPreparedStatementRegistry(), CHUNK_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        cassandra.clearAllTables();
+    }
+
+    @Test
+    public void savedContentShouldBeReadBack() throws IOException {
+        byte[] body = Strings.repeat("0123456789", 4).concat("end").getBytes(StandardCharsets.UTF_8);
+        String id = blobStore.save(ByteSource.wrap(body));
+        assertThat(readBody(id, body.length)).isEqualTo(body);
+    }
+
+    @Test
+    public void emptyContentShouldBeReadBack() throws IOException {
+        String id = blobStore.save(ByteSource.wrap(new byte[0]));
+        assertThat(readBody(id, 0)).isEmpty();
+    }
+
+    @Test
+    public void contentShouldBeSplitInChunks() throws IOException {
+        byte[] body = Strings.repeat("a", 2 * CHUNK_SIZE + 1).getBytes(StandardCharsets.UTF_8);
+        String id = blobStore.save(ByteSource.wrap(body));
+        assertThat(cassandra.getConf().execute(QueryBuilder.select()
+                .from(CassandraBlobTable.TABLE_NAME)
+                .where(QueryBuilder.eq(CassandraBlobTable.ID, id)))
+            .all())
+            .hasSize(3);
+    }
+
+    @Test
+    public void identicalContentsShouldShareTheSameId() throws IOException {
+        byte[] body = "identical".getBytes(StandardCharsets.UTF_8);
+        assertThat(blobStore.save(ByteSource.wrap(body))).isEqualTo(blobStore.save(ByteSource.wrap(body.clone())));
+    }
+
+    @Test
+    public void differentContentsShouldHaveDifferentIds() throws IOException {
+        assertThat(blobStore.save(ByteSource.wrap("first".getBytes(StandardCharsets.UTF_8))))
+            .isNotEqualTo(blobStore.save(ByteSource.wrap("second".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void partialStreamsShouldReadTheRequestedPartOfTheBody() throws IOException {
+        byte[] body = Strings.repeat("0123456789", 4).getBytes(StandardCharsets.UTF_8);
+        String id = blobStore.save(ByteSource.wrap(body));
+        InputStream partial = new ChunkedSharedInputStream(HEADER, body.length, blobStore.read(id))
+            .newStream(HEADER.length + 15, HEADER.length + 27);
+        assertThat(new String(ByteStreams.toByteArray(partial), StandardCharsets.UTF_8)).isEqualTo("567890123456");
+    }
+
+    @Test
+    public void contentSpanningManyChunksShouldBeReadBack() throws IOException {
+        byte[] body = Strings.repeat("0123456789", 25).concat("end").getBytes(StandardCharsets.UTF_8);
+        String id = blobStore.save(ByteSource.wrap(body));
+        assertThat(readBody(id, body.length)).isEqualTo(body);
+    }
+
+    @Test
+    public void readingAMissingChunkShouldFail() throws IOException {
+        byte[] body = Strings.repeat("0123456789", 3).getBytes(StandardCharsets.UTF_8);
+        String id = blobStore.save(ByteSource.wrap(body));
+        cassandra.getConf().execute(QueryBuilder.delete()
+            .from(CassandraBlobTable.TABLE_NAME)
+            .where(QueryBuilder.eq(CassandraBlobTable.ID, id))
+            .and(QueryBuilder.eq(CassandraBlobTable.CHUNK_NUMBER, 1)));
+        try {
+            readBody(id, body.length);
+            fail("Reading a body with a missing chunk should fail");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).contains("Chunk 1");
+        }
+    }
+
+    @Test
+    public void readingAStoredContentShorterThanExpectedShouldFail() throws IOException {
+        byte[] body = "short".getBytes(StandardCharsets.UTF_8);
+        String id = blobStore.save(ByteSource.wrap(body));
+        try {
+            readBody(id, body.length + 1);
+            fail("Reading a truncated body should fail");
+        } catch (IOException e) {
+            assertThat(e.getMessage()).contains("ends before its expected length");
+        }
+    }
+
+    private byte[] readBody(String id, int length) throws IOException {
+        InputStream body = new ChunkedSharedInputStream(HEADER, length, blobStore.read(id)).newStream(HEADER.length, -1);
+        return ByteStreams.toByteArray(body);
+    }
+}
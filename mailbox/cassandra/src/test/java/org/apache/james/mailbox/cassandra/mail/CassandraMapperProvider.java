@@ -17,20 +17,22 @@ public class CassandraMapperProvider implements MapperProvider<CassandraId> {
     @Override
     public MailboxMapper<CassandraId> createMailboxMapper() throws MailboxException {
         return new CassandraMailboxSessionMapperFactory(
-            new CassandraUidProvider(cassandra.getConf()),
-            new CassandraModSeqProvider(cassandra.getConf()),
+            new CassandraUidProvider(cassandra.getConf(), cassandra.getPreparedStatementRegistry()),
+            new CassandraModSeqProvider(cassandra.getConf(), cassandra.getPreparedStatementRegistry()),
             cassandra.getConf(),
-            cassandra.getTypesProvider()
+            cassandra.getTypesProvider(),
+            cassandra.getPreparedStatementRegistry()
         ).getMailboxMapper(new MockMailboxSession("benwa"));
     }
 
     @Override
     public MessageMapper<CassandraId> createMessageMapper() throws MailboxException {
         return new CassandraMailboxSessionMapperFactory(
-            new CassandraUidProvider(cassandra.getConf()),
-            new CassandraModSeqProvider(cassandra.getConf()),
+            new CassandraUidProvider(cassandra.getConf(), cassandra.getPreparedStatementRegistry()),
+            new CassandraModSeqProvider(cassandra.getConf(), cassandra.getPreparedStatementRegistry()),
             cassandra.getConf(),
-            cassandra.getTypesProvider()
+            cassandra.getTypesProvider(),
+            cassandra.getPreparedStatementRegistry()
         ).getMessageMapper(new MockMailboxSession("benwa"));
     }
 
@@ -61,9 +61,9 @@ public class CassandraUidAndModSeqProviderTest {
     @Before
     public void setUpClass() throws Exception {
         CASSANDRA.ensureAllTables();
-        uidProvider = new CassandraUidProvider(CASSANDRA.getConf());
-        modSeqProvider = new CassandraModSeqProvider(CASSANDRA.getConf());
-        mapper = new CassandraMailboxMapper(CASSANDRA.getConf(), CASSANDRA.getTypesProvider(), MAX_RETRY);
+        uidProvider = new CassandraUidProvider(CASSANDRA.getConf(), CASSANDRA.getPreparedStatementRegistry());
+        modSeqProvider = new CassandraModSeqProvider(CASSANDRA.getConf(), CASSANDRA.getPreparedStatementRegistry());
+        mapper = new CassandraMailboxMapper(CASSANDRA.getConf(), CASSANDRA.getPreparedStatementRegistry(), CASSANDRA.getTypesProvider(), MAX_RETRY);
         fillMailboxList();
         for (SimpleMailbox<CassandraId> mailbox : mailboxList) {
             mapper.save(mailbox);
@@ -0,0 +1,110 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.cassandra.mail.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+public class ChunkedSharedInputStreamTest {
+
+    private static final int CHUNK_SIZE = 4;
+    private static final byte[] HEADER = "Header\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BODY = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+    private List<Integer> readChunks;
+    private ChunkedSharedInputStream testee;
+
+    @Before
+    public void setUp() {
+        readChunks = new ArrayList<>();
+        testee = new ChunkedSharedInputStream(HEADER, BODY.length, new ChunkedSharedInputStream.Chunks() {
+            @Override
+            public int chunkSize() {
+                return CHUNK_SIZE;
+            }
+
+            @Override
+            public byte[] chunk(int chunkNumber) {
+                readChunks.add(chunkNumber);
+                int start = chunkNumber * CHUNK_SIZE;
+                return Arrays.copyOfRange(BODY, start, Math.min(start + CHUNK_SIZE, BODY.length));
+            }
+        });
+    }
+
+    @Test
+    public void readShouldReturnHeaderFollowedByBody() throws IOException {
+        assertThat(asString(testee)).isEqualTo("Header\r\n\r\n0123456789");
+    }
+
+    @Test
+    public void readingTheHeaderShouldNotReadAnyChunk() throws IOException {
+        asString(testee.newStream(0, HEADER.length));
+        assertThat(readChunks).isEmpty();
+    }
+
+    @Test
+    public void newStreamShouldReadOnlyTheNeededChunks() throws IOException {
+        assertThat(asString(testee.newStream(HEADER.length + 5, HEADER.length + 7))).isEqualTo("56");
+        assertThat(readChunks).containsExactly(1);
+    }
+
+    @Test
+    public void skipShouldNotReadSkippedChunks() throws IOException {
+        InputStream body = testee.newStream(HEADER.length, -1);
+        assertThat(body.skip(8)).isEqualTo(8);
+        assertThat(asString(body)).isEqualTo("89");
+        assertThat(readChunks).containsExactly(2);
+    }
+
+    @Test
+    public void skipShouldNotGoBeyondTheEndOfTheStream() throws IOException {
+        assertThat(testee.skip(1000)).isEqualTo(HEADER.length + BODY.length);
+        assertThat(testee.read()).isEqualTo(-1);
+    }
+
+    @Test
+    public void getPositionShouldBeRelativeToTheStreamStart() throws IOException {
+        ChunkedSharedInputStream body = (ChunkedSharedInputStream) testee.newStream(HEADER.length, -1);
+        body.skip(3);
+        assertThat(body.getPosition()).isEqualTo(3);
+    }
+
+    @Test
+    public void newStreamOfANewStreamShouldBeRelativeToItsStart() throws IOException {
+        InputStream nested = ((ChunkedSharedInputStream) testee.newStream(HEADER.length, -1)).newStream(2, 5);
+        assertThat(asString(nested)).isEqualTo("234");
+    }
+
+    private String asString(InputStream inputStream) throws IOException {
+        return new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8);
+    }
+}
@@ -58,7 +58,7 @@ public class CassandraSubscriptionMapperTest {
         CLUSTER.ensureAllTables();
         CLUSTER.clearAllTables();
         session = CLUSTER.getConf();
-        mapper = new CassandraSubscriptionMapper(session);
+        mapper = new CassandraSubscriptionMapper(session, CLUSTER.getPreparedStatementRegistry());
         fillSubscriptionList();
     }
 
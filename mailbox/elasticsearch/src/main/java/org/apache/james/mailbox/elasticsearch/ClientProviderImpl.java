@@ -26,15 +26,30 @@ public class ClientProviderImpl implements ClientProvider {
 
     private final String host;
     private final int port;
+    private Client client;
     
     public ClientProviderImpl(String host, int port) {
         this.host = host;
         this.port = port;
     }
     
+    /**
+     * The transport client is thread safe and keeps its connections to the cluster open,
+     * so a single instance is lazily created and then shared by every caller.
+     */
     @SuppressWarnings("resource")
-    public Client get() {
-        return new TransportClient()
-            .addTransportAddress(new InetSocketTransportAddress(host, port));
+    public synchronized Client get() {
+        if (client == null) {
+            client = new TransportClient()
+                .addTransportAddress(new InetSocketTransportAddress(host, port));
+        }
+        return client;
+    }
+
+    public synchronized void close() {
+        if (client != null) {
+            client.close();
+            client = null;
+        }
     }
 }
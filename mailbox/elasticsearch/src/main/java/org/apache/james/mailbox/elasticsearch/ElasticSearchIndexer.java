@@ -18,60 +18,358 @@
  ****************************************************************/
 package org.apache.james.mailbox.elasticsearch;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.DocumentRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.deletebyquery.DeleteByQueryResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
-import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.rest.RestStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
-import javax.inject.Inject;
-
+/**
+ * Writes mailbox messages to ElasticSearch through the shared client of the {@link ClientProvider}.
+ *
+ * The plain methods issue one synchronous request each. The <code>Async</code> variants queue their
+ * operation in a {@link BulkProcessor}, which sends them as bulk requests once enough actions or bytes
+ * are pending, or when the flush interval elapses. Operations rejected because the cluster is
+ * overloaded are retried with an exponential backoff, up to a maximum number of attempts.
+ *
+ * Only one operation per document is sent at a time: the following ones wait until it has succeeded
+ * or definitively failed, so that a retried operation is never overtaken by a later one on the same
+ * document (an index landing after its delete, or an update sent before the index it depends on).
+ */
+@Singleton
 public class ElasticSearchIndexer {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(ElasticSearchIndexer.class);
+
     public static final String MAILBOX_INDEX = "mailbox";
     public static final String MESSAGE_TYPE = "message";
-    
+
+    public static final int DEFAULT_BULK_ACTIONS = 1000;
+    public static final long DEFAULT_BULK_SIZE_IN_MB = 5;
+    public static final long DEFAULT_FLUSH_INTERVAL_IN_MS = 1000;
+    public static final int DEFAULT_CONCURRENT_REQUESTS = 1;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    private static final long RETRY_BASE_DELAY_IN_MS = 100;
+    private static final long CLOSE_TIMEOUT_IN_MS = 10000;
+
     private final ClientProvider clientProvider;
+    private final BulkProcessor bulkProcessor;
+    private final ScheduledExecutorService retryScheduler;
+    private final int maxRetries;
+    private final Map<ActionRequest<?>, Integer> attempts;
+    private final Map<String, Queue<ActionRequest<?>>> waitingOperations;
+    private final Map<Long, Long> bulkStartTimes;
+    private final AtomicLong pendingCount;
+    private final AtomicLong succeededCount;
+    private final AtomicLong failedCount;
+    private final AtomicLong retriedCount;
+    private final AtomicLong bulkCount;
+    private final AtomicLong bulkLatencyInMs;
 
     @Inject
     public ElasticSearchIndexer(ClientProvider clientProvider) {
+        this(clientProvider, DEFAULT_BULK_ACTIONS, new ByteSizeValue(DEFAULT_BULK_SIZE_IN_MB, ByteSizeUnit.MB),
+            TimeValue.timeValueMillis(DEFAULT_FLUSH_INTERVAL_IN_MS), DEFAULT_CONCURRENT_REQUESTS, DEFAULT_MAX_RETRIES);
+    }
+
+    public ElasticSearchIndexer(ClientProvider clientProvider, int bulkActions, ByteSizeValue bulkSize,
+                                TimeValue flushInterval, int concurrentRequests, int maxRetries) {
+        Preconditions.checkArgument(maxRetries >= 0, "maxRetries should not be negative");
         this.clientProvider = clientProvider;
+        this.maxRetries = maxRetries;
+        this.attempts = Collections.synchronizedMap(new IdentityHashMap<>());
+        this.waitingOperations = new HashMap<>();
+        this.bulkStartTimes = new ConcurrentHashMap<>();
+        this.pendingCount = new AtomicLong();
+        this.succeededCount = new AtomicLong();
+        this.failedCount = new AtomicLong();
+        this.retriedCount = new AtomicLong();
+        this.bulkCount = new AtomicLong();
+        this.bulkLatencyInMs = new AtomicLong();
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("elasticsearch-bulk-retry-%d").setDaemon(true).build());
+        this.bulkProcessor = BulkProcessor.builder(clientProvider.get(), new BulkListener())
+            .setName("elasticsearch-bulk")
+            .setBulkActions(bulkActions)
+            .setBulkSize(bulkSize)
+            .setFlushInterval(flushInterval)
+            .setConcurrentRequests(concurrentRequests)
+            .build();
     }
     
     public IndexResponse indexMessage(String id, String content) {
         checkArgument(content);
-        try (Client client = clientProvider.get()) {
-            return client.prepareIndex(MAILBOX_INDEX, MESSAGE_TYPE, id)
-                .setSource(content)
-                .get();
-        }
+        return clientProvider.get()
+            .prepareIndex(MAILBOX_INDEX, MESSAGE_TYPE, id)
+            .setSource(content)
+            .get();
     }
 
     public UpdateResponse updateMessage(String id, String docUpdated) {
         checkArgument(docUpdated);
-        try (Client client = clientProvider.get()) {
-            return client.prepareUpdate(MAILBOX_INDEX, MESSAGE_TYPE, id)
-                .setDoc(docUpdated)
-                .get();
-        }
+        return clientProvider.get()
+            .prepareUpdate(MAILBOX_INDEX, MESSAGE_TYPE, id)
+            .setDoc(docUpdated)
+            .get();
     }
     
     public DeleteResponse deleteMessage(String id) {
-        try (Client client = clientProvider.get()) {
-            return client.prepareDelete(MAILBOX_INDEX, MESSAGE_TYPE, id)
-                .get();
-        }
+        return clientProvider.get()
+            .prepareDelete(MAILBOX_INDEX, MESSAGE_TYPE, id)
+            .get();
     }
     
     public DeleteByQueryResponse deleteAllWithIdStarting(String idStart) {
-        try (Client client = clientProvider.get()) {
-            return client.prepareDeleteByQuery(MAILBOX_INDEX)
-                .setTypes(MESSAGE_TYPE)
-                .setQuery(QueryBuilders.prefixQuery("_id", idStart))
-                .get();
+        return clientProvider.get()
+            .prepareDeleteByQuery(MAILBOX_INDEX)
+            .setTypes(MESSAGE_TYPE)
+            .setQuery(QueryBuilders.prefixQuery("_id", idStart))
+            .get();
+    }
+
+    public void indexMessageAsync(String id, String content) {
+        checkArgument(content);
+        submit(new IndexRequest(MAILBOX_INDEX, MESSAGE_TYPE, id).source(content));
+    }
+
+    public void updateMessageAsync(String id, String docUpdated) {
+        checkArgument(docUpdated);
+        submit(new UpdateRequest(MAILBOX_INDEX, MESSAGE_TYPE, id).doc(docUpdated));
+    }
+
+    public void deleteMessageAsync(String id) {
+        submit(new DeleteRequest(MAILBOX_INDEX, MESSAGE_TYPE, id));
+    }
+
+    /**
+     * Send the queued operations and wait until all of them, retries included, have either
+     * succeeded or definitively failed.
+     */
+    public void flush() throws InterruptedException {
+        while (pendingCount.get() > 0) {
+            bulkProcessor.flush();
+            synchronized (pendingCount) {
+                if (pendingCount.get() > 0) {
+                    pendingCount.wait(RETRY_BASE_DELAY_IN_MS);
+                }
+            }
+        }
+    }
+
+    public void close() {
+        try {
+            flush();
+            bulkProcessor.awaitClose(CLOSE_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            retryScheduler.shutdownNow();
+        }
+    }
+
+    public long getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public long getSucceededCount() {
+        return succeededCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getRetriedCount() {
+        return retriedCount.get();
+    }
+
+    public long getBulkCount() {
+        return bulkCount.get();
+    }
+
+    public long getTotalBulkLatencyInMs() {
+        return bulkLatencyInMs.get();
+    }
+
+    private void submit(ActionRequest<?> request) {
+        pendingCount.incrementAndGet();
+        if (waitForPreviousOperation(request)) {
+            return;
+        }
+        try {
+            bulkProcessor.add(request);
+        } catch (RuntimeException e) {
+            done(request);
+            throw e;
+        }
+    }
+
+    private void resubmit(ActionRequest<?> request) {
+        try {
+            bulkProcessor.add(request);
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to retry ElasticSearch operation " + request, e);
+            fail(request);
+        }
+    }
+
+    private void retryOrFail(ActionRequest<?> request, String reason) {
+        int attempt = attempts.merge(request, 1, Integer::sum);
+        if (attempt > maxRetries) {
+            LOGGER.error("ElasticSearch operation " + request + " failed after " + maxRetries + " retries: " + reason);
+            fail(request);
+            return;
+        }
+        retriedCount.incrementAndGet();
+        // Re-adding from the bulk callback could block on the processor it is called from,
+        // so the retry is handed over to a dedicated thread
+        retryScheduler.schedule(() -> resubmit(request), RETRY_BASE_DELAY_IN_MS << (attempt - 1), TimeUnit.MILLISECONDS);
+    }
+
+    private void succeed(ActionRequest<?> request) {
+        succeededCount.incrementAndGet();
+        done(request);
+    }
+
+    private void fail(ActionRequest<?> request) {
+        failedCount.incrementAndGet();
+        done(request);
+    }
+
+    /**
+     * Queue the request behind the operation in progress on the same document, if any
+     *
+     * @return true if the request has to wait, false if it can be sent right away
+     */
+    private boolean waitForPreviousOperation(ActionRequest<?> request) {
+        String id = documentId(request);
+        synchronized (waitingOperations) {
+            Queue<ActionRequest<?>> waiting = waitingOperations.get(id);
+            if (waiting == null) {
+                waitingOperations.put(id, new ArrayDeque<>());
+                return false;
+            }
+            waiting.add(request);
+            return true;
+        }
+    }
+
+    private ActionRequest<?> nextOperation(ActionRequest<?> request) {
+        String id = documentId(request);
+        synchronized (waitingOperations) {
+            ActionRequest<?> next = waitingOperations.get(id).poll();
+            if (next == null) {
+                waitingOperations.remove(id);
+            }
+            return next;
+        }
+    }
+
+    private void sendNext(ActionRequest<?> next) {
+        try {
+            // As for retries, the next operation is not added from the bulk callback
+            retryScheduler.execute(() -> resubmit(next));
+        } catch (RejectedExecutionException e) {
+            LOGGER.error("Unable to send ElasticSearch operation " + next + " as the indexer is closed", e);
+            fail(next);
+        }
+    }
+
+    private String documentId(ActionRequest<?> request) {
+        return ((DocumentRequest<?>) request).id();
+    }
+
+    private void done(ActionRequest<?> request) {
+        attempts.remove(request);
+        ActionRequest<?> next = nextOperation(request);
+        if (next != null) {
+            sendNext(next);
+        }
+        if (pendingCount.decrementAndGet() == 0) {
+            synchronized (pendingCount) {
+                pendingCount.notifyAll();
+            }
+        }
+    }
+
+    private void recordBulk(long executionId) {
+        bulkCount.incrementAndGet();
+        Long start = bulkStartTimes.remove(executionId);
+        if (start != null) {
+            bulkLatencyInMs.addAndGet(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private boolean isRetryable(BulkItemResponse.Failure failure) {
+        return failure.getStatus() == RestStatus.TOO_MANY_REQUESTS
+            || failure.getStatus() == RestStatus.SERVICE_UNAVAILABLE;
+    }
+
+    private class BulkListener implements BulkProcessor.Listener {
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request) {
+            bulkStartTimes.put(executionId, System.nanoTime());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+            recordBulk(executionId);
+            for (BulkItemResponse item : response.getItems()) {
+                ActionRequest<?> itemRequest = request.requests().get(item.getItemId());
+                if (!item.isFailed()) {
+                    succeed(itemRequest);
+                } else if (isRetryable(item.getFailure())) {
+                    retryOrFail(itemRequest, item.getFailureMessage());
+                } else {
+                    LOGGER.error("ElasticSearch operation " + itemRequest + " failed: " + item.getFailureMessage());
+                    fail(itemRequest);
+                }
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+            recordBulk(executionId);
+            LOGGER.warn("ElasticSearch bulk request of " + request.numberOfActions() + " operations failed", failure);
+            for (ActionRequest<?> itemRequest : request.requests()) {
+                retryOrFail(itemRequest, failure.getMessage());
+            }
         }
     }
 
@@ -23,7 +23,6 @@ import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 
 import java.io.IOException;
 
-import org.elasticsearch.client.Client;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.indices.IndexAlreadyExistsException;
 import org.slf4j.Logger;
@@ -55,14 +54,13 @@ public class IndexCreationFactory {
 
     private static ClientProvider createIndex(ClientProvider clientProvider, XContentBuilder settings) {
         try {
-            try (Client client = clientProvider.get()) {
-                client.admin()
-                    .indices()
-                    .prepareCreate(ElasticSearchIndexer.MAILBOX_INDEX)
-                    .setSettings(settings)
-                    .execute()
-                    .actionGet();
-            }
+            clientProvider.get()
+                .admin()
+                .indices()
+                .prepareCreate(ElasticSearchIndexer.MAILBOX_INDEX)
+                .setSettings(settings)
+                .execute()
+                .actionGet();
         } catch (IndexAlreadyExistsException exception) {
             LOGGER.info("Index [" + ElasticSearchIndexer.MAILBOX_INDEX + "] already exist");
         }
@@ -24,7 +24,6 @@ import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import java.io.IOException;
 
 import org.apache.james.mailbox.elasticsearch.json.JsonMessageConstants;
-import org.elasticsearch.client.Client;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 
 import com.google.common.base.Throwables;
@@ -43,15 +42,14 @@ public class NodeMappingFactory {
     public static final String NESTED = "nested";
 
     public static ClientProvider applyMapping(ClientProvider clientProvider) {
-        try (Client client = clientProvider.get()) {
-            client.admin()
-                .indices()
-                .preparePutMapping(ElasticSearchIndexer.MAILBOX_INDEX)
-                .setType(ElasticSearchIndexer.MESSAGE_TYPE)
-                .setSource(getMappingContent())
-                .execute()
-                .actionGet();
-        }
+        clientProvider.get()
+            .admin()
+            .indices()
+            .preparePutMapping(ElasticSearchIndexer.MAILBOX_INDEX)
+            .setType(ElasticSearchIndexer.MESSAGE_TYPE)
+            .setSource(getMappingContent())
+            .execute()
+            .actionGet();
         return clientProvider;
     }
 
@@ -66,7 +66,7 @@ public class ElasticSearchListeningMessageSearchIndex<Id extends MailboxId> exte
     @Override
     public void add(MailboxSession session, Mailbox<Id> mailbox, Message<Id> message) throws MailboxException {
         try {
-            indexer.indexMessage(indexIdFor(mailbox, message.getUid()), messageToElasticSearchJson.convertToJson(message));
+            indexer.indexMessageAsync(indexIdFor(mailbox, message.getUid()), messageToElasticSearchJson.convertToJson(message));
         } catch (Exception e) {
             LOGGER.error("Error when indexing message " + message.getUid(), e);
         }
@@ -75,11 +75,13 @@ public class ElasticSearchListeningMessageSearchIndex<Id extends MailboxId> exte
     @Override
     public void delete(MailboxSession session, Mailbox<Id> mailbox, MessageRange range) throws MailboxException {
         if (range.getType() == Type.ALL) {
+            // Queued operations must not be applied after the documents are removed
+            flushIndexer();
             indexer.deleteAllWithIdStarting(mailbox.getMailboxId() + ID_SEPARATOR);
         } else {
             range.forEach(messageId -> {
                 try {
-                    indexer.deleteMessage(indexIdFor(mailbox, messageId));
+                    indexer.deleteMessageAsync(indexIdFor(mailbox, messageId));
                 } catch (Exception e) {
                     LOGGER.error("Error when deleting index for message " + messageId, e);
                 }
@@ -91,7 +93,7 @@ public class ElasticSearchListeningMessageSearchIndex<Id extends MailboxId> exte
     public void update(MailboxSession session, Mailbox<Id> mailbox, MessageRange range, Flags flags, long modseq) throws MailboxException {
         range.forEach(messageId -> {
             try {
-                indexer.updateMessage(
+                indexer.updateMessageAsync(
                     indexIdFor(mailbox, messageId),
                     messageToElasticSearchJson.getUpdatedJsonMessagePart(flags, modseq));
             } catch (Exception e) {
@@ -101,6 +103,15 @@ public class ElasticSearchListeningMessageSearchIndex<Id extends MailboxId> exte
 
     }
     
+    private void flushIndexer() throws MailboxException {
+        try {
+            indexer.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailboxException("Interrupted while flushing pending index operations", e);
+        }
+    }
+
     private String indexIdFor(Mailbox<Id> mailbox, long messageId) {
         return String.join(ID_SEPARATOR, mailbox.getMailboxId().serialize(), String.valueOf(messageId));
     }
@@ -56,11 +56,9 @@ public class ElasticSearchSearcher<Id extends MailboxId> {
     }
 
     public Iterator<Long> search(Mailbox<Id> mailbox, SearchQuery searchQuery) throws MailboxException {
-        try (Client client = clientProvider.get()) {
-            return transformResponseToUidIterator(getSearchRequestBuilder(client, mailbox, searchQuery)
-                .get()
-            );
-        }
+        return transformResponseToUidIterator(getSearchRequestBuilder(clientProvider.get(), mailbox, searchQuery)
+            .get()
+        );
     }
 
     private SearchRequestBuilder getSearchRequestBuilder(Client client, Mailbox<Id> mailbox, SearchQuery searchQuery) {
@@ -26,8 +26,10 @@ import java.io.IOException;
 import org.apache.james.mailbox.elasticsearch.utils.TestingClientProvider;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.node.Node;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -51,6 +53,11 @@ public class ElasticSearchIndexerTest {
         node = embeddedElasticSearch.getNode();
         testee = new ElasticSearchIndexer(new TestingClientProvider(node));
     }
+
+    @After
+    public void tearDown() {
+        testee.close();
+    }
     
     @Test
     public void indexMessageShouldWork() throws Exception {
@@ -185,4 +192,104 @@ public class ElasticSearchIndexerTest {
         }
     }
 
+    @Test
+    public void indexMessageAsyncShouldGroupOperationsInBulks() throws Exception {
+        ElasticSearchIndexer bulkIndexer = new ElasticSearchIndexer(new TestingClientProvider(node),
+            ElasticSearchIndexer.DEFAULT_BULK_ACTIONS, new ByteSizeValue(-1), null,
+            ElasticSearchIndexer.DEFAULT_CONCURRENT_REQUESTS, ElasticSearchIndexer.DEFAULT_MAX_RETRIES);
+        for (int i = 0; i < 10; i++) {
+            bulkIndexer.indexMessageAsync("1:" + i, "{\"message\": \"trying out Elasticsearch\"}");
+        }
+        bulkIndexer.close();
+        embeddedElasticSearch.awaitForElasticSearch();
+
+        try (Client client = node.client()) {
+            SearchResponse searchResponse = client.prepareSearch(ElasticSearchIndexer.MAILBOX_INDEX)
+                    .setTypes(ElasticSearchIndexer.MESSAGE_TYPE)
+                    .setQuery(QueryBuilders.matchQuery("message", "trying"))
+                    .get();
+            assertThat(searchResponse.getHits().getTotalHits()).isEqualTo(10);
+        }
+        assertThat(bulkIndexer.getSucceededCount()).isEqualTo(10);
+        assertThat(bulkIndexer.getBulkCount()).isEqualTo(1);
+        assertThat(bulkIndexer.getPendingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void operationsOnTheSameDocumentShouldBeSentOneAfterTheOther() throws Exception {
+        ElasticSearchIndexer bulkIndexer = new ElasticSearchIndexer(new TestingClientProvider(node),
+            ElasticSearchIndexer.DEFAULT_BULK_ACTIONS, new ByteSizeValue(-1), null,
+            ElasticSearchIndexer.DEFAULT_CONCURRENT_REQUESTS, ElasticSearchIndexer.DEFAULT_MAX_RETRIES);
+        bulkIndexer.indexMessageAsync("1:1", "{\"message\": \"trying out Elasticsearch\"}");
+        bulkIndexer.indexMessageAsync("1:2", "{\"message\": \"trying out Elasticsearch\"}");
+        bulkIndexer.updateMessageAsync("1:1", "{\"message\": \"mastering out Elasticsearch\"}");
+        bulkIndexer.close();
+        embeddedElasticSearch.awaitForElasticSearch();
+
+        try (Client client = node.client()) {
+            SearchResponse searchResponse = client.prepareSearch(ElasticSearchIndexer.MAILBOX_INDEX)
+                    .setTypes(ElasticSearchIndexer.MESSAGE_TYPE)
+                    .setQuery(QueryBuilders.matchQuery("message", "mastering"))
+                    .get();
+            assertThat(searchResponse.getHits().getTotalHits()).isEqualTo(1);
+        }
+        assertThat(bulkIndexer.getSucceededCount()).isEqualTo(3);
+        assertThat(bulkIndexer.getBulkCount()).isEqualTo(2);
+        assertThat(bulkIndexer.getPendingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void updateMessageAsyncShouldWork() throws Exception {
+        String messageId = "1";
+        testee.indexMessageAsync(messageId, "{\"message\": \"trying out Elasticsearch\",\"field\":\"Should be unchanged\"}");
+        testee.flush();
+        embeddedElasticSearch.awaitForElasticSearch();
+
+        testee.updateMessageAsync(messageId, "{\"message\": \"mastering out Elasticsearch\"}");
+        testee.flush();
+        embeddedElasticSearch.awaitForElasticSearch();
+
+        try (Client client = node.client()) {
+            SearchResponse searchResponse = client.prepareSearch(ElasticSearchIndexer.MAILBOX_INDEX)
+                .setTypes(ElasticSearchIndexer.MESSAGE_TYPE)
+                .setQuery(QueryBuilders.boolQuery()
+                    .must(QueryBuilders.matchQuery("message", "mastering"))
+                    .must(QueryBuilders.matchQuery("field", "unchanged")))
+                .get();
+            assertThat(searchResponse.getHits().getTotalHits()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void deleteMessageAsyncShouldWork() throws Exception {
+        String messageId = "1:2";
+        testee.indexMessageAsync(messageId, "{\"message\": \"trying out Elasticsearch\"}");
+        testee.deleteMessageAsync(messageId);
+        testee.flush();
+        embeddedElasticSearch.awaitForElasticSearch();
+
+        try (Client client = node.client()) {
+            SearchResponse searchResponse = client.prepareSearch(ElasticSearchIndexer.MAILBOX_INDEX)
+                    .setTypes(ElasticSearchIndexer.MESSAGE_TYPE)
+                    .setQuery(QueryBuilders.matchAllQuery())
+                    .get();
+            assertThat(searchResponse.getHits().getTotalHits()).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void updateMessageAsyncShouldCountFailureWhenDocumentIsMissing() throws Exception {
+        testee.updateMessageAsync("1:2", "{\"message\": \"mastering out Elasticsearch\"}");
+        testee.flush();
+
+        assertThat(testee.getFailedCount()).isEqualTo(1);
+        assertThat(testee.getRetriedCount()).isEqualTo(0);
+        assertThat(testee.getPendingCount()).isEqualTo(0);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void indexMessageAsyncShouldThrowWhenJsonIsNull() {
+        testee.indexMessageAsync("1", null);
+    }
+
 }
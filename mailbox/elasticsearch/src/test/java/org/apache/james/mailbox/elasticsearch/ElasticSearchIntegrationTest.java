@@ -47,6 +47,7 @@ import org.apache.james.mailbox.store.MockAuthenticator;
 import org.apache.james.mailbox.store.StoreMailboxManager;
 import org.apache.james.mailbox.store.StoreMessageManager;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -69,6 +70,7 @@ public class ElasticSearchIntegrationTest {
     @Rule
     public RuleChain chain = RuleChain.outerRule(temporaryFolder).around(embeddedElasticSearch);
     
+    private ElasticSearchIndexer indexer;
     private StoreMailboxManager<InMemoryId> storeMailboxManager;
     private ElasticSearchListeningMessageSearchIndex<InMemoryId> elasticSearchListeningMessageSearchIndex;
     private Mailbox<InMemoryId> mailbox;
@@ -158,16 +160,23 @@ public class ElasticSearchIntegrationTest {
             true,
             new Flags("Hello you"));
 
+        indexer.flush();
         embeddedElasticSearch.awaitForElasticSearch();
     }
 
+    @After
+    public void tearDown() {
+        indexer.close();
+    }
+
     private void initializeMailboxManager() throws Exception {
         ClientProvider clientProvider = NodeMappingFactory.applyMapping(
             IndexCreationFactory.createIndex(new TestingClientProvider(embeddedElasticSearch.getNode()))
         );
         MailboxSessionMapperFactory<InMemoryId> mapperFactory = new InMemoryMailboxSessionMapperFactory();
+        indexer = new ElasticSearchIndexer(clientProvider);
         elasticSearchListeningMessageSearchIndex = new ElasticSearchListeningMessageSearchIndex<>(mapperFactory,
-            new ElasticSearchIndexer(clientProvider),
+            indexer,
             new ElasticSearchSearcher<>(clientProvider, new QueryConverter(new CriterionConverter())),
             new MessageToElasticSearchJson(new DefaultTextExtractor(), ZoneId.of("Europe/Paris")));
         storeMailboxManager = new StoreMailboxManager<>(
@@ -43,9 +43,6 @@ import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.Message;
 import org.easymock.IMocksControl;
 import org.elasticsearch.ElasticsearchException;
-import org.elasticsearch.action.delete.DeleteResponse;
-import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.action.update.UpdateResponse;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -91,9 +88,8 @@ public class ElasticSearchListeningMessageSearchIndexTest {
         expect(mailbox.getMailboxId()).andReturn(mailboxId);
         Message<TestId> message = mockedMessage(messageId, mailboxId);
         
-        IndexResponse expectedIndexResponse = control.createMock(IndexResponse.class);
-        expect(indexer.indexMessage(eq(mailboxId.serialize() + ":" + messageId), anyString()))
-            .andReturn(expectedIndexResponse);
+        indexer.indexMessageAsync(eq(mailboxId.serialize() + ":" + messageId), anyString());
+        expectLastCall();
         
         control.replay();
         testee.add(session, mailbox, message);
@@ -118,8 +114,8 @@ public class ElasticSearchListeningMessageSearchIndexTest {
         Message<TestId> message = mockedMessage(messageId, mailboxId);
         expect(mailbox.getMailboxId()).andReturn(mailboxId);
         
-        expect(indexer.indexMessage(eq(mailboxId.serialize() + ":" + messageId), anyString()))
-            .andThrow(new ElasticsearchException(""));
+        indexer.indexMessageAsync(eq(mailboxId.serialize() + ":" + messageId), anyString());
+        expectLastCall().andThrow(new ElasticsearchException(""));
         
         control.replay();
         testee.add(session, mailbox, message);
@@ -136,9 +132,8 @@ public class ElasticSearchListeningMessageSearchIndexTest {
         TestId mailboxId = TestId.of(12);
         expect(mailbox.getMailboxId()).andReturn(mailboxId);
         
-        DeleteResponse expectedDeleteResponse = control.createMock(DeleteResponse.class);
-        expect(indexer.deleteMessage(mailboxId.serialize() + ":" + messageId))
-            .andReturn(expectedDeleteResponse);
+        indexer.deleteMessageAsync(mailboxId.serialize() + ":" + messageId);
+        expectLastCall();
         
         control.replay();
         testee.delete(session, mailbox, messageRange);
@@ -158,9 +153,8 @@ public class ElasticSearchListeningMessageSearchIndexTest {
         
         LongStream.rangeClosed(firstMessageId, lastMessageId)
             .forEach(messageId -> {
-                DeleteResponse expectedDeleteResponse = control.createMock(DeleteResponse.class);
-                expect(indexer.deleteMessage(mailboxId.serialize() + ":" + messageId))
-                    .andReturn(expectedDeleteResponse);
+                indexer.deleteMessageAsync(mailboxId.serialize() + ":" + messageId);
+                expectLastCall();
             });
         
         control.replay();
@@ -178,14 +172,32 @@ public class ElasticSearchListeningMessageSearchIndexTest {
         TestId mailboxId = TestId.of(12);
         expect(mailbox.getMailboxId()).andReturn(mailboxId);
         
-        expect(indexer.deleteMessage(mailboxId.serialize() + ":" + messageId))
-            .andThrow(new ElasticsearchException(""));
+        indexer.deleteMessageAsync(mailboxId.serialize() + ":" + messageId);
+        expectLastCall().andThrow(new ElasticsearchException(""));
         
         control.replay();
         testee.delete(session, mailbox, messageRange);
         control.verify();
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void deleteAllShouldFlushPendingOperationsBeforeDeleting() throws Exception {
+        MailboxSession session = control.createMock(MailboxSession.class);
+        Mailbox<TestId> mailbox = control.createMock(Mailbox.class);
+        TestId mailboxId = TestId.of(12);
+
+        control.checkOrder(true);
+        indexer.flush();
+        expectLastCall();
+        expect(mailbox.getMailboxId()).andReturn(mailboxId);
+        expect(indexer.deleteAllWithIdStarting(mailboxId + ":")).andReturn(null);
+
+        control.replay();
+        testee.delete(session, mailbox, MessageRange.all());
+        control.verify();
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     public void updateShouldWork() throws Exception {
@@ -201,9 +213,8 @@ public class ElasticSearchListeningMessageSearchIndexTest {
         expectLastCall();
         expect(mailbox.getMailboxId()).andReturn(mailboxId);
         
-        UpdateResponse expectedUpdateResponse = control.createMock(UpdateResponse.class);
-        expect(indexer.updateMessage(eq(mailboxId.serialize() + ":" + messageId), anyString()))
-            .andReturn(expectedUpdateResponse);
+        indexer.updateMessageAsync(eq(mailboxId.serialize() + ":" + messageId), anyString());
+        expectLastCall();
         
         control.replay();
         testee.update(session, mailbox, messageRange, flags, MODSEQ);
@@ -232,10 +243,8 @@ public class ElasticSearchListeningMessageSearchIndexTest {
 
                     expect(mailbox.getMailboxId()).andReturn(mailboxId);
 
-                    UpdateResponse expectedUpdateResponse = control.createMock(UpdateResponse.class);
-                    expect(indexer.updateMessage(eq(mailboxId.serialize() + ":" + uid), anyString()))
-
-                        .andReturn(expectedUpdateResponse);
+                    indexer.updateMessageAsync(eq(mailboxId.serialize() + ":" + uid), anyString());
+                    expectLastCall();
                 } catch (Exception e) {
                     Throwables.propagate(e);
                 }
@@ -263,8 +272,8 @@ public class ElasticSearchListeningMessageSearchIndexTest {
         expectLastCall();
         expect(mailbox.getMailboxId()).andReturn(mailboxId);
 
-        expect(indexer.updateMessage(eq(mailboxId.serialize() + ":" + messageId), anyString()))
-            .andThrow(new ElasticsearchException(""));
+        indexer.updateMessageAsync(eq(mailboxId.serialize() + ":" + messageId), anyString());
+        expectLastCall().andThrow(new ElasticsearchException(""));
         
         control.replay();
         testee.update(session, mailbox, messageRange, flags, MODSEQ);
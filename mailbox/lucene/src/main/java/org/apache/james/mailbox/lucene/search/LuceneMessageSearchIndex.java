@@ -35,6 +35,13 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.mail.Flags;
 import javax.mail.Flags.Flag;
@@ -56,6 +63,7 @@ import org.apache.james.mailbox.model.SearchQuery.HeaderOperator;
 import org.apache.james.mailbox.model.SearchQuery.NumericOperator;
 import org.apache.james.mailbox.model.SearchQuery.NumericRange;
 import org.apache.james.mailbox.model.SearchQuery.UidCriterion;
+import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.store.mail.MessageMapperFactory;
 import org.apache.james.mailbox.store.mail.model.MailboxId;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
@@ -86,7 +94,6 @@ import org.apache.lucene.document.Field.Index;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.NumericField;
 import org.apache.lucene.index.CorruptIndexException;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
@@ -94,6 +101,9 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.NRTManager;
+import org.apache.lucene.search.NRTManager.TrackingIndexWriter;
+import org.apache.lucene.search.NRTManagerReopenThread;
 import org.apache.lucene.search.NumericRangeQuery;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
@@ -106,8 +116,9 @@ import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.WildcardQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.LockObtainFailedException;
-import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Lucene based {@link ListeningMessageSearchIndex} which offers message searching via a Lucene index
@@ -117,6 +128,8 @@ import org.apache.lucene.util.Version;
  * @param <Id>
  */
 public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMessageSearchIndex<Id> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LuceneMessageSearchIndex.class);
+
     private final static Date MAX_DATE;
     private final static Date MIN_DATE;
     
@@ -133,6 +146,27 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
      * Default max query results
      */
     public final static int DEFAULT_MAX_QUERY_RESULTS = 100000;
+
+    /**
+     * Default max time in seconds after which changes are visible to searches,
+     * even if no search waits for them
+     */
+    public final static double DEFAULT_MAX_REFRESH_LATENCY = 1.0;
+
+    /**
+     * Default max time in seconds a search waits for the changes done before
+     */
+    public final static double DEFAULT_MIN_REFRESH_LATENCY = 0.025;
+
+    /**
+     * Default interval in milliseconds in which changes are committed
+     */
+    public final static long DEFAULT_COMMIT_INTERVAL = 60 * 1000;
+
+    /**
+     * Default size of the RAM buffer of the {@link IndexWriter} in MB
+     */
+    public final static double DEFAULT_RAM_BUFFER_SIZE = 48.0;
     
     /**
      * {@link Field} which will contain the unique index of the {@link Document}
@@ -297,6 +331,25 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
     private final static String DEFAULT_ENCODING = "US-ASCII";
     
     private final IndexWriter writer;
+
+    private final boolean closeWriter;
+
+    private final TrackingIndexWriter trackingWriter;
+
+    private final NRTManager searcherManager;
+
+    private final NRTManagerReopenThread reopenThread;
+
+    private final ScheduledExecutorService commitScheduler;
+
+    private ScheduledFuture<?> commitFuture;
+
+    /**
+     * Generation of the last change, searches need to wait till it is visible
+     */
+    private final AtomicLong lastGeneration = new AtomicLong();
+
+    private final AtomicBoolean uncommitted = new AtomicBoolean();
     
     private int maxQueryResults = DEFAULT_MAX_QUERY_RESULTS;
 
@@ -340,14 +393,108 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
     
     
     public LuceneMessageSearchIndex(MessageMapperFactory<Id> factory, Directory directory, boolean dropIndexOnStart, boolean lenient) throws CorruptIndexException, LockObtainFailedException, IOException {
+        this(factory, directory, dropIndexOnStart, lenient, DEFAULT_MAX_REFRESH_LATENCY, DEFAULT_MIN_REFRESH_LATENCY);
+    }
+
+    /**
+     * @param maxRefreshLatency
+     *            max time in seconds after which changes are visible to
+     *            searches
+     * @param minRefreshLatency
+     *            max time in seconds a search waits for the changes done
+     *            before it
+     */
+    public LuceneMessageSearchIndex(MessageMapperFactory<Id> factory, Directory directory, boolean dropIndexOnStart, boolean lenient, double maxRefreshLatency, double minRefreshLatency) throws CorruptIndexException, LockObtainFailedException, IOException {
         super(factory);
         this.writer = new IndexWriter(directory,  createConfig(createAnalyzer(lenient), dropIndexOnStart));
+        this.closeWriter = true;
+        this.trackingWriter = new TrackingIndexWriter(writer);
+        this.searcherManager = new NRTManager(trackingWriter, null);
+        this.reopenThread = startReopenThread(searcherManager, maxRefreshLatency, minRefreshLatency);
+        this.commitScheduler = createCommitScheduler();
+        setCommitInterval(DEFAULT_COMMIT_INTERVAL);
     }
     
     
-    public LuceneMessageSearchIndex(MessageMapperFactory<Id> factory, IndexWriter writer) {
+    public LuceneMessageSearchIndex(MessageMapperFactory<Id> factory, IndexWriter writer) throws IOException {
+        this(factory, writer, DEFAULT_MAX_REFRESH_LATENCY, DEFAULT_MIN_REFRESH_LATENCY);
+    }
+
+    public LuceneMessageSearchIndex(MessageMapperFactory<Id> factory, IndexWriter writer, double maxRefreshLatency, double minRefreshLatency) throws IOException {
         super(factory);
         this.writer = writer;
+        this.closeWriter = false;
+        this.trackingWriter = new TrackingIndexWriter(writer);
+        this.searcherManager = new NRTManager(trackingWriter, null);
+        this.reopenThread = startReopenThread(searcherManager, maxRefreshLatency, minRefreshLatency);
+        this.commitScheduler = createCommitScheduler();
+        setCommitInterval(DEFAULT_COMMIT_INTERVAL);
+    }
+
+    private static NRTManagerReopenThread startReopenThread(NRTManager searcherManager, double maxRefreshLatency, double minRefreshLatency) {
+        NRTManagerReopenThread thread = new NRTManagerReopenThread(searcherManager, maxRefreshLatency, minRefreshLatency);
+        thread.setName("Lucene NRT reopen thread");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static ScheduledExecutorService createCommitScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Lucene index commit thread");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Set the interval in milliseconds in which changes get committed to the
+     * index. Changes are visible to searches before they are committed. The
+     * default is {@link #DEFAULT_COMMIT_INTERVAL}
+     * 
+     * @param commitInterval
+     */
+    public synchronized void setCommitInterval(long commitInterval) {
+        if (commitFuture != null) {
+            commitFuture.cancel(false);
+        }
+        commitFuture = commitScheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                commit();
+            }
+        }, commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Commit all changes done since the last commit
+     */
+    public void commit() {
+        if (uncommitted.getAndSet(false)) {
+            try {
+                writer.commit();
+            } catch (IOException e) {
+                uncommitted.set(true);
+                LOGGER.warn("Unable to commit index", e);
+            }
+        }
+    }
+
+    /**
+     * Stop refreshing the searcher and commit all pending changes. The
+     * {@link IndexWriter} is closed too if it was created by this index.
+     * 
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        commitScheduler.shutdown();
+        reopenThread.close();
+        searcherManager.close();
+        commit();
+        if (closeWriter) {
+            writer.close();
+        }
     }
     
     /**
@@ -360,7 +507,8 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
     }
     
     protected IndexWriterConfig createConfig(Analyzer analyzer, boolean dropIndexOnStart) {
-        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_31, analyzer);
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_36, analyzer);
+        config.setRAMBufferSizeMB(DEFAULT_RAM_BUFFER_SIZE);
         if (dropIndexOnStart) {
             config.setOpenMode(OpenMode.CREATE);
         } else {
@@ -400,6 +548,40 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
     
     
     
+    /**
+     * Acquire the shared {@link IndexSearcher} which sees all changes done
+     * before. It must be given back via {@link #releaseSearcher(IndexSearcher)}
+     * 
+     * @return searcher
+     */
+    private IndexSearcher acquireSearcher() {
+        searcherManager.waitForGeneration(lastGeneration.get());
+        return searcherManager.acquire();
+    }
+
+    private void releaseSearcher(IndexSearcher searcher) {
+        if (searcher != null) {
+            try {
+                searcherManager.release(searcher);
+            } catch (IOException e) {
+                // ignore on release
+            }
+        }
+    }
+
+    /**
+     * Remember the generation of a change, so following searches will see it
+     * 
+     * @param generation
+     */
+    private void changed(long generation) {
+        long last = lastGeneration.get();
+        while (generation > last && !lastGeneration.compareAndSet(last, generation)) {
+            last = lastGeneration.get();
+        }
+        uncommitted.set(true);
+    }
+
     /**
      * @see org.apache.james.mailbox.store.search.MessageSearchIndex#search(org.apache.james.mailbox.MailboxSession, org.apache.james.mailbox.store.mail.model.Mailbox, org.apache.james.mailbox.model.SearchQuery)
      */
@@ -408,7 +590,7 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
         IndexSearcher searcher = null;
 
         try {
-            searcher = new IndexSearcher(IndexReader.open(writer, true));
+            searcher = acquireSearcher();
             BooleanQuery query = new BooleanQuery();
             query.add(new TermQuery(new Term(MAILBOX_ID_FIELD, mailbox.getMailboxId().serialize())), BooleanClause.Occur.MUST);
             // Not return flags documents
@@ -428,13 +610,7 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
         } catch (IOException e) {
             throw new MailboxException("Unable to search the mailbox", e);
         } finally {
-            if (searcher != null) {
-                try {
-                    searcher.close();
-                } catch (IOException e) {
-                    // ignore on close
-                }
-            }
+            releaseSearcher(searcher);
         }
         return uids.iterator();
     }
@@ -443,7 +619,7 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
     /**
      * Create a new {@link Document} for the given {@link Message}. This Document does not contain any flags data. The {@link Flags} are stored in a seperate Document. 
      * 
-     * See {@link #createFlagsDocument(Message)}
+     * See {@link #createFlagsDocument(String, long, Flags)}
      * 
      * @param membership
      * @return document
@@ -901,7 +1077,7 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
 
         try {
             Set<Long> uids = new HashSet<Long>();
-            searcher = new IndexSearcher(IndexReader.open(writer, true));
+            searcher = acquireSearcher();
             
             // query for all the documents sorted by uid
             TopDocs docs = searcher.search(query, null, maxQueryResults, new Sort(UID_SORT));
@@ -930,13 +1106,7 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
         } catch (IOException e) {
             throw new MailboxException("Unable to search mailbox " + mailbox, e);
         } finally {
-            if (searcher != null) {
-                try {
-                    searcher.close();
-                } catch (IOException e) {
-                    // ignore on close
-                }
-            }
+            releaseSearcher(searcher);
         }
     }
     
@@ -1188,11 +1358,12 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
      */
     public void add(MailboxSession session, Mailbox<Id> mailbox, Message<Id> membership) throws MailboxException {
         Document doc = createMessageDocument(session, membership);
-        Document flagsDoc = createFlagsDocument(membership);
+        Document flagsDoc = createFlagsDocument(membership.getMailboxId().serialize(), membership.getUid(), membership.createFlags());
 
         try {
-            writer.addDocument(doc);
-            writer.addDocument(flagsDoc);
+            trackingWriter.addDocument(doc);
+            // the flags may have been written before the message was indexed
+            changed(trackingWriter.updateDocument(new Term(ID_FIELD, flagsDoc.get(ID_FIELD)), flagsDoc));
         } catch (CorruptIndexException e) {
             throw new MailboxException("Unable to add message to index", e);
         } catch (IOException e) {
@@ -1204,53 +1375,96 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
      * @see org.apache.james.mailbox.store.search.ListeningMessageSearchIndex#update(org.apache.james.mailbox.MailboxSession, org.apache.james.mailbox.store.mail.model.Mailbox, org.apache.james.mailbox.model.MessageRange, javax.mail.Flags)
      */
     public void update(MailboxSession session, Mailbox<Id> mailbox, MessageRange range, Flags f, long modSeq) throws MailboxException {
-        IndexSearcher searcher = null;
+        String mailboxId = mailbox.getMailboxId().serialize();
         try {
-            searcher = new IndexSearcher(IndexReader.open(writer, true));
-            BooleanQuery query = new BooleanQuery();
-            query.add(new TermQuery(new Term(MAILBOX_ID_FIELD, mailbox.getMailboxId().serialize())), BooleanClause.Occur.MUST);
-            query.add(createQuery(range), BooleanClause.Occur.MUST);
-            query.add( new PrefixQuery(new Term(FLAGS_FIELD, "")), BooleanClause.Occur.MUST);
-
-            TopDocs docs = searcher.search(query, 100000);
-            ScoreDoc[] sDocs = docs.scoreDocs;
-            for (int i = 0; i < sDocs.length; i++) {
-                Document doc = searcher.doc(sDocs[i].doc);
-                
-                if (doc.getFieldable(FLAGS_FIELD) == null) {
-                    doc.removeFields(FLAGS_FIELD);
-                    indexFlags(doc, f);
+            if (range.getType() == MessageRange.Type.ONE) {
+                changed(updateFlagsDocument(mailboxId, range.getUidFrom(), f));
+                return;
+            }
 
-                    writer.updateDocument(new Term(ID_FIELD, doc.get(ID_FIELD)), doc);
-            
+            List<Long> uids = new ArrayList<Long>();
+            IndexSearcher searcher = null;
+            try {
+                searcher = acquireSearcher();
+                BooleanQuery query = new BooleanQuery();
+                query.add(new TermQuery(new Term(MAILBOX_ID_FIELD, mailboxId)), BooleanClause.Occur.MUST);
+                query.add(createQuery(range), BooleanClause.Occur.MUST);
+                query.add( new PrefixQuery(new Term(FLAGS_FIELD, "")), BooleanClause.Occur.MUST);
+
+                TopDocs docs = searcher.search(query, 100000);
+                ScoreDoc[] sDocs = docs.scoreDocs;
+                for (int i = 0; i < sDocs.length; i++) {
+                    uids.add(Long.valueOf(searcher.doc(sDocs[i].doc).get(UID_FIELD)));
                 }
+            } finally {
+                releaseSearcher(searcher);
+            }
+
+            for (int i = 0; i < uids.size(); i++) {
+                changed(updateFlagsDocument(mailboxId, uids.get(i), f));
             }
         } catch (IOException e) {
             throw new MailboxException("Unable to add messages in index", e);
+        }
+    }
 
-        } finally {
-            try {
-                IOUtils.closeWhileHandlingException(searcher);
-            } catch (IOException e) {
-                //can't happen anyway
+    /**
+     * Replace the flags documents of all given messages without searching
+     * for them first. Searches only wait for the whole batch to become
+     * visible.
+     * 
+     * @see org.apache.james.mailbox.store.search.ListeningMessageSearchIndex#update(org.apache.james.mailbox.MailboxSession, org.apache.james.mailbox.store.mail.model.Mailbox, java.util.List)
+     */
+    @Override
+    public void update(MailboxSession session, Mailbox<Id> mailbox, List<UpdatedFlags> updatedFlags) throws MailboxException {
+        if (updatedFlags.isEmpty()) {
+            return;
+        }
+        String mailboxId = mailbox.getMailboxId().serialize();
+        long generation = 0;
+        try {
+            for (int i = 0; i < updatedFlags.size(); i++) {
+                UpdatedFlags uFlags = updatedFlags.get(i);
+                generation = updateFlagsDocument(mailboxId, uFlags.getUid(), uFlags.getNewFlags());
             }
+        } catch (IOException e) {
+            throw new MailboxException("Unable to update flags in index", e);
+        } finally {
+            changed(generation);
         }
-        
     }
 
     /**
-     * Index the {@link Flags} and add it to the {@link Document}
+     * Replace the flags document of the message. As the flags are kept in
+     * their own small document this is a single write which does not need to
+     * read the old document.
      * 
+     * @param mailboxId
+     * @param uid
      * @param f
-     * @param doc
+     * @return generation of the change
+     * @throws IOException
+     */
+    private long updateFlagsDocument(String mailboxId, long uid, Flags f) throws IOException {
+        Document doc = createFlagsDocument(mailboxId, uid, f);
+        return trackingWriter.updateDocument(new Term(ID_FIELD, doc.get(ID_FIELD)), doc);
+    }
+
+    /**
+     * Create the {@link Document} which holds the {@link Flags} of a message
+     * 
+     * @param mailboxId
+     * @param uid
+     * @param f
+     * @return doc
      */
-    private Document createFlagsDocument(Message<?> message) {
+    private Document createFlagsDocument(String mailboxId, long uid, Flags f) {
         Document doc = new Document();
-        doc.add(new Field(ID_FIELD, "flags-" + message.getMailboxId().serialize() +"-" + Long.toString(message.getUid()), Store.YES, Index.NOT_ANALYZED));
-        doc.add(new Field(MAILBOX_ID_FIELD, message.getMailboxId().serialize(), Store.YES, Index.NOT_ANALYZED));
-        doc.add(new NumericField(UID_FIELD,Store.YES, true).setLongValue(message.getUid()));
+        doc.add(new Field(ID_FIELD, "flags-" + mailboxId +"-" + Long.toString(uid), Store.YES, Index.NOT_ANALYZED));
+        doc.add(new Field(MAILBOX_ID_FIELD, mailboxId, Store.YES, Index.NOT_ANALYZED));
+        doc.add(new NumericField(UID_FIELD,Store.YES, true).setLongValue(uid));
         
-        indexFlags(doc, message.createFlags());
+        indexFlags(doc, f);
         return doc;
     }
     
@@ -1299,7 +1513,7 @@ public class LuceneMessageSearchIndex<Id extends MailboxId> extends ListeningMes
         query.add(createQuery(range), BooleanClause.Occur.MUST);
         
         try {
-            writer.deleteDocuments(query);
+            changed(trackingWriter.deleteDocuments(query));
         } catch (CorruptIndexException e) {
             throw new MailboxException("Unable to delete message from index", e);
 
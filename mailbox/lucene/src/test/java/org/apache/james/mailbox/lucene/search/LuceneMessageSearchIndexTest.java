@@ -35,8 +35,10 @@ import javax.mail.Flags;
 import javax.mail.Flags.Flag;
 
 import org.apache.james.mailbox.model.MailboxACL;
+import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.SearchQuery;
 import org.apache.james.mailbox.model.SimpleMailboxACL;
+import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.model.SearchQuery.AddressType;
 import org.apache.james.mailbox.model.SearchQuery.DateResolution;
 import org.apache.james.mailbox.model.SearchQuery.Sort.SortClause;
@@ -45,7 +47,9 @@ import org.apache.james.mailbox.store.SimpleMailboxMembership;
 import org.apache.james.mailbox.store.TestId;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.Message;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -125,6 +129,11 @@ public class LuceneMessageSearchIndexTest {
         index.add(null, mailbox3, builder.build());
                 
     }
+
+    @After
+    public void tearDown() throws Exception {
+        index.close();
+    }
     
 
 
@@ -704,6 +713,81 @@ public class LuceneMessageSearchIndexTest {
         assertEquals(3L, it4.next().longValue());
         assertFalse(it4.hasNext());
     }
+
+    @Test
+    public void testUpdatedFlagsShouldBeSearchable() throws Exception {
+        index.update(null, mailbox, MessageRange.one(2), new Flags(Flag.SEEN), 1);
+
+        SearchQuery q = new SearchQuery();
+        q.andCriteria(SearchQuery.flagIsSet(Flag.SEEN));
+        Iterator<Long> it = index.search(null, mailbox, q);
+        assertEquals(2L, it.next().longValue());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testBatchUpdatedFlagsShouldBeSearchable() throws Exception {
+        index.update(null, mailbox, Arrays.asList(
+                new UpdatedFlags(1, 1, new Flags(Flag.ANSWERED), new Flags(Flag.SEEN)),
+                new UpdatedFlags(3, 1, new Flags(Flag.DELETED), new Flags(Flag.SEEN))));
+
+        SearchQuery q = new SearchQuery();
+        q.andCriteria(SearchQuery.flagIsSet(Flag.SEEN));
+        Iterator<Long> it = index.search(null, mailbox, q);
+        assertEquals(1L, it.next().longValue());
+        assertEquals(3L, it.next().longValue());
+        assertFalse(it.hasNext());
+
+        q = new SearchQuery();
+        q.andCriteria(SearchQuery.flagIsSet(Flag.DELETED));
+        it = index.search(null, mailbox, q);
+        assertEquals(2L, it.next().longValue());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testUpdatedFlagsOfRangeShouldBeSearchable() throws Exception {
+        index.update(null, mailbox, MessageRange.from(2), new Flags(Flag.FLAGGED), 1);
+
+        SearchQuery q = new SearchQuery();
+        q.andCriteria(SearchQuery.flagIsSet(Flag.FLAGGED));
+        Iterator<Long> it = index.search(null, mailbox, q);
+        assertEquals(2L, it.next().longValue());
+        assertEquals(3L, it.next().longValue());
+        assertFalse(it.hasNext());
+
+        // the updated flags documents must still be found by uid
+        index.update(null, mailbox, MessageRange.one(3), new Flags(), 2);
+        it = index.search(null, mailbox, q);
+        assertEquals(2L, it.next().longValue());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testDeletedMessagesShouldNotBeSearchable() throws Exception {
+        index.delete(null, mailbox, MessageRange.one(2));
+
+        Iterator<Long> it = index.search(null, mailbox, new SearchQuery());
+        assertEquals(1L, it.next().longValue());
+        assertEquals(3L, it.next().longValue());
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testCloseShouldCommitChanges() throws Exception {
+        RAMDirectory directory = new RAMDirectory();
+        LuceneMessageSearchIndex<TestId> index = new LuceneMessageSearchIndex<TestId>(null, directory, true, useLenient());
+        index.add(null, mailbox, new SimpleMailboxMembership(mailbox.getMailboxId(), 1, 0, new Date(), 20, new Flags(), "My Body".getBytes(), new HashMap<String, String>()));
+        index.close();
+
+        IndexReader reader = IndexReader.open(directory);
+        try {
+            // the message and its flags document
+            assertEquals(2, reader.numDocs());
+        } finally {
+            reader.close();
+        }
+    }
     
     private final class SimpleMailbox implements Mailbox<TestId> {
         private TestId id;
@@ -107,5 +107,25 @@ public class InMemoryMailboxManagerTest extends AbstractMailboxManagerTest {
         assertThat(metaDatas).hasSize(1);
         assertThat(metaDatas.get(0).getPath()).isEqualTo(MailboxPath.inbox(session));
     }
+
+    @Test
+    public void searchShouldTellWhichMailboxesHaveChildren() throws Exception {
+        MailboxPath inbox = MailboxPath.inbox(session);
+        MailboxPath other = new MailboxPath("#private", USER_1, "Other");
+        getMailboxManager().createMailbox(inbox, session);
+        getMailboxManager().createMailbox(new MailboxPath(inbox, inbox.getName() + ".child"), session);
+        getMailboxManager().createMailbox(other, session);
+        getMailboxManager().createMailbox(new MailboxPath("#private", USER_2, "Other.child"), session);
+        List<MailboxMetaData> metaDatas = getMailboxManager().search(new MailboxQuery(new MailboxPath("#private", USER_1, ""), "%", '.'), session);
+        assertThat(metaDatas).hasSize(2);
+        for (MailboxMetaData metaData : metaDatas) {
+            if (metaData.getPath().equals(inbox)) {
+                assertThat(metaData.inferiors()).isEqualTo(MailboxMetaData.Children.HAS_CHILDREN);
+            } else {
+                assertThat(metaData.getPath()).isEqualTo(other);
+                assertThat(metaData.inferiors()).isEqualTo(MailboxMetaData.Children.HAS_NO_CHILDREN);
+            }
+        }
+    }
     
 }
@@ -18,20 +18,44 @@
  ****************************************************************/
 package org.apache.james.mailbox.store;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.james.mailbox.MailboxListener;
 import org.apache.james.mailbox.MailboxListenerSupport;
 import org.apache.james.mailbox.MailboxSession;
 import org.apache.james.mailbox.exception.MailboxException;
 import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.mailbox.store.event.AsynchronousEventDelivery;
+import org.apache.james.mailbox.store.event.AsynchronousMailboxListener;
 
+/**
+ * Dispatch the {@link org.apache.james.mailbox.MailboxListener.Event}s to the {@link MailboxListener}s registered for
+ * their mailbox and to the global ones.
+ * <p>
+ * Listeners are kept in copy-on-write lists, so that events are dispatched without holding any lock: registering
+ * or removing a listener never blocks the dispatch of events, and events of different mailboxes do not contend.
+ * Only the changes to the registrations (including the ones triggered by a mailbox deletion or renaming) are
+ * serialized.
+ * <p>
+ * If an {@link AsynchronousEventDelivery} is set, the {@link AsynchronousMailboxListener}s get their events through it
+ * instead of being called by the thread which fired the event.
+ */
 public abstract class AbstractDelegatingMailboxListener implements MailboxListener, MailboxListenerSupport{
     
+    private volatile AsynchronousEventDelivery asynchronousEventDelivery;
+
     protected AbstractDelegatingMailboxListener() {
     }
+
+    /**
+     * Set the {@link AsynchronousEventDelivery} used for the {@link AsynchronousMailboxListener}s. If none is set, all
+     * the listeners are called synchronously.
+     */
+    public void setAsynchronousEventDelivery(AsynchronousEventDelivery asynchronousEventDelivery) {
+        this.asynchronousEventDelivery = asynchronousEventDelivery;
+    }
     
     /**
      * Receive the event and dispatch it to the right {@link MailboxListener} depending on
@@ -39,77 +63,64 @@ public abstract class AbstractDelegatingMailboxListener implements MailboxListen
      */
     public void event(Event event) {
         MailboxPath path = event.getMailboxPath();
-        Map<MailboxPath, List<MailboxListener>> listeners = getListeners();
-        List<MailboxListener> mListeners = null;
-        synchronized (listeners) {
-            mListeners = listeners.get(path);
-            if (mListeners != null && mListeners.isEmpty() == false) {
-             // take snapshot of the listeners list for later
-                mListeners = new ArrayList<MailboxListener>(mListeners);
-                
-                if (event instanceof MailboxDeletion) {
-                    // remove listeners if the mailbox was deleted
-                    listeners.remove(path);
-                } else if (event instanceof MailboxRenamed) {
-                    // handle rename events
-                    MailboxRenamed renamed = (MailboxRenamed) event;
-                    List<MailboxListener> l = listeners.remove(path);
-                    if (l != null) {
-                        listeners.put(renamed.getNewPath(), l);
-                    }
+        ConcurrentMap<MailboxPath, CopyOnWriteArrayList<MailboxListener>> listeners = getListeners();
+        CopyOnWriteArrayList<MailboxListener> mListeners;
+        if (event instanceof MailboxDeletion) {
+            synchronized (listeners) {
+                // remove listeners if the mailbox was deleted
+                mListeners = listeners.remove(path);
+            }
+        } else if (event instanceof MailboxRenamed) {
+            synchronized (listeners) {
+                // handle rename events
+                mListeners = listeners.remove(path);
+                if (mListeners != null) {
+                    listeners.put(((MailboxRenamed) event).getNewPath(), mListeners);
                 }
-                
             }
-            
+        } else {
+            mListeners = listeners.get(path);
         }
-        //outside the synchronized block against deadlocks from propagated events wanting to lock the listeners
+
+        // iterating a copy-on-write list works on a snapshot, so listeners can be added or removed meanwhile
         if (mListeners != null) {
-            int sz = mListeners.size();
-            for (int i = 0; i < sz; i++) {
-                MailboxListener l = mListeners.get(i);
-                l.event(event);
+            for (MailboxListener l : mListeners) {
+                dispatch(l, event);
             }
         }
-        
+
         List<MailboxListener> globalListeners = getGlobalListeners();
         if (globalListeners != null) {
-            synchronized (globalListeners) {
-                if (globalListeners.isEmpty() == false) {
-                    List<MailboxListener> closedListener = new ArrayList<MailboxListener>();
-                    //TODO do not fire them inside synchronized block too?
-                    int sz = globalListeners.size();
-                    for (int i = 0; i < sz; i++) {
-                        MailboxListener l = globalListeners.get(i);
-                        l.event(event);
-                        
-                    }
-                    
-                  
-                    if (closedListener.isEmpty() == false) {
-                        globalListeners.removeAll(closedListener);
-                    }
-                }
+            for (MailboxListener l : globalListeners) {
+                dispatch(l, event);
             }
         }
-        
+    }
+
+    private void dispatch(MailboxListener listener, Event event) {
+        AsynchronousEventDelivery delivery = asynchronousEventDelivery;
+        if (delivery != null && listener instanceof AsynchronousMailboxListener) {
+            delivery.deliver(listener, event);
+        } else {
+            listener.event(event);
+        }
     }
     
     /**
      * @see org.apache.james.mailbox.MailboxListenerSupport#addListener(org.apache.james.mailbox.model.MailboxPath, org.apache.james.mailbox.MailboxListener, org.apache.james.mailbox.MailboxSession)
      */
     public void addListener(MailboxPath path, MailboxListener listener, MailboxSession session) throws MailboxException {
-        Map<MailboxPath, List<MailboxListener>> listeners = getListeners();
+        ConcurrentMap<MailboxPath, CopyOnWriteArrayList<MailboxListener>> listeners = getListeners();
         
         if (listeners != null) {
+            // only guards against concurrent registration changes, events are dispatched without this lock
             synchronized (listeners) {
-                List<MailboxListener> mListeners = listeners.get(path);
+                CopyOnWriteArrayList<MailboxListener> mListeners = listeners.get(path);
                 if (mListeners == null) {
-                    mListeners = new ArrayList<MailboxListener>();
+                    mListeners = new CopyOnWriteArrayList<MailboxListener>();
                     listeners.put(path, mListeners);
                 }
-                if (mListeners.contains(listener) == false) {
-                    mListeners.add(listener);
-                }        
+                mListeners.addIfAbsent(listener);
             }
         } else {
             throw new MailboxException("Cannot add MailboxListener to null list");
@@ -123,9 +134,7 @@ public abstract class AbstractDelegatingMailboxListener implements MailboxListen
         List<MailboxListener> gListeners = getGlobalListeners();
         
         if (gListeners != null) {
-            synchronized (gListeners) {
-                gListeners.add(listener);
-            }
+            gListeners.add(listener);
         } else {
             throw new MailboxException("Cannot add MailboxListener to null list");
         }
@@ -135,11 +144,11 @@ public abstract class AbstractDelegatingMailboxListener implements MailboxListen
      * @see org.apache.james.mailbox.MailboxListenerSupport#removeListener(org.apache.james.mailbox.model.MailboxPath, org.apache.james.mailbox.MailboxListener, org.apache.james.mailbox.MailboxSession)
      */
     public void removeListener(MailboxPath mailboxPath, MailboxListener listener, MailboxSession session) throws MailboxException {
-        Map<MailboxPath, List<MailboxListener>> listeners = getListeners();
+        ConcurrentMap<MailboxPath, CopyOnWriteArrayList<MailboxListener>> listeners = getListeners();
         
         if (listeners != null) {
             synchronized (listeners) {
-                List<MailboxListener> mListeners = listeners.get(mailboxPath);
+                CopyOnWriteArrayList<MailboxListener> mListeners = listeners.get(mailboxPath);
                 if (mListeners != null) {
                     mListeners.remove(listener);
                     if (mListeners.isEmpty()) {
@@ -159,27 +168,25 @@ public abstract class AbstractDelegatingMailboxListener implements MailboxListen
         List<MailboxListener> gListeners = getGlobalListeners();
 
         if (gListeners != null) {
-            synchronized (gListeners) {
-                gListeners.remove(listener);
-            }
+            gListeners.remove(listener);
         } else {
             throw new MailboxException("Cannot remove MailboxListener from null list");
         }
     }
 
     /**
-     * Return the {@link Map} which is used to store the {@link MailboxListener}
+     * Return the {@link ConcurrentMap} which is used to store the {@link MailboxListener}
      * 
      * @return listeners
      */
-    protected abstract Map<MailboxPath, List<MailboxListener>> getListeners();
+    protected abstract ConcurrentMap<MailboxPath, CopyOnWriteArrayList<MailboxListener>> getListeners();
     
     /**
-     * Return the {@link List} which is used tos tore the global {@link MailboxListener}
+     * Return the {@link CopyOnWriteArrayList} which is used to store the global {@link MailboxListener}
      * 
      * @return globalListeners
      */
-    protected abstract List<MailboxListener> getGlobalListeners();
+    protected abstract CopyOnWriteArrayList<MailboxListener> getGlobalListeners();
     
     
 }
@@ -19,10 +19,9 @@
 
 package org.apache.james.mailbox.store;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.james.mailbox.MailboxListener;
 import org.apache.james.mailbox.model.MailboxPath;
@@ -34,16 +33,16 @@ import org.apache.james.mailbox.model.MailboxPath;
  */
 public class HashMapDelegatingMailboxListener extends AbstractDelegatingMailboxListener{
 
-    private Map<MailboxPath, List<MailboxListener>> listeners = new HashMap<MailboxPath, List<MailboxListener>>();
-    private List<MailboxListener> globalListeners = new ArrayList<MailboxListener>();
+    private final ConcurrentMap<MailboxPath, CopyOnWriteArrayList<MailboxListener>> listeners = new ConcurrentHashMap<MailboxPath, CopyOnWriteArrayList<MailboxListener>>();
+    private final CopyOnWriteArrayList<MailboxListener> globalListeners = new CopyOnWriteArrayList<MailboxListener>();
 
     @Override
-    protected Map<MailboxPath, List<MailboxListener>> getListeners() {
+    protected ConcurrentMap<MailboxPath, CopyOnWriteArrayList<MailboxListener>> getListeners() {
         return listeners;
     }
 
     @Override
-    protected List<MailboxListener> getGlobalListeners() {
+    protected CopyOnWriteArrayList<MailboxListener> getGlobalListeners() {
         return globalListeners;
     }
     
@@ -21,6 +21,7 @@ package org.apache.james.mailbox.store;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -65,6 +66,15 @@ public class LazyMimeDescriptor implements MimeDescriptor{
         }
     }
 
+    @Override
+    public List<ByteBuffer> asByteBuffers() throws IOException {
+        try {
+            return result.getHeaders().asByteBuffers();
+        } catch (MailboxException e) {
+            throw new IOException("Unable to retrieve content", e);
+        }
+    }
+
     @Override
     public long size() throws MailboxException {
         return result.getHeaders().size();
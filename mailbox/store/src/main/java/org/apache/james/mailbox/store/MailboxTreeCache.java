@@ -0,0 +1,133 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.mailbox.store.mail.MailboxMapper;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
+
+/**
+ * Cache of the mailbox names of each user, sorted so that a LIST pattern and the children of a mailbox are
+ * answered without querying the {@link MailboxMapper} again.
+ * <p/>
+ * The tree of a user is loaded with a single {@link MailboxMapper#findMailboxWithPathLike(MailboxPath)} call and is
+ * dropped whenever one of its mailboxes is added, deleted or renamed. It must therefore be registered as a global
+ * listener of the {@link StoreMailboxManager}, and only be used when all the mailbox changes go through it: mailboxes
+ * created by another server would not be seen until the tree is evicted. Only the trees of the last used
+ * <code>maxUsers</code> users are kept.
+ */
+public class MailboxTreeCache implements MailboxListener {
+
+    public static final int DEFAULT_MAX_USERS = 1000;
+
+    private final Map<MailboxPath, NavigableSet<String>> trees;
+    private long invalidations = 0;
+
+    public MailboxTreeCache() {
+        this(DEFAULT_MAX_USERS);
+    }
+
+    public MailboxTreeCache(final int maxUsers) {
+        this.trees = new LinkedHashMap<MailboxPath, NavigableSet<String>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MailboxPath, NavigableSet<String>> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    /**
+     * Return the sorted names of all the mailboxes of the namespace and user of the given path. The returned set
+     * must not be modified.
+     */
+    public NavigableSet<String> getMailboxNames(MailboxPath base, MailboxMapper<?> mapper) throws MailboxException {
+        MailboxPath key = key(base);
+        long loadedAt;
+        synchronized (trees) {
+            NavigableSet<String> tree = trees.get(key);
+            if (tree != null) {
+                return tree;
+            }
+            loadedAt = invalidations;
+        }
+
+        NavigableSet<String> tree = new TreeSet<String>();
+        List<? extends Mailbox<?>> mailboxes = mapper.findMailboxWithPathLike(new MailboxPath(key, String.valueOf(StoreMailboxManager.SQL_WILDCARD_CHAR)));
+        for (Mailbox<?> mailbox : mailboxes) {
+            if (belongsTo(key, mailbox)) {
+                tree.add(mailbox.getName());
+            }
+        }
+
+        synchronized (trees) {
+            // do not cache a tree which may have missed a change done while it was loaded
+            if (loadedAt == invalidations) {
+                trees.put(key, tree);
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Return true if the given tree holds a child of the given mailbox
+     */
+    public static boolean hasChildren(NavigableSet<String> tree, String name, char delimiter) {
+        String prefix = name + delimiter;
+        String next = tree.ceiling(prefix);
+        return next != null && next.startsWith(prefix);
+    }
+
+    @Override
+    public void event(Event event) {
+        if (event instanceof MailboxAdded || event instanceof MailboxDeletion) {
+            invalidate(event.getMailboxPath());
+        } else if (event instanceof MailboxRenamed) {
+            invalidate(event.getMailboxPath());
+            invalidate(((MailboxRenamed) event).getNewPath());
+        }
+    }
+
+    private void invalidate(MailboxPath path) {
+        synchronized (trees) {
+            invalidations++;
+            trees.remove(key(path));
+        }
+    }
+
+    private static MailboxPath key(MailboxPath path) {
+        return new MailboxPath(path.getNamespace(), path.getUser(), "");
+    }
+
+    private static boolean belongsTo(MailboxPath key, Mailbox<?> mailbox) {
+        if (mailbox.getUser() == null) {
+            return key.getUser() == null && mailbox.getNamespace().equals(key.getNamespace());
+        }
+        return mailbox.getNamespace().equals(key.getNamespace()) && mailbox.getUser().equals(key.getUser());
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.james.mailbox.store;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -35,6 +36,8 @@ import org.apache.james.mailbox.model.Headers;
 import org.apache.james.mailbox.model.MessageResult;
 import org.apache.james.mailbox.model.MimeDescriptor;
 import org.apache.james.mailbox.store.mail.model.Message;
+import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
+import org.apache.james.mailbox.store.streaming.ExposedSharedByteArrayInputStream;
 import org.apache.james.mailbox.store.streaming.InputStreamContent;
 import org.apache.james.mailbox.store.streaming.InputStreamContent.Type;
 import org.apache.james.mime4j.MimeException;
@@ -343,7 +346,13 @@ public class MessageResultImpl implements MessageResult {
         if (mimeDescriptor == null) {
             try {
                 if (MimeDescriptorImpl.isComposite(message.getMediaType())) {
-                    mimeDescriptor = MimeDescriptorImpl.build(getFullContent().getInputStream());
+                    // use the structure computed on append if possible
+                    final String structure = new PropertyBuilder(message.getProperties()).getMimeStructure();
+                    if (structure != null) {
+                        mimeDescriptor = MimeDescriptorCodec.decode(structure);
+                    } else {
+                        mimeDescriptor = MimeDescriptorImpl.build(getFullContent().getInputStream());
+                    }
                 } else {
                     mimeDescriptor = new LazyMimeDescriptor(this, message);
                 }
@@ -401,6 +410,11 @@ public class MessageResultImpl implements MessageResult {
             return msg.getHeaderContent();
         }
 
+        @Override
+        public List<ByteBuffer> asByteBuffers() throws IOException {
+            return ExposedSharedByteArrayInputStream.asByteBuffers(msg.getHeaderContent());
+        }
+
         @Override
         public long size() {
             return msg.getFullContentOctets() - msg.getBodyOctets();
@@ -0,0 +1,259 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.LinkedHashMap;
+
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MessageResult;
+import org.apache.james.mailbox.model.MimeDescriptor;
+
+/**
+ * Encodes a {@link MimeDescriptor} tree to a compact {@link String} and back.
+ * 
+ * This allows to compute the structure of a message once when it is appended
+ * and to store it together with the message properties, so BODYSTRUCTURE and
+ * related fetches do not need to read and parse the full content again.
+ * 
+ * Strings are written as <code>length:chars</code> (or <code>-</code> for
+ * null), numbers and counts are terminated by <code>;</code>. No escaping is
+ * needed so the encoding is fast and only slightly bigger than the data.
+ */
+public class MimeDescriptorCodec {
+
+    private final static char NULL = '-';
+    private final static char LENGTH_END = ':';
+    private final static char NUMBER_END = ';';
+
+    private MimeDescriptorCodec() {
+    }
+
+    /**
+     * Encode the given descriptor including all its parts and embedded
+     * messages
+     * 
+     * @param descriptor
+     * @return encoded
+     * @throws MailboxException
+     */
+    public static String encode(MimeDescriptor descriptor) throws MailboxException {
+        StringBuilder sb = new StringBuilder(512);
+        encode(descriptor, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Decode the given value which was produced by
+     * {@link #encode(MimeDescriptor)}
+     * 
+     * @param encoded
+     * @return descriptor
+     * @throws MailboxException
+     *             if the value is malformed
+     */
+    public static MimeDescriptorImpl decode(String encoded) throws MailboxException {
+        Reader reader = new Reader(encoded);
+        try {
+            MimeDescriptorImpl descriptor = reader.readDescriptor();
+            if (reader.pos != encoded.length()) {
+                throw new MailboxException("Trailing data in encoded mime structure");
+            }
+            return descriptor;
+        } catch (IndexOutOfBoundsException e) {
+            throw new MailboxException("Truncated mime structure", e);
+        } catch (NumberFormatException e) {
+            throw new MailboxException("Malformed mime structure", e);
+        }
+    }
+
+    private static void encode(MimeDescriptor descriptor, StringBuilder sb) throws MailboxException {
+        writeNumber(descriptor.getBodyOctets(), sb);
+        writeNumber(descriptor.getLines(), sb);
+        writeString(descriptor.getMimeType(), sb);
+        writeString(descriptor.getMimeSubType(), sb);
+        writeString(descriptor.getContentID(), sb);
+        writeString(descriptor.getContentDescription(), sb);
+        writeString(descriptor.getContentLocation(), sb);
+        writeString(descriptor.getContentMD5(), sb);
+        writeString(descriptor.getTransferContentEncoding(), sb);
+        writeString(descriptor.getDisposition(), sb);
+
+        List<MessageResult.Header> headers = new ArrayList<MessageResult.Header>();
+        for (Iterator<MessageResult.Header> it = descriptor.headers(); it.hasNext();) {
+            headers.add(it.next());
+        }
+        writeNumber(headers.size(), sb);
+        for (MessageResult.Header header : headers) {
+            writeString(header.getName(), sb);
+            writeString(header.getValue(), sb);
+        }
+
+        writeMap(descriptor.contentTypeParameters(), sb);
+        writeMap(descriptor.getDispositionParams(), sb);
+
+        List<String> languages = descriptor.getLanguages();
+        if (languages == null) {
+            sb.append(NULL);
+        } else {
+            writeNumber(languages.size(), sb);
+            for (String language : languages) {
+                writeString(language, sb);
+            }
+        }
+
+        MimeDescriptor embedded = descriptor.embeddedMessage();
+        if (embedded == null) {
+            sb.append(NULL);
+        } else {
+            writeNumber(1, sb);
+            encode(embedded, sb);
+        }
+
+        List<MimeDescriptor> parts = new ArrayList<MimeDescriptor>();
+        for (Iterator<MimeDescriptor> it = descriptor.parts(); it.hasNext();) {
+            parts.add(it.next());
+        }
+        writeNumber(parts.size(), sb);
+        for (MimeDescriptor part : parts) {
+            encode(part, sb);
+        }
+    }
+
+    private static void writeMap(Map<String, String> map, StringBuilder sb) {
+        if (map == null) {
+            sb.append(NULL);
+            return;
+        }
+        writeNumber(map.size(), sb);
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writeString(entry.getKey(), sb);
+            writeString(entry.getValue(), sb);
+        }
+    }
+
+    private static void writeNumber(long value, StringBuilder sb) {
+        sb.append(value).append(NUMBER_END);
+    }
+
+    private static void writeString(String value, StringBuilder sb) {
+        if (value == null) {
+            sb.append(NULL);
+        } else {
+            sb.append(value.length()).append(LENGTH_END).append(value);
+        }
+    }
+
+    private static final class Reader {
+        private final String encoded;
+        private int pos = 0;
+
+        private Reader(String encoded) {
+            this.encoded = encoded;
+        }
+
+        private MimeDescriptorImpl readDescriptor() throws MailboxException {
+            long bodyOctets = readNumber();
+            long lines = readNumber();
+            String type = readString();
+            String subType = readString();
+            String contentId = readString();
+            String contentDescription = readString();
+            String location = readString();
+            String md5 = readString();
+            String transferEncoding = readString();
+            String disposition = readString();
+
+            int headerCount = (int) readNumber();
+            Collection<MessageResult.Header> headers = new ArrayList<MessageResult.Header>(headerCount);
+            for (int i = 0; i < headerCount; i++) {
+                headers.add(new ResultHeader(readString(), readString()));
+            }
+
+            Map<String, String> contentTypeParameters = readMap();
+            Map<String, String> dispositionParams = readMap();
+
+            List<String> languages = null;
+            if (!readNull()) {
+                int count = (int) readNumber();
+                languages = new ArrayList<String>(count);
+                for (int i = 0; i < count; i++) {
+                    languages.add(readString());
+                }
+            }
+
+            MimeDescriptor embedded = null;
+            if (!readNull()) {
+                readNumber();
+                embedded = readDescriptor();
+            }
+
+            int partCount = (int) readNumber();
+            Collection<MimeDescriptor> parts = new ArrayList<MimeDescriptor>(partCount);
+            for (int i = 0; i < partCount; i++) {
+                parts.add(readDescriptor());
+            }
+
+            return new MimeDescriptorImpl(bodyOctets, contentDescription, contentId, lines, subType, type,
+                    transferEncoding, headers, contentTypeParameters, languages, disposition, dispositionParams,
+                    embedded, parts, location, md5);
+        }
+
+        private Map<String, String> readMap() {
+            if (readNull()) {
+                return null;
+            }
+            int count = (int) readNumber();
+            Map<String, String> map = new LinkedHashMap<String, String>();
+            for (int i = 0; i < count; i++) {
+                map.put(readString(), readString());
+            }
+            return map;
+        }
+
+        private boolean readNull() {
+            if (encoded.charAt(pos) == NULL) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private long readNumber() {
+            int end = encoded.indexOf(NUMBER_END, pos);
+            long value = Long.parseLong(encoded.substring(pos, end));
+            pos = end + 1;
+            return value;
+        }
+
+        private String readString() {
+            if (readNull()) {
+                return null;
+            }
+            int end = encoded.indexOf(LENGTH_END, pos);
+            int length = Integer.parseInt(encoded.substring(pos, end));
+            pos = end + 1 + length;
+            return encoded.substring(end + 1, pos);
+        }
+    }
+}
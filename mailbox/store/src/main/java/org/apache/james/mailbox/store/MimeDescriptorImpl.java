@@ -22,9 +22,11 @@ package org.apache.james.mailbox.store;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -322,6 +324,15 @@ public class MimeDescriptorImpl implements MimeDescriptor {
 
     @Override
     public InputStream getInputStream() throws IOException {
+        return new ByteArrayInputStream(headerBytes());
+    }
+
+    @Override
+    public List<ByteBuffer> asByteBuffers() throws IOException {
+        return Collections.singletonList(ByteBuffer.wrap(headerBytes()));
+    }
+
+    private byte[] headerBytes() throws IOException {
         StringBuilder sb = new StringBuilder();
         Iterator<MessageResult.Header> hIt = headers.iterator();
         while(hIt.hasNext()) {
@@ -333,7 +344,7 @@ public class MimeDescriptorImpl implements MimeDescriptor {
             }
         }
         sb.append("\r\n");
-        return new ByteArrayInputStream(sb.toString().getBytes(US_ASCII));
+        return sb.toString().getBytes(US_ASCII);
     }
 
     @Override
@@ -25,7 +25,10 @@ package org.apache.james.mailbox.store;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.james.mailbox.exception.MailboxException;
 import org.apache.james.mailbox.model.MessageResult;
@@ -75,4 +78,11 @@ public final class ResultHeader implements MessageResult.Header {
     public InputStream getInputStream() throws IOException {
         return new ByteArrayInputStream((name + ": " + value).getBytes(US_ASCII));
     }
+
+    /**
+     * @see org.apache.james.mailbox.model.Content#asByteBuffers()
+     */
+    public List<ByteBuffer> asByteBuffers() {
+        return Collections.singletonList(ByteBuffer.wrap((name + ": " + value).getBytes(US_ASCII)));
+    }
 }
\ No newline at end of file
@@ -24,7 +24,9 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.NavigableSet;
 import java.util.Random;
+import java.util.TreeSet;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -55,6 +57,8 @@ import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.SimpleMailboxACL;
 import org.apache.james.mailbox.quota.QuotaManager;
 import org.apache.james.mailbox.quota.QuotaRootResolver;
+import org.apache.james.mailbox.store.event.AsynchronousEventDelivery;
+import org.apache.james.mailbox.store.event.AsynchronousMailboxListener;
 import org.apache.james.mailbox.store.mail.MailboxMapper;
 import org.apache.james.mailbox.store.mail.model.MailboxId;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
@@ -115,6 +119,10 @@ public class StoreMailboxManager<Id extends MailboxId> implements MailboxManager
 
     private int fetchBatchSize = DEFAULT_FETCH_BATCH_SIZE;
 
+    private AsynchronousEventDelivery asynchronousEventDelivery;
+
+    private MailboxTreeCache mailboxTreeCache;
+
 
     @Inject
     public StoreMailboxManager(MailboxSessionMapperFactory<Id> mailboxSessionMapperFactory, final Authenticator authenticator, final MailboxPathLocker locker, final MailboxACLResolver aclResolver, final GroupMembershipResolver groupMembershipResolver) {
@@ -157,6 +165,26 @@ public class StoreMailboxManager<Id extends MailboxId> implements MailboxManager
         this.fetchBatchSize = fetchBatchSize;
     }
 
+    /**
+     * Set the {@link AsynchronousEventDelivery} used to notify the {@link AsynchronousMailboxListener}s, like the
+     * {@link ListeningMessageSearchIndex}. By default all the listeners are notified synchronously.
+     *
+     * @param asynchronousEventDelivery
+     */
+    public void setAsynchronousEventDelivery(AsynchronousEventDelivery asynchronousEventDelivery) {
+        this.asynchronousEventDelivery = asynchronousEventDelivery;
+    }
+
+
+    /**
+     * Set the {@link MailboxTreeCache} used to answer {@link #search(MailboxQuery, MailboxSession)}. By default the
+     * {@link MailboxMapper} is queried for each search.
+     *
+     * @param mailboxTreeCache
+     */
+    public void setMailboxTreeCache(MailboxTreeCache mailboxTreeCache) {
+        this.mailboxTreeCache = mailboxTreeCache;
+    }
 
     /**
      * Init the {@link MailboxManager}
@@ -168,6 +196,9 @@ public class StoreMailboxManager<Id extends MailboxId> implements MailboxManager
     public void init() throws MailboxException {
         // The dispatcher need to have the delegating listener added
         dispatcher = new MailboxEventDispatcher<Id>(getDelegationListener());
+        if (asynchronousEventDelivery != null) {
+            getDelegationListener().setAsynchronousEventDelivery(asynchronousEventDelivery);
+        }
 
         if (index == null) {
             index = new SimpleMessageSearchIndex<Id>(mailboxSessionMapperFactory);
@@ -188,6 +219,9 @@ public class StoreMailboxManager<Id extends MailboxId> implements MailboxManager
         if (quotaUpdater != null && quotaUpdater instanceof MailboxListener) {
             this.addGlobalListener((MailboxListener) quotaUpdater, null);
         }
+        if (mailboxTreeCache != null) {
+            this.addGlobalListener(mailboxTreeCache, null);
+        }
     }
 
     /**
@@ -556,7 +590,11 @@ public class StoreMailboxManager<Id extends MailboxId> implements MailboxManager
         final MailboxPath search = new MailboxPath(mailboxExpression.getBase(), combinedName);
 
         final MailboxMapper<Id> mapper = mailboxSessionMapperFactory.getMailboxMapper(session);
+        if (mailboxTreeCache != null) {
+            return searchInTree(mailboxExpression, mailboxTreeCache.getMailboxNames(search, mapper), session.getPathDelimiter());
+        }
         final List<Mailbox<Id>> mailboxes = mapper.findMailboxWithPathLike(search);
+        final NavigableSet<String> children = findChildrenNames(mapper, search, session.getPathDelimiter());
         final List<MailboxMetaData> results = new ArrayList<MailboxMetaData>(mailboxes.size());
         for (Mailbox<Id> mailbox : mailboxes) {
             final String name = mailbox.getName();
@@ -565,7 +603,7 @@ public class StoreMailboxManager<Id extends MailboxId> implements MailboxManager
                     final String match = name.substring(baseLength);
                     if (mailboxExpression.isExpressionMatch(match)) {
                         final MailboxMetaData.Children inferiors;
-                        if (mapper.hasChildren(mailbox, session.getPathDelimiter())) {
+                        if (MailboxTreeCache.hasChildren(children, name, session.getPathDelimiter())) {
                             inferiors = MailboxMetaData.Children.HAS_CHILDREN;
                         } else {
                             inferiors = MailboxMetaData.Children.HAS_NO_CHILDREN;
@@ -580,6 +618,53 @@ public class StoreMailboxManager<Id extends MailboxId> implements MailboxManager
         return results;
     }
 
+    /**
+     * Return the sorted names of the mailboxes having a parent matching the given search. A single query answers
+     * whether each of the searched mailboxes has children, rather than one query per mailbox.
+     */
+    private NavigableSet<String> findChildrenNames(MailboxMapper<Id> mapper, MailboxPath search, char delimiter) throws MailboxException {
+        final MailboxPath childrenSearch = new MailboxPath(search, search.getName() + delimiter + SQL_WILDCARD_CHAR);
+        final NavigableSet<String> names = new TreeSet<String>();
+        for (Mailbox<Id> mailbox : mapper.findMailboxWithPathLike(childrenSearch)) {
+            if (belongsToNamespaceAndUser(search, mailbox)) {
+                names.add(mailbox.getName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Search the names of the given {@link MailboxTreeCache} tree. Only the names starting with the base name are
+     * visited.
+     */
+    private List<MailboxMetaData> searchInTree(MailboxQuery mailboxExpression, NavigableSet<String> tree, char delimiter) {
+        final MailboxPath base = mailboxExpression.getBase();
+        final String baseName;
+        if (base.getName() == null) {
+            baseName = "";
+        } else {
+            baseName = base.getName();
+        }
+        final List<MailboxMetaData> results = new ArrayList<MailboxMetaData>();
+        for (String name : tree.tailSet(baseName, true)) {
+            if (!name.startsWith(baseName)) {
+                break;
+            }
+            if (mailboxExpression.isExpressionMatch(name.substring(baseName.length()))) {
+                final MailboxMetaData.Children inferiors;
+                if (MailboxTreeCache.hasChildren(tree, name, delimiter)) {
+                    inferiors = MailboxMetaData.Children.HAS_CHILDREN;
+                } else {
+                    inferiors = MailboxMetaData.Children.HAS_NO_CHILDREN;
+                }
+                MailboxPath mailboxPath = new MailboxPath(base.getNamespace(), base.getUser(), name);
+                results.add(new SimpleMailboxMetaData(mailboxPath, getDelimiter(), inferiors, Selectability.NONE));
+            }
+        }
+        Collections.sort(results, new StandardMailboxMetaDataComparator());
+        return results;
+    }
+
     public boolean belongsToNamespaceAndUser(MailboxPath base, Mailbox<Id> mailbox) {
         if (mailbox.getUser() == null) {
             return  base.getUser() == null
@@ -19,8 +19,6 @@
 
 package org.apache.james.mailbox.store;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -34,10 +32,8 @@ import java.util.TreeMap;
 import javax.mail.Flags;
 import javax.mail.Flags.Flag;
 import javax.mail.internet.SharedInputStream;
-import javax.mail.util.SharedFileInputStream;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.input.TeeInputStream;
 import org.apache.james.mailbox.MailboxListener;
 import org.apache.james.mailbox.MailboxPathLocker;
 import org.apache.james.mailbox.MailboxSession;
@@ -72,6 +68,7 @@ import org.apache.james.mailbox.store.quota.QuotaChecker;
 import org.apache.james.mailbox.store.search.MessageSearchIndex;
 import org.apache.james.mailbox.store.streaming.BodyOffsetInputStream;
 import org.apache.james.mailbox.store.streaming.CountingInputStream;
+import org.apache.james.mailbox.store.streaming.MessageSpool;
 import org.apache.james.mailbox.store.transaction.Mapper;
 import org.apache.james.mime4j.MimeException;
 import org.apache.james.mime4j.message.DefaultBodyDescriptorBuilder;
@@ -111,6 +108,12 @@ public class StoreMessageManager<Id extends MailboxId> implements org.apache.jam
         MINIMAL_PERMANET_FLAGS.add(Flags.Flag.SEEN);
     }
 
+    /**
+     * Appended messages up to 100kb are spooled in memory, bigger ones to a
+     * temporary file
+     */
+    private final static int SPOOL_IN_MEMORY_THRESHOLD = 1024 * 100;
+
     private final Mailbox<Id> mailbox;
 
     private final MailboxEventDispatcher<Id> dispatcher;
@@ -250,26 +253,20 @@ public class StoreMessageManager<Id extends MailboxId> implements org.apache.jam
      */
     public long appendMessage(final InputStream msgIn, Date internalDate, final MailboxSession mailboxSession, final boolean isRecent, final Flags flagsToBeSet) throws MailboxException {
 
-        File file = null;
-        TeeInputStream tmpMsgIn = null;
+        MessageSpool spool = null;
         BodyOffsetInputStream bIn = null;
-        FileOutputStream out = null;
-        SharedFileInputStream contentIn = null;
 
         if (!isWriteable(mailboxSession)) {
             throw new ReadOnlyException(new StoreMailboxPath<Id>(getMailboxEntity()), mailboxSession.getPathDelimiter());
         }
 
         try {
-            // Create a temporary file and copy the message to it. We will work
-            // with the file as
-            // source for the InputStream
-            file = File.createTempFile("imap", ".msg");
-            out = new FileOutputStream(file);
+            // Spool the message while parsing it, so it can be read again
+            // without copying it a second time. Re-readable streams are used
+            // as they are
+            spool = new MessageSpool(msgIn, SPOOL_IN_MEMORY_THRESHOLD);
 
-            tmpMsgIn = new TeeInputStream(msgIn, out);
-
-            bIn = new BodyOffsetInputStream(tmpMsgIn);
+            bIn = new BodyOffsetInputStream(spool.getInputStream());
             // Disable line length... This should be handled by the smtp server
             // component and not the parser itself
             // https://issues.apache.org/jira/browse/IMAP-122
@@ -357,18 +354,17 @@ public class StoreMessageManager<Id extends MailboxId> implements org.apache.jam
             if (internalDate == null) {
                 internalDate = new Date();
             }
-            byte[] discard = new byte[4096];
-            while (tmpMsgIn.read(discard) != -1) {
-                // consume the rest of the stream so everything get copied to
-                // the file now
-                // via the TeeInputStream
+            final SharedInputStream contentIn = spool.getContent();
+            if (MimeDescriptorImpl.isComposite(mediaType)) {
+                // Store the structure so BODYSTRUCTURE and friends can be
+                // served later without reading and parsing the full content
+                propertyBuilder.setMimeStructure(buildMimeStructure(contentIn, mailboxSession));
             }
             int bodyStartOctet = (int) bIn.getBodyStartOffset();
             if (bodyStartOctet == -1) {
                 bodyStartOctet = 0;
             }
-            contentIn = new SharedFileInputStream(file);
-            final int size = (int) file.length();
+            final int size = (int) spool.getSize();
 
             final Message<Id> message = createMessage(internalDate, size, bodyStartOctet, contentIn, flags, propertyBuilder);
 
@@ -393,22 +389,38 @@ public class StoreMessageManager<Id extends MailboxId> implements org.apache.jam
             throw new MailboxException("Unable to parse message", e);
         } finally {
             IOUtils.closeQuietly(bIn);
-            IOUtils.closeQuietly(tmpMsgIn);
-            IOUtils.closeQuietly(out);
-            IOUtils.closeQuietly(contentIn);
-
-            // delete the temporary file if one was specified
-            if (file != null) {
-                if (!file.delete()) {
-                    // Don't throw an IOException. The message could be appended
-                    // and the temporary file
-                    // will be deleted hopefully some day
-                }
+            if (spool != null) {
+                spool.dispose();
             }
         }
 
     }
 
+    /**
+     * Parse the full MIME structure of the given message content.
+     * 
+     * @param content
+     * @param mailboxSession
+     * @return the encoded structure or null if it could not be parsed. In this
+     *         case it is parsed again when requested
+     */
+    private String buildMimeStructure(SharedInputStream content, MailboxSession mailboxSession) {
+        InputStream in = null;
+        try {
+            in = content.newStream(0, -1);
+            return MimeDescriptorCodec.encode(MimeDescriptorImpl.build(in));
+        } catch (IOException e) {
+            mailboxSession.getLog().debug("Unable to parse mime structure", e);
+        } catch (MimeException e) {
+            mailboxSession.getLog().debug("Unable to parse mime structure", e);
+        } catch (MailboxException e) {
+            mailboxSession.getLog().debug("Unable to encode mime structure", e);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+        return null;
+    }
+
     /**
      * Create a new {@link Message} for the given data
      * 
@@ -38,6 +38,7 @@ import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
 import org.apache.james.mailbox.store.mail.model.MailboxId;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.Message;
+import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
 
 public class StoreMessageResultIterator<Id extends MailboxId> implements MessageResultIterator {
 
@@ -72,7 +73,7 @@ public class StoreMessageResultIterator<Id extends MailboxId> implements Message
      * @param group
      * @return fetchType
      */
-    private static final FetchType getFetchType(FetchGroup group) {
+    static FetchType getFetchType(FetchGroup group) {
         int content = group.content();
         boolean headers = false;
         boolean body = false;
@@ -92,11 +93,18 @@ public class StoreMessageResultIterator<Id extends MailboxId> implements Message
             content -= FetchGroup.FULL_CONTENT;
         }
 
-        if ((content & FetchGroup.MIME_DESCRIPTOR) > 0) {
-            // If we need the mimedescriptor we MAY need the full content later
-            // too.
-            // This gives us no other choice then request it
+        if (hasPartContent(group)) {
+            // Parts are located by parsing the message from the start, so the
+            // full content is needed. The mappers stream it lazily, so only
+            // the bytes up to the requested part are read
             full = true;
+        }
+
+        if ((content & FetchGroup.MIME_DESCRIPTOR) > 0) {
+            // The structure of composite messages is stored on append, so
+            // the headers are enough. Messages without a stored structure
+            // are loaded again with their full content. See next()
+            headers = true;
             content -= FetchGroup.MIME_DESCRIPTOR;
         }
         if (full || (body && headers)) {
@@ -110,6 +118,10 @@ public class StoreMessageResultIterator<Id extends MailboxId> implements Message
         }
     }
 
+    private static boolean hasPartContent(FetchGroup group) {
+        return group.getPartContentDescriptors() != null && !group.getPartContentDescriptors().isEmpty();
+    }
+
     @Override
     public boolean hasNext() {
         if (cursor > to) 
@@ -153,9 +165,12 @@ public class StoreMessageResultIterator<Id extends MailboxId> implements Message
         if (next == null || !next.hasNext())
           throw new NoSuchElementException();
         
-        final Message<Id> message = next.next();
+        Message<Id> message = next.next();
         MessageResult result;
         try {
+            if (needsFullContentForMimeDescriptor(message)) {
+                message = loadFullContent(message);
+            }
             result = ResultUtils.loadMessageResult(message, group);
             cursor = result.getUid();
         } catch (MailboxException e) {
@@ -166,6 +181,25 @@ public class StoreMessageResultIterator<Id extends MailboxId> implements Message
         return result;
     }
 
+    /**
+     * Return true if the {@link MimeDescriptor} of the message needs to be
+     * parsed from the full content, but only the headers were fetched
+     */
+    private boolean needsFullContentForMimeDescriptor(Message<Id> message) {
+        return ftype != FetchType.Full
+                && (group.content() & FetchGroup.MIME_DESCRIPTOR) > 0
+                && MimeDescriptorImpl.isComposite(message.getMediaType())
+                && new PropertyBuilder(message.getProperties()).getMimeStructure() == null;
+    }
+
+    private Message<Id> loadFullContent(Message<Id> message) throws MailboxException {
+        Iterator<Message<Id>> messages = mapper.findInMailbox(mailbox, MessageRange.one(message.getUid()), FetchType.Full, 1);
+        if (messages.hasNext()) {
+            return messages.next();
+        }
+        return message;
+    }
+
     @Override
     public void remove() {
         throw new UnsupportedOperationException("Read only");
@@ -0,0 +1,230 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store.event;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.MailboxListener.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Deliver {@link Event}s to {@link MailboxListener}s from dedicated threads, so that slow listeners (like search
+ * indexes) do not add up to the latency of the action which fired the event.
+ * <p>
+ * Events are spread over lanes depending on their mailbox. Each lane has a bounded queue consumed by a single thread,
+ * so that the events of a mailbox are delivered in order. Producers block when the queue of their lane is full. A lane
+ * takes all the events available in its queue, up to the batch size, at once, and hands the ones of each
+ * {@link AsynchronousMailboxListener} to it with a single {@link AsynchronousMailboxListener#events(List)} call.
+ * <p>
+ * Listeners run concurrently with the session which fired the event, and use its {@link org.apache.james.mailbox.MailboxSession}
+ * whose attributes are not thread-safe. This is therefore disabled unless configured, and should only be used with
+ * mappers which can be used by several threads.
+ */
+public class AsynchronousEventDelivery {
+
+    public static final int DEFAULT_THREAD_COUNT = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsynchronousEventDelivery.class);
+
+    private final Lane[] lanes;
+    private final int batchSize;
+    private final AtomicLong deliveredEvents = new AtomicLong();
+    private final AtomicLong lastLag = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+    private volatile boolean running = true;
+
+    @Inject
+    public AsynchronousEventDelivery() {
+        this(DEFAULT_THREAD_COUNT, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    public AsynchronousEventDelivery(int threadCount, int queueCapacity, int batchSize) {
+        this.batchSize = batchSize;
+        this.lanes = new Lane[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            lanes[i] = new Lane(queueCapacity);
+            Thread thread = new Thread(lanes[i], "AsynchronousEventDelivery-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Queue the event for the given listener. This blocks while the queue in charge of the mailbox of the event is
+     * full. If the calling thread is interrupted meanwhile, or if this delivery is stopped, the event is delivered
+     * synchronously.
+     */
+    public void deliver(MailboxListener listener, Event event) {
+        if (running) {
+            try {
+                lanes[laneIndex(event)].queue.put(new PendingEvent(listener, event));
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        listener.event(event);
+    }
+
+    private int laneIndex(Event event) {
+        int hash = event.getMailboxPath() == null ? 0 : event.getMailboxPath().hashCode();
+        return (hash & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    /**
+     * Stop the delivery threads once the events already queued are delivered
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.queue.offer(PendingEvent.POISON);
+        }
+    }
+
+    /**
+     * Return the number of events waiting to be delivered
+     */
+    public long getPendingEventCount() {
+        long count = 0;
+        for (Lane lane : lanes) {
+            count += lane.queue.size();
+        }
+        return count;
+    }
+
+    public long getDeliveredEventCount() {
+        return deliveredEvents.get();
+    }
+
+    /**
+     * Return the time, in milliseconds, the last delivered event waited in its queue
+     */
+    public long getLastLag() {
+        return lastLag.get();
+    }
+
+    /**
+     * Return the maximum time, in milliseconds, an event waited in its queue
+     */
+    public long getMaxLag() {
+        return maxLag.get();
+    }
+
+    private void recordLag(long lag) {
+        lastLag.set(lag);
+        long max = maxLag.get();
+        while (lag > max && !maxLag.compareAndSet(max, lag)) {
+            max = maxLag.get();
+        }
+        deliveredEvents.incrementAndGet();
+    }
+
+    private class Lane implements Runnable {
+        private final BlockingQueue<PendingEvent> queue;
+
+        public Lane(int capacity) {
+            this.queue = new ArrayBlockingQueue<PendingEvent>(capacity);
+        }
+
+        @Override
+        public void run() {
+            List<PendingEvent> batch = new ArrayList<PendingEvent>(batchSize);
+            while (true) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.drainTo(batch, batchSize - 1);
+                boolean stopped = false;
+                // events of a listener keep their relative order, which is all the ordering listeners rely on
+                Map<MailboxListener, List<Event>> eventsByListener = new IdentityHashMap<MailboxListener, List<Event>>();
+                List<MailboxListener> listeners = new ArrayList<MailboxListener>();
+                long now = System.currentTimeMillis();
+                for (PendingEvent pending : batch) {
+                    if (pending == PendingEvent.POISON) {
+                        stopped = true;
+                        break;
+                    }
+                    recordLag(now - pending.queuedAt);
+                    List<Event> events = eventsByListener.get(pending.listener);
+                    if (events == null) {
+                        events = new ArrayList<Event>();
+                        eventsByListener.put(pending.listener, events);
+                        listeners.add(pending.listener);
+                    }
+                    events.add(pending.event);
+                }
+                for (MailboxListener listener : listeners) {
+                    deliver(listener, eventsByListener.get(listener));
+                }
+                if (stopped) {
+                    return;
+                }
+                batch.clear();
+            }
+        }
+
+        private void deliver(MailboxListener listener, List<Event> events) {
+            if (listener instanceof AsynchronousMailboxListener) {
+                try {
+                    ((AsynchronousMailboxListener) listener).events(events);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Error while delivering events to " + listener, e);
+                }
+            } else {
+                for (Event event : events) {
+                    try {
+                        listener.event(event);
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Error while delivering event to " + listener, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class PendingEvent {
+        private static final PendingEvent POISON = new PendingEvent(null, null);
+
+        private final MailboxListener listener;
+        private final Event event;
+        private final long queuedAt;
+
+        public PendingEvent(MailboxListener listener, Event event) {
+            this.listener = listener;
+            this.event = event;
+            this.queuedAt = System.currentTimeMillis();
+        }
+    }
+}
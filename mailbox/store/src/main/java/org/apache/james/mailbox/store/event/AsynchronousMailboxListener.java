@@ -0,0 +1,43 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store.event;
+
+import java.util.List;
+
+import org.apache.james.mailbox.MailboxListener;
+
+/**
+ * {@link MailboxListener} which does not need to be notified by the thread which triggered the
+ * {@link org.apache.james.mailbox.MailboxListener.Event}.
+ * <p>
+ * When an {@link AsynchronousEventDelivery} is configured, such listeners get their events from it, after the
+ * triggering action returned, possibly several at once through {@link #events(List)}. Events of a given mailbox are
+ * still received in the order they were fired.
+ */
+public interface AsynchronousMailboxListener extends MailboxListener {
+
+    /**
+     * Receive the events queued for this listener which are delivered at once, in the order they were fired. This
+     * allows to apply them as a batch. Implementations which can not take advantage of it just call
+     * {@link #event(org.apache.james.mailbox.MailboxListener.Event)} for each of them.
+     *
+     * @param events the consecutive events, never empty
+     */
+    void events(List<Event> events);
+}
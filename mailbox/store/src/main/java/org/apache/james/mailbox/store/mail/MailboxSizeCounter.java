@@ -0,0 +1,59 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store.mail;
+
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.store.mail.model.MailboxId;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
+import org.apache.james.mailbox.store.mail.model.Message;
+
+import com.google.common.base.Optional;
+
+/**
+ * Implemented by {@link MessageMapper}'s which keep a counter of the size of the {@link Message}'s stored in
+ * each {@link Mailbox}, so that it can be read without iterating over them.
+ *
+ * The counter of a {@link Mailbox} which existed before sizes were counted can not be trusted until it has been
+ * initialized from the {@link Message}'s it contains.
+ *
+ * @param <Id>
+ */
+public interface MailboxSizeCounter<Id extends MailboxId> {
+
+    /**
+     * Return the sum of {@link Message#getFullContentOctets()} for all the {@link Message}'s of the {@link Mailbox},
+     * or absent when its counter was not initialized yet
+     * 
+     * @param mailbox
+     * @return size
+     * @throws MailboxException
+     */
+    Optional<Long> getMailboxSize(Mailbox<Id> mailbox) throws MailboxException;
+
+    /**
+     * Compute the size of the {@link Mailbox} from the {@link Message}'s it contains and initialize its counter with
+     * it, so that {@link #getMailboxSize(Mailbox)} can be used from now on
+     *
+     * @param mailbox
+     * @return size
+     * @throws MailboxException
+     */
+    long initializeMailboxSize(Mailbox<Id> mailbox) throws MailboxException;
+
+}
@@ -220,4 +220,18 @@ public class StandardNames {
     * @see #NAMESPACE_RFC_2183
     */
    public static final String MIME_CONTENT_DISPOSITION_PARAMETER_SPACE = MIME_CONTENT_DISPOSITION_SPACE + "/params";
+
+   /**
+    * Namespace for data James computes from the message content, like the
+    * parsed MIME structure.
+    */
+   public static final String NAMESPACE_JAMES_INTERNAL = "http://james.apache.org/internal";
+
+   /**
+    * The MIME structure of the message, as encoded by
+    * <code>MimeDescriptorCodec</code>. The value may be split in several
+    * chunks which must be concatenated in order.
+    * @see #NAMESPACE_JAMES_INTERNAL
+    */
+   public static final String MIME_STRUCTURE_NAME = "mime-structure";
 }
@@ -38,7 +38,9 @@ import static org.apache.james.mailbox.store.mail.model.StandardNames.MIME_CONTE
 import static org.apache.james.mailbox.store.mail.model.StandardNames.MIME_CONTENT_TYPE_PARAMETER_SPACE;
 import static org.apache.james.mailbox.store.mail.model.StandardNames.MIME_MEDIA_TYPE_NAME;
 import static org.apache.james.mailbox.store.mail.model.StandardNames.MIME_MIME_TYPE_SPACE;
+import static org.apache.james.mailbox.store.mail.model.StandardNames.MIME_STRUCTURE_NAME;
 import static org.apache.james.mailbox.store.mail.model.StandardNames.MIME_SUB_TYPE_NAME;
+import static org.apache.james.mailbox.store.mail.model.StandardNames.NAMESPACE_JAMES_INTERNAL;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -56,6 +58,11 @@ public class PropertyBuilder {
     
     private static final int INITIAL_CAPACITY = 32;
 
+    /**
+     * Smallest maximal property value length of the mappers.
+     */
+    private static final int MAX_PROPERTY_VALUE_LENGTH = 1000;
+
     private Long textualLineCount;
     private final List<SimpleProperty> properties;
 
@@ -452,6 +459,47 @@ public class PropertyBuilder {
         setProperty(MIME_CONTENT_LANGUAGE_SPACE, MIME_CONTENT_LANGUAGE_NAME, values);
     }
     
+    /**
+     * Gets the encoded MIME structure of the message.
+     * 
+     * @return the encoded structure or null when it was not stored
+     */
+    public String getMimeStructure() {
+        final List<String> chunks = getValues(NAMESPACE_JAMES_INTERNAL, MIME_STRUCTURE_NAME);
+        if (chunks.isEmpty()) {
+            return null;
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (String chunk: chunks) {
+            sb.append(chunk);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Sets the encoded MIME structure of the message. The value is split
+     * in chunks so it fits in the property value of every mapper.
+     * 
+     * @param value null to remove the property
+     */
+    public void setMimeStructure(String value) {
+        List<String> chunks = null;
+        if (value != null) {
+            chunks = new ArrayList<String>();
+            int start = 0;
+            while (start < value.length()) {
+                int end = Math.min(start + MAX_PROPERTY_VALUE_LENGTH, value.length());
+                // never split a surrogate pair
+                if (end < value.length() && Character.isHighSurrogate(value.charAt(end - 1))) {
+                    end--;
+                }
+                chunks.add(value.substring(start, end));
+                start = end;
+            }
+        }
+        setProperty(NAMESPACE_JAMES_INTERNAL, MIME_STRUCTURE_NAME, chunks);
+    }
+    
     /**
      * Builds a list of properties.
      * @return not null
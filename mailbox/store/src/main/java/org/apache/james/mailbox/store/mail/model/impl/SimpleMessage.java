@@ -27,7 +27,6 @@ import java.util.List;
 
 import javax.mail.Flags;
 import javax.mail.internet.SharedInputStream;
-import javax.mail.util.SharedByteArrayInputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.james.mailbox.exception.MailboxException;
@@ -36,6 +35,7 @@ import org.apache.james.mailbox.store.mail.model.MailboxId;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.Message;
 import org.apache.james.mailbox.store.mail.model.Property;
+import org.apache.james.mailbox.store.streaming.ExposedSharedByteArrayInputStream;
 
 public class SimpleMessage<Id extends MailboxId> extends AbstractMessage<Id> {
 
@@ -82,7 +82,7 @@ public class SimpleMessage<Id extends MailboxId> extends AbstractMessage<Id> {
         this.mailboxId = mailbox.getMailboxId();
         setFlags(original.createFlags());
         try {
-            this.content = new SharedByteArrayInputStream(
+            this.content = new ExposedSharedByteArrayInputStream(
                     IOUtils.toByteArray(original.getFullContent()));
         } catch (IOException e) {
             throw new MailboxException("Unable to parse message", e);
@@ -0,0 +1,129 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.quota;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.QuotaRoot;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * {@link StoreCurrentQuotaManager} keeping the current quotas of each {@link QuotaRoot} in memory, in front of
+ * the {@link StoreCurrentQuotaManager} which stores them.
+ *
+ * Increases and decreases, as sent by {@link ListeningCurrentQuotaUpdater}, are written to the underlying manager
+ * and applied to the cached values, so reading the current quotas does not hit the storage. As changes made by
+ * other servers sharing the same storage are not seen, each entry is reloaded from the underlying manager once it
+ * is older than the reconciliation interval.
+ */
+public class CachingCurrentQuotaManager implements StoreCurrentQuotaManager {
+
+    public static final long DEFAULT_RECONCILIATION_INTERVAL_IN_SECONDS = 60;
+
+    private final StoreCurrentQuotaManager currentQuotaManager;
+    private final LoadingCache<QuotaRoot, Entry> quotaCache;
+
+    public CachingCurrentQuotaManager(StoreCurrentQuotaManager currentQuotaManager) {
+        this(currentQuotaManager, DEFAULT_RECONCILIATION_INTERVAL_IN_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public CachingCurrentQuotaManager(final StoreCurrentQuotaManager currentQuotaManager, long reconciliationInterval, TimeUnit unit) {
+        this.currentQuotaManager = currentQuotaManager;
+        this.quotaCache = CacheBuilder.newBuilder()
+            .refreshAfterWrite(reconciliationInterval, unit)
+            .build(new CacheLoader<QuotaRoot, Entry>() {
+                @Override
+                public Entry load(QuotaRoot quotaRoot) throws Exception {
+                    return new Entry(currentQuotaManager.getCurrentMessageCount(quotaRoot), currentQuotaManager.getCurrentStorage(quotaRoot));
+                }
+            });
+    }
+
+    @Override
+    public void increase(QuotaRoot quotaRoot, long count, long size) throws MailboxException {
+        currentQuotaManager.increase(quotaRoot, count, size);
+        applyToCachedEntry(quotaRoot, count, size);
+    }
+
+    @Override
+    public void decrease(QuotaRoot quotaRoot, long count, long size) throws MailboxException {
+        currentQuotaManager.decrease(quotaRoot, count, size);
+        applyToCachedEntry(quotaRoot, -count, -size);
+    }
+
+    @Override
+    public long getCurrentMessageCount(QuotaRoot quotaRoot) throws MailboxException {
+        return getEntry(quotaRoot).getCount().get();
+    }
+
+    @Override
+    public long getCurrentStorage(QuotaRoot quotaRoot) throws MailboxException {
+        return getEntry(quotaRoot).getSize().get();
+    }
+
+    /**
+     * Drop the cached current quotas of the given {@link QuotaRoot}, so that they are read again from the
+     * underlying manager on next access
+     */
+    public void invalidate(QuotaRoot quotaRoot) {
+        quotaCache.invalidate(quotaRoot);
+    }
+
+    private Entry getEntry(QuotaRoot quotaRoot) throws MailboxException {
+        try {
+            return quotaCache.get(quotaRoot);
+        } catch (ExecutionException e) {
+            throw new MailboxException("Unable to load current quotas of " + quotaRoot.getValue(), e);
+        }
+    }
+
+    private void applyToCachedEntry(QuotaRoot quotaRoot, long count, long size) {
+        // Entries not cached yet will be loaded with the change already applied
+        Entry entry = quotaCache.getIfPresent(quotaRoot);
+        if (entry != null) {
+            entry.getCount().addAndGet(count);
+            entry.getSize().addAndGet(size);
+        }
+    }
+
+    private static class Entry {
+        private final AtomicLong count;
+        private final AtomicLong size;
+
+        public Entry(long count, long size) {
+            this.count = new AtomicLong(count);
+            this.size = new AtomicLong(size);
+        }
+
+        public AtomicLong getCount() {
+            return count;
+        }
+
+        public AtomicLong getSize() {
+            return size;
+        }
+    }
+}
@@ -20,6 +20,7 @@
 package org.apache.james.mailbox.store.quota;
 
 import com.google.common.base.Function;
+import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import org.apache.james.mailbox.MailboxSession;
@@ -30,14 +31,17 @@ import org.apache.james.mailbox.model.QuotaRoot;
 import org.apache.james.mailbox.quota.QuotaRootResolver;
 import org.apache.james.mailbox.store.MailboxSessionMapperFactory;
 import org.apache.james.mailbox.store.mail.MailboxMapper;
+import org.apache.james.mailbox.store.mail.MailboxSizeCounter;
 import org.apache.james.mailbox.store.mail.MessageMapper;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.Message;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 @Singleton
 public class CurrentQuotaCalculator {
@@ -59,15 +63,52 @@ public class CurrentQuotaCalculator {
         long messagesSizes = 0;
         long messageCount = 0;
         for (Mailbox mailbox : mailboxes) {
-            Iterator<Message> messages = mapper.findInMailbox(mailbox, MessageRange.all(), MessageMapper.FetchType.Metadata, -1);
             messageCount += mapper.countMessagesInMailbox(mailbox);
-            while(messages.hasNext()) {
-                messagesSizes +=  messages.next().getFullContentOctets();
-            }
+            messagesSizes += mailboxSize(mapper, mailbox);
         }
         return new CurrentQuotas(messageCount, messagesSizes);
     }
 
+    /**
+     * Recalculate the current quotas of every quota root in a single pass over all the mailboxes.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<QuotaRoot, CurrentQuotas> recalculateAllCurrentQuotas(MailboxSession session) throws MailboxException {
+        List<Mailbox> mailboxes = factory.getMailboxMapper(session).list();
+        MessageMapper mapper = factory.getMessageMapper(session);
+        Map<QuotaRoot, CurrentQuotas> currentQuotas = new HashMap<QuotaRoot, CurrentQuotas>();
+        for (Mailbox mailbox : mailboxes) {
+            QuotaRoot quotaRoot = quotaRootResolver.getQuotaRoot(new MailboxPath(mailbox.getNamespace(), mailbox.getUser(), mailbox.getName()));
+            CurrentQuotas mailboxQuotas = new CurrentQuotas(mapper.countMessagesInMailbox(mailbox), mailboxSize(mapper, mailbox));
+            CurrentQuotas previous = currentQuotas.get(quotaRoot);
+            currentQuotas.put(quotaRoot, previous == null ? mailboxQuotas : previous.add(mailboxQuotas));
+        }
+        return currentQuotas;
+    }
+
+    /**
+     * Read the size of the mailbox from the counter of the {@link MessageMapper} when it maintains one,
+     * and sum the sizes of its messages otherwise. A counter which was not initialized yet is initialized
+     * from the messages, so only the first calculation for a mailbox has to read them.
+     */
+    @SuppressWarnings("unchecked")
+    private long mailboxSize(MessageMapper mapper, Mailbox mailbox) throws MailboxException {
+        if (mapper instanceof MailboxSizeCounter) {
+            MailboxSizeCounter counter = (MailboxSizeCounter) mapper;
+            Optional<Long> size = counter.getMailboxSize(mailbox);
+            if (size.isPresent()) {
+                return size.get();
+            }
+            return counter.initializeMailboxSize(mailbox);
+        }
+        long size = 0;
+        Iterator<Message> messages = mapper.findInMailbox(mailbox, MessageRange.all(), MessageMapper.FetchType.Metadata, -1);
+        while(messages.hasNext()) {
+            size += messages.next().getFullContentOctets();
+        }
+        return size;
+    }
+
     private List<Mailbox> retrieveMailboxes(QuotaRoot quotaRoot, MailboxSession session) throws MailboxException {
         List<MailboxPath> paths = quotaRootResolver.retrieveAssociatedMailboxes(quotaRoot, session);
         final MailboxMapper mapper = factory.getMailboxMapper(session);
@@ -99,6 +140,10 @@ public class CurrentQuotaCalculator {
         public long getSize() {
             return size;
         }
+
+        public CurrentQuotas add(CurrentQuotas other) {
+            return new CurrentQuotas(count + other.count, size + other.size);
+        }
     }
 
 }
\ No newline at end of file
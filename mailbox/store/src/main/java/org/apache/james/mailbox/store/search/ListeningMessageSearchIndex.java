@@ -18,6 +18,7 @@
  ****************************************************************/
 package org.apache.james.mailbox.store.search;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -32,6 +33,7 @@ import org.apache.james.mailbox.store.MailboxEventDispatcher.AddedImpl;
 import org.apache.james.mailbox.store.MailboxEventDispatcher.ExpungedImpl;
 import org.apache.james.mailbox.store.MailboxEventDispatcher.FlagsUpdatedImpl;
 import org.apache.james.mailbox.store.MailboxEventDispatcher.MailboxDeletionImpl;
+import org.apache.james.mailbox.store.event.AsynchronousMailboxListener;
 import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
 import org.apache.james.mailbox.store.mail.MessageMapperFactory;
 import org.apache.james.mailbox.store.mail.model.MailboxId;
@@ -41,11 +43,13 @@ import org.apache.james.mailbox.store.mail.model.Message;
 /**
  * {@link MessageSearchIndex} which needs to get registered as global {@link MailboxListener} and so get
  * notified about message changes. This will then allow to update the underlying index.
- * 
+ * <p>
+ * As an {@link AsynchronousMailboxListener}, the index may be updated after the change returned when an
+ * {@link org.apache.james.mailbox.store.event.AsynchronousEventDelivery} is used.
  *
  * @param <Id>
  */
-public abstract class ListeningMessageSearchIndex<Id extends MailboxId> implements MessageSearchIndex<Id>, MailboxListener {
+public abstract class ListeningMessageSearchIndex<Id extends MailboxId> implements MessageSearchIndex<Id>, AsynchronousMailboxListener {
 
     private MessageMapperFactory<Id> factory;
 
@@ -110,14 +114,10 @@ public abstract class ListeningMessageSearchIndex<Id extends MailboxId> implemen
                     FlagsUpdatedImpl flagsUpdated = (FlagsUpdatedImpl) event;
                     final Mailbox<Id> mailbox = flagsUpdated.getMailbox();
 
-                    Iterator<UpdatedFlags> flags = flagsUpdated.getUpdatedFlags().iterator();
-                    while(flags.hasNext()) {
-                        UpdatedFlags uFlags = flags.next();
-                        try {
-                            update(session, mailbox, MessageRange.one(uFlags.getUid()), uFlags.getNewFlags(), uFlags.getModSeq());
-                        } catch (MailboxException e) {
-                            session.getLog().debug("Unable to update flags for message " + uFlags.getUid() + " in index for mailbox " + mailbox, e);
-                        }
+                    try {
+                        update(session, mailbox, flagsUpdated.getUpdatedFlags());
+                    } catch (MailboxException e) {
+                        session.getLog().debug("Unable to update flags in index for mailbox " + mailbox, e);
                     }
                 }
             } else if (event instanceof MailboxDeletionImpl) {
@@ -137,6 +137,42 @@ public abstract class ListeningMessageSearchIndex<Id extends MailboxId> implemen
         return false;
     }
 
+    /**
+     * Consecutive flags updates of a {@link Mailbox} are applied to the index with a single
+     * {@link #update(MailboxSession, Mailbox, List)} call, the other events are processed one by one.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void events(List<Event> events) {
+        int i = 0;
+        while (i < events.size()) {
+            Event event = events.get(i);
+            int next = i + 1;
+            if (event instanceof FlagsUpdatedImpl) {
+                final Mailbox<Id> mailbox = ((FlagsUpdatedImpl) event).getMailbox();
+                List<UpdatedFlags> updatedFlags = new ArrayList<UpdatedFlags>(((FlagsUpdatedImpl) event).getUpdatedFlags());
+                while (next < events.size() && isFlagsUpdateOf(events.get(next), mailbox)) {
+                    updatedFlags.addAll(((FlagsUpdatedImpl) events.get(next)).getUpdatedFlags());
+                    next++;
+                }
+                try {
+                    update(event.getSession(), mailbox, updatedFlags);
+                } catch (MailboxException e) {
+                    event.getSession().getLog().debug("Unable to update flags in index for mailbox " + mailbox, e);
+                }
+            } else {
+                event(event);
+            }
+            i = next;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private boolean isFlagsUpdateOf(Event event, Mailbox<Id> mailbox) {
+        return event instanceof FlagsUpdatedImpl
+            && ((FlagsUpdatedImpl) event).getMailbox().getMailboxId().equals(mailbox.getMailboxId());
+    }
+
     /**
      * Add the {@link Message} for the given {@link Mailbox} to the index
      * 
@@ -168,4 +204,28 @@ public abstract class ListeningMessageSearchIndex<Id extends MailboxId> implemen
      * @throws MailboxException
      */
     public abstract void update(MailboxSession session, Mailbox<Id> mailbox, MessageRange range, Flags flags, long modseq) throws MailboxException;
+
+    /**
+     * Update the index with all the {@link UpdatedFlags} of one
+     * {@link Mailbox}. This implementation calls
+     * {@link #update(MailboxSession, Mailbox, MessageRange, Flags, long)} for
+     * each message, implementations which can apply the changes as a batch
+     * should override it.
+     * 
+     * @param session
+     * @param mailbox
+     * @param updatedFlags
+     * @throws MailboxException
+     */
+    public void update(MailboxSession session, Mailbox<Id> mailbox, List<UpdatedFlags> updatedFlags) throws MailboxException {
+        Iterator<UpdatedFlags> flags = updatedFlags.iterator();
+        while(flags.hasNext()) {
+            UpdatedFlags uFlags = flags.next();
+            try {
+                update(session, mailbox, MessageRange.one(uFlags.getUid()), uFlags.getNewFlags(), uFlags.getModSeq());
+            } catch (MailboxException e) {
+                session.getLog().debug("Unable to update flags for message " + uFlags.getUid() + " in index for mailbox " + mailbox, e);
+            }
+        }
+    }
 }
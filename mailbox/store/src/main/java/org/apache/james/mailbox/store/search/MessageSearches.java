@@ -64,15 +64,17 @@ import org.slf4j.Logger;
  */
 public class MessageSearches implements Iterable<Long> {
 
-    private Iterator<Message<?>> messages;
+    private Iterator<? extends Message<?>> messages;
     private SearchQuery query;
     private Logger log;
+    private Message<?> headersMessage;
+    private List<Header> parsedHeaders;
 
-    public MessageSearches(Iterator<Message<?>> messages, SearchQuery query) {
+    public MessageSearches(Iterator<? extends Message<?>> messages, SearchQuery query) {
         this(messages, query, null);
     }
 
-    public MessageSearches(Iterator<Message<?>> messages, SearchQuery query, Logger log) {
+    public MessageSearches(Iterator<? extends Message<?>> messages, SearchQuery query, Logger log) {
         this.messages = messages;
         this.query = query;
         this.log = log;
@@ -362,7 +364,7 @@ public class MessageSearches implements Iterable<Long> {
     private boolean matchesAddress(final SearchQuery.AddressOperator operator, final String headerName,
             final Message<?> message, Logger log) throws MailboxException, IOException {
         final String text = operator.getAddress().toUpperCase(Locale.ENGLISH);
-        final List<Header> headers = ResultUtils.createHeaders(message);
+        final List<Header> headers = createHeaders(message);
         for (Header header : headers) {
             final String name = header.getName();
             if (headerName.equalsIgnoreCase(name)) {
@@ -395,7 +397,7 @@ public class MessageSearches implements Iterable<Long> {
 
     private boolean exists(String headerName, Message<?> message) throws MailboxException, IOException {
         boolean result = false;
-        final List<Header> headers = ResultUtils.createHeaders(message);
+        final List<Header> headers = createHeaders(message);
 
         for (Header header : headers) {
             final String name = header.getName();
@@ -411,7 +413,7 @@ public class MessageSearches implements Iterable<Long> {
             final Message<?> message) throws MailboxException, IOException {
         final String text = operator.getValue().toUpperCase();
         boolean result = false;
-        final List<Header> headers = ResultUtils.createHeaders(message);
+        final List<Header> headers = createHeaders(message);
         for (Header header : headers) {
             final String name = header.getName();
             if (headerName.equalsIgnoreCase(name)) {
@@ -460,7 +462,7 @@ public class MessageSearches implements Iterable<Long> {
     }
 
     private String headerValue(final String headerName, final Message<?> message) throws MailboxException, IOException {
-        final List<Header> headers = ResultUtils.createHeaders(message);
+        final List<Header> headers = createHeaders(message);
         String value = null;
         for (Header header : headers) {
             final String name = header.getName();
@@ -472,6 +474,18 @@ public class MessageSearches implements Iterable<Long> {
         return value;
     }
 
+    /**
+     * Parse the headers of the given message. The result is kept for the last message, so that evaluating
+     * several header criteria against the same message parses its headers only once.
+     */
+    private List<Header> createHeaders(Message<?> message) throws IOException {
+        if (message != headersMessage) {
+            parsedHeaders = ResultUtils.createHeaders(message);
+            headersMessage = message;
+        }
+        return parsedHeaders;
+    }
+
     private Date toISODate(String value) throws ParseException {
         final StringReader reader = new StringReader(value);
         final DateTime dateTime = new DateTimeParser(reader).parseAll();
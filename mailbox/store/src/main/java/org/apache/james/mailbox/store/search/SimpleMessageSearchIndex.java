@@ -18,6 +18,7 @@
  ****************************************************************/
 package org.apache.james.mailbox.store.search;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
@@ -30,9 +31,13 @@ import org.apache.james.mailbox.MailboxSession;
 import org.apache.james.mailbox.exception.MailboxException;
 import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.SearchQuery;
+import org.apache.james.mailbox.model.SearchQuery.Conjunction;
 import org.apache.james.mailbox.model.SearchQuery.ConjunctionCriterion;
 import org.apache.james.mailbox.model.SearchQuery.Criterion;
+import org.apache.james.mailbox.model.SearchQuery.HeaderCriterion;
 import org.apache.james.mailbox.model.SearchQuery.NumericRange;
+import org.apache.james.mailbox.model.SearchQuery.Sort;
+import org.apache.james.mailbox.model.SearchQuery.TextCriterion;
 import org.apache.james.mailbox.model.SearchQuery.UidCriterion;
 import org.apache.james.mailbox.store.mail.MessageMapper;
 import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
@@ -40,11 +45,17 @@ import org.apache.james.mailbox.store.mail.MessageMapperFactory;
 import org.apache.james.mailbox.store.mail.model.MailboxId;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.Message;
+import org.slf4j.Logger;
 
 /**
  * {@link MessageSearchIndex} which just fetch {@link Message}'s from the {@link MessageMapper} and use {@link MessageSearcher}
  * to match them against the {@link SearchQuery}.
  * 
+ * The criteria which only need the metadata of a {@link Message} (flags, uid, size, internal date, modseq) are
+ * evaluated first against messages fetched with {@link FetchType#Metadata}. Only the messages matching them are
+ * then fetched again with the {@link FetchType} needed by the remaining criteria, so queries like
+ * <code>SEARCH UNSEEN</code> never load any content.
+ * 
  * This works with every implementation but is SLOW.
  * 
  *
@@ -61,57 +72,121 @@ public class SimpleMessageSearchIndex<Id extends MailboxId> implements MessageSe
     }
     
     /**
-     * Walks down the query tree's conjunctions to find a UidCriterion
+     * Walks down the query tree's AND conjunctions to find a UidCriterion
      * @param crits - list of Criterion to search from
      * @return
      *      first UidCriterion found
      *      null - if not found
      */
-  	private static UidCriterion findConjugatedUidCriterion(List<Criterion> crits) {
-		for (Criterion crit : crits) {
-			if (crit instanceof UidCriterion) {
-				return (UidCriterion) crit;
-			} else if (crit instanceof ConjunctionCriterion) {
-				return findConjugatedUidCriterion(((ConjunctionCriterion) crit)
-						.getCriteria());
-			}
-		}
-		return null;
-	}
-    
+    private static UidCriterion findConjugatedUidCriterion(List<Criterion> crits) {
+        for (Criterion crit : crits) {
+            if (crit instanceof UidCriterion) {
+                return (UidCriterion) crit;
+            } else if (crit instanceof ConjunctionCriterion && ((ConjunctionCriterion) crit).getType() == Conjunction.AND) {
+                UidCriterion uidCrit = findConjugatedUidCriterion(((ConjunctionCriterion) crit).getCriteria());
+                if (uidCrit != null) {
+                    return uidCrit;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the {@link FetchType} needed to evaluate the given {@link Criterion}
+     */
+    private static FetchType fetchTypeFor(Criterion crit) {
+        if (crit instanceof HeaderCriterion) {
+            return FetchType.Headers;
+        } else if (crit instanceof TextCriterion) {
+            return FetchType.Full;
+        } else if (crit instanceof ConjunctionCriterion) {
+            return fetchTypeFor(((ConjunctionCriterion) crit).getCriteria());
+        }
+        return FetchType.Metadata;
+    }
+
+    private static FetchType fetchTypeFor(List<Criterion> crits) {
+        FetchType fetchType = FetchType.Metadata;
+        for (Criterion crit : crits) {
+            fetchType = max(fetchType, fetchTypeFor(crit));
+        }
+        return fetchType;
+    }
+
+    /**
+     * Return the {@link FetchType} needed to sort messages by the given {@link Sort}'s
+     */
+    private static FetchType fetchTypeForSorts(List<Sort> sorts) {
+        for (Sort sort : sorts) {
+            switch (sort.getSortClause()) {
+            case Arrival:
+            case Size:
+            case Uid:
+                break;
+            default:
+                return FetchType.Headers;
+            }
+        }
+        return FetchType.Metadata;
+    }
+
+    private static FetchType max(FetchType type1, FetchType type2) {
+        return type1.compareTo(type2) >= 0 ? type1 : type2;
+    }
+
     @Override
     public Iterator<Long> search(MailboxSession session, Mailbox<Id> mailbox, SearchQuery query) throws MailboxException {
         MessageMapper<Id> mapper = factory.getMessageMapper(session);
+        Logger log = session == null ? null : session.getLog();
 
-        final SortedSet<Message<?>> hitSet = new TreeSet<Message<?>>();
-
+        List<MessageRange> ranges = new ArrayList<MessageRange>();
         UidCriterion uidCrit = findConjugatedUidCriterion(query.getCriterias());
         if (uidCrit != null) {
             // if there is a conjugated uid range criterion in the query tree we can optimize by
             // only fetching this uid range
-            NumericRange[] ranges = uidCrit.getOperator().getRange();
-            for (int i = 0; i < ranges.length; i++) {
-                NumericRange r = ranges[i];
-                Iterator<Message<Id>> it = mapper.findInMailbox(mailbox, MessageRange.range(r.getLowValue(), r.getHighValue()), FetchType.Metadata, -1);
-                while(it.hasNext()) {
-                	hitSet.add(it.next());
-                }
+            for (NumericRange r : uidCrit.getOperator().getRange()) {
+                ranges.add(MessageRange.range(r.getLowValue(), r.getHighValue()));
             }
         } else {
-        	// we have to fetch all messages
-            Iterator<Message<Id>> messages = mapper.findInMailbox(mailbox, MessageRange.all(), FetchType.Full, -1);
-            while(messages.hasNext()) {
-            	Message<Id> m = messages.next();
-            	hitSet.add(m);
+            ranges.add(MessageRange.all());
+        }
+
+        SearchQuery metadataQuery = new SearchQuery();
+        metadataQuery.addRecentMessageUids(query.getRecentMessageUids());
+        List<Criterion> contentCriteria = new ArrayList<Criterion>();
+        for (Criterion crit : query.getCriterias()) {
+            if (fetchTypeFor(crit) == FetchType.Metadata) {
+                metadataQuery.andCriteria(crit);
+            } else {
+                contentCriteria.add(crit);
+            }
+        }
+
+        FetchType contentFetchType = max(fetchTypeFor(contentCriteria), fetchTypeForSorts(query.getSorts()));
+        if (contentFetchType == FetchType.Metadata) {
+            return search(mapper, mailbox, ranges, FetchType.Metadata, query, log).iterator();
+        }
+        // Narrow down the candidates using the metadata only, then load the content of those which are left
+        SortedSet<Long> candidates = search(mapper, mailbox, ranges, FetchType.Metadata, metadataQuery, log);
+        return search(mapper, mailbox, MessageRange.toRanges(candidates), contentFetchType, query, log).iterator();
+    }
+
+    /**
+     * Stream the messages of each {@link MessageRange} through {@link MessageSearches} and return the uids of
+     * those which match the {@link SearchQuery}
+     */
+    private SortedSet<Long> search(MessageMapper<Id> mapper, Mailbox<Id> mailbox, List<MessageRange> ranges, FetchType fetchType,
+            SearchQuery query, Logger log) throws MailboxException {
+        SortedSet<Long> uids = new TreeSet<Long>();
+        for (MessageRange range : ranges) {
+            Iterator<Message<Id>> messages = mapper.findInMailbox(mailbox, range, fetchType, -1);
+            Iterator<Long> matched = new MessageSearches(messages, query, log).iterator();
+            while (matched.hasNext()) {
+                uids.add(matched.next());
             }
         }
-        
-        // MessageSearches does the filtering for us
-        if (session == null) {
-			return new MessageSearches(hitSet.iterator(), query).iterator();
-		} else {
-			return new MessageSearches(hitSet.iterator(), query, session.getLog()).iterator();
-		}
+        return uids;
     }
 
 }
@@ -25,6 +25,9 @@ package org.apache.james.mailbox.store.streaming;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.james.mailbox.model.Content;
 
@@ -51,5 +54,10 @@ public final class ByteContent implements Content {
         return new ByteArrayInputStream(contents);
     }
 
+    @Override
+    public List<ByteBuffer> asByteBuffers() {
+        return Collections.singletonList(ByteBuffer.wrap(contents).asReadOnlyBuffer());
+    }
+
 
 }
@@ -0,0 +1,81 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store.streaming;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import javax.mail.util.SharedByteArrayInputStream;
+
+/**
+ * {@link SharedByteArrayInputStream} which gives read-only access to the
+ * remaining bytes as {@link ByteBuffer}, so the content can be written without
+ * copying it.
+ */
+public class ExposedSharedByteArrayInputStream extends SharedByteArrayInputStream {
+
+    public ExposedSharedByteArrayInputStream(byte[] buf) {
+        super(buf);
+    }
+
+    public ExposedSharedByteArrayInputStream(byte[] buf, int offset, int length) {
+        super(buf, offset, length);
+    }
+
+    /**
+     * Return the remaining bytes of the given stream as buffers if it is an
+     * {@link ExposedSharedByteArrayInputStream}. Otherwise the stream is
+     * closed.
+     * 
+     * @param in
+     * @return buffers or <code>null</code> if the content is not held in
+     *         memory
+     * @throws IOException
+     */
+    public static List<ByteBuffer> asByteBuffers(InputStream in) throws IOException {
+        if (in instanceof ExposedSharedByteArrayInputStream) {
+            return Collections.singletonList(((ExposedSharedByteArrayInputStream) in).asByteBuffer());
+        }
+        in.close();
+        return null;
+    }
+
+    /**
+     * Return a read-only view of the bytes not read yet
+     * 
+     * @return buffer
+     */
+    public synchronized ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(buf, pos, count - pos).slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public InputStream newStream(long start, long end) {
+        if (start < 0) {
+            throw new IllegalArgumentException("start < 0");
+        }
+        if (end == -1) {
+            end = count - this.start;
+        }
+        return new ExposedSharedByteArrayInputStream(buf, this.start + (int) start, (int) (end - start));
+    }
+}
@@ -23,6 +23,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
@@ -64,6 +66,18 @@ public class FullByteContent implements Content {
 
     @Override
     public InputStream getInputStream() throws IOException {
+        return new SequenceInputStream(new ByteArrayInputStream(headerBytes()), new ByteArrayInputStream(body));
+    }
+
+    @Override
+    public List<ByteBuffer> asByteBuffers() throws IOException {
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(2);
+        buffers.add(ByteBuffer.wrap(headerBytes()).asReadOnlyBuffer());
+        buffers.add(ByteBuffer.wrap(body).asReadOnlyBuffer());
+        return buffers;
+    }
+
+    private byte[] headerBytes() throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         for (final Iterator<MessageResult.Header> it = headers.iterator(); it.hasNext();) {
             final MessageResult.Header header = it.next();
@@ -77,7 +91,7 @@ public class FullByteContent implements Content {
         }
         out.write("\r\n".getBytes("US-ASCII"));
         out.flush();
-        return new SequenceInputStream(new ByteArrayInputStream(out.toByteArray()), new ByteArrayInputStream(body));
+        return out.toByteArray();
     }
 
     @Override
@@ -20,6 +20,8 @@ package org.apache.james.mailbox.store.streaming;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.apache.james.mailbox.model.Content;
 import org.apache.james.mailbox.store.mail.model.Message;
@@ -69,4 +71,14 @@ public final class InputStreamContent implements Content{
        
     }
 
+    /**
+     * Only contents of messages which are held in memory by an
+     * {@link ExposedSharedByteArrayInputStream} can be exposed
+     * 
+     * @see org.apache.james.mailbox.model.Content#asByteBuffers()
+     */
+    public List<ByteBuffer> asByteBuffers() throws IOException {
+        return ExposedSharedByteArrayInputStream.asByteBuffers(getInputStream());
+    }
+
 }
@@ -0,0 +1,132 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store.streaming;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.mail.internet.SharedInputStream;
+import javax.mail.util.SharedFileInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+
+/**
+ * Holds the content of a message while it gets appended, so it can be parsed
+ * once and read again afterwards.
+ * 
+ * If the given {@link InputStream} is already a {@link SharedInputStream} (for
+ * example a literal which was spooled by the protocol layer) its content is
+ * used as is. Otherwise everything read from {@link #getInputStream()} is
+ * buffered in memory up to the given threshold and written to a single
+ * temporary file beyond it.
+ */
+public class MessageSpool {
+
+    private final InputStream in;
+    private final SharedInputStream shared;
+    private final long start;
+    private final DeferredFileOutputStream out;
+    private InputStream content;
+    private long size = -1;
+
+    public MessageSpool(InputStream msgIn, int threshold) throws IOException {
+        if (msgIn instanceof SharedInputStream) {
+            this.shared = (SharedInputStream) msgIn;
+            this.start = shared.getPosition();
+            this.out = null;
+            this.in = msgIn;
+        } else {
+            this.shared = null;
+            this.start = 0;
+            this.out = new DeferredFileOutputStream(threshold, "imap", ".msg", null);
+            this.in = new TeeInputStream(msgIn, out);
+        }
+    }
+
+    /**
+     * Return the {@link InputStream} to read the message from. Everything
+     * read from it is spooled.
+     * 
+     * @return in
+     */
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    /**
+     * Consume the rest of the message and return its full content as
+     * {@link SharedInputStream}.
+     * 
+     * @return content
+     * @throws IOException
+     */
+    public SharedInputStream getContent() throws IOException {
+        if (content == null) {
+            byte[] discard = new byte[4096];
+            while (in.read(discard) != -1) {
+                // consume the rest of the stream so everything is spooled
+            }
+            if (shared != null) {
+                long end = shared.getPosition();
+                size = end - start;
+                content = shared.newStream(start, end);
+            } else {
+                out.close();
+                size = out.getByteCount();
+                if (out.isInMemory()) {
+                    content = new ExposedSharedByteArrayInputStream(out.getData());
+                } else {
+                    content = new SharedFileInputStream(out.getFile());
+                }
+            }
+        }
+        return (SharedInputStream) content;
+    }
+
+    /**
+     * Return the size of the message. Only valid after
+     * {@link #getContent()} was called.
+     * 
+     * @return size
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Close all streams and delete the temporary file if one was created
+     */
+    public void dispose() {
+        IOUtils.closeQuietly(in);
+        IOUtils.closeQuietly(content);
+        if (out != null) {
+            IOUtils.closeQuietly(out);
+            File file = out.getFile();
+            if (file != null) {
+                // Don't throw an IOException. The message could be appended
+                // and the temporary file will be deleted hopefully some day
+                FileUtils.deleteQuietly(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HashMapDelegatingMailboxListenerTest {
+
+    private static final MailboxPath MAILBOX_PATH = new MailboxPath("#private", "user", "mailbox");
+    private static final MailboxPath OTHER_MAILBOX_PATH = new MailboxPath("#private", "user", "other");
+
+    private HashMapDelegatingMailboxListener testee;
+    private EventCollector mailboxEventCollector;
+    private EventCollector globalEventCollector;
+
+    @Before
+    public void setUp() throws Exception {
+        testee = new HashMapDelegatingMailboxListener();
+        mailboxEventCollector = new EventCollector();
+        globalEventCollector = new EventCollector();
+        testee.addListener(MAILBOX_PATH, mailboxEventCollector, null);
+        testee.addGlobalListener(globalEventCollector, null);
+    }
+
+    @Test
+    public void eventShouldBeDispatchedToTheMailboxAndGlobalListeners() {
+        MailboxListener.Event event = new MailboxListener.MailboxAdded(null, MAILBOX_PATH);
+
+        testee.event(event);
+
+        assertThat(mailboxEventCollector.events).containsExactly(event);
+        assertThat(globalEventCollector.events).containsExactly(event);
+    }
+
+    @Test
+    public void eventShouldNotBeDispatchedToListenersOfOtherMailboxes() {
+        testee.event(new MailboxListener.MailboxAdded(null, OTHER_MAILBOX_PATH));
+
+        assertThat(mailboxEventCollector.events).isEmpty();
+        assertThat(globalEventCollector.events).hasSize(1);
+    }
+
+    @Test
+    public void removedListenersShouldNotReceiveEvents() throws Exception {
+        testee.removeListener(MAILBOX_PATH, mailboxEventCollector, null);
+        testee.removeGlobalListener(globalEventCollector, null);
+
+        testee.event(new MailboxListener.MailboxAdded(null, MAILBOX_PATH));
+
+        assertThat(mailboxEventCollector.events).isEmpty();
+        assertThat(globalEventCollector.events).isEmpty();
+    }
+
+    @Test
+    public void listenersShouldBeRegisteredOnlyOnce() throws Exception {
+        testee.addListener(MAILBOX_PATH, mailboxEventCollector, null);
+
+        testee.event(new MailboxListener.MailboxAdded(null, MAILBOX_PATH));
+
+        assertThat(mailboxEventCollector.events).hasSize(1);
+    }
+
+    @Test
+    public void mailboxDeletionShouldUnregisterTheMailboxListeners() {
+        testee.event(new MailboxListener.MailboxDeletion(null, MAILBOX_PATH));
+        testee.event(new MailboxListener.MailboxAdded(null, MAILBOX_PATH));
+
+        assertThat(mailboxEventCollector.events).hasSize(1);
+    }
+
+    @Test
+    public void mailboxRenamingShouldMoveTheMailboxListeners() {
+        testee.event(new MailboxListener.MailboxRenamed(null, MAILBOX_PATH) {
+            @Override
+            public MailboxPath getNewPath() {
+                return OTHER_MAILBOX_PATH;
+            }
+        });
+        testee.event(new MailboxListener.MailboxAdded(null, MAILBOX_PATH));
+        testee.event(new MailboxListener.MailboxAdded(null, OTHER_MAILBOX_PATH));
+
+        assertThat(mailboxEventCollector.events).hasSize(2);
+        assertThat(mailboxEventCollector.events.get(1).getMailboxPath()).isEqualTo(OTHER_MAILBOX_PATH);
+    }
+
+    @Test
+    public void listenersRegisteredDuringConcurrentDispatchShouldAllReceiveLaterEvents() throws Exception {
+        final int threadCount = 8;
+        final int listenersPerThread = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount * 2);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        List<CountingListener> registered = new ArrayList<CountingListener>();
+        for (int i = 0; i < threadCount; i++) {
+            final List<CountingListener> threadListeners = new ArrayList<CountingListener>();
+            for (int j = 0; j < listenersPerThread; j++) {
+                threadListeners.add(new CountingListener());
+            }
+            registered.addAll(threadListeners);
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (CountingListener listener : threadListeners) {
+                        CountingListener transientListener = new CountingListener();
+                        testee.addListener(MAILBOX_PATH, transientListener, null);
+                        testee.addListener(MAILBOX_PATH, listener, null);
+                        testee.removeListener(MAILBOX_PATH, transientListener, null);
+                    }
+                    return null;
+                }
+            }));
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int j = 0; j < listenersPerThread; j++) {
+                        testee.event(new MailboxListener.MailboxAdded(null, MAILBOX_PATH));
+                    }
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        testee.event(new MailboxListener.MailboxAdded(null, MAILBOX_PATH));
+
+        for (CountingListener listener : registered) {
+            assertThat(listener.count.get()).isGreaterThanOrEqualTo(1);
+        }
+        assertThat(globalEventCollector.events).hasSize(threadCount * listenersPerThread + 1);
+    }
+
+    private static class CountingListener implements MailboxListener {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void event(Event event) {
+            count.incrementAndGet();
+        }
+    }
+
+    private static class EventCollector implements MailboxListener {
+        private final List<Event> events = new ArrayList<Event>();
+
+        @Override
+        public synchronized void event(Event event) {
+            events.add(event);
+        }
+    }
+}
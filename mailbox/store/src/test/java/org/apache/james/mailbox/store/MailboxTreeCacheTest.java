@@ -0,0 +1,101 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.NavigableSet;
+
+import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.mailbox.store.mail.MailboxMapper;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
+import org.apache.james.mailbox.store.mail.model.impl.SimpleMailbox;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class MailboxTreeCacheTest {
+
+    private static final MailboxPath INBOX = new MailboxPath("#private", "user", "INBOX");
+    private static final MailboxPath INBOX_CHILD = new MailboxPath("#private", "user", "INBOX.child");
+    private static final MailboxPath OTHER_USER_INBOX = new MailboxPath("#private", "other", "INBOX");
+
+    private MailboxMapper<TestId> mapper;
+    private MailboxTreeCache testee;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        mapper = mock(MailboxMapper.class);
+        List<Mailbox<TestId>> mailboxes = ImmutableList.<Mailbox<TestId>>of(
+            new SimpleMailbox<TestId>(INBOX, 42),
+            new SimpleMailbox<TestId>(INBOX_CHILD, 42),
+            new SimpleMailbox<TestId>(OTHER_USER_INBOX, 42));
+        when(mapper.findMailboxWithPathLike(any(MailboxPath.class))).thenReturn(mailboxes);
+        testee = new MailboxTreeCache();
+    }
+
+    @Test
+    public void getMailboxNamesShouldOnlyReturnTheMailboxesOfTheUser() throws Exception {
+        assertThat(testee.getMailboxNames(INBOX, mapper)).containsExactly("INBOX", "INBOX.child");
+    }
+
+    @Test
+    public void getMailboxNamesShouldOnlyQueryTheMapperOnce() throws Exception {
+        testee.getMailboxNames(INBOX, mapper);
+        testee.getMailboxNames(INBOX_CHILD, mapper);
+
+        verify(mapper, times(1)).findMailboxWithPathLike(any(MailboxPath.class));
+    }
+
+    @Test
+    public void mailboxAddedShouldInvalidateTheTreeOfTheUser() throws Exception {
+        testee.getMailboxNames(INBOX, mapper);
+        testee.event(new MailboxListener.MailboxAdded(null, INBOX_CHILD));
+        testee.getMailboxNames(INBOX, mapper);
+
+        verify(mapper, times(2)).findMailboxWithPathLike(any(MailboxPath.class));
+    }
+
+    @Test
+    public void mailboxDeletionShouldNotInvalidateTheTreeOfOtherUsers() throws Exception {
+        testee.getMailboxNames(INBOX, mapper);
+        testee.event(new MailboxListener.MailboxDeletion(null, OTHER_USER_INBOX));
+        testee.getMailboxNames(INBOX, mapper);
+
+        verify(mapper, times(1)).findMailboxWithPathLike(any(MailboxPath.class));
+    }
+
+    @Test
+    public void hasChildrenShouldOnlyMatchNamesStartingWithTheDelimiter() throws Exception {
+        NavigableSet<String> tree = testee.getMailboxNames(INBOX, mapper);
+
+        assertThat(MailboxTreeCache.hasChildren(tree, "INBOX", '.')).isTrue();
+        assertThat(MailboxTreeCache.hasChildren(tree, "INBOX.child", '.')).isFalse();
+        assertThat(MailboxTreeCache.hasChildren(tree, "INB", '.')).isFalse();
+    }
+}
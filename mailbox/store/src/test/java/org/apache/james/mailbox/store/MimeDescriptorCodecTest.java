@@ -0,0 +1,146 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MessageResult;
+import org.apache.james.mailbox.model.MimeDescriptor;
+import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
+import org.junit.Test;
+
+public class MimeDescriptorCodecTest {
+
+    private static final String MESSAGE = "From: bob@example.org\r\n"
+            + "Subject: structure\r\n"
+            + "MIME-Version: 1.0\r\n"
+            + "Content-Type: multipart/mixed; boundary=\"outer\"\r\n"
+            + "\r\n"
+            + "--outer\r\n"
+            + "Content-Type: text/plain; charset=utf-8\r\n"
+            + "Content-Language: en, fr\r\n"
+            + "\r\n"
+            + "first line\r\n"
+            + "second line\r\n"
+            + "--outer\r\n"
+            + "Content-Type: message/rfc822\r\n"
+            + "Content-Disposition: attachment; filename=\"inner.eml\"\r\n"
+            + "\r\n"
+            + "Subject: inner\r\n"
+            + "Content-Type: text/html\r\n"
+            + "\r\n"
+            + "<p>inner</p>\r\n"
+            + "--outer--\r\n";
+
+    @Test
+    public void decodeShouldReturnEqualStructure() throws Exception {
+        MimeDescriptor expected = MimeDescriptorImpl.build(new ByteArrayInputStream(MESSAGE.getBytes(Charset.forName("US-ASCII"))));
+
+        MimeDescriptor actual = MimeDescriptorCodec.decode(MimeDescriptorCodec.encode(expected));
+
+        assertDescriptorEquals(expected, actual);
+    }
+
+    @Test
+    public void decodeShouldHandleNullValues() throws Exception {
+        MimeDescriptor expected = new MimeDescriptorImpl(0, null, null, 0, null, null, null,
+                new ArrayList<MessageResult.Header>(), null, null, null, null, null,
+                new ArrayList<MimeDescriptor>(), null, null);
+
+        MimeDescriptor actual = MimeDescriptorCodec.decode(MimeDescriptorCodec.encode(expected));
+
+        assertNull(actual.getMimeType());
+        assertNull(actual.getLanguages());
+        assertNull(actual.contentTypeParameters());
+        assertNull(actual.embeddedMessage());
+        assertFalse(actual.parts().hasNext());
+    }
+
+    @Test(expected = MailboxException.class)
+    public void decodeShouldFailOnTruncatedValue() throws Exception {
+        MimeDescriptor descriptor = MimeDescriptorImpl.build(new ByteArrayInputStream(MESSAGE.getBytes(Charset.forName("US-ASCII"))));
+        String encoded = MimeDescriptorCodec.encode(descriptor);
+
+        MimeDescriptorCodec.decode(encoded.substring(0, encoded.length() / 2));
+    }
+
+    @Test
+    public void propertyBuilderShouldSplitAndJoinLongStructures() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2500; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        PropertyBuilder builder = new PropertyBuilder();
+        builder.setMimeStructure(sb.toString());
+
+        assertEquals(3, builder.toProperties().size());
+        assertEquals(sb.toString(), new PropertyBuilder(builder.toProperties()).getMimeStructure());
+    }
+
+    private void assertDescriptorEquals(MimeDescriptor expected, MimeDescriptor actual) throws Exception {
+        assertNotNull(actual);
+        assertEquals(expected.getMimeType(), actual.getMimeType());
+        assertEquals(expected.getMimeSubType(), actual.getMimeSubType());
+        assertEquals(expected.getContentID(), actual.getContentID());
+        assertEquals(expected.getContentDescription(), actual.getContentDescription());
+        assertEquals(expected.getContentLocation(), actual.getContentLocation());
+        assertEquals(expected.getContentMD5(), actual.getContentMD5());
+        assertEquals(expected.getTransferContentEncoding(), actual.getTransferContentEncoding());
+        assertEquals(expected.getLanguages(), actual.getLanguages());
+        assertEquals(expected.getDisposition(), actual.getDisposition());
+        assertEquals(expected.getDispositionParams(), actual.getDispositionParams());
+        assertEquals(expected.contentTypeParameters(), actual.contentTypeParameters());
+        assertEquals(expected.getLines(), actual.getLines());
+        assertEquals(expected.getBodyOctets(), actual.getBodyOctets());
+        assertEquals(expected.size(), actual.size());
+        assertEquals(headers(expected), headers(actual));
+
+        if (expected.embeddedMessage() == null) {
+            assertNull(actual.embeddedMessage());
+        } else {
+            assertDescriptorEquals(expected.embeddedMessage(), actual.embeddedMessage());
+        }
+
+        Iterator<MimeDescriptor> expectedParts = expected.parts();
+        Iterator<MimeDescriptor> actualParts = actual.parts();
+        while (expectedParts.hasNext()) {
+            assertDescriptorEquals(expectedParts.next(), actualParts.next());
+        }
+        assertFalse(actualParts.hasNext());
+    }
+
+    private List<String> headers(MimeDescriptor descriptor) throws Exception {
+        List<String> headers = new ArrayList<String>();
+        for (Iterator<MessageResult.Header> it = descriptor.headers(); it.hasNext();) {
+            MessageResult.Header header = it.next();
+            headers.add(header.getName() + ": " + header.getValue());
+        }
+        return headers;
+    }
+}
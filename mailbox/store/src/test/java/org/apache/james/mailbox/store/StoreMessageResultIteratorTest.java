@@ -31,12 +31,15 @@ import javax.mail.Flags;
 import javax.mail.util.SharedByteArrayInputStream;
 
 import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.FetchGroupImpl;
 import org.apache.james.mailbox.model.MessageMetaData;
 import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.MessageResult;
 import org.apache.james.mailbox.model.MessageResult.FetchGroup;
+import org.apache.james.mailbox.model.MessageResult.MimePath;
 import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.store.mail.MessageMapper;
+import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.Message;
 import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
@@ -173,4 +176,32 @@ public class StoreMessageResultIteratorTest {
         }).containsExactly(1l, 2l, 3l, 4l, 5l, 6l, 7l, 8l, 9l, 10l);
     }
 
+    @Test
+    public void getFetchTypeShouldOnlyLoadHeadersForHeaderFetches() {
+        assertThat(StoreMessageResultIterator.getFetchType(FetchGroupImpl.HEADERS)).isEqualTo(FetchType.Headers);
+    }
+
+    @Test
+    public void getFetchTypeShouldOnlyLoadHeadersForMimeDescriptor() {
+        assertThat(StoreMessageResultIterator.getFetchType(new FetchGroupImpl(FetchGroup.MIME_DESCRIPTOR))).isEqualTo(FetchType.Headers);
+    }
+
+    @Test
+    public void getFetchTypeShouldLoadFullContentForPartContent() {
+        FetchGroupImpl group = new FetchGroupImpl(FetchGroup.MINIMAL);
+        group.addPartContent(new MimePath() {
+            @Override
+            public int[] getPositions() {
+                return new int[] { 1 };
+            }
+        }, FetchGroup.MIME_HEADERS);
+
+        assertThat(StoreMessageResultIterator.getFetchType(group)).isEqualTo(FetchType.Full);
+    }
+
+    @Test
+    public void getFetchTypeShouldOnlyLoadMetadataForMinimal() {
+        assertThat(StoreMessageResultIterator.getFetchType(FetchGroupImpl.MINIMAL)).isEqualTo(FetchType.Metadata);
+    }
+
 }
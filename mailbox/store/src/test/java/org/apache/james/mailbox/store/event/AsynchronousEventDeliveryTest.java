@@ -0,0 +1,232 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.mailbox.store.HashMapDelegatingMailboxListener;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsynchronousEventDeliveryTest {
+
+    private static final MailboxPath MAILBOX_PATH = new MailboxPath("#private", "user", "mailbox");
+    private static final MailboxPath OTHER_MAILBOX_PATH = new MailboxPath("#private", "user", "other");
+
+    private AsynchronousEventDelivery testee;
+
+    @Before
+    public void setUp() {
+        testee = new AsynchronousEventDelivery(2, 10, 5);
+    }
+
+    @After
+    public void tearDown() {
+        testee.stop();
+    }
+
+    @Test
+    public void eventsOfAMailboxShouldBeDeliveredInOrder() throws Exception {
+        EventCollector listener = new EventCollector(200);
+        List<MailboxListener.Event> sent = new ArrayList<MailboxListener.Event>();
+        for (int i = 0; i < 100; i++) {
+            MailboxListener.Event event = new MailboxListener.MailboxAdded(null, MAILBOX_PATH);
+            MailboxListener.Event otherEvent = new MailboxListener.MailboxAdded(null, OTHER_MAILBOX_PATH);
+            sent.add(event);
+            testee.deliver(listener, event);
+            testee.deliver(listener, otherEvent);
+        }
+
+        assertThat(listener.latch.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(listener.eventsOf(MAILBOX_PATH)).containsExactlyElementsOf(sent);
+        assertThat(testee.getDeliveredEventCount()).isEqualTo(200);
+        assertThat(testee.getPendingEventCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void deliverShouldBlockWhenTheQueueIsFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        MailboxListener blockingListener = new MailboxListener() {
+            @Override
+            public void event(Event event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        final AsynchronousEventDelivery singleLane = new AsynchronousEventDelivery(1, 2, 1);
+        try {
+            final MailboxListener.Event event = new MailboxListener.MailboxAdded(null, MAILBOX_PATH);
+            final CountDownLatch delivered = new CountDownLatch(1);
+            // one event being processed, two queued
+            for (int i = 0; i < 3; i++) {
+                singleLane.deliver(blockingListener, event);
+            }
+            Thread producer = new Thread() {
+                @Override
+                public void run() {
+                    singleLane.deliver(new EventCollector(1), event);
+                    delivered.countDown();
+                }
+            };
+            producer.start();
+
+            assertThat(delivered.await(200, TimeUnit.MILLISECONDS)).isFalse();
+            release.countDown();
+            assertThat(delivered.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            singleLane.stop();
+        }
+    }
+
+    @Test
+    public void queuedEventsShouldBeDeliveredAsABatchToAsynchronousListeners() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<List<MailboxListener.Event>> batches = new ArrayList<List<MailboxListener.Event>>();
+        final CountDownLatch delivered = new CountDownLatch(2);
+        AsynchronousMailboxListener listener = new AsynchronousMailboxListener() {
+            @Override
+            public void event(Event event) {
+                events(Collections.singletonList(event));
+            }
+
+            @Override
+            public void events(List<Event> events) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                batches.add(new ArrayList<Event>(events));
+                delivered.countDown();
+            }
+        };
+        AsynchronousEventDelivery singleLane = new AsynchronousEventDelivery(1, 10, 5);
+        try {
+            List<MailboxListener.Event> queued = new ArrayList<MailboxListener.Event>();
+            MailboxListener.Event first = new MailboxListener.MailboxAdded(null, MAILBOX_PATH);
+            singleLane.deliver(listener, first);
+            // wait for the first event to be delivered before queuing the next ones
+            assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 3; i++) {
+                MailboxListener.Event event = new MailboxListener.MailboxAdded(null, MAILBOX_PATH);
+                queued.add(event);
+                singleLane.deliver(listener, event);
+            }
+            release.countDown();
+
+            assertThat(delivered.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(batches).containsExactly(Collections.singletonList(first), queued);
+        } finally {
+            release.countDown();
+            singleLane.stop();
+        }
+    }
+
+    @Test
+    public void listenerFailuresShouldNotStopTheDelivery() throws Exception {
+        MailboxListener failingListener = new MailboxListener() {
+            @Override
+            public void event(Event event) {
+                throw new RuntimeException();
+            }
+        };
+        EventCollector listener = new EventCollector(1);
+
+        testee.deliver(failingListener, new MailboxListener.MailboxAdded(null, MAILBOX_PATH));
+        testee.deliver(listener, new MailboxListener.MailboxAdded(null, MAILBOX_PATH));
+
+        assertThat(listener.latch.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void delegatingListenerShouldOnlyDeliverAsynchronousListenersThroughTheDelivery() throws Exception {
+        HashMapDelegatingMailboxListener delegatingListener = new HashMapDelegatingMailboxListener();
+        delegatingListener.setAsynchronousEventDelivery(testee);
+        final List<Thread> synchronousThreads = new ArrayList<Thread>();
+        final List<Thread> asynchronousThreads = new ArrayList<Thread>();
+        final CountDownLatch asynchronousDone = new CountDownLatch(1);
+        delegatingListener.addGlobalListener(new MailboxListener() {
+            @Override
+            public void event(Event event) {
+                synchronousThreads.add(Thread.currentThread());
+            }
+        }, null);
+        delegatingListener.addGlobalListener(new AsynchronousMailboxListener() {
+            @Override
+            public void event(Event event) {
+                asynchronousThreads.add(Thread.currentThread());
+                asynchronousDone.countDown();
+            }
+
+            @Override
+            public void events(List<Event> events) {
+                for (Event event : events) {
+                    event(event);
+                }
+            }
+        }, null);
+
+        delegatingListener.event(new MailboxListener.MailboxAdded(null, MAILBOX_PATH));
+
+        assertThat(asynchronousDone.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(synchronousThreads).containsExactly(Thread.currentThread());
+        assertThat(asynchronousThreads).hasSize(1);
+        assertThat(asynchronousThreads.get(0)).isNotEqualTo(Thread.currentThread());
+    }
+
+    private static class EventCollector implements MailboxListener {
+        private final List<Event> events = new ArrayList<Event>();
+        private final CountDownLatch latch;
+
+        public EventCollector(int expectedEvents) {
+            this.latch = new CountDownLatch(expectedEvents);
+        }
+
+        @Override
+        public synchronized void event(Event event) {
+            events.add(event);
+            latch.countDown();
+        }
+
+        public synchronized List<Event> eventsOf(MailboxPath path) {
+            List<Event> result = new ArrayList<Event>();
+            for (Event event : events) {
+                if (event.getMailboxPath().equals(path)) {
+                    result.add(event);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -37,14 +37,15 @@ import org.apache.james.mailbox.model.MessageMetaData;
 import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.store.FlagsUpdateCalculator;
+import org.apache.james.mailbox.store.mail.MailboxSizeCounter;
 import org.apache.james.mailbox.store.mail.MessageMapper;
 import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
 import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
 import org.apache.james.mailbox.store.mail.model.impl.SimpleMailbox;
 import org.apache.james.mailbox.store.mail.model.impl.SimpleMessage;
 import org.junit.After;
+import org.junit.Assume;
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Test;
 
 public abstract class AbstractMessageMapperTest<Id extends MailboxId> {
@@ -109,6 +110,47 @@ public abstract class AbstractMessageMapperTest<Id extends MailboxId> {
         assertThat(messageMapper.countMessagesInMailbox(benwaInboxMailbox)).isEqualTo(4);
     }
     
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mailboxSizeShouldBeTheSumOfTheMessageSizes() throws MailboxException {
+        Assume.assumeTrue(messageMapper instanceof MailboxSizeCounter);
+        MailboxSizeCounter<Id> counter = (MailboxSizeCounter<Id>) messageMapper;
+        counter.initializeMailboxSize(benwaInboxMailbox);
+        saveMessages();
+        assertThat(counter.getMailboxSize(benwaInboxMailbox).get()).isEqualTo(
+            message1.getFullContentOctets() + message2.getFullContentOctets() + message3.getFullContentOctets()
+                + message4.getFullContentOctets() + message5.getFullContentOctets());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mailboxSizeShouldBeAbsentUntilInitialized() throws MailboxException {
+        Assume.assumeTrue(messageMapper instanceof MailboxSizeCounter);
+        saveMessages();
+        assertThat(((MailboxSizeCounter<Id>) messageMapper).getMailboxSize(benwaInboxMailbox).isPresent()).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void initializeMailboxSizeShouldReturnTheSumOfTheMessageSizes() throws MailboxException {
+        Assume.assumeTrue(messageMapper instanceof MailboxSizeCounter);
+        saveMessages();
+        assertThat(((MailboxSizeCounter<Id>) messageMapper).initializeMailboxSize(benwaInboxMailbox)).isEqualTo(
+            message1.getFullContentOctets() + message2.getFullContentOctets() + message3.getFullContentOctets()
+                + message4.getFullContentOctets() + message5.getFullContentOctets());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mailboxSizeShouldBeDecrementedAfterAMessageDelete() throws MailboxException {
+        Assume.assumeTrue(messageMapper instanceof MailboxSizeCounter);
+        MailboxSizeCounter<Id> counter = (MailboxSizeCounter<Id>) messageMapper;
+        counter.initializeMailboxSize(benwaWorkMailbox);
+        saveMessages();
+        messageMapper.delete(benwaWorkMailbox, message6);
+        assertThat(counter.getMailboxSize(benwaWorkMailbox).get()).isEqualTo(0);
+    }
+
     @Test
     public void emptyMailboxShouldNotHaveUnseenMessages() throws MailboxException {
         assertThat(messageMapper.countUnseenMessagesInMailbox(benwaInboxMailbox)).isEqualTo(0);
@@ -256,14 +298,23 @@ public abstract class AbstractMessageMapperTest<Id extends MailboxId> {
         assertThat(retrievedMessageIterator).isEmpty();
     }
 
-    // No limit used for the moment
-    @Ignore
     @Test
     public void retrievingMessagesWithALimitShouldLimitTheNumberOfMessages() throws MailboxException {
         int limit = 2;
         saveMessages();
         assertThat(messageMapper.findInMailbox(benwaInboxMailbox, MessageRange.all(), MessageMapper.FetchType.Full, limit)).hasSize(2);
     }
+
+    @Test
+    public void retrievingMessagesWithALimitShouldReturnTheFirstMessagesOfTheRange() throws MailboxException, IOException {
+        int limit = 2;
+        saveMessages();
+        Iterator<Message<Id>> retrievedMessageIterator = messageMapper
+                .findInMailbox(benwaInboxMailbox, MessageRange.from(message2.getUid()), MessageMapper.FetchType.Metadata, limit);
+        MessageAssert.assertThat(retrievedMessageIterator.next()).isEqualTo(message2, MessageMapper.FetchType.Metadata);
+        MessageAssert.assertThat(retrievedMessageIterator.next()).isEqualTo(message3, MessageMapper.FetchType.Metadata);
+        assertThat(retrievedMessageIterator).isEmpty();
+    }
     
     @Test
     public void findRecentUidsInMailboxShouldReturnEmptyListWhenNoMessagesMarkedAsRecentArePresentInMailbox() throws MailboxException {
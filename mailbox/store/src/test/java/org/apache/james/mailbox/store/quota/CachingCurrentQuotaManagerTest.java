@@ -0,0 +1,130 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.quota;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.mailbox.model.QuotaRoot;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingCurrentQuotaManagerTest {
+
+    public static final QuotaRoot QUOTA_ROOT = QuotaRootImpl.quotaRoot("benwa");
+
+    private StoreCurrentQuotaManager mockedCurrentQuotaManager;
+    private CachingCurrentQuotaManager testee;
+
+    @Before
+    public void setUp() throws Exception {
+        mockedCurrentQuotaManager = mock(StoreCurrentQuotaManager.class);
+        when(mockedCurrentQuotaManager.getCurrentMessageCount(QUOTA_ROOT)).thenReturn(18L);
+        when(mockedCurrentQuotaManager.getCurrentStorage(QUOTA_ROOT)).thenReturn(512L);
+        testee = new CachingCurrentQuotaManager(mockedCurrentQuotaManager);
+    }
+
+    @Test
+    public void getCurrentQuotasShouldBeReadFromUnderlyingManager() throws Exception {
+        assertThat(testee.getCurrentMessageCount(QUOTA_ROOT)).isEqualTo(18);
+        assertThat(testee.getCurrentStorage(QUOTA_ROOT)).isEqualTo(512);
+    }
+
+    @Test
+    public void getCurrentQuotasShouldBeReadOnlyOnceFromUnderlyingManager() throws Exception {
+        testee.getCurrentMessageCount(QUOTA_ROOT);
+        testee.getCurrentStorage(QUOTA_ROOT);
+        testee.getCurrentMessageCount(QUOTA_ROOT);
+        testee.getCurrentStorage(QUOTA_ROOT);
+
+        verify(mockedCurrentQuotaManager, times(1)).getCurrentMessageCount(QUOTA_ROOT);
+        verify(mockedCurrentQuotaManager, times(1)).getCurrentStorage(QUOTA_ROOT);
+    }
+
+    @Test
+    public void increaseShouldUpdateUnderlyingManagerAndCachedQuotas() throws Exception {
+        testee.getCurrentMessageCount(QUOTA_ROOT);
+
+        testee.increase(QUOTA_ROOT, 10, 100);
+
+        verify(mockedCurrentQuotaManager).increase(QUOTA_ROOT, 10, 100);
+        assertThat(testee.getCurrentMessageCount(QUOTA_ROOT)).isEqualTo(28);
+        assertThat(testee.getCurrentStorage(QUOTA_ROOT)).isEqualTo(612);
+    }
+
+    @Test
+    public void decreaseShouldUpdateUnderlyingManagerAndCachedQuotas() throws Exception {
+        testee.getCurrentMessageCount(QUOTA_ROOT);
+
+        testee.decrease(QUOTA_ROOT, 8, 12);
+
+        verify(mockedCurrentQuotaManager).decrease(QUOTA_ROOT, 8, 12);
+        assertThat(testee.getCurrentMessageCount(QUOTA_ROOT)).isEqualTo(10);
+        assertThat(testee.getCurrentStorage(QUOTA_ROOT)).isEqualTo(500);
+    }
+
+    @Test
+    public void increaseShouldNotChangeCachedQuotasWhenUnderlyingManagerFails() throws Exception {
+        testee.getCurrentMessageCount(QUOTA_ROOT);
+        doThrow(new IllegalArgumentException()).when(mockedCurrentQuotaManager).increase(QUOTA_ROOT, 0, 5);
+
+        try {
+            testee.increase(QUOTA_ROOT, 0, 5);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        assertThat(testee.getCurrentMessageCount(QUOTA_ROOT)).isEqualTo(18);
+        assertThat(testee.getCurrentStorage(QUOTA_ROOT)).isEqualTo(512);
+    }
+
+    @Test
+    public void increaseShouldNotLoadQuotasWhenNotCached() throws Exception {
+        testee.increase(QUOTA_ROOT, 10, 100);
+
+        verify(mockedCurrentQuotaManager, times(0)).getCurrentMessageCount(QUOTA_ROOT);
+    }
+
+    @Test
+    public void invalidateShouldReloadQuotasFromUnderlyingManager() throws Exception {
+        testee.getCurrentMessageCount(QUOTA_ROOT);
+        when(mockedCurrentQuotaManager.getCurrentMessageCount(QUOTA_ROOT)).thenReturn(20L);
+
+        testee.invalidate(QUOTA_ROOT);
+
+        assertThat(testee.getCurrentMessageCount(QUOTA_ROOT)).isEqualTo(20);
+    }
+
+    @Test
+    public void quotasShouldBeReconciledWithUnderlyingManagerAfterInterval() throws Exception {
+        testee = new CachingCurrentQuotaManager(mockedCurrentQuotaManager, 1, TimeUnit.NANOSECONDS);
+        testee.getCurrentMessageCount(QUOTA_ROOT);
+        when(mockedCurrentQuotaManager.getCurrentMessageCount(QUOTA_ROOT)).thenReturn(20L);
+
+        assertThat(testee.getCurrentMessageCount(QUOTA_ROOT)).isEqualTo(20);
+    }
+
+}
@@ -0,0 +1,140 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.quota;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.mailbox.model.MessageRange;
+import org.apache.james.mailbox.model.QuotaRoot;
+import org.apache.james.mailbox.quota.QuotaRootResolver;
+import org.apache.james.mailbox.store.MailboxSessionMapperFactory;
+import org.apache.james.mailbox.store.mail.MailboxMapper;
+import org.apache.james.mailbox.store.mail.MailboxSizeCounter;
+import org.apache.james.mailbox.store.mail.MessageMapper;
+import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+
+public class CurrentQuotaCalculatorTest {
+
+    public static final QuotaRoot BENWA_ROOT = QuotaRootImpl.quotaRoot("benwa");
+    public static final QuotaRoot BTELLIER_ROOT = QuotaRootImpl.quotaRoot("btellier");
+
+    private MailboxSession session;
+    private MessageMapper messageMapper;
+    private Mailbox inbox;
+    private Mailbox sent;
+    private Mailbox other;
+    private CurrentQuotaCalculator testee;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        session = mock(MailboxSession.class);
+        inbox = mailbox("benwa", "INBOX");
+        sent = mailbox("benwa", "Sent");
+        other = mailbox("btellier", "INBOX");
+
+        messageMapper = mock(MessageMapper.class, withSettings().extraInterfaces(MailboxSizeCounter.class));
+        when(messageMapper.countMessagesInMailbox(inbox)).thenReturn(3L);
+        when(messageMapper.countMessagesInMailbox(sent)).thenReturn(2L);
+        when(messageMapper.countMessagesInMailbox(other)).thenReturn(1L);
+        when(((MailboxSizeCounter) messageMapper).getMailboxSize(inbox)).thenReturn(Optional.of(300L));
+        when(((MailboxSizeCounter) messageMapper).getMailboxSize(sent)).thenReturn(Optional.of(200L));
+        when(((MailboxSizeCounter) messageMapper).getMailboxSize(other)).thenReturn(Optional.of(100L));
+
+        MailboxMapper mailboxMapper = mock(MailboxMapper.class);
+        when(mailboxMapper.list()).thenReturn(Arrays.asList(inbox, sent, other));
+        when(mailboxMapper.findMailboxByPath(new MailboxPath("#private", "benwa", "INBOX"))).thenReturn(inbox);
+        when(mailboxMapper.findMailboxByPath(new MailboxPath("#private", "benwa", "Sent"))).thenReturn(sent);
+
+        MailboxSessionMapperFactory factory = mock(MailboxSessionMapperFactory.class);
+        when(factory.getMessageMapper(session)).thenReturn(messageMapper);
+        when(factory.getMailboxMapper(session)).thenReturn(mailboxMapper);
+
+        QuotaRootResolver quotaRootResolver = mock(QuotaRootResolver.class);
+        when(quotaRootResolver.getQuotaRoot(new MailboxPath("#private", "benwa", "INBOX"))).thenReturn(BENWA_ROOT);
+        when(quotaRootResolver.getQuotaRoot(new MailboxPath("#private", "benwa", "Sent"))).thenReturn(BENWA_ROOT);
+        when(quotaRootResolver.getQuotaRoot(new MailboxPath("#private", "btellier", "INBOX"))).thenReturn(BTELLIER_ROOT);
+        when(quotaRootResolver.retrieveAssociatedMailboxes(BENWA_ROOT, session)).thenReturn(Arrays.asList(
+            new MailboxPath("#private", "benwa", "INBOX"),
+            new MailboxPath("#private", "benwa", "Sent")));
+
+        testee = new CurrentQuotaCalculator(factory, quotaRootResolver);
+    }
+
+    private Mailbox mailbox(String user, String name) {
+        Mailbox mailbox = mock(Mailbox.class);
+        when(mailbox.getNamespace()).thenReturn("#private");
+        when(mailbox.getUser()).thenReturn(user);
+        when(mailbox.getName()).thenReturn(name);
+        return mailbox;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void recalculateCurrentQuotasShouldUseMailboxSizeCounters() throws Exception {
+        CurrentQuotaCalculator.CurrentQuotas currentQuotas = testee.recalculateCurrentQuotas(BENWA_ROOT, session);
+
+        assertThat(currentQuotas.getCount()).isEqualTo(5);
+        assertThat(currentQuotas.getSize()).isEqualTo(500);
+        verify(messageMapper, never()).findInMailbox(any(Mailbox.class), any(MessageRange.class), any(FetchType.class), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void recalculateCurrentQuotasShouldInitializeMailboxSizeCountersNotInitializedYet() throws Exception {
+        when(((MailboxSizeCounter) messageMapper).getMailboxSize(sent)).thenReturn(Optional.absent());
+        when(((MailboxSizeCounter) messageMapper).initializeMailboxSize(sent)).thenReturn(250L);
+
+        CurrentQuotaCalculator.CurrentQuotas currentQuotas = testee.recalculateCurrentQuotas(BENWA_ROOT, session);
+
+        assertThat(currentQuotas.getSize()).isEqualTo(550);
+        verify((MailboxSizeCounter) messageMapper).initializeMailboxSize(sent);
+        verify((MailboxSizeCounter) messageMapper, never()).initializeMailboxSize(inbox);
+    }
+
+    @Test
+    public void recalculateAllCurrentQuotasShouldGroupMailboxesByQuotaRoot() throws Exception {
+        Map<QuotaRoot, CurrentQuotaCalculator.CurrentQuotas> currentQuotas = testee.recalculateAllCurrentQuotas(session);
+
+        assertThat(currentQuotas).hasSize(2);
+        assertThat(currentQuotas.get(BENWA_ROOT).getCount()).isEqualTo(5);
+        assertThat(currentQuotas.get(BENWA_ROOT).getSize()).isEqualTo(500);
+        assertThat(currentQuotas.get(BTELLIER_ROOT).getCount()).isEqualTo(1);
+        assertThat(currentQuotas.get(BTELLIER_ROOT).getSize()).isEqualTo(100);
+    }
+
+}
@@ -0,0 +1,161 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.mail.Flags;
+
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.model.MessageRange;
+import org.apache.james.mailbox.model.SearchQuery;
+import org.apache.james.mailbox.model.SearchQuery.NumericRange;
+import org.apache.james.mailbox.store.MessageBuilder;
+import org.apache.james.mailbox.store.TestId;
+import org.apache.james.mailbox.store.mail.MessageMapper;
+import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
+import org.apache.james.mailbox.store.mail.MessageMapperFactory;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
+import org.apache.james.mailbox.store.mail.model.Message;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class SimpleMessageSearchIndexTest {
+
+    private MessageMapper<TestId> mapper;
+    private Mailbox<TestId> mailbox;
+    private SimpleMessageSearchIndex<TestId> testee;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        final List<Message<TestId>> messages = new ArrayList<Message<TestId>>();
+        messages.add(message(1, true, "hello"));
+        messages.add(message(2, false, "hello"));
+        messages.add(message(3, false, "other"));
+
+        mapper = mock(MessageMapper.class);
+        mailbox = mock(Mailbox.class);
+        when(mapper.findInMailbox(eq(mailbox), any(MessageRange.class), any(FetchType.class), anyInt())).then(new Answer<Iterator<Message<TestId>>>() {
+            @Override
+            public Iterator<Message<TestId>> answer(InvocationOnMock invocation) throws Throwable {
+                MessageRange range = (MessageRange) invocation.getArguments()[1];
+                List<Message<TestId>> result = new ArrayList<Message<TestId>>();
+                for (Message<TestId> message : messages) {
+                    if (range.includes(message.getUid())) {
+                        result.add(message);
+                    }
+                }
+                return result.iterator();
+            }
+        });
+        MessageMapperFactory<TestId> factory = mock(MessageMapperFactory.class);
+        when(factory.getMessageMapper(any(MailboxSession.class))).thenReturn(mapper);
+        testee = new SimpleMessageSearchIndex<TestId>(factory);
+    }
+
+    private Message<TestId> message(long uid, boolean seen, String subject) throws Exception {
+        MessageBuilder builder = new MessageBuilder();
+        builder.uid = uid;
+        if (seen) {
+            builder.flags.add(Flags.Flag.SEEN);
+        }
+        builder.header("Subject", subject);
+        builder.body = "body of the message".getBytes();
+        return builder.build();
+    }
+
+    private List<Long> toList(Iterator<Long> uids) {
+        List<Long> result = new ArrayList<Long>();
+        while (uids.hasNext()) {
+            result.add(uids.next());
+        }
+        return result;
+    }
+
+    @Test
+    public void searchOnFlagsShouldOnlyFetchMetadata() throws Exception {
+        SearchQuery query = new SearchQuery();
+        query.andCriteria(SearchQuery.flagIsUnSet(Flags.Flag.SEEN));
+
+        assertThat(toList(testee.search(null, mailbox, query))).containsExactly(2L, 3L);
+        verify(mapper).findInMailbox(mailbox, MessageRange.all(), FetchType.Metadata, -1);
+        verifyNoMoreInteractions(mapper);
+    }
+
+    @Test
+    public void searchOnHeadersShouldOnlyFetchHeadersOfMessagesMatchingMetadata() throws Exception {
+        SearchQuery query = new SearchQuery();
+        query.andCriteria(SearchQuery.flagIsUnSet(Flags.Flag.SEEN));
+        query.andCriteria(SearchQuery.headerContains("Subject", "hello"));
+
+        assertThat(toList(testee.search(null, mailbox, query))).containsExactly(2L);
+        verify(mapper).findInMailbox(mailbox, MessageRange.all(), FetchType.Metadata, -1);
+        verify(mapper).findInMailbox(mailbox, MessageRange.range(2, 3), FetchType.Headers, -1);
+        verifyNoMoreInteractions(mapper);
+    }
+
+    @Test
+    public void searchOnBodyShouldFetchFullContent() throws Exception {
+        SearchQuery query = new SearchQuery();
+        query.andCriteria(SearchQuery.bodyContains("body"));
+
+        assertThat(toList(testee.search(null, mailbox, query))).containsExactly(1L, 2L, 3L);
+        verify(mapper).findInMailbox(mailbox, MessageRange.all(), FetchType.Metadata, -1);
+        verify(mapper).findInMailbox(mailbox, MessageRange.range(1, 3), FetchType.Full, -1);
+        verifyNoMoreInteractions(mapper);
+    }
+
+    @Test
+    public void searchShouldOnlyFetchUidRangeWhenConjugated() throws Exception {
+        SearchQuery query = new SearchQuery();
+        query.andCriteria(SearchQuery.uid(new NumericRange[] { new NumericRange(2, 3) }));
+        query.andCriteria(SearchQuery.flagIsUnSet(Flags.Flag.SEEN));
+
+        assertThat(toList(testee.search(null, mailbox, query))).containsExactly(2L, 3L);
+        verify(mapper).findInMailbox(mailbox, MessageRange.range(2, 3), FetchType.Metadata, -1);
+        verifyNoMoreInteractions(mapper);
+    }
+
+    @Test
+    public void searchShouldNotRestrictFetchedRangeToUidCriterionInsideOr() throws Exception {
+        SearchQuery query = new SearchQuery();
+        query.andCriteria(SearchQuery.or(SearchQuery.uid(new NumericRange[] { new NumericRange(1) }),
+            SearchQuery.flagIsUnSet(Flags.Flag.SEEN)));
+
+        assertThat(toList(testee.search(null, mailbox, query))).containsExactly(1L, 2L, 3L);
+        verify(mapper).findInMailbox(mailbox, MessageRange.all(), FetchType.Metadata, -1);
+        verifyNoMoreInteractions(mapper);
+    }
+
+}
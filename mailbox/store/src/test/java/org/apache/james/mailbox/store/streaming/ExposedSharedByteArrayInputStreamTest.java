@@ -0,0 +1,61 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store.streaming;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ExposedSharedByteArrayInputStreamTest {
+
+    private static final byte[] CONTENT = "header\r\n\r\nbody".getBytes();
+
+    @Test
+    public void asByteBufferShouldExposeRemainingBytes() throws Exception {
+        ExposedSharedByteArrayInputStream in = new ExposedSharedByteArrayInputStream(CONTENT);
+        in.skip(6);
+
+        assertEquals("\r\n\r\nbody", toString(in.asByteBuffer()));
+    }
+
+    @Test
+    public void newStreamShouldExposeOnlyItsRange() throws Exception {
+        ExposedSharedByteArrayInputStream in = new ExposedSharedByteArrayInputStream(CONTENT);
+
+        ExposedSharedByteArrayInputStream body = (ExposedSharedByteArrayInputStream) in.newStream(10, -1);
+        ExposedSharedByteArrayInputStream header = (ExposedSharedByteArrayInputStream) in.newStream(0, 6);
+
+        assertEquals("body", toString(body.asByteBuffer()));
+        assertEquals("header", toString(header.asByteBuffer()));
+        assertEquals("dy", toString(((ExposedSharedByteArrayInputStream) body.newStream(2, -1)).asByteBuffer()));
+    }
+
+    @Test(expected = java.nio.ReadOnlyBufferException.class)
+    public void asByteBufferShouldBeReadOnly() {
+        new ExposedSharedByteArrayInputStream(CONTENT).asByteBuffer().put((byte) 0);
+    }
+
+    private String toString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes);
+    }
+}
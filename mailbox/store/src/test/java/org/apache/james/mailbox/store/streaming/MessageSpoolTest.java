@@ -0,0 +1,104 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.store.streaming;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import javax.mail.internet.SharedInputStream;
+import javax.mail.util.SharedFileInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class MessageSpoolTest {
+
+    private static final String MESSAGE = "Subject: test\r\n\r\nbody\r\n";
+
+    @Test
+    public void smallMessageShouldBeSpooledInMemory() throws Exception {
+        MessageSpool spool = new MessageSpool(new ByteArrayInputStream(MESSAGE.getBytes()), 1024);
+        try {
+            IOUtils.toByteArray(spool.getInputStream(), 5);
+
+            SharedInputStream content = spool.getContent();
+            assertTrue(content instanceof ExposedSharedByteArrayInputStream);
+            assertEquals(MESSAGE, IOUtils.toString(content.newStream(0, -1)));
+            assertEquals(MESSAGE.length(), spool.getSize());
+        } finally {
+            spool.dispose();
+        }
+    }
+
+    @Test
+    public void bigMessageShouldBeSpooledToFile() throws Exception {
+        MessageSpool spool = new MessageSpool(new ByteArrayInputStream(MESSAGE.getBytes()), 5);
+        try {
+            SharedInputStream content = spool.getContent();
+            assertTrue(content instanceof SharedFileInputStream);
+            assertEquals(MESSAGE, IOUtils.toString(content.newStream(0, -1)));
+            assertEquals(MESSAGE.length(), spool.getSize());
+        } finally {
+            spool.dispose();
+        }
+    }
+
+    @Test
+    public void sharedStreamShouldNotBeCopied() throws Exception {
+        ExposedSharedByteArrayInputStream in = new ExposedSharedByteArrayInputStream(MESSAGE.getBytes());
+        MessageSpool spool = new MessageSpool(in, 5);
+        try {
+            assertSame(in, spool.getInputStream());
+            assertEquals(MESSAGE, IOUtils.toString(spool.getContent().newStream(0, -1)));
+        } finally {
+            spool.dispose();
+        }
+    }
+
+    @Test
+    public void sharedStreamShouldOnlyExposeTheRemainingBytes() throws Exception {
+        File file = File.createTempFile("spool", ".test");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(("A1 APPEND INBOX {" + MESSAGE.length() + "}\r\n" + MESSAGE).getBytes());
+            out.close();
+
+            SharedFileInputStream in = new SharedFileInputStream(file);
+            String command = "A1 APPEND INBOX {" + MESSAGE.length() + "}\r\n";
+            IOUtils.skipFully(in, command.length());
+
+            MessageSpool spool = new MessageSpool(in, 5);
+            try {
+                SharedInputStream content = spool.getContent();
+                assertEquals(MESSAGE.length(), spool.getSize());
+                assertEquals(MESSAGE, IOUtils.toString(content.newStream(0, -1)));
+                assertEquals("body\r\n", IOUtils.toString(content.newStream(17, -1)));
+            } finally {
+                spool.dispose();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -56,6 +56,7 @@ import org.apache.james.mpt.api.ImapFeatures;
 import org.apache.james.mpt.api.ImapFeatures.Feature;
 import org.apache.james.mpt.host.JamesImapHostSystem;
 import org.apache.james.mpt.imapmailbox.MailboxCreationDelegate;
+import org.elasticsearch.common.unit.ByteSizeValue;
 
 import com.google.common.base.Throwables;
 import com.google.inject.Inject;
@@ -106,7 +107,8 @@ public class ElasticSearchHostSystem extends JamesImapHostSystem {
 
         ElasticSearchListeningMessageSearchIndex<InMemoryId> searchIndex = new ElasticSearchListeningMessageSearchIndex<>(
             factory,
-            new ElasticSearchIndexer(clientProvider),
+            // Index each operation synchronously so that a SEARCH sees the preceding APPEND
+            new ElasticSearchIndexer(clientProvider, 1, new ByteSizeValue(-1), null, 0, ElasticSearchIndexer.DEFAULT_MAX_RETRIES),
             new ElasticSearchSearcher<>(clientProvider, new QueryConverter(new CriterionConverter())),
             new MessageToElasticSearchJson(new DefaultTextExtractor()));
 
@@ -161,6 +161,18 @@ public interface SelectedMailbox {
      */
     public int remove(Long uid);
 
+    /**
+     * Removes all given UIDs at once. This behaves like calling
+     * {@link #remove(Long)} for each UID in ascending order.
+     * 
+     * @param uids
+     *            not null
+     * @return the message sequence numbers the UIDs held when they were
+     *         removed, in ascending UID order. {@link #NO_SUCH_MESSAGE} is
+     *         returned for UIDs which were not found
+     */
+    public int[] removeAll(Collection<Long> uids);
+
     /**
      * Return a Collection which holds all uids reflecting the Messages which
      * flags were updated
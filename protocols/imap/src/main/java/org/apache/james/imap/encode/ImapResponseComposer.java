@@ -30,6 +30,21 @@ import org.apache.james.imap.message.response.Literal;
 
 public interface ImapResponseComposer {
 
+    /**
+     * Buffer the following responses instead of writing them line by line, so
+     * that many untagged responses are written at once. The buffered responses
+     * are written when the buffer is full, before a literal, with a tagged
+     * response and on {@link #flush()}.
+     */
+    public ImapResponseComposer startBuffering();
+
+    /**
+     * Write the buffered responses and stop buffering.
+     * 
+     * @throws IOException
+     */
+    public ImapResponseComposer flush() throws IOException;
+
     /**
      * Writes an untagged NO response. Indicates that a warning. The command may
      * still complete sucessfully.
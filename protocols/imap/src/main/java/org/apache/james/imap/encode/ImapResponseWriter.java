@@ -51,4 +51,18 @@ public interface ImapResponseWriter {
      */
     void write(byte[] buffer) throws IOException;
 
+    /**
+     * Write a part of a byte[] to the client. The buffer may be reused once
+     * this method returned
+     * 
+     * @param buffer
+     *            <code>byte array</code> holding the data, not null
+     * @param offset
+     *            offset of the data in the buffer
+     * @param length
+     *            number of bytes to write
+     * @throws IOException
+     */
+    void write(byte[] buffer, int offset, int length) throws IOException;
+
 }
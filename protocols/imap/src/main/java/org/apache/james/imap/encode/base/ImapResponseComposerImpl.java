@@ -20,7 +20,7 @@
 package org.apache.james.imap.encode.base;
 
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.io.OutputStream;
 
 import javax.mail.Flags;
 
@@ -44,20 +44,47 @@ public class ImapResponseComposerImpl implements ImapConstants, ImapResponseComp
     public static final String FAILED = "failed.";
     private static final int LOWER_CASE_OFFSET = 'a' - 'A';
     public final static int DEFAULT_BUFFER_SIZE = 2048;
+
+    private static final byte[] BYTES_LINE_END = {'\r', '\n'};
+    private static final byte BYTE_UNTAGGED = '*';
+    private static final byte BYTE_CONTINUATION = '+';
+    private static final byte[] BYTES_MIN_VALUE = Long.toString(Long.MIN_VALUE).getBytes();
     
     
     private final ImapResponseWriter writer;
 
     private final FastByteArrayOutputStream buffer;
 
-    private final Charset usAscii;
+    private final int bufferSize;
+
+    /**
+     * Hand the buffered bytes to the writer without copying them
+     */
+    private final OutputStream writerStream = new OutputStream() {
+
+        @Override
+        public void write(int b) throws IOException {
+            writer.write(new byte[] {(byte) b});
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writer.write(b, off, len);
+        }
+    };
+
+    private final byte[] digits = new byte[20];
 
     private boolean skipNextSpace;
 
+    private boolean buffering;
+
+    private boolean tagged;
+
     public ImapResponseComposerImpl(final ImapResponseWriter writer, int bufferSize) {
         skipNextSpace = false;
-        usAscii = Charset.forName("US-ASCII");
         this.writer = writer;
+        this.bufferSize = bufferSize;
         this.buffer = new FastByteArrayOutputStream(bufferSize);
     }
     
@@ -85,8 +112,12 @@ public class ImapResponseComposerImpl implements ImapConstants, ImapResponseComp
      * (java.lang.String)
      */
     public ImapResponseComposer continuationResponse(String message) throws IOException {
-        writeASCII(CONTINUATION + SP + message);
+        buffer.write(BYTE_CONTINUATION);
+        buffer.write(BYTE_SP);
+        writeASCII(message);
         end();
+        // the client waits for the continuation before sending anything else
+        writeBuffer();
         return this;
     }
 
@@ -132,7 +163,7 @@ public class ImapResponseComposerImpl implements ImapConstants, ImapResponseComp
      * @see org.apache.james.imap.encode.ImapResponseComposer#untagged()
      */
     public ImapResponseComposer untagged() throws IOException {
-        writeASCII(UNTAGGED);
+        buffer.write(BYTE_UNTAGGED);
         return this;
     }
 
@@ -164,17 +195,46 @@ public class ImapResponseComposerImpl implements ImapConstants, ImapResponseComp
      * @see org.apache.james.imap.encode.ImapResponseComposer#end()
      */
     public ImapResponseComposer end() throws IOException {
-        buffer.write(LINE_END.getBytes());
-        writer.write(buffer.toByteArray());
-        buffer.reset();
+        buffer.write(BYTES_LINE_END, 0, BYTES_LINE_END.length);
+        // a tagged response completes the command, and the session may change the channel (STARTTLS, COMPRESS)
+        // right after it: it must reach the channel before such a change
+        if (!buffering || tagged || buffer.size() >= bufferSize) {
+            writeBuffer();
+        }
+        tagged = false;
+        return this;
+    }
+
+    /**
+     * @see org.apache.james.imap.encode.ImapResponseComposer#startBuffering()
+     */
+    public ImapResponseComposer startBuffering() {
+        buffering = true;
         return this;
     }
 
+    /**
+     * @see org.apache.james.imap.encode.ImapResponseComposer#flush()
+     */
+    public ImapResponseComposer flush() throws IOException {
+        buffering = false;
+        writeBuffer();
+        return this;
+    }
+
+    private void writeBuffer() throws IOException {
+        if (buffer.size() > 0) {
+            buffer.writeTo(writerStream);
+            buffer.reset();
+        }
+    }
+
     /**
      * @see
      * org.apache.james.imap.encode.ImapResponseComposer#tag(java.lang.String)
      */
     public ImapResponseComposer tag(String tag) throws IOException {
+        tagged = true;
         writeASCII(tag);
         return this;
     }
@@ -267,8 +327,44 @@ public class ImapResponseComposerImpl implements ImapConstants, ImapResponseComp
     }
 
 
+    /**
+     * Write the string as US-ASCII without encoding it to a new array first.
+     * Characters which are not US-ASCII are replaced by '?'
+     */
     private void writeASCII(final String string) throws IOException {
-        buffer.write(string.getBytes(usAscii));
+        final int length = string.length();
+        for (int i = 0; i < length; i++) {
+            final char character = string.charAt(i);
+            if (character < 128) {
+                buffer.write((byte) character);
+            } else {
+                if (Character.isHighSurrogate(character) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                    i++;
+                }
+                buffer.write(BYTE_QUESTION);
+            }
+        }
+    }
+
+    /**
+     * Write the decimal representation of the number without creating a
+     * String
+     */
+    private void writeNumber(long number) throws IOException {
+        if (number == Long.MIN_VALUE) {
+            buffer.write(BYTES_MIN_VALUE, 0, BYTES_MIN_VALUE.length);
+            return;
+        }
+        if (number < 0) {
+            buffer.write('-');
+            number = -number;
+        }
+        int position = digits.length;
+        do {
+            digits[--position] = (byte) ('0' + number % 10);
+            number /= 10;
+        } while (number > 0);
+        buffer.write(digits, position, digits.length - position);
     }
 
     /**
@@ -276,7 +372,7 @@ public class ImapResponseComposerImpl implements ImapConstants, ImapResponseComp
      */
     public ImapResponseComposer message(long number) throws IOException {
         space();
-        writeASCII(Long.toString(number));
+        writeNumber(number);
         return this;
     }
     
@@ -351,7 +447,7 @@ public class ImapResponseComposerImpl implements ImapConstants, ImapResponseComp
         if (skipNextSpace) {
             skipNextSpace = false;
         } else {
-            buffer.write(SP.getBytes());
+            buffer.write(BYTE_SP);
         }
     }
 
@@ -363,9 +459,11 @@ public class ImapResponseComposerImpl implements ImapConstants, ImapResponseComp
         space();
         buffer.write(BYTE_OPEN_BRACE);
         final long size = literal.size();
-        writeASCII(Long.toString(size));
+        writeNumber(size);
         buffer.write(BYTE_CLOSE_BRACE);
         end();
+        // the literal is written straight to the client, so what was buffered has to go first
+        writeBuffer();
         if (size > 0) {
             writer.write(literal);
         }
@@ -21,6 +21,8 @@ package org.apache.james.imap.message.response;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 public interface Literal {
     /**
@@ -40,4 +42,14 @@ public interface Literal {
      * @throws IOException
      */
     public InputStream getInputStream() throws IOException;
+
+    /**
+     * Return the Literal as read-only {@link ByteBuffer}s, if its content is
+     * held in memory. This allows to write it without copying.
+     * 
+     * @return buffers or <code>null</code> if {@link #getInputStream()} needs
+     *         to be used
+     * @throws IOException
+     */
+    public List<ByteBuffer> asByteBuffers() throws IOException;
 }
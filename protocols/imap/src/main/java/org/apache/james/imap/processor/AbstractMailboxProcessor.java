@@ -166,23 +166,18 @@ abstract public class AbstractMailboxProcessor<M extends ImapRequest> extends Ab
     }
 
     private void addExpungedResponses(SelectedMailbox selected, Collection<Long> expungedUids, final ImapProcessor.Responder responder) {
-        for (final Long uid : expungedUids) {
-            final long uidValue = uid.longValue();
-
-            // we need to remove the message in the loop to the sequence numbers
-            // are updated correctly.
-            // See 7.4.1. EXPUNGE Response
-            final int msn = selected.remove(uidValue);
+        // the returned sequence numbers take the removal of the previous
+        // uids into account, so they can be sent in order.
+        // See 7.4.1. EXPUNGE Response
+        final int[] msns = selected.removeAll(expungedUids);
+        for (final int msn : msns) {
             ExpungeResponse response = new ExpungeResponse(msn);
             responder.respond(response);
         }
     }
     
     private void addVanishedResponse(SelectedMailbox selected, Collection<Long> expungedUids, final ImapProcessor.Responder responder) {
-        for (final Long uid : expungedUids) {
-            final long uidValue = uid.longValue();
-            selected.remove(uidValue);
-        }
+        selected.removeAll(expungedUids);
         IdRange[] uidRange = idRanges(MessageRange.toRanges(expungedUids));
         responder.respond(new VanishedResponse(uidRange, false));
     }
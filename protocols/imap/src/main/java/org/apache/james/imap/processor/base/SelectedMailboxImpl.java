@@ -19,15 +19,10 @@
 
 package org.apache.james.imap.processor.base;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import java.util.SortedMap;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
 import javax.mail.Flags;
 import javax.mail.Flags.Flag;
@@ -51,7 +46,7 @@ import org.apache.james.mailbox.model.UpdatedFlags;
  */
 public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
-    private final Set<Long> recentUids = new TreeSet<Long>();
+    private final UidSet recentUids = new UidSet();
 
     private boolean recentUidRemoved = false;
 
@@ -72,9 +67,9 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
     }
     
     private final long sessionId;
-    private final Set<Long> flagUpdateUids = new TreeSet<Long>();;
+    private final UidSet flagUpdateUids = new UidSet();
     private final Flags.Flag uninterestingFlag = Flags.Flag.RECENT;
-    private final Set<Long> expungedUids = new TreeSet<Long>();
+    private final UidSet expungedUids = new UidSet();
 
     private boolean isDeletedByOtherSession = false;
     private boolean sizeChanged = false;
@@ -83,13 +78,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     private boolean applicableFlagsChanged;
     
-    private final SortedMap<Integer, Long> msnToUid =new TreeMap<Integer, Long>();;
-
-    private final SortedMap<Long, Integer> uidToMsn = new TreeMap<Long, Integer>();
-
-    private long highestUid = 0;
-
-    private int highestMsn = 0;
+    private final UidMsnMapper uidMsnMapper = new UidMsnMapper();
     
     public SelectedMailboxImpl(final MailboxManager mailboxManager, final ImapSession session, final MailboxPath path) throws MailboxException {
         this.session = session;
@@ -123,47 +112,13 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
        
     }
 
-    private void add(int msn, long uid) {
-        if (uid > highestUid) {
-            highestUid = uid;
-        }
-        msnToUid.put(msn, uid);
-        uidToMsn.put(uid, msn);
-    }
-
-    /**
-     * Expunge the message with the given uid
-     * 
-     * @param uid
-     */
-    private void expunge(final long uid) {
-        final int msn = msn(uid);
-        remove(msn, uid);
-        final List<Integer> renumberMsns = new ArrayList<Integer>(msnToUid.tailMap(msn + 1).keySet());
-        for (final Integer msnInteger : renumberMsns) {
-            int aMsn = msnInteger.intValue();
-            long aUid = uid(aMsn);
-            remove(aMsn, aUid);
-            add(aMsn - 1, aUid);
-        }
-        highestMsn--;
-    }
-
-    private void remove(int msn, long uid) {
-        uidToMsn.remove(uid);
-        msnToUid.remove(msn);
-    }
-
     /**
      * Add the give uid
      * 
      * @param uid
      */
     private void add(long uid) {
-        if (!uidToMsn.containsKey(uid)) {
-            highestMsn++;
-            add(highestMsn, uid);
-        }
+        uidMsnMapper.add(uid);
     }
 
     /**
@@ -175,22 +130,14 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
      * @see SelectedMailbox#getFirstUid()
      */
     public synchronized long getFirstUid() {
-        if (uidToMsn.isEmpty()) {
-            return -1;
-        } else {
-            return uidToMsn.firstKey();
-        }
+        return uidMsnMapper.getFirstUid();
     }
 
     /**
      * @see SelectedMailbox#getLastUid()
      */
     public synchronized long getLastUid() {
-        if (uidToMsn.isEmpty()) {
-            return -1;
-        } else {
-            return uidToMsn.lastKey();
-        }
+        return uidMsnMapper.getLastUid();
     }
 
 
@@ -206,8 +153,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
             }
         }
         
-        uidToMsn.clear();
-        msnToUid.clear();
+        uidMsnMapper.clear();
         flagUpdateUids.clear();
 
         expungedUids.clear();
@@ -241,7 +187,7 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
     
     public synchronized Collection<Long> getRecent() {
         checkExpungedRecents();
-        return new ArrayList<Long>(recentUids);
+        return recentUids.toList();
     }
 
     /**
@@ -262,8 +208,8 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
     }
 
     private void checkExpungedRecents() {
-        for (final long uid : expungedUids()) {
-            removeRecent(uid);
+        if (recentUids.removeAll(expungedUids)) {
+            recentUidRemoved = true;
         }
     }
 
@@ -309,9 +255,15 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
      */
     
     public synchronized  int remove(Long uid) {
-        final int result = msn(uid);
-        expunge(uid);
-        return result;
+        return uidMsnMapper.remove(uid);
+    }
+
+    /**
+     * @see
+     * org.apache.james.imap.api.process.SelectedMailbox#removeAll(java.util.Collection)
+     */
+    public synchronized int[] removeAll(Collection<Long> uids) {
+        return uidMsnMapper.removeAll(uids);
     }
 
 
@@ -392,10 +344,10 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
      */
     
     public synchronized Collection<Long> flagUpdateUids() {
-        // copy the TreeSet to fix possible
+        // return a copy to fix possible
         // java.util.ConcurrentModificationException
         // See IMAP-278
-        return Collections.unmodifiableSet(new TreeSet<Long>(flagUpdateUids));
+        return Collections.unmodifiableList(flagUpdateUids.toList());
         
     }
 
@@ -406,10 +358,10 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
      */
     
     public synchronized Collection<Long> expungedUids() {
-        // copy the TreeSet to fix possible
+        // return a copy to fix possible
         // java.util.ConcurrentModificationException
         // See IMAP-278
-        return Collections.unmodifiableSet(new TreeSet<Long>(expungedUids));
+        return Collections.unmodifiableList(expungedUids.toList());
         
     }
 
@@ -521,30 +473,17 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener{
 
     
     public synchronized int msn(long uid) {
-        Integer msn = uidToMsn.get(uid);
-        if (msn != null) {
-            return msn.intValue();
-        } else {
-            return SelectedMailbox.NO_SUCH_MESSAGE;
-        }
+        return uidMsnMapper.msn(uid);
     }
 
     
     public synchronized long uid(int msn) {
-        if (msn == -1) {
-            return SelectedMailbox.NO_SUCH_MESSAGE;
-        }
-        Long uid = msnToUid.get(msn);
-        if (uid != null) {
-            return uid.longValue();
-        } else {
-            return SelectedMailbox.NO_SUCH_MESSAGE;
-        }
+        return uidMsnMapper.uid(msn);
     }
 
     
     public synchronized long existsCount() {
-        return uidToMsn.size();
+        return uidMsnMapper.size();
     }
     
 
@@ -0,0 +1,176 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.imap.processor.base;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+import org.apache.james.imap.api.process.SelectedMailbox;
+
+/**
+ * Maps message sequence numbers to uids and back for a selected mailbox.
+ * 
+ * The uids are kept in a sorted <code>long[]</code>, so the msn of a uid is
+ * its index plus one. Looking up a uid by msn is a direct array access and
+ * looking up a msn by uid is a binary search. This avoids boxing every uid and
+ * msn in two maps, which for big mailboxes makes up most of the memory used by
+ * an IMAP session.
+ * 
+ * This class is not thread-safe.
+ */
+final class UidMsnMapper {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] uids = EMPTY;
+    private int size = 0;
+
+    /**
+     * Add the given uid. Uids are expected to be added in ascending order, in
+     * which case this is a plain append.
+     * 
+     * @param uid
+     * @return true if the uid was added, false if it was already known
+     */
+    public boolean add(long uid) {
+        if (size == 0 || uid > uids[size - 1]) {
+            ensureCapacity(size + 1);
+            uids[size++] = uid;
+            return true;
+        }
+        int index = Arrays.binarySearch(uids, 0, size, uid);
+        if (index >= 0) {
+            return false;
+        }
+        int insertion = -(index + 1);
+        ensureCapacity(size + 1);
+        System.arraycopy(uids, insertion, uids, insertion + 1, size - insertion);
+        uids[insertion] = uid;
+        size++;
+        return true;
+    }
+
+    /**
+     * Remove the given uid and renumber all following messages.
+     * 
+     * @param uid
+     * @return the msn the uid held before or
+     *         {@link SelectedMailbox#NO_SUCH_MESSAGE} if it was unknown
+     */
+    public int remove(long uid) {
+        int index = Arrays.binarySearch(uids, 0, size, uid);
+        if (index < 0) {
+            return SelectedMailbox.NO_SUCH_MESSAGE;
+        }
+        System.arraycopy(uids, index + 1, uids, index, size - index - 1);
+        size--;
+        return index + 1;
+    }
+
+    /**
+     * Remove all given uids in one pass over the array. The result is the
+     * same as calling {@link #remove(long)} for each uid in ascending order.
+     * 
+     * @param toRemove
+     * @return the msns the uids held when they were removed, in ascending uid
+     *         order. Unknown uids are reported as
+     *         {@link SelectedMailbox#NO_SUCH_MESSAGE}
+     */
+    public int[] removeAll(Collection<Long> toRemove) {
+        long[] sorted = new long[toRemove.size()];
+        Iterator<Long> it = toRemove.iterator();
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = it.next();
+        }
+        Arrays.sort(sorted);
+
+        int[] msns = new int[sorted.length];
+        int read = 0;
+        int write = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            long uid = sorted[i];
+            while (read < size && uids[read] < uid) {
+                uids[write++] = uids[read++];
+            }
+            if (read < size && uids[read] == uid) {
+                read++;
+                msns[i] = write + 1;
+            } else {
+                msns[i] = SelectedMailbox.NO_SUCH_MESSAGE;
+            }
+        }
+        System.arraycopy(uids, read, uids, write, size - read);
+        size = write + size - read;
+        return msns;
+    }
+
+    /**
+     * @param uid
+     * @return the msn of the uid or {@link SelectedMailbox#NO_SUCH_MESSAGE}
+     */
+    public int msn(long uid) {
+        int index = Arrays.binarySearch(uids, 0, size, uid);
+        if (index < 0) {
+            return SelectedMailbox.NO_SUCH_MESSAGE;
+        }
+        return index + 1;
+    }
+
+    /**
+     * @param msn
+     * @return the uid stored at the msn or
+     *         {@link SelectedMailbox#NO_SUCH_MESSAGE}
+     */
+    public long uid(int msn) {
+        if (msn < 1 || msn > size) {
+            return SelectedMailbox.NO_SUCH_MESSAGE;
+        }
+        return uids[msn - 1];
+    }
+
+    public long getFirstUid() {
+        if (size == 0) {
+            return -1;
+        }
+        return uids[0];
+    }
+
+    public long getLastUid() {
+        if (size == 0) {
+            return -1;
+        }
+        return uids[size - 1];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        uids = EMPTY;
+        size = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > uids.length) {
+            uids = Arrays.copyOf(uids, Math.max(capacity, Math.max(16, uids.length + (uids.length >> 1))));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.imap.processor.base;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Sorted set of uids backed by a primitive <code>long[]</code>.
+ * 
+ * Used by {@link SelectedMailboxImpl} for the recent, expunged and flag
+ * updated uids, which are kept per IMAP session and so should not box every
+ * entry.
+ * 
+ * This class is not thread-safe.
+ */
+final class UidSet {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] uids = EMPTY;
+    private int size = 0;
+
+    public boolean add(long uid) {
+        int insertion;
+        if (size == 0 || uid > uids[size - 1]) {
+            insertion = size;
+        } else {
+            int index = Arrays.binarySearch(uids, 0, size, uid);
+            if (index >= 0) {
+                return false;
+            }
+            insertion = -(index + 1);
+        }
+        if (size == uids.length) {
+            uids = Arrays.copyOf(uids, Math.max(8, uids.length + (uids.length >> 1)));
+        }
+        System.arraycopy(uids, insertion, uids, insertion + 1, size - insertion);
+        uids[insertion] = uid;
+        size++;
+        return true;
+    }
+
+    public void addAll(Collection<Long> toAdd) {
+        for (Long uid : toAdd) {
+            add(uid);
+        }
+    }
+
+    public boolean remove(long uid) {
+        int index = Arrays.binarySearch(uids, 0, size, uid);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(uids, index + 1, uids, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Remove all uids contained in the given set in one pass.
+     * 
+     * @param other
+     * @return true if at least one uid was removed
+     */
+    public boolean removeAll(UidSet other) {
+        int write = 0;
+        int j = 0;
+        for (int read = 0; read < size; read++) {
+            long uid = uids[read];
+            while (j < other.size && other.uids[j] < uid) {
+                j++;
+            }
+            if (j >= other.size || other.uids[j] != uid) {
+                uids[write++] = uid;
+            }
+        }
+        boolean changed = write != size;
+        size = write;
+        return changed;
+    }
+
+    public boolean contains(long uid) {
+        return Arrays.binarySearch(uids, 0, size, uid) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all uids and release the backing array.
+     */
+    public void clear() {
+        uids = EMPTY;
+        size = 0;
+    }
+
+    /**
+     * @return a copy of the uids in ascending order
+     */
+    public List<Long> toList() {
+        List<Long> list = new ArrayList<Long>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(uids[i]);
+        }
+        return list;
+    }
+}
@@ -24,6 +24,8 @@ package org.apache.james.imap.processor.fetch;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 import org.apache.james.imap.message.response.FetchResponse.BodyElement;
 import org.apache.james.mailbox.exception.MailboxException;
@@ -66,4 +68,8 @@ class ContentBodyElement implements BodyElement {
     public InputStream getInputStream() throws IOException {
         return content.getInputStream();
     }
+
+    public List<ByteBuffer> asByteBuffers() throws IOException {
+        return content.asByteBuffers();
+    }
 }
\ No newline at end of file
@@ -21,6 +21,9 @@ package org.apache.james.imap.processor.fetch;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.james.mailbox.model.Content;
 
@@ -44,4 +47,8 @@ public class EmptyContent implements Content{
         return new ByteArrayInputStream("".getBytes());
     }
 
+    public List<ByteBuffer> asByteBuffers() {
+        return Collections.emptyList();
+    }
+
 }
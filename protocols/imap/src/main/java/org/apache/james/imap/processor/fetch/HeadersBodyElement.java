@@ -20,6 +20,9 @@
 package org.apache.james.imap.processor.fetch;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.james.mailbox.model.Content;
 
@@ -53,4 +56,13 @@ public class HeadersBodyElement extends ContentBodyElement{
         }
     }
 
+    @Override
+    public List<ByteBuffer> asByteBuffers() throws IOException {
+        if (noBody) {
+            return Collections.emptyList();
+        } else {
+            return super.asByteBuffers();
+        }
+    }
+
 }
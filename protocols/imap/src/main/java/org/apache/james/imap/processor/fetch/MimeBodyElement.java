@@ -22,7 +22,9 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -90,6 +92,14 @@ public class MimeBodyElement implements BodyElement {
      * @see org.apache.james.imap.message.response.FetchResponse.BodyElement#getInputStream()
      */
     public InputStream getInputStream() throws IOException {
+        return new ByteArrayInputStream(toBytes());
+    }
+
+    public List<ByteBuffer> asByteBuffers() throws IOException {
+        return Collections.singletonList(ByteBuffer.wrap(toBytes()));
+    }
+
+    private byte[] toBytes() throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
 
         for (final Iterator<MessageResult.Header> it = headers.iterator(); it.hasNext();) {
@@ -104,7 +114,7 @@ public class MimeBodyElement implements BodyElement {
         if (size > 0) {
             out.write(ImapConstants.LINE_END.getBytes());
         }
-        return new ByteArrayInputStream(out.toByteArray());
+        return out.toByteArray();
     }
 
 
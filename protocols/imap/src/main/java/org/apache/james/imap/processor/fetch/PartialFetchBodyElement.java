@@ -22,6 +22,9 @@ package org.apache.james.imap.processor.fetch;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.james.imap.message.response.FetchResponse.BodyElement;
 
@@ -77,6 +80,41 @@ final class PartialFetchBodyElement implements BodyElement {
         return new LimitingInputStream(delegate.getInputStream(), firstOctet, size());
     }
 
+    /**
+     * Slice the buffers of the delegate to the requested range, so the
+     * partial content can be written without copying it
+     * 
+     * @see org.apache.james.imap.message.response.Literal#asByteBuffers()
+     */
+    public List<ByteBuffer> asByteBuffers() throws IOException {
+        final List<ByteBuffer> buffers = delegate.asByteBuffers();
+        if (buffers == null) {
+            return null;
+        }
+        final List<ByteBuffer> result = new ArrayList<ByteBuffer>();
+        long skip = firstOctet;
+        long remaining = size();
+        for (ByteBuffer buffer : buffers) {
+            if (remaining <= 0) {
+                break;
+            }
+            final int length = buffer.remaining();
+            if (skip >= length) {
+                skip -= length;
+                continue;
+            }
+            final ByteBuffer slice = buffer.duplicate();
+            slice.position(slice.position() + (int) skip);
+            if (slice.remaining() > remaining) {
+                slice.limit(slice.position() + (int) remaining);
+            }
+            remaining -= slice.remaining();
+            skip = 0;
+            result.add(slice.slice());
+        }
+        return result;
+    }
+
     private final class LimitingInputStream extends FilterInputStream {
         private long pos = 0;
         private long length;
@@ -97,16 +135,26 @@ final class PartialFetchBodyElement implements BodyElement {
         private void checkOffset() throws IOException {
             if (offset > -1) {
                 // first try to skip on the InputStream as it is mostly faster
-                // the calling read in a loop
+                // the calling read in a loop. The mailbox content streams skip
+                // without reading, so only the returned bytes get loaded
                 try {
-                    offset -= in.skip(offset);
+                    long skipped;
+                    while (offset > 0 && (skipped = in.skip(offset)) > 0) {
+                        offset -= skipped;
+                    }
                 } catch (IOException e) {
                     // maybe because skip is not supported
                 }
-                while (offset > 0) {
+                if (offset > 0) {
                     // consume the stream till we reach the offset
-                    in.read();
-                    offset--;
+                    byte[] buffer = new byte[(int) Math.min(offset, 8192)];
+                    while (offset > 0) {
+                        int read = in.read(buffer, 0, (int) Math.min(offset, buffer.length));
+                        if (read == -1) {
+                            break;
+                        }
+                        offset -= read;
+                    }
                 }
                 offset = -1;
             }
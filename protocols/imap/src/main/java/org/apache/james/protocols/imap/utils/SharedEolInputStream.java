@@ -0,0 +1,48 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.protocols.imap.utils;
+
+import java.io.InputStream;
+
+import javax.mail.internet.SharedInputStream;
+
+import org.apache.james.imap.decode.ImapRequestLineReader;
+
+/**
+ * {@link EolInputStream} which wraps a {@link SharedInputStream}, so the
+ * literal can be read again by the consumer without copying it
+ */
+public class SharedEolInputStream extends EolInputStream implements SharedInputStream {
+
+    private final SharedInputStream shared;
+
+    public SharedEolInputStream(ImapRequestLineReader reader, InputStream in) {
+        super(reader, in);
+        this.shared = (SharedInputStream) in;
+    }
+
+    public long getPosition() {
+        return shared.getPosition();
+    }
+
+    public InputStream newStream(long start, long end) {
+        return shared.newStream(start, end);
+    }
+
+}
@@ -71,4 +71,11 @@ public class OutputStreamImapResponseWriter implements ImapResponseWriter {
         output.write(buffer);
     }
 
+    /**
+     * @see org.apache.james.imap.encode.ImapResponseWriter#write(byte[], int, int)
+     */
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        output.write(buffer, offset, length);
+    }
+
 }
@@ -77,4 +77,11 @@ public class ByteImapResponseWriter implements ImapConstants, ImapResponseWriter
         out.write(buffer);
     }
 
+    /**
+     * @see org.apache.james.imap.encode.ImapResponseWriter#write(byte[], int, int)
+     */
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        out.write(buffer, offset, length);
+    }
+
 }
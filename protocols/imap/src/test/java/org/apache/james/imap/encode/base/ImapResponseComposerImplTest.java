@@ -0,0 +1,115 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.imap.encode.base;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ImapResponseComposerImplTest {
+
+    private ByteImapResponseWriter writer;
+    private ImapResponseComposerImpl composer;
+
+    @Before
+    public void setUp() {
+        writer = new ByteImapResponseWriter();
+        composer = new ImapResponseComposerImpl(writer, 1024);
+    }
+
+    @Test
+    public void numbersShouldBeWrittenInDecimal() throws Exception {
+        composer.untagged().message(0).message(42).message(-7).message(Long.MAX_VALUE).message(Long.MIN_VALUE).end();
+
+        assertEquals("* 0 42 -7 " + Long.MAX_VALUE + " " + Long.MIN_VALUE + "\r\n", writer.getString());
+    }
+
+    @Test
+    public void nonAsciiCharactersShouldBeReplaced() throws Exception {
+        composer.untagged().message("caf\u00e9 \ud83d\ude00").end();
+
+        assertEquals("* caf? ?\r\n", writer.getString());
+    }
+
+    @Test
+    public void linesShouldBeWrittenOnEndWhenNotBuffering() throws Exception {
+        composer.untagged().message(1).message("EXISTS").end();
+
+        assertEquals("* 1 EXISTS\r\n", writer.getString());
+    }
+
+    @Test
+    public void bufferedLinesShouldOnlyBeWrittenOnFlush() throws Exception {
+        composer.startBuffering();
+        composer.untagged().message(1).message("EXISTS").end();
+        composer.untagged().message(0).message("RECENT").end();
+
+        assertEquals("", writer.getString());
+
+        composer.flush();
+
+        assertEquals("* 1 EXISTS\r\n* 0 RECENT\r\n", writer.getString());
+    }
+
+    @Test
+    public void bufferedLinesShouldBeWrittenWhenTheBufferIsFull() throws Exception {
+        composer = new ImapResponseComposerImpl(writer, 16);
+        composer.startBuffering();
+        composer.untagged().message(1).message("EXISTS").end();
+        composer.untagged().message(0).message("RECENT").end();
+
+        assertEquals("* 1 EXISTS\r\n* 0 RECENT\r\n", writer.getString());
+    }
+
+    @Test
+    public void flushShouldStopBuffering() throws Exception {
+        composer.startBuffering();
+        composer.flush();
+        composer.untagged().message(1).message("EXISTS").end();
+
+        assertEquals("* 1 EXISTS\r\n", writer.getString());
+    }
+
+    @Test
+    public void continuationResponsesShouldBeWrittenWhileBuffering() throws Exception {
+        composer.startBuffering();
+        composer.continuationResponse("Ready");
+
+        assertEquals("+ Ready\r\n", writer.getString());
+    }
+
+    @Test
+    public void taggedResponsesShouldBeWrittenWithTheBufferedLinesWhileBuffering() throws Exception {
+        composer.startBuffering();
+        composer.untagged().message(1).message("EXISTS").end();
+        composer.tag("A1").message("OK").end();
+
+        assertEquals("* 1 EXISTS\r\nA1 OK\r\n", writer.getString());
+    }
+
+    @Test
+    public void linesFollowingATaggedResponseShouldBeBufferedAgain() throws Exception {
+        composer.startBuffering();
+        composer.taggedResponse("OK", "A1");
+        composer.untagged().message(1).message("EXISTS").end();
+
+        assertEquals("A1 OK\r\n", writer.getString());
+    }
+}
@@ -0,0 +1,92 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.imap.processor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.apache.james.imap.api.ImapCommand;
+import org.apache.james.imap.api.ImapConstants;
+import org.apache.james.imap.api.message.response.ImapResponseMessage;
+import org.apache.james.imap.api.process.ImapProcessor.Responder;
+import org.apache.james.imap.encode.FakeImapSession;
+import org.apache.james.imap.encode.ImapEncoder;
+import org.apache.james.imap.encode.StatusResponseEncoder;
+import org.apache.james.imap.encode.base.ByteImapResponseWriter;
+import org.apache.james.imap.encode.base.EndImapEncoder;
+import org.apache.james.imap.encode.base.ImapResponseComposerImpl;
+import org.apache.james.imap.encode.main.DefaultLocalizer;
+import org.apache.james.imap.message.request.StartTLSRequest;
+import org.apache.james.imap.message.response.UnpooledStatusResponseFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StartTLSProcessorTest {
+
+    private ByteImapResponseWriter writer;
+    private ImapResponseComposerImpl composer;
+    private Responder responder;
+    private StartTLSProcessor processor;
+    private String writtenOnStartTLS;
+
+    @Before
+    public void setUp() {
+        writer = new ByteImapResponseWriter();
+        composer = new ImapResponseComposerImpl(writer);
+        final ImapEncoder encoder = new StatusResponseEncoder(new EndImapEncoder(), new DefaultLocalizer());
+        responder = new Responder() {
+            public void respond(ImapResponseMessage message) {
+                try {
+                    encoder.encode(message, composer, null);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        processor = new StartTLSProcessor(null, new UnpooledStatusResponseFactory());
+    }
+
+    @Test
+    public void okShouldBeWrittenBeforeStartingTLSWhileBuffering() throws Exception {
+        FakeImapSession session = new FakeImapSession() {
+            @Override
+            public boolean supportStartTLS() {
+                return true;
+            }
+
+            @Override
+            public boolean startTLS() {
+                try {
+                    writtenOnStartTLS = writer.getString();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                return true;
+            }
+        };
+
+        composer.startBuffering();
+        processor.doProcess(new StartTLSRequest("A1", ImapCommand.anyStateCommand(ImapConstants.STARTTLS)), responder, session);
+
+        assertEquals("A1 OK STARTTLS Begin TLS negotiation now.\r\n", writtenOnStartTLS);
+    }
+
+}
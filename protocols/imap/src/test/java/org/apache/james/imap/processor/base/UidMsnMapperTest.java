@@ -0,0 +1,107 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.imap.processor.base;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.james.imap.api.process.SelectedMailbox;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UidMsnMapperTest {
+
+    private UidMsnMapper mapper;
+
+    @Before
+    public void setUp() {
+        mapper = new UidMsnMapper();
+        for (long uid = 1; uid <= 100; uid += 3) {
+            mapper.add(uid);
+        }
+    }
+
+    @Test
+    public void msnAndUidShouldBeConsistent() {
+        assertEquals(34, mapper.size());
+        assertEquals(1, mapper.msn(1));
+        assertEquals(34, mapper.msn(100));
+        assertEquals(100, mapper.uid(34));
+        assertEquals(4, mapper.uid(2));
+        assertEquals(1, mapper.getFirstUid());
+        assertEquals(100, mapper.getLastUid());
+    }
+
+    @Test
+    public void unknownValuesShouldReturnNoSuchMessage() {
+        assertEquals(SelectedMailbox.NO_SUCH_MESSAGE, mapper.msn(2));
+        assertEquals(SelectedMailbox.NO_SUCH_MESSAGE, mapper.uid(0));
+        assertEquals(SelectedMailbox.NO_SUCH_MESSAGE, mapper.uid(-1));
+        assertEquals(SelectedMailbox.NO_SUCH_MESSAGE, mapper.uid(35));
+    }
+
+    @Test
+    public void addShouldIgnoreDuplicatesAndKeepOrder() {
+        assertFalse(mapper.add(4));
+        assertTrue(mapper.add(5));
+        assertEquals(3, mapper.msn(5));
+        assertEquals(4, mapper.msn(7));
+        assertEquals(35, mapper.size());
+    }
+
+    @Test
+    public void removeShouldRenumberFollowingMessages() {
+        assertEquals(2, mapper.remove(4));
+        assertEquals(SelectedMailbox.NO_SUCH_MESSAGE, mapper.remove(4));
+        assertEquals(2, mapper.msn(7));
+        assertEquals(7, mapper.uid(2));
+        assertEquals(33, mapper.size());
+    }
+
+    @Test
+    public void removeAllShouldMatchSequentialRemoval() {
+        UidMsnMapper sequential = new UidMsnMapper();
+        for (long uid = 1; uid <= 100; uid += 3) {
+            sequential.add(uid);
+        }
+        int[] expected = new int[] { sequential.remove(1), sequential.remove(2), sequential.remove(10),
+            sequential.remove(13), sequential.remove(100) };
+
+        int[] msns = mapper.removeAll(Arrays.asList(100L, 13L, 1L, 10L, 2L));
+
+        assertArrayEquals(new int[] { 1, SelectedMailbox.NO_SUCH_MESSAGE, 3, 3, 31 }, msns);
+        assertArrayEquals(expected, msns);
+        assertEquals(sequential.size(), mapper.size());
+        for (int msn = 1; msn <= mapper.size(); msn++) {
+            assertEquals(sequential.uid(msn), mapper.uid(msn));
+        }
+    }
+
+    @Test
+    public void clearShouldRemoveAllUids() {
+        mapper.clear();
+        assertEquals(0, mapper.size());
+        assertEquals(-1, mapper.getFirstUid());
+        assertEquals(-1, mapper.getLastUid());
+    }
+}
@@ -0,0 +1,72 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.imap.processor.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class UidSetTest {
+
+    @Test
+    public void addShouldKeepUidsSortedAndUnique() {
+        UidSet set = new UidSet();
+        set.addAll(Arrays.asList(5L, 1L, 9L, 5L, 3L));
+
+        assertEquals(Arrays.asList(1L, 3L, 5L, 9L), set.toList());
+        assertTrue(set.contains(3));
+        assertFalse(set.contains(4));
+    }
+
+    @Test
+    public void removeShouldOnlyRemoveKnownUids() {
+        UidSet set = new UidSet();
+        set.addAll(Arrays.asList(1L, 2L, 3L));
+
+        assertTrue(set.remove(2));
+        assertFalse(set.remove(2));
+        assertEquals(Arrays.asList(1L, 3L), set.toList());
+    }
+
+    @Test
+    public void removeAllShouldRemoveIntersection() {
+        UidSet set = new UidSet();
+        set.addAll(Arrays.asList(1L, 2L, 3L, 4L, 5L));
+        UidSet other = new UidSet();
+        other.addAll(Arrays.asList(0L, 2L, 4L, 6L));
+
+        assertTrue(set.removeAll(other));
+        assertFalse(set.removeAll(other));
+        assertEquals(Arrays.asList(1L, 3L, 5L), set.toList());
+    }
+
+    @Test
+    public void clearShouldEmptyTheSet() {
+        UidSet set = new UidSet();
+        set.add(1);
+        set.clear();
+
+        assertTrue(set.isEmpty());
+        assertEquals(0, set.size());
+    }
+}
@@ -24,6 +24,7 @@ import static org.junit.Assert.assertNull;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -71,6 +72,10 @@ public class MessageResultUtilsTest {
             return null;
         }
 
+        public List<ByteBuffer> asByteBuffers() throws IOException {
+            return null;
+        }
+
 
     }
 
@@ -21,6 +21,13 @@ package org.apache.james.imap.processor.fetch;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
 import org.apache.james.imap.message.response.FetchResponse.BodyElement;
 import org.apache.james.imap.processor.fetch.PartialFetchBodyElement;
 import org.jmock.Expectations;
@@ -125,4 +132,59 @@ public class PartialFetchBodyElementTest {
         assertEquals("Content size is less than start. Size should be zero.",
                 NUMBER_OF_OCTETS, element.size());
     }
+    @Test
+    public void testInputStreamShouldSkipToFirstOctetWhenSkipIsPartial()
+            throws Exception {
+        final byte[] content = "0123456789abcdefghij".getBytes("US-ASCII");
+        final InputStream in = new ByteArrayInputStream(content) {
+            @Override
+            public synchronized long skip(long n) {
+                // only skip a few bytes per call
+                return super.skip(Math.min(n, 3));
+            }
+        };
+        PartialFetchBodyElement element = new PartialFetchBodyElement(
+                mockBodyElement, 10, 5);
+        mockery.checking(new Expectations() {{
+            allowing(mockBodyElement).size();will(returnValue(new Long(content.length)));
+            oneOf(mockBodyElement).getInputStream();will(returnValue(in));
+        }});
+        assertEquals("abcde", IOUtils.toString(element.getInputStream(), "US-ASCII"));
+    }
+
+    @Test
+    public void testByteBuffersShouldBeSlicedToRange() throws Exception {
+        final List<ByteBuffer> buffers = Arrays.asList(
+                ByteBuffer.wrap("0123456789".getBytes("US-ASCII")),
+                ByteBuffer.wrap("abcdefghij".getBytes("US-ASCII")));
+        PartialFetchBodyElement element = new PartialFetchBodyElement(
+                mockBodyElement, 8, 5);
+        mockery.checking(new Expectations() {{
+            allowing(mockBodyElement).size();will(returnValue(new Long(20)));
+            oneOf(mockBodyElement).asByteBuffers();will(returnValue(buffers));
+        }});
+
+        List<ByteBuffer> result = element.asByteBuffers();
+
+        assertEquals(2, result.size());
+        assertEquals("89", toString(result.get(0)));
+        assertEquals("abc", toString(result.get(1)));
+    }
+
+    @Test
+    public void testByteBuffersShouldBeNullWhenDelegateIsNotInMemory() throws Exception {
+        PartialFetchBodyElement element = new PartialFetchBodyElement(
+                mockBodyElement, 8, 5);
+        mockery.checking(new Expectations() {{
+            oneOf(mockBodyElement).asByteBuffers();will(returnValue(null));
+        }});
+
+        assertNull(element.asByteBuffers());
+    }
+
+    private String toString(ByteBuffer buffer) throws Exception {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, "US-ASCII");
+    }
 }
@@ -18,10 +18,16 @@
  ****************************************************************/
 package org.apache.james.modules.mailbox;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+
 import javax.inject.Singleton;
 
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.james.adapter.mailbox.store.UserRepositoryAuthenticator;
 import org.apache.james.backends.cassandra.components.CassandraModule;
+import org.apache.james.filesystem.api.FileSystem;
 import org.apache.james.mailbox.MailboxManager;
 import org.apache.james.mailbox.MailboxPathLocker;
 import org.apache.james.mailbox.SubscriptionManager;
@@ -36,13 +42,16 @@ import org.apache.james.mailbox.exception.MailboxException;
 import org.apache.james.mailbox.store.Authenticator;
 import org.apache.james.mailbox.store.MailboxSessionMapperFactory;
 import org.apache.james.mailbox.store.NoMailboxPathLocker;
+import org.apache.james.mailbox.store.event.AsynchronousEventDelivery;
 import org.apache.james.mailbox.store.mail.MessageMapperFactory;
 import org.apache.james.mailbox.store.mail.ModSeqProvider;
 import org.apache.james.mailbox.store.mail.UidProvider;
 import org.apache.james.mailbox.store.search.MessageSearchIndex;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
+import com.google.inject.Scopes;
 import com.google.inject.TypeLiteral;
 import com.google.inject.multibindings.Multibinder;
 import com.google.inject.name.Named;
@@ -50,6 +59,7 @@ import com.google.inject.name.Named;
 public class CassandraMailboxModule extends AbstractModule {
 
     public static final String MAILBOXMANAGER_NAME = "mailboxmanager";
+    public static final String ASYNCHRONOUS_INDEXING = "elasticsearch.indexing.asynchronous";
 
     @Override
     protected void configure() {
@@ -61,6 +71,7 @@ public class CassandraMailboxModule extends AbstractModule {
         
         bind(MailboxPathLocker.class).to(NoMailboxPathLocker.class);
         bind(Authenticator.class).to(UserRepositoryAuthenticator.class);
+        bind(AsynchronousEventDelivery.class).in(Scopes.SINGLETON);
 
         bind(new TypeLiteral<ModSeqProvider<CassandraId>>(){}).to(new TypeLiteral<CassandraModSeqProvider>(){});
         bind(new TypeLiteral<UidProvider<CassandraId>>(){}).to(new TypeLiteral<CassandraUidProvider>(){});
@@ -69,8 +80,26 @@ public class CassandraMailboxModule extends AbstractModule {
     }
     
     @Provides @Named(MAILBOXMANAGER_NAME) @Singleton
-    public MailboxManager provideMailboxManager(CassandraMailboxManager cassandraMailboxManager) throws MailboxException {
+    public MailboxManager provideMailboxManager(CassandraMailboxManager cassandraMailboxManager, Provider<AsynchronousEventDelivery> asynchronousEventDelivery,
+                                                FileSystem fileSystem) throws MailboxException, ConfigurationException {
+        // the index is updated outside of the requests only when configured to, as the listeners then share the
+        // MailboxSession of the request which fired the event
+        if (readConfiguration(fileSystem).getBoolean(ASYNCHRONOUS_INDEXING, false)) {
+            cassandraMailboxManager.setAsynchronousEventDelivery(asynchronousEventDelivery.get());
+        }
         cassandraMailboxManager.init();
         return cassandraMailboxManager;
     }
+
+    private PropertiesConfiguration readConfiguration(FileSystem fileSystem) throws ConfigurationException {
+        try {
+            File file = fileSystem.getFile(FileSystem.FILE_PROTOCOL_AND_CONF + "elasticsearch.properties");
+            if (file.exists()) {
+                return new PropertiesConfiguration(file);
+            }
+        } catch (FileNotFoundException e) {
+            // use the defaults
+        }
+        return new PropertiesConfiguration();
+    }
 }
\ No newline at end of file
@@ -27,6 +27,7 @@ import org.apache.james.backends.cassandra.components.CassandraModule;
 import org.apache.james.backends.cassandra.init.CassandraModuleComposite;
 import org.apache.james.backends.cassandra.init.ClusterFactory;
 import org.apache.james.backends.cassandra.init.ClusterWithKeyspaceCreatedFactory;
+import org.apache.james.backends.cassandra.init.PreparedStatementRegistry;
 import org.apache.james.backends.cassandra.init.SessionWithInitializedTablesFactory;
 import org.apache.james.filesystem.api.FileSystem;
 
@@ -57,6 +58,12 @@ public class CassandraSessionModule extends AbstractModule {
         return new SessionWithInitializedTablesFactory(cassandraModule).createSession(cluster, keyspace);
     }
 
+    @Provides
+    @Singleton
+    PreparedStatementRegistry providePreparedStatementRegistry(Session session) {
+        return new PreparedStatementRegistry(session);
+    }
+
     @Provides
     @Singleton
     Cluster provideCluster(FileSystem fileSystem) throws FileNotFoundException, ConfigurationException {
@@ -0,0 +1,53 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.modules.mailbox;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.james.mailbox.elasticsearch.ClientProvider;
+import org.apache.james.mailbox.elasticsearch.ClientProviderImpl;
+import org.apache.james.mailbox.elasticsearch.ElasticSearchIndexer;
+
+/**
+ * Sends the pending ElasticSearch operations and then closes the client on shutdown. The {@link ClientProvider}
+ * is built by a provider method, so it does not get its own {@link PreDestroy} callback.
+ */
+@Singleton
+public class ElasticSearchCloser {
+
+    private final ElasticSearchIndexer indexer;
+    private final ClientProvider clientProvider;
+
+    @Inject
+    public ElasticSearchCloser(ElasticSearchIndexer indexer, ClientProvider clientProvider) {
+        this.indexer = indexer;
+        this.clientProvider = clientProvider;
+    }
+
+    @PreDestroy
+    public void close() {
+        indexer.close();
+        if (clientProvider instanceof ClientProviderImpl) {
+            ((ClientProviderImpl) clientProvider).close();
+        }
+    }
+}
@@ -48,6 +48,7 @@ public class ElasticSearchMailboxModule extends AbstractModule {
         bind(TextExtractor.class).to(TikaTextExtractor.class);
         bind(new TypeLiteral<MessageSearchIndex<CassandraId>>() {})
             .to(new TypeLiteral<ElasticSearchListeningMessageSearchIndex<CassandraId>>() {});
+        bind(ElasticSearchCloser.class).asEagerSingleton();
     }
 
     @Provides
@@ -30,24 +30,35 @@ import org.apache.activemq.broker.BrokerService;
 import org.apache.activemq.broker.jmx.ManagementContext;
 import org.apache.activemq.plugin.StatisticsBrokerPlugin;
 import org.apache.activemq.store.amq.AMQPersistenceAdapter;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.apache.james.filesystem.api.FileSystem;
 import org.apache.james.queue.activemq.FileSystemBlobTransferPolicy;
+import org.springframework.jms.connection.CachingConnectionFactory;
 
 import javax.annotation.PreDestroy;
 import javax.jms.ConnectionFactory;
+import java.io.File;
+import java.io.FileNotFoundException;
 
 @Singleton
 public class EmbeddedActiveMQ {
 
-    private ActiveMQConnectionFactory activeMQConnectionFactory;
+    static final String SESSION_CACHE_SIZE = "activemq.cache.sessions";
+    static final String CACHE_CONSUMERS = "activemq.cache.consumers";
+    static final int DEFAULT_SESSION_CACHE_SIZE = 10;
+
+    private CachingConnectionFactory activeMQConnectionFactory;
     private BrokerService brokerService;
 
-    @Inject private EmbeddedActiveMQ() {
+    @Inject private EmbeddedActiveMQ(FileSystem fileSystem) {
         try {
             launchEmbeddedBroker();
+            activeMQConnectionFactory = createCachingConnectionFactory(createActiveMQConnectionFactory(createBlobTransferPolicy()),
+                readConfiguration(fileSystem));
         } catch (Exception e) {
             throw Throwables.propagate(e);
         }
-        activeMQConnectionFactory = createActiveMQConnectionFactory(createBlobTransferPolicy());
     }
 
     public ConnectionFactory getConnectionFactory() {
@@ -56,9 +67,38 @@ public class EmbeddedActiveMQ {
 
     @PreDestroy
     public void stop() throws Exception {
+        activeMQConnectionFactory.destroy();
         brokerService.stop();
     }
 
+    /**
+     * Read the optional activemq.properties file. Missing file or keys fall back to the defaults.
+     */
+    private PropertiesConfiguration readConfiguration(FileSystem fileSystem) throws ConfigurationException {
+        try {
+            File file = fileSystem.getFile(FileSystem.FILE_PROTOCOL_AND_CONF + "activemq.properties");
+            if (file.exists()) {
+                return new PropertiesConfiguration(file);
+            }
+        } catch (FileNotFoundException e) {
+            // use the defaults
+        }
+        return new PropertiesConfiguration();
+    }
+
+    /**
+     * Share a single connection and cache sessions and producers, so that queue operations do not open a new
+     * connection to the broker for every mail. Consumers are only cached when configured to: the cache is keyed by
+     * selector, and the dequeue selector embeds the current time.
+     */
+    static CachingConnectionFactory createCachingConnectionFactory(ConnectionFactory targetConnectionFactory, PropertiesConfiguration configuration) {
+        CachingConnectionFactory connectionFactory = new CachingConnectionFactory(targetConnectionFactory);
+        connectionFactory.setSessionCacheSize(configuration.getInt(SESSION_CACHE_SIZE, DEFAULT_SESSION_CACHE_SIZE));
+        connectionFactory.setCacheConsumers(configuration.getBoolean(CACHE_CONSUMERS, false));
+        connectionFactory.setCacheProducers(true);
+        return connectionFactory;
+    }
+
     private ActiveMQConnectionFactory createActiveMQConnectionFactory(BlobTransferPolicy blobTransferPolicy) {
         ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory("vm://james?create=false");
         connectionFactory.setBlobTransferPolicy(blobTransferPolicy);
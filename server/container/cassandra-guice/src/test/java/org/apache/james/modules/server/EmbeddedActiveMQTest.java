@@ -0,0 +1,94 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.modules.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.jms.Connection;
+import javax.jms.Session;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.connection.CachingConnectionFactory;
+
+public class EmbeddedActiveMQTest {
+
+    private ActiveMQConnectionFactory targetConnectionFactory;
+    private PropertiesConfiguration configuration;
+    private CachingConnectionFactory connectionFactory;
+
+    @Before
+    public void setUp() {
+        targetConnectionFactory = new ActiveMQConnectionFactory("vm://test?broker.persistent=false&broker.useJmx=false");
+        configuration = new PropertiesConfiguration();
+    }
+
+    @After
+    public void tearDown() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    public void createCachingConnectionFactoryShouldUseDefaultsWhenNotConfigured() {
+        connectionFactory = EmbeddedActiveMQ.createCachingConnectionFactory(targetConnectionFactory, configuration);
+
+        assertThat(connectionFactory.getSessionCacheSize()).isEqualTo(EmbeddedActiveMQ.DEFAULT_SESSION_CACHE_SIZE);
+        assertThat(connectionFactory.isCacheConsumers()).isFalse();
+        assertThat(connectionFactory.isCacheProducers()).isTrue();
+    }
+
+    @Test
+    public void createCachingConnectionFactoryShouldUseConfiguredCache() {
+        configuration.addProperty(EmbeddedActiveMQ.SESSION_CACHE_SIZE, 50);
+        configuration.addProperty(EmbeddedActiveMQ.CACHE_CONSUMERS, true);
+
+        connectionFactory = EmbeddedActiveMQ.createCachingConnectionFactory(targetConnectionFactory, configuration);
+
+        assertThat(connectionFactory.getSessionCacheSize()).isEqualTo(50);
+        assertThat(connectionFactory.isCacheConsumers()).isTrue();
+    }
+
+    @Test
+    public void connectionShouldBeSharedBetweenOperations() throws Exception {
+        connectionFactory = EmbeddedActiveMQ.createCachingConnectionFactory(targetConnectionFactory, configuration);
+
+        Connection connection = connectionFactory.createConnection();
+        connection.close();
+
+        assertThat(connectionFactory.createConnection()).isSameAs(connection);
+    }
+
+    @Test
+    public void closedSessionShouldBeReusedByTheNextOperation() throws Exception {
+        connectionFactory = EmbeddedActiveMQ.createCachingConnectionFactory(targetConnectionFactory, configuration);
+
+        Connection connection = connectionFactory.createConnection();
+        Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+        session.close();
+
+        assertThat(connectionFactory.createConnection().createSession(true, Session.SESSION_TRANSACTED)).isSameAs(session);
+    }
+
+}
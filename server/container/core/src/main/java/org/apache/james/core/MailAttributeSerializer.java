@@ -0,0 +1,50 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Write and read back the attribute values of a {@link org.apache.mailet.Mail} for the {@link MailImplCodec}
+ */
+public interface MailAttributeSerializer {
+
+    /**
+     * Write the given attribute value. The value may be <code>null</code>
+     *
+     * @param value the attribute value
+     * @param out   the stream to write to
+     * @throws IOException
+     */
+    void write(Serializable value, DataOutputStream out) throws IOException;
+
+    /**
+     * Read back an attribute value written by {@link #write(Serializable, DataOutputStream)}
+     *
+     * @param in          the stream to read from
+     * @param classLoader the {@link ClassLoader} used to load the classes of the value, or <code>null</code> to use the
+     *                    default one
+     * @return the attribute value
+     * @throws IOException if the value can not be read
+     */
+    Serializable read(DataInputStream in, ClassLoader classLoader) throws IOException;
+}
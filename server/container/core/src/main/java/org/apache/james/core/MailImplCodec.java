@@ -0,0 +1,330 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.mail.internet.AddressException;
+
+import org.apache.mailet.Mail;
+import org.apache.mailet.MailAddress;
+
+/**
+ * Binary format for the envelope of a {@link Mail}: everything but its {@link javax.mail.internet.MimeMessage}.
+ * <p/>
+ * This is used in place of java serialization to store the {@link Mail} in the file based queue and repositories. The
+ * encoded envelope starts with a magic number followed by the format version, then all the fields are written length
+ * prefixed. Attribute values are written by a pluggable {@link MailAttributeSerializer}.
+ * <p/>
+ * {@link #isEncoded(InputStream)} allows to tell such envelopes apart from the ones stored by older versions using java
+ * serialization.
+ */
+public class MailImplCodec {
+
+    private static final byte[] MAGIC = new byte[]{'J', 'M', 'E', 'C'};
+    private static final byte VERSION = 1;
+
+    private final MailAttributeSerializer attributeSerializer;
+
+    public MailImplCodec() {
+        this(new DefaultMailAttributeSerializer());
+    }
+
+    public MailImplCodec(MailAttributeSerializer attributeSerializer) {
+        this.attributeSerializer = attributeSerializer;
+    }
+
+    /**
+     * Return <code>true</code> if the stream starts with an envelope written by this codec. The stream must support
+     * {@link InputStream#mark(int)}, and is reset to its current position.
+     */
+    public static boolean isEncoded(InputStream in) throws IOException {
+        in.mark(MAGIC.length);
+        try {
+            for (byte b : MAGIC) {
+                if (in.read() != b) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+    public byte[] encode(Mail mail) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encode(mail, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Write the envelope of the given {@link Mail}. The stream is flushed but not closed.
+     */
+    public void encode(Mail mail, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+
+        writeString(data, mail.getName());
+        writeString(data, mail.getState());
+        writeString(data, mail.getSender() == null ? null : mail.getSender().toString());
+
+        Collection<?> recipients = mail.getRecipients();
+        if (recipients == null) {
+            data.writeInt(-1);
+        } else {
+            data.writeInt(recipients.size());
+            for (Object recipient : recipients) {
+                writeString(data, recipient.toString());
+            }
+        }
+
+        writeString(data, mail.getRemoteHost());
+        writeString(data, mail.getRemoteAddr());
+        Date lastUpdated = mail.getLastUpdated();
+        data.writeBoolean(lastUpdated != null);
+        if (lastUpdated != null) {
+            data.writeLong(lastUpdated.getTime());
+        }
+        writeString(data, mail.getErrorMessage());
+
+        List<String> names = new ArrayList<String>();
+        for (Iterator<?> it = mail.getAttributeNames(); it.hasNext(); ) {
+            names.add((String) it.next());
+        }
+        data.writeInt(names.size());
+        for (String name : names) {
+            writeString(data, name);
+            attributeSerializer.write(mail.getAttribute(name), data);
+        }
+        data.flush();
+    }
+
+    public MailImpl decode(byte[] encoded) throws IOException {
+        return decode(new ByteArrayInputStream(encoded));
+    }
+
+    /**
+     * Read back an envelope written by {@link #encode(Mail, OutputStream)}. The returned {@link MailImpl} has no
+     * message.
+     */
+    public MailImpl decode(InputStream in) throws IOException {
+        return decode(in, null);
+    }
+
+    /**
+     * Read back an envelope written by {@link #encode(Mail, OutputStream)}, loading the classes of java serialized
+     * attributes with the given {@link ClassLoader}. The returned {@link MailImpl} has no message.
+     */
+    public MailImpl decode(InputStream in, ClassLoader classLoader) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("Not an encoded mail envelope");
+            }
+        }
+        byte version = data.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported mail envelope version " + version);
+        }
+
+        MailImpl mail = new MailImpl();
+        mail.setName(readString(data));
+        mail.setState(readString(data));
+        String sender = readString(data);
+        mail.setSender(sender == null ? null : parseAddress(sender));
+
+        int recipientCount = data.readInt();
+        if (recipientCount < 0) {
+            mail.setRecipients(null);
+        } else {
+            List<MailAddress> recipients = new ArrayList<MailAddress>(recipientCount);
+            for (int i = 0; i < recipientCount; i++) {
+                recipients.add(parseAddress(readString(data)));
+            }
+            mail.setRecipients(recipients);
+        }
+
+        mail.setRemoteHost(readString(data));
+        mail.setRemoteAddr(readString(data));
+        mail.setLastUpdated(data.readBoolean() ? new Date(data.readLong()) : null);
+        mail.setErrorMessage(readString(data));
+
+        int attributeCount = data.readInt();
+        HashMap<String, Object> attributes = new HashMap<String, Object>();
+        for (int i = 0; i < attributeCount; i++) {
+            String name = readString(data);
+            attributes.put(name, attributeSerializer.read(data, classLoader));
+        }
+        mail.setAttributesRaw(attributes);
+        return mail;
+    }
+
+    private MailAddress parseAddress(String address) throws IOException {
+        try {
+            return new MailAddress(address);
+        } catch (AddressException e) {
+            throw new IOException("Error parsing address " + address + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write a possibly <code>null</code> string as its UTF-8 bytes prefixed by their length, <code>-1</code> standing
+     * for <code>null</code>
+     */
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, "UTF-8");
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        out.writeInt(value.length);
+        out.write(value);
+    }
+
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * {@link MailAttributeSerializer} which writes the common attribute types (strings, numbers, booleans and byte
+     * arrays) in a compact form, and falls back to java serialization for the other ones.
+     */
+    public static class DefaultMailAttributeSerializer implements MailAttributeSerializer {
+
+        private static final byte NULL = 0;
+        private static final byte STRING = 1;
+        private static final byte INTEGER = 2;
+        private static final byte LONG = 3;
+        private static final byte BOOLEAN = 4;
+        private static final byte BYTES = 5;
+        private static final byte SERIALIZED = 127;
+
+        @Override
+        public void write(Serializable value, DataOutputStream out) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                writeString(out, (String) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INTEGER);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof byte[]) {
+                out.writeByte(BYTES);
+                writeBytes(out, (byte[]) value);
+            } else {
+                out.writeByte(SERIALIZED);
+                ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+                ObjectOutputStream oout = new ObjectOutputStream(serialized);
+                oout.writeObject(value);
+                oout.close();
+                writeBytes(out, serialized.toByteArray());
+            }
+        }
+
+        @Override
+        public Serializable read(DataInputStream in, ClassLoader classLoader) throws IOException {
+            byte type = in.readByte();
+            switch (type) {
+                case NULL:
+                    return null;
+                case STRING:
+                    return readString(in);
+                case INTEGER:
+                    return in.readInt();
+                case LONG:
+                    return in.readLong();
+                case BOOLEAN:
+                    return in.readBoolean();
+                case BYTES:
+                    return readBytes(in);
+                case SERIALIZED:
+                    return deserialize(readBytes(in), classLoader);
+                default:
+                    throw new IOException("Unknown attribute type " + type);
+            }
+        }
+
+        protected Serializable deserialize(byte[] serialized, final ClassLoader classLoader) throws IOException {
+            ObjectInputStream oin = new ObjectInputStream(new ByteArrayInputStream(serialized)) {
+                @Override
+                protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                    if (classLoader == null) {
+                        return super.resolveClass(desc);
+                    }
+                    try {
+                        return Class.forName(desc.getName(), false, classLoader);
+                    } catch (ClassNotFoundException e) {
+                        return super.resolveClass(desc);
+                    }
+                }
+            };
+            try {
+                return (Serializable) oin.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unable to load attribute class: " + e.getMessage());
+            } finally {
+                oin.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.mailet.Mail;
+import org.apache.mailet.MailAddress;
+import org.junit.Test;
+
+public class MailImplCodecTest {
+
+    private final MailImplCodec codec = new MailImplCodec();
+
+    private MailImpl createMail() throws Exception {
+        List<MailAddress> recipients = new ArrayList<MailAddress>();
+        recipients.add(new MailAddress("rcpt1@localhost"));
+        recipients.add(new MailAddress("rcpt2@domain.org"));
+        MailImpl mail = new MailImpl("name", new MailAddress("sender@localhost"), recipients);
+        mail.setState(Mail.ERROR);
+        mail.setErrorMessage("error");
+        mail.setRemoteHost("remote.host");
+        mail.setRemoteAddr("10.0.0.1");
+        mail.setLastUpdated(new Date(123456789L));
+        mail.setAttribute("string", "value");
+        mail.setAttribute("integer", 42);
+        mail.setAttribute("long", 42L);
+        mail.setAttribute("boolean", true);
+        mail.setAttribute("bytes", new byte[]{1, 2, 3});
+        mail.setAttribute("date", new Date(987654321L));
+        return mail;
+    }
+
+    @Test
+    public void decodeShouldReturnTheEncodedEnvelope() throws Exception {
+        MailImpl mail = createMail();
+
+        MailImpl decoded = codec.decode(codec.encode(mail));
+
+        assertEquals("name", decoded.getName());
+        assertEquals(Mail.ERROR, decoded.getState());
+        assertEquals(mail.getSender(), decoded.getSender());
+        assertEquals(new ArrayList<Object>(mail.getRecipients()), new ArrayList<Object>(decoded.getRecipients()));
+        assertEquals("remote.host", decoded.getRemoteHost());
+        assertEquals("10.0.0.1", decoded.getRemoteAddr());
+        assertEquals(new Date(123456789L), decoded.getLastUpdated());
+        assertEquals("error", decoded.getErrorMessage());
+        assertEquals("value", decoded.getAttribute("string"));
+        assertEquals(42, decoded.getAttribute("integer"));
+        assertEquals(42L, decoded.getAttribute("long"));
+        assertEquals(true, decoded.getAttribute("boolean"));
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) decoded.getAttribute("bytes"));
+        assertEquals(new Date(987654321L), decoded.getAttribute("date"));
+        assertNull(decoded.getMessage());
+    }
+
+    @Test
+    public void decodeShouldSupportNullFields() throws Exception {
+        MailImpl mail = new MailImpl(null, null, null);
+        mail.setState(null);
+        mail.setRemoteHost(null);
+        mail.setRemoteAddr(null);
+        mail.setLastUpdated(null);
+
+        MailImpl decoded = codec.decode(codec.encode(mail));
+
+        assertNull(decoded.getName());
+        assertNull(decoded.getState());
+        assertNull(decoded.getSender());
+        assertNull(decoded.getRecipients());
+        assertNull(decoded.getRemoteHost());
+        assertNull(decoded.getRemoteAddr());
+        assertNull(decoded.getLastUpdated());
+        assertNull(decoded.getErrorMessage());
+        assertFalse(decoded.hasAttributes());
+    }
+
+    @Test
+    public void isEncodedShouldTellEncodedEnvelopesFromSerializedMails() throws Exception {
+        MailImpl mail = createMail();
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        ObjectOutputStream oout = new ObjectOutputStream(serialized);
+        oout.writeObject(mail);
+        oout.close();
+
+        assertTrue(MailImplCodec.isEncoded(new BufferedInputStream(new ByteArrayInputStream(codec.encode(mail)))));
+        assertFalse(MailImplCodec.isEncoded(new BufferedInputStream(new ByteArrayInputStream(serialized.toByteArray()))));
+    }
+
+    @Test
+    public void isEncodedShouldNotConsumeTheStream() throws Exception {
+        BufferedInputStream in = new BufferedInputStream(new ByteArrayInputStream(codec.encode(createMail())));
+
+        MailImplCodec.isEncoded(in);
+
+        assertEquals("name", codec.decode(in).getName());
+    }
+
+    @Test
+    public void decodeShouldLoadSerializedAttributesWithTheGivenClassLoader() throws Exception {
+        final List<String> loadedClasses = new ArrayList<String>();
+        ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                loadedClasses.add(name);
+                return super.loadClass(name, resolve);
+            }
+        };
+
+        MailImpl decoded = codec.decode(new ByteArrayInputStream(codec.encode(createMail())), classLoader);
+
+        assertEquals(new Date(987654321L), decoded.getAttribute("date"));
+        assertTrue(loadedClasses.contains(Date.class.getName()));
+    }
+
+    @Test(expected = IOException.class)
+    public void decodeShouldFailOnSerializedMails() throws Exception {
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        ObjectOutputStream oout = new ObjectOutputStream(serialized);
+        oout.writeObject(createMail());
+        oout.close();
+
+        codec.decode(serialized.toByteArray());
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.apache.james.user.cassandra;
 
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.delete;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
@@ -37,6 +38,7 @@ import java.util.Optional;
 import javax.annotation.Resource;
 import javax.inject.Inject;
 
+import org.apache.james.backends.cassandra.init.PreparedStatementRegistry;
 import org.apache.james.backends.cassandra.utils.CassandraConstants;
 import org.apache.james.backends.cassandra.utils.CassandraUtils;
 import org.apache.james.user.api.UsersRepositoryException;
@@ -44,6 +46,7 @@ import org.apache.james.user.api.model.User;
 import org.apache.james.user.lib.AbstractUsersRepository;
 import org.apache.james.user.lib.model.DefaultUser;
 
+import com.datastax.driver.core.RegularStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Session;
 import com.google.common.base.Preconditions;
@@ -52,13 +55,38 @@ import com.google.common.primitives.Ints;
 public class CassandraUsersRepository extends AbstractUsersRepository {
 
     private static final String DEFAULT_ALGO_VALUE = "SHA1";
+    private static final RegularStatement SELECT_USER = select(REALNAME, PASSWORD, ALGORITHM)
+        .from(TABLE_NAME)
+        .where(eq(REALNAME, bindMarker()));
+    private static final RegularStatement UPDATE_USER = update(TABLE_NAME)
+        .with(set(REALNAME, bindMarker()))
+        .and(set(PASSWORD, bindMarker()))
+        .and(set(ALGORITHM, bindMarker()))
+        .where(eq(NAME, bindMarker()))
+        .ifExists();
+    private static final RegularStatement DELETE_USER = delete()
+        .from(TABLE_NAME)
+        .where(eq(NAME, bindMarker()))
+        .ifExists();
+    private static final RegularStatement COUNT_USERS = select().countAll()
+        .from(TABLE_NAME);
+    private static final RegularStatement LIST_USERS = select(REALNAME)
+        .from(TABLE_NAME);
+    private static final RegularStatement INSERT_USER = insertInto(TABLE_NAME)
+        .value(NAME, bindMarker())
+        .value(REALNAME, bindMarker())
+        .value(PASSWORD, bindMarker())
+        .value(ALGORITHM, bindMarker())
+        .ifNotExists();
 
     private Session session;
+    private PreparedStatementRegistry preparedStatements;
 
     @Inject
     @Resource
     public void setSession(Session session) {
         this.session = session;
+        this.preparedStatements = new PreparedStatementRegistry(session);
     }
 
     @Override
@@ -68,10 +96,8 @@ public class CassandraUsersRepository extends AbstractUsersRepository {
     
     @Override
     public User getUserByName(String name){
-        ResultSet result = session.execute(
-                select(REALNAME, PASSWORD, ALGORITHM)
-                .from(TABLE_NAME)
-                .where(eq(REALNAME, name)));
+        ResultSet result = session.execute(preparedStatements.get(SELECT_USER)
+                .bind(name));
         return Optional.ofNullable(result.one())
             .map(row -> new DefaultUser(row.getString(REALNAME), row.getString(PASSWORD), row.getString(ALGORITHM)))
             .orElse(null);
@@ -81,13 +107,11 @@ public class CassandraUsersRepository extends AbstractUsersRepository {
     public void updateUser(User user) throws UsersRepositoryException {
         Preconditions.checkArgument(user instanceof DefaultUser);
         DefaultUser defaultUser = (DefaultUser) user;
-        boolean executed = session.execute(
-                update(TABLE_NAME)
-                    .with(set(REALNAME, defaultUser.getUserName()))
-                    .and(set(PASSWORD, defaultUser.getHashedPassword()))
-                    .and(set(ALGORITHM, defaultUser.getHashAlgorithm()))
-                    .where(eq(NAME, defaultUser.getUserName().toLowerCase()))
-                    .ifExists())
+        boolean executed = session.execute(preparedStatements.get(UPDATE_USER)
+                .bind(defaultUser.getUserName(),
+                    defaultUser.getHashedPassword(),
+                    defaultUser.getHashAlgorithm(),
+                    defaultUser.getUserName().toLowerCase()))
                 .one()
                 .getBool(CassandraConstants.LIGHTWEIGHT_TRANSACTION_APPLIED);
 
@@ -98,11 +122,8 @@ public class CassandraUsersRepository extends AbstractUsersRepository {
 
     @Override
     public void removeUser(String name) throws UsersRepositoryException {
-        boolean executed = session.execute(
-            delete()
-                .from(TABLE_NAME)
-                .where(eq(NAME, name))
-                .ifExists())
+        boolean executed = session.execute(preparedStatements.get(DELETE_USER)
+                .bind(name))
             .one()
             .getBool(CassandraConstants.LIGHTWEIGHT_TRANSACTION_APPLIED);
 
@@ -125,15 +146,13 @@ public class CassandraUsersRepository extends AbstractUsersRepository {
 
     @Override
     public int countUsers() throws UsersRepositoryException {
-        ResultSet result = session.execute(select().countAll().from(TABLE_NAME));
+        ResultSet result = session.execute(preparedStatements.get(COUNT_USERS).bind());
         return Ints.checkedCast(result.one().getLong(0));
     }
 
     @Override
     public Iterator<String> list() throws UsersRepositoryException {
-        ResultSet result = session.execute(
-                select(REALNAME)
-                .from(TABLE_NAME));
+        ResultSet result = session.execute(preparedStatements.get(LIST_USERS).bind());
         return CassandraUtils.convertToStream(result)
             .map(row -> row.getString(REALNAME))
             .iterator();
@@ -149,13 +168,11 @@ public class CassandraUsersRepository extends AbstractUsersRepository {
     protected void doAddUser(String username, String password) throws UsersRepositoryException {
         DefaultUser user = new DefaultUser(username, DEFAULT_ALGO_VALUE);
         user.setPassword(password);
-        boolean executed = session.execute(
-            insertInto(TABLE_NAME)
-                .value(NAME, user.getUserName().toLowerCase())
-                .value(REALNAME, user.getUserName())
-                .value(PASSWORD, user.getHashedPassword())
-                .value(ALGORITHM, user.getHashAlgorithm())
-                .ifNotExists())
+        boolean executed = session.execute(preparedStatements.get(INSERT_USER)
+                .bind(user.getUserName().toLowerCase(),
+                    user.getUserName(),
+                    user.getHashedPassword(),
+                    user.getHashAlgorithm()))
             .one()
             .getBool(CassandraConstants.LIGHTWEIGHT_TRANSACTION_APPLIED);
 
@@ -19,19 +19,28 @@
 
 package org.apache.james.repository.file;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 
+import org.apache.james.core.MailImplCodec;
 import org.apache.james.repository.api.ObjectRepository;
+import org.apache.mailet.Mail;
 
 /**
  * This is a simple implementation of persistent object store using object
  * serialization on the file system.
+ * <p/>
+ * {@link Mail} objects are stored with the {@link MailImplCodec} rather than
+ * object serialization. Mails serialized by older versions can still be read.
  */
 public class FilePersistentObjectRepository extends AbstractFileRepository implements ObjectRepository {
 
+    private final MailImplCodec codec = new MailImplCodec();
+
     /**
      * @see
      * org.apache.james.repository.file.AbstractFileRepository#getExtensionDecorator()
@@ -51,7 +60,11 @@ public class FilePersistentObjectRepository extends AbstractFileRepository imple
             if (inputStream == null)
                 throw new NullPointerException("Null input stream returned for key: " + key);
             try {
-                final ObjectInputStream stream = new ObjectInputStream(inputStream);
+                final InputStream buffered = new BufferedInputStream(inputStream);
+                if (MailImplCodec.isEncoded(buffered)) {
+                    return codec.decode(buffered);
+                }
+                final ObjectInputStream stream = new ObjectInputStream(buffered);
 
                 if (stream == null)
                     throw new NullPointerException("Null stream returned for key: " + key);
@@ -82,7 +95,11 @@ public class FilePersistentObjectRepository extends AbstractFileRepository imple
                 throw new NullPointerException("Null input stream returned for key: " + key);
 
             try {
-                final ObjectInputStream stream = new ClassLoaderObjectInputStream(classLoader, inputStream);
+                final InputStream buffered = new BufferedInputStream(inputStream);
+                if (MailImplCodec.isEncoded(buffered)) {
+                    return codec.decode(buffered, classLoader);
+                }
+                final ObjectInputStream stream = new ClassLoaderObjectInputStream(classLoader, buffered);
 
                 if (stream == null)
                     throw new NullPointerException("Null stream returned for key: " + key);
@@ -112,8 +129,7 @@ public class FilePersistentObjectRepository extends AbstractFileRepository imple
             final OutputStream outputStream = getOutputStream(key);
 
             try {
-                final ObjectOutputStream stream = new ObjectOutputStream(outputStream);
-                stream.writeObject(value);
+                write(outputStream, value);
                 if (DEBUG)
                     getLogger().debug("storing object " + value + " for key " + key);
             } finally {
@@ -124,4 +140,14 @@ public class FilePersistentObjectRepository extends AbstractFileRepository imple
         }
     }
 
+    private void write(OutputStream outputStream, Object value) throws IOException {
+        if (value instanceof Mail) {
+            codec.encode((Mail) value, outputStream);
+        } else {
+            final ObjectOutputStream stream = new ObjectOutputStream(outputStream);
+            stream.writeObject(value);
+            stream.flush();
+        }
+    }
+
 }
@@ -36,4 +36,73 @@ public interface MailSpoolerMBean {
      */
     int getCurrentSpoolCount();
 
+    /**
+     * Return the number of mails waiting in the spool queue, or -1 if the
+     * queue does not expose its size
+     * 
+     * @return queueSize
+     */
+    long getQueueSize();
+
+    /**
+     * Return the count of mails the spooler finished processing
+     * 
+     * @return processedCount
+     */
+    long getProcessedMailCount();
+
+    /**
+     * Return the time in ms the dequeue threads last waited for a free
+     * spool thread
+     * 
+     * @return lastWaitTime
+     */
+    long getLastWaitTime();
+
+    /**
+     * Return the average time in ms the dequeue threads waited for a free
+     * spool thread
+     * 
+     * @return averageWaitTime
+     */
+    long getAverageWaitTime();
+
+    /**
+     * Return the longest time in ms the dequeue threads waited for a free
+     * spool thread
+     * 
+     * @return maxWaitTime
+     */
+    long getMaxWaitTime();
+
+    /**
+     * Return the time in ms of the fastest processing
+     * 
+     * @return fastest
+     */
+    long getFastestProcessing();
+
+    /**
+     * Return the time in ms of the slowest processing
+     * 
+     * @return slowest
+     */
+    long getSlowestProcessing();
+
+    /**
+     * Return the average time in ms of processing
+     * 
+     * @return average
+     */
+    long getAverageProcessing();
+
+    /**
+     * Return the count of processings per latency bucket. Bucket i counts
+     * the processings which took less than 10^(i+1) ms, the last bucket
+     * counts the slower ones.
+     * 
+     * @return processingHistogram
+     */
+    long[] getProcessingHistogram();
+
 }
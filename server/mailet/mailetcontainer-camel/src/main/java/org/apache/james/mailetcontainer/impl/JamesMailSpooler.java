@@ -27,10 +27,12 @@ import org.apache.james.lifecycle.api.LifecycleUtil;
 import org.apache.james.lifecycle.api.LogEnabled;
 import org.apache.james.mailetcontainer.api.MailProcessor;
 import org.apache.james.mailetcontainer.api.jmx.MailSpoolerMBean;
+import org.apache.james.mailetcontainer.impl.jmx.LatencyStatistics;
 import org.apache.james.queue.api.MailQueue;
 import org.apache.james.queue.api.MailQueue.MailQueueException;
 import org.apache.james.queue.api.MailQueue.MailQueueItem;
 import org.apache.james.queue.api.MailQueueFactory;
+import org.apache.james.queue.api.ManageableMailQueue;
 import org.apache.james.util.concurrent.JMXEnabledThreadPoolExecutor;
 import org.apache.mailet.Mail;
 import org.slf4j.Logger;
@@ -38,7 +40,10 @@ import org.slf4j.Logger;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -63,6 +68,17 @@ public class JamesMailSpooler implements Runnable, Disposable, Configurable, Log
 
     private final AtomicInteger processingActive = new AtomicInteger(0);
 
+    /**
+     * One permit per spool thread: a mail is only dequeued once a spool
+     * thread is free to process it, so that the dequeue threads do not drain
+     * the queue into memory when the spool threads are saturated
+     */
+    private Semaphore workerPermits;
+
+    private final LatencyStatistics waitStatistics = new LatencyStatistics();
+
+    private final LatencyStatistics processingStatistics = new LatencyStatistics();
+
     /**
      * Spool threads are active
      */
@@ -86,6 +102,17 @@ public class JamesMailSpooler implements Runnable, Disposable, Configurable, Log
 
     private int numDequeueThreads;
 
+    /**
+     * Maximum number of mails taken from the queue by a single dequeue
+     */
+    private int dequeueBatchSize;
+
+    /**
+     * Seconds a dequeue waits for a mail before checking if the spooler is
+     * still active
+     */
+    private static final long DEQUEUE_TIMEOUT = 10;
+
     @Inject
     public void setMailQueueFactory(MailQueueFactory queueFactory) {
         this.queueFactory = queueFactory;
@@ -103,6 +130,8 @@ public class JamesMailSpooler implements Runnable, Disposable, Configurable, Log
         numDequeueThreads = config.getInt("dequeueThreads", 2);
 
         numThreads = config.getInt("threads", 100);
+
+        dequeueBatchSize = config.getInt("dequeueBatchSize", 10);
     }
 
     /**
@@ -120,6 +149,7 @@ public class JamesMailSpooler implements Runnable, Disposable, Configurable, Log
         }
 
         active.set(true);
+        workerPermits = new Semaphore(numThreads);
         workerService = JMXEnabledThreadPoolExecutor.newFixedThreadPool("org.apache.james:type=component,component=mailetcontainer,name=mailspooler,sub-type=threadpool", "spooler", numThreads);
         dequeueService = JMXEnabledThreadPoolExecutor.newFixedThreadPool("org.apache.james:type=component,component=mailetcontainer,name=mailspooler,sub-type=threadpool", "dequeuer", numDequeueThreads);
 
@@ -143,55 +173,36 @@ public class JamesMailSpooler implements Runnable, Disposable, Configurable, Log
 
         while (active.get()) {
 
-            final MailQueueItem queueItem;
+            long waitStart = System.currentTimeMillis();
             try {
-                queueItem = queue.deQueue();
-                workerService.execute(new Runnable() {
-
-                    @Override
-                    public void run() {
-                        try {
-                            numActive.incrementAndGet();
-
-                            // increase count
-                            processingActive.incrementAndGet();
-
-                            Mail mail = queueItem.getMail();
-                            if (logger.isDebugEnabled()) {
-                                String debugBuffer = "==== Begin processing mail " + mail.getName() + "====";
-                                logger.debug(debugBuffer);
-                            }
-
-                            try {
-                                mailProcessor.service(mail);
-                                queueItem.done(true);
-                            } catch (Exception e) {
-                                if (active.get() && logger.isErrorEnabled()) {
-                                    logger.error("Exception processing mail while spooling " + e.getMessage(), e);
-                                }
-                                queueItem.done(false);
-
-                            } finally {
-                                LifecycleUtil.dispose(mail);
-                                mail = null;
-                            }
-                        } catch (Throwable e) {
-                            if (active.get() && logger.isErrorEnabled()) {
-                                logger.error("Exception processing mail while spooling " + e.getMessage(), e);
-
-                            }
-                        } finally {
-                            processingActive.decrementAndGet();
-                            numActive.decrementAndGet();
-                        }
+                workerPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            waitStatistics.record(System.currentTimeMillis() - waitStart);
 
-                    }
-                });
+            // take the permits of the other idle spool threads too, so that
+            // their mails are dequeued in a single batch
+            int permits = 1;
+            while (permits < dequeueBatchSize && workerPermits.tryAcquire()) {
+                permits++;
+            }
+
+            int submitted = 0;
+            try {
+                List<MailQueueItem> queueItems = queue.deQueue(permits, DEQUEUE_TIMEOUT, TimeUnit.SECONDS);
+                for (MailQueueItem queueItem : queueItems) {
+                    workerService.execute(new ProcessingTask(queueItem));
+                    submitted++;
+                }
             } catch (MailQueueException e1) {
                 if (active.get() && logger.isErrorEnabled()) {
                     logger.error("Exception dequeue mail", e1);
 
                 }
+            } finally {
+                workerPermits.release(permits - submitted);
             }
         }
         if (logger.isInfoEnabled()) {
@@ -199,6 +210,59 @@ public class JamesMailSpooler implements Runnable, Disposable, Configurable, Log
         }
     }
 
+    /**
+     * Process one dequeued mail on a spool thread, then give its permit back
+     */
+    private final class ProcessingTask implements Runnable {
+
+        private final MailQueueItem queueItem;
+
+        private ProcessingTask(MailQueueItem queueItem) {
+            this.queueItem = queueItem;
+        }
+
+        @Override
+        public void run() {
+            long processingStart = System.currentTimeMillis();
+            try {
+                numActive.incrementAndGet();
+
+                // increase count
+                processingActive.incrementAndGet();
+
+                Mail mail = queueItem.getMail();
+                if (logger.isDebugEnabled()) {
+                    String debugBuffer = "==== Begin processing mail " + mail.getName() + "====";
+                    logger.debug(debugBuffer);
+                }
+
+                try {
+                    mailProcessor.service(mail);
+                    queueItem.done(true);
+                } catch (Exception e) {
+                    if (active.get() && logger.isErrorEnabled()) {
+                        logger.error("Exception processing mail while spooling " + e.getMessage(), e);
+                    }
+                    queueItem.done(false);
+
+                } finally {
+                    LifecycleUtil.dispose(mail);
+                    mail = null;
+                }
+            } catch (Throwable e) {
+                if (active.get() && logger.isErrorEnabled()) {
+                    logger.error("Exception processing mail while spooling " + e.getMessage(), e);
+
+                }
+            } finally {
+                processingStatistics.record(System.currentTimeMillis() - processingStart);
+                processingActive.decrementAndGet();
+                numActive.decrementAndGet();
+                workerPermits.release();
+            }
+        }
+    }
+
     /**
      * The dispose operation is called at the end of a components lifecycle.
      * Instances of this class use this method to release and destroy any
@@ -242,4 +306,56 @@ public class JamesMailSpooler implements Runnable, Disposable, Configurable, Log
     public int getCurrentSpoolCount() {
         return processingActive.get();
     }
+
+    @Override
+    public long getQueueSize() {
+        if (queue instanceof ManageableMailQueue) {
+            try {
+                return ((ManageableMailQueue) queue).getSize();
+            } catch (MailQueueException e) {
+                logger.warn("Unable to retrieve spool queue size", e);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long getProcessedMailCount() {
+        return processingStatistics.getCount();
+    }
+
+    @Override
+    public long getLastWaitTime() {
+        return waitStatistics.getLast();
+    }
+
+    @Override
+    public long getAverageWaitTime() {
+        return waitStatistics.getAverage();
+    }
+
+    @Override
+    public long getMaxWaitTime() {
+        return waitStatistics.getSlowest();
+    }
+
+    @Override
+    public long getFastestProcessing() {
+        return processingStatistics.getFastest();
+    }
+
+    @Override
+    public long getSlowestProcessing() {
+        return processingStatistics.getSlowest();
+    }
+
+    @Override
+    public long getAverageProcessing() {
+        return processingStatistics.getAverage();
+    }
+
+    @Override
+    public long[] getProcessingHistogram() {
+        return processingStatistics.getHistogram();
+    }
 }
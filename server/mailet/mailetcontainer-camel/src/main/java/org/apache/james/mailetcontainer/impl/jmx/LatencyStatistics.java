@@ -0,0 +1,88 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailetcontainer.impl.jmx;
+
+/**
+ * Thread safe statistics about durations, expressed in ms: count, fastest, slowest, average, last and a histogram
+ * with one bucket per order of magnitude.
+ */
+public class LatencyStatistics {
+
+    /**
+     * Upper bounds (exclusive) of the histogram buckets. A last bucket holds the durations above the last bound.
+     */
+    private static final long[] BUCKET_BOUNDS = { 10, 100, 1000, 10000 };
+
+    private long count = 0;
+    private long total = 0;
+    private long fastest = -1;
+    private long slowest = -1;
+    private long last = -1;
+    private final long[] histogram = new long[BUCKET_BOUNDS.length + 1];
+
+    public synchronized void record(long duration) {
+        count++;
+        total += duration;
+        if (fastest == -1 || duration < fastest) {
+            fastest = duration;
+        }
+        if (duration > slowest) {
+            slowest = duration;
+        }
+        last = duration;
+        histogram[bucket(duration)]++;
+    }
+
+    private int bucket(long duration) {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            if (duration < BUCKET_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS.length;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getFastest() {
+        return fastest;
+    }
+
+    public synchronized long getSlowest() {
+        return slowest;
+    }
+
+    public synchronized long getLast() {
+        return last;
+    }
+
+    public synchronized long getAverage() {
+        if (count == 0) {
+            return -1;
+        }
+        return total / count;
+    }
+
+    public synchronized long[] getHistogram() {
+        return histogram.clone();
+    }
+}
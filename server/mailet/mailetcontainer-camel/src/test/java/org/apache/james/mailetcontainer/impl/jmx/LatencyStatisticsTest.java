@@ -0,0 +1,69 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailetcontainer.impl.jmx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LatencyStatisticsTest {
+
+    private LatencyStatistics statistics;
+
+    @Before
+    public void setUp() {
+        statistics = new LatencyStatistics();
+    }
+
+    @Test
+    public void statisticsShouldBeUnsetWhenNothingRecorded() {
+        assertEquals(0, statistics.getCount());
+        assertEquals(-1, statistics.getFastest());
+        assertEquals(-1, statistics.getSlowest());
+        assertEquals(-1, statistics.getLast());
+        assertEquals(-1, statistics.getAverage());
+    }
+
+    @Test
+    public void recordShouldUpdateStatistics() {
+        statistics.record(20);
+        statistics.record(5);
+        statistics.record(50);
+
+        assertEquals(3, statistics.getCount());
+        assertEquals(5, statistics.getFastest());
+        assertEquals(50, statistics.getSlowest());
+        assertEquals(50, statistics.getLast());
+        assertEquals(25, statistics.getAverage());
+    }
+
+    @Test
+    public void recordShouldFillHistogramBuckets() {
+        statistics.record(0);
+        statistics.record(9);
+        statistics.record(10);
+        statistics.record(999);
+        statistics.record(20000);
+
+        assertArrayEquals(new long[] { 2, 1, 1, 0, 1 }, statistics.getHistogram());
+    }
+}
@@ -55,6 +55,7 @@ import javax.mail.internet.MimePart;
 import javax.mail.internet.ParseException;
 
 import org.apache.geronimo.javamail.transport.smtp.SMTPTransport;
+import org.apache.james.core.MailImpl;
 import org.apache.james.dnsservice.api.DNSService;
 import org.apache.james.dnsservice.api.TemporaryResolutionException;
 import org.apache.james.dnsservice.library.MXHostAddressIterator;
@@ -658,20 +659,29 @@ public class RemoteDelivery extends GenericMailet implements Runnable {
             // think...
 
             // Store the new message containers, organized by server, in the
-            // outgoing mail repository
+            // outgoing mail repository. They are enqueued in a single batch,
+            // or one by one if the batch fails so that a failure for one
+            // server does not prevent the delivery to the others
             String name = mail.getName();
-            for (Map.Entry<String, Collection<MailAddress>> entry : targets.entrySet()) {
-                if (isDebug) {
-                    String logMessageBuffer = "Sending mail to " + entry.getValue() + " on host " + entry.getKey();
-                    log(logMessageBuffer);
+            Collection<Mail> mails = new ArrayList<Mail>(targets.size());
+            try {
+                for (Map.Entry<String, Collection<MailAddress>> entry : targets.entrySet()) {
+                    if (isDebug) {
+                        String logMessageBuffer = "Sending mail to " + entry.getValue() + " on host " + entry.getKey();
+                        log(logMessageBuffer);
+                    }
+                    MailImpl targetMail = new MailImpl(mail, name + "-to-" + entry.getKey());
+                    targetMail.setRecipients(entry.getValue());
+                    targetMail.setState(mail.getState());
+                    targetMail.setErrorMessage(mail.getErrorMessage());
+                    mails.add(targetMail);
                 }
-                mail.setRecipients(entry.getValue());
-                String nameBuffer = name + "-to-" + entry.getKey();
-                mail.setName(nameBuffer);
-                try {
-                    queue.enQueue(mail);
-                } catch (MailQueueException e) {
-                    log("Unable to queue mail " + mail.getName() + " for recipients + " + mail.getRecipients().toString(), e);
+                enQueue(mails);
+            } catch (MessagingException e) {
+                log("Unable to queue mail " + name + " for recipients + " + recipients.toString(), e);
+            } finally {
+                for (Mail targetMail : mails) {
+                    LifecycleUtil.dispose(targetMail);
                 }
             }
         } else {
@@ -692,6 +702,25 @@ public class RemoteDelivery extends GenericMailet implements Runnable {
         mail.setState(Mail.GHOST);
     }
 
+    /**
+     * Enqueue the mails in a single batch, falling back to enqueuing them one
+     * by one if the batch fails
+     */
+    private void enQueue(Collection<Mail> mails) {
+        try {
+            queue.enQueue(mails);
+        } catch (MailQueueException e) {
+            log("Unable to queue " + mails.size() + " mails at once, queuing them one by one", e);
+            for (Mail mail : mails) {
+                try {
+                    queue.enQueue(mail);
+                } catch (MailQueueException e1) {
+                    log("Unable to queue mail " + mail.getName() + " for recipients + " + mail.getRecipients().toString(), e1);
+                }
+            }
+        }
+    }
+
     /**
      * Stops all the worker threads that are waiting for messages. This method
      * is called by the Mailet container before taking this Mailet out of
@@ -22,10 +22,13 @@ package org.apache.james.imapserver.netty;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.List;
 
 import org.apache.james.imap.encode.ImapResponseWriter;
 import org.apache.james.imap.message.response.Literal;
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelPipeline;
@@ -63,11 +66,33 @@ public class ChannelImapResponseWriter implements ImapResponseWriter {
         }
     }
 
+    /**
+     * Copy the data to a buffer of the {@link Channel}'s buffer factory, as the
+     * given array is reused by the caller
+     * 
+     * @see org.apache.james.imap.encode.ImapResponseWriter#write(byte[], int, int)
+     */
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        if (channel.isConnected()) {
+            ChannelBuffer channelBuffer = channel.getConfig().getBufferFactory().getBuffer(length);
+            channelBuffer.writeBytes(buffer, offset, length);
+            channel.write(channelBuffer);
+        }
+    }
+
     /**
      * @see org.apache.james.imap.encode.ImapResponseWriter#write(org.apache.james.imap.message.response.Literal)
      */
     public void write(Literal literal) throws IOException {
         if (channel.isConnected()) {
+            List<ByteBuffer> buffers = literal.asByteBuffers();
+            if (buffers != null) {
+                // The content is already in memory, so just wrap it. This
+                // works with SSL/TLS and COMPRESS too as they consume the
+                // ChannelBuffer like any other.
+                channel.write(ChannelBuffers.wrappedBuffer(buffers.toArray(new ByteBuffer[buffers.size()])));
+                return;
+            }
             InputStream in = literal.getInputStream();
             if (in instanceof FileInputStream && channel.getFactory() instanceof NioServerSocketChannelFactory) {
                 FileChannel fc = ((FileInputStream) in).getChannel();
@@ -81,7 +106,7 @@ public class ChannelImapResponseWriter implements ImapResponseWriter {
                     channel.write(new ChunkedNioFile(fc, 8192));
                 }
             } else {
-                channel.write(new ChunkedStream(literal.getInputStream()));
+                channel.write(new ChunkedStream(in));
             }
         }
     }
@@ -184,7 +184,14 @@ public class ImapChannelUpstreamHandler extends SimpleChannelUpstreamHandler imp
 
             }
             final ResponseEncoder responseEncoder = new ResponseEncoder(encoder, response, session);
-            processor.process(message, responseEncoder, session);
+            // write the untagged responses to the request together; the tagged response is written as soon as it is
+            // composed, before STARTTLS or COMPRESS change the pipeline
+            response.startBuffering();
+            try {
+                processor.process(message, responseEncoder, session);
+            } finally {
+                response.flush();
+            }
 
             if (session.getState() == ImapSessionState.LOGOUT) {
                 // Make sure we close the channel after all the buffers were flushed out
@@ -20,13 +20,14 @@
 package org.apache.james.imapserver.netty;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.mail.util.SharedFileInputStream;
+
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.james.imap.api.ImapMessage;
@@ -128,7 +129,9 @@ public class ImapRequestFrameDecoder extends FrameDecoder implements NettyConsta
                     if (written == size) {
                         IOUtils.closeQuietly(out);
 
-                        reader = new NettyStreamImapRequestLineReader(channel, new FileInputStream(f) {
+                        // use a shared stream so the literal can be handed
+                        // over without spooling it a second time
+                        reader = new NettyStreamImapRequestLineReader(channel, new SharedFileInputStream(f) {
                             /**
                              * Delete the File on close too
                              */
@@ -21,10 +21,14 @@ package org.apache.james.imapserver.netty;
 import java.io.IOException;
 import java.io.InputStream;
 
+import javax.mail.internet.SharedInputStream;
+
+import org.apache.commons.io.IOUtils;
 import org.apache.james.imap.api.display.HumanReadableText;
 import org.apache.james.protocols.imap.DecodingException;
 import org.apache.james.protocols.imap.utils.EolInputStream;
 import org.apache.james.protocols.imap.utils.FixedLengthInputStream;
+import org.apache.james.protocols.imap.utils.SharedEolInputStream;
 import org.jboss.netty.channel.Channel;
 
 public class NettyStreamImapRequestLineReader extends AbstractNettyImapRequestLineReader {
@@ -84,6 +88,9 @@ public class NettyStreamImapRequestLineReader extends AbstractNettyImapRequestLi
         // Unset the next char.
         nextSeen = false;
         nextChar = 0;
+        if (in instanceof SharedInputStream) {
+            return readShared(size, extraCRLF);
+        }
         FixedLengthInputStream fin = new FixedLengthInputStream(this.in, size);
         if (extraCRLF) {
             return new EolInputStream(this, fin);
@@ -93,6 +100,27 @@ public class NettyStreamImapRequestLineReader extends AbstractNettyImapRequestLi
         
     }
 
+    /**
+     * Return the literal as {@link SharedInputStream} view of the underlying
+     * stream and skip over it, so the consumer can read it again without
+     * copying it
+     */
+    private InputStream readShared(int size, boolean extraCRLF) throws DecodingException {
+        SharedInputStream shared = (SharedInputStream) in;
+        long start = shared.getPosition();
+        InputStream literal = shared.newStream(start, start + size);
+        try {
+            IOUtils.skipFully(in, size);
+        } catch (IOException e) {
+            throw new DecodingException(HumanReadableText.SOCKET_IO_FAILURE, "Error reading from stream.", e);
+        }
+        if (extraCRLF) {
+            return new SharedEolInputStream(this, literal);
+        } else {
+            return literal;
+        }
+    }
+
     public void dispose() throws IOException {
         in.close();
     }
@@ -25,6 +25,7 @@ import org.apache.james.core.MailImpl;
 import org.apache.james.core.MimeMessageCopyOnWriteProxy;
 import org.apache.james.core.MimeMessageInputStream;
 import org.apache.james.core.MimeMessageInputStreamSource;
+import org.apache.james.core.MimeMessageWrapper;
 import org.apache.james.lifecycle.api.LifecycleUtil;
 import org.apache.james.protocols.api.ProtocolSession.State;
 import org.apache.james.protocols.api.Response;
@@ -49,6 +50,7 @@ import org.apache.mailet.Mail;
 
 import javax.mail.MessagingException;
 import javax.mail.internet.AddressException;
+import javax.mail.internet.MimeMessage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -254,7 +256,16 @@ public class DataLineJamesMessageHookHandler implements DataLineFilter, Extensib
         @Override
         public InputStream getMessageInputStream() throws IOException {
             try {
-                return new MimeMessageInputStream(mail.getMessage());
+                MimeMessage message = mail.getMessage();
+                if (message instanceof MimeMessageCopyOnWriteProxy) {
+                    message = ((MimeMessageCopyOnWriteProxy) message).getWrappedMessage();
+                }
+                // Hand over the spooled source directly if possible, so it
+                // can be consumed without copying it again
+                if (message instanceof MimeMessageWrapper) {
+                    return ((MimeMessageWrapper) message).getMessageInputStream();
+                }
+                return new MimeMessageInputStream(message);
             } catch (MessagingException e) {
                 throw new IOException("Unable to get inputstream for message", e);
             }
@@ -23,6 +23,7 @@ import java.net.MalformedURLException;
 import java.util.List;
 import java.util.Map;
 
+import javax.jms.BytesMessage;
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
 import javax.jms.JMSException;
@@ -63,7 +64,10 @@ import org.springframework.jms.connection.SessionProxy;
  * <p>
  * </p>
  * The implementation use {@link BlobMessage} or {@link ObjectMessage},
- * depending on the constructor which was used
+ * depending on the constructor which was used. When a blob threshold is
+ * given, only the mails of at least this size use a {@link BlobMessage}: they
+ * are streamed to the blob store and read back lazily, while smaller ones are
+ * sent inline as {@link BytesMessage}
  * <p>
  * </p>
  * See <a
@@ -87,6 +91,8 @@ public class ActiveMQMailQueue extends JMSMailQueue implements ActiveMQSupport {
 
     private final boolean useBlob;
 
+    private final long blobThreshold;
+
     /**
      * Construct a {@link ActiveMQMailQueue} which only use {@link BlobMessage}
      * 
@@ -104,8 +110,42 @@ public class ActiveMQMailQueue extends JMSMailQueue implements ActiveMQSupport {
      * @param logger
      */
     public ActiveMQMailQueue(final ConnectionFactory connectionFactory, final String queuename, boolean useBlob, final Logger logger) {
+        this(connectionFactory, queuename, useBlob, 0, logger);
+    }
+
+    /**
+     * Construct a new ActiveMQ based {@link MailQueue}.
+     * 
+     * @param connectionFactory
+     * @param queuename
+     * @param useBlob
+     * @param blobThreshold
+     *            the size in bytes from which a mail is sent as a
+     *            {@link BlobMessage}. Smaller mails are sent as
+     *            {@link BytesMessage}. Use 0 to send every mail as
+     *            {@link BlobMessage}
+     * @param logger
+     */
+    public ActiveMQMailQueue(final ConnectionFactory connectionFactory, final String queuename, boolean useBlob, long blobThreshold, final Logger logger) {
         super(connectionFactory, queuename, logger);
         this.useBlob = useBlob;
+        this.blobThreshold = blobThreshold;
+    }
+
+    /**
+     * Return true if the given mail should be sent as {@link BlobMessage}.
+     * Mails of unknown size are always sent as {@link BlobMessage} so they are
+     * never buffered in memory
+     */
+    private boolean useBlob(Mail mail) throws MessagingException {
+        if (!useBlob) {
+            return false;
+        }
+        if (blobThreshold <= 0) {
+            return true;
+        }
+        long size = mail.getMessageSize();
+        return size < 0 || size >= blobThreshold;
     }
 
     /**
@@ -147,7 +187,7 @@ public class ActiveMQMailQueue extends JMSMailQueue implements ActiveMQSupport {
         try {
 
             // check if we should use a blob message here
-            if (useBlob) {
+            if (useBlob(mail)) {
                 ActiveMQSession amqSession = getAMQSession(session);
                 
                 /*
@@ -197,6 +237,9 @@ public class ActiveMQMailQueue extends JMSMailQueue implements ActiveMQSupport {
                     
               
 
+            } else if (useBlob) {
+                // small enough to be sent inline
+                produceBytesMessage(session, props, msgPrio, mail);
             } else {
                 super.produceMail(session, props, msgPrio, mail);
             }
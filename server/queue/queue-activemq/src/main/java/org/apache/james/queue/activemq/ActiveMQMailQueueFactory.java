@@ -30,12 +30,23 @@ public class ActiveMQMailQueueFactory extends JMSMailQueueFactory {
 
     private boolean useBlob = true;
 
+    private long blobThreshold = 0;
+
     public void setUseBlobMessages(boolean useBlob) {
         this.useBlob = useBlob;
     }
 
+    /**
+     * Set the size in bytes from which mails are sent as blob messages. Smaller
+     * mails are sent inline. Use 0 (the default) to send every mail as blob
+     * message
+     */
+    public void setBlobMessageThreshold(long blobThreshold) {
+        this.blobThreshold = blobThreshold;
+    }
+
     @Override
     protected MailQueue createMailQueue(String name) {
-        return new ActiveMQMailQueue(connectionFactory, name, useBlob, log);
+        return new ActiveMQMailQueue(connectionFactory, name, useBlob, blobThreshold, log);
     }
 }
@@ -65,7 +65,7 @@ public class MimeMessageBlobMessageSource extends MimeMessageSource implements A
             // if the size is < 1 we seems to not had it stored in the property, so
             // fallback to super implementation
             if (size == -1) {
-                super.getMessageSize();
+                return super.getMessageSize();
             }
             return size;
         } catch (JMSException e) {
@@ -19,6 +19,8 @@
 
 package org.apache.james.queue.api;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import javax.mail.MessagingException;
@@ -81,6 +83,17 @@ public interface MailQueue {
      */
     void enQueue(Mail mail) throws MailQueueException;
 
+    /**
+     * Enqueue all the given Mails to the queue. Implementations should make
+     * the whole batch durable at once (one transaction, one sync to disk) so
+     * this is cheaper than enqueuing the Mails one by one. When it fails, none
+     * of the Mails must have been enqueued, so that they can be enqueued again
+     * 
+     * @param mails
+     * @throws MailQueueException
+     */
+    void enQueue(Collection<Mail> mails) throws MailQueueException;
+
     /**
      * Dequeue the next ready-to-process Mail of the queue. This method will
      * block until a Mail is ready and then process the operation.
@@ -91,6 +104,22 @@ public interface MailQueue {
      */
     MailQueueItem deQueue() throws MailQueueException;
 
+    /**
+     * Dequeue up to <code>max</code> ready-to-process Mails of the queue. This
+     * method will block until at least one Mail is ready or the timeout
+     * elapsed, and then returns the Mails which are ready without waiting
+     * any further. An empty list is returned on timeout.
+     * 
+     * Every returned {@link MailQueueItem} MUST get its own
+     * {@link MailQueueItem#done(boolean)} call.
+     * 
+     * @param max
+     * @param timeout
+     * @param unit
+     * @throws MailQueueException
+     */
+    List<MailQueueItem> deQueue(int max, long timeout, TimeUnit unit) throws MailQueueException;
+
     /**
      * Exception which will get thrown if any problems occur while working the
      * {@link MailQueue}
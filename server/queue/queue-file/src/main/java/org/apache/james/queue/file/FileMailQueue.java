@@ -18,6 +18,9 @@
  ****************************************************************/
 package org.apache.james.queue.file;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -26,8 +29,12 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.concurrent.BlockingQueue;
@@ -43,6 +50,7 @@ import javax.mail.util.SharedFileInputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.james.core.MailImplCodec;
 import org.apache.james.core.MimeMessageCopyOnWriteProxy;
 import org.apache.james.core.MimeMessageSource;
 import org.apache.james.lifecycle.api.Disposable;
@@ -56,10 +64,13 @@ import org.slf4j.Logger;
  * <p/>
  * On create of the {@link FileMailQueue} the {@link #init()} will get called. This takes care of
  * loading the needed meta-data into memory for fast access.
+ * <p/>
+ * When group commit is used, mails are appended to a {@link FileMailQueueJournal} instead of being stored as one file
+ * pair per mail, so that concurrent {@link #enQueue(Mail)} calls share the cost of a single <code>fsync</code>.
  */
-public class FileMailQueue implements ManageableMailQueue {
+public class FileMailQueue implements ManageableMailQueue, Disposable {
 
-    private final ConcurrentHashMap<String, FileItem> keyMappings = new ConcurrentHashMap<String, FileMailQueue.FileItem>();
+    private final ConcurrentHashMap<String, StoredMail> keyMappings = new ConcurrentHashMap<String, FileMailQueue.StoredMail>();
     private final BlockingQueue<String> inmemoryQueue = new LinkedBlockingQueue<String>();
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
     private final static AtomicLong COUNTER = new AtomicLong();
@@ -68,9 +79,12 @@ public class FileMailQueue implements ManageableMailQueue {
     private final Logger log;
 
     private final boolean sync;
+    private final FileMailQueueJournal journal;
+    private final MailImplCodec codec = new MailImplCodec();
     private final static String MSG_EXTENSION = ".msg";
     private final static String OBJECT_EXTENSION = ".obj";
     private final static String NEXT_DELIVERY = "FileQueueNextDelivery";
+    private final static String JOURNAL_DIR = "journal";
     private final static int SPLITCOUNT = 10;
 
     public FileMailQueue(File parentDir, String queuename, boolean sync, Logger log) throws IOException {
@@ -78,9 +92,35 @@ public class FileMailQueue implements ManageableMailQueue {
         this.sync = sync;
         this.queueDir = new File(parentDir, queuename);
         this.queueDirName = queueDir.getAbsolutePath();
+        this.journal = null;
+        init();
+    }
+
+    /**
+     * Create a {@link FileMailQueue} which uses group commit. {@link #enQueue(Mail)} returns once the journal batch
+     * holding the mail is synced to disk, which happens every <code>batchWindow</code> ms or as soon as
+     * <code>batchSize</code> mails are pending.
+     */
+    public FileMailQueue(File parentDir, String queuename, long batchWindow, int batchSize, Logger log) throws IOException {
+        this.log = log;
+        this.sync = true;
+        this.queueDir = new File(parentDir, queuename);
+        this.queueDirName = queueDir.getAbsolutePath();
+        this.journal = new FileMailQueueJournal(new File(queueDir, JOURNAL_DIR), batchWindow, batchSize, FileMailQueueJournal.DEFAULT_SEGMENT_SIZE, log);
         init();
     }
 
+    /**
+     * Stop the scheduler and, in group commit mode, sync and close the journal
+     */
+    @Override
+    public void dispose() {
+        scheduler.shutdownNow();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
     private void init() throws IOException {
 
         for (int i = 1; i <= SPLITCOUNT; i++) {
@@ -97,16 +137,13 @@ public class FileMailQueue implements ManageableMailQueue {
 
             for (final String name : files) {
 
-                ObjectInputStream oin = null;
-
                 try {
 
                     final String msgFileName = name.substring(0, name.length() - OBJECT_EXTENSION.length()) + MSG_EXTENSION;
 
                     FileItem item = new FileItem(qDir.getAbsolutePath() + File.separator + name, qDir.getAbsolutePath() + File.separator + msgFileName);
 
-                    oin = new ObjectInputStream(new FileInputStream(item.getObjectFile()));
-                    Mail mail = (Mail) oin.readObject();
+                    Mail mail = item.loadMail();
                     Long next = (Long) mail.getAttribute(NEXT_DELIVERY);
                     if (next == null) {
                         next = 0L;
@@ -114,56 +151,71 @@ public class FileMailQueue implements ManageableMailQueue {
 
                     final String key = mail.getName();
                     keyMappings.put(key, item);
-                    if (next <= System.currentTimeMillis()) {
-
-                        try {
-                            inmemoryQueue.put(key);
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            throw new RuntimeException("Unable to init", e);
-                        }
-                    } else {
-
-                        // Schedule a task which will put the mail in the queue
-                        // for processing after a given delay
-                        scheduler.schedule(new Runnable() {
-
-                            @Override
-                            public void run() {
-                                try {
-                                    inmemoryQueue.put(key);
-                                } catch (InterruptedException e) {
-                                    Thread.currentThread().interrupt();
-                                    throw new RuntimeException("Unable to init", e);
-                                }
-                            }
-                        }, next - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
-                    }
+                    schedule(key, next - System.currentTimeMillis());
 
                 } catch (ClassNotFoundException e1) {
                     log.error("Unable to load Mail", e1);
                 } catch (IOException e) {
                     log.error("Unable to load Mail", e);
-                } finally {
-                    if (oin != null) {
-                        try {
-                            oin.close();
-                        } catch (Exception e) {
-                            // ignore on close
-                        }
-                    }
                 }
 
             }
         }
+
+        if (journal != null) {
+            for (FileMailQueueJournal.Entry entry : journal.getReplayedEntries()) {
+                keyMappings.put(entry.getKey(), new JournalItem(entry));
+                schedule(entry.getKey(), entry.getNextDelivery() - System.currentTimeMillis());
+            }
+        }
+    }
+
+    /**
+     * Put the key in the in-memory queue, or schedule a task which will do so after the given delay
+     */
+    private void schedule(final String key, long delayInMillis) {
+        if (delayInMillis <= 0) {
+            try {
+                inmemoryQueue.put(key);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Unable to queue " + key, e);
+            }
+        } else {
+            // Schedule a task which will put the mail in the queue
+            // for processing after a given delay
+            scheduler.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        inmemoryQueue.put(key);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Unable to queue " + key, e);
+                    }
+                }
+            }, delayInMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public void enQueue(final Mail mail, long delay, TimeUnit unit) throws MailQueueException {
-        final String key = mail.getName() + "-" + COUNTER.incrementAndGet();
+        if (journal != null) {
+            enQueueInJournal(mail, delay, unit);
+            return;
+        }
+        String key = mail.getName() + "-" + COUNTER.incrementAndGet();
+        keyMappings.put(key, store(key, mail, delay, unit));
+        schedule(key, delay > 0 ? unit.toMillis(delay) : 0);
+    }
+
+    /**
+     * Write the mail to its files, without making it visible to the consumers of the queue
+     */
+    private FileItem store(String key, Mail mail, long delay, TimeUnit unit) throws MailQueueException {
         FileOutputStream out = null;
         FileOutputStream foout = null;
-        ObjectOutputStream oout = null;
         try {
             int i = (int) (Math.random() * SPLITCOUNT + 1);
 
@@ -175,9 +227,7 @@ public class FileMailQueue implements ManageableMailQueue {
                 mail.setAttribute(NEXT_DELIVERY, System.currentTimeMillis() + unit.toMillis(delay));
             }
             foout = new FileOutputStream(item.getObjectFile());
-            oout = new ObjectOutputStream(foout);
-            oout.writeObject(mail);
-            oout.flush();
+            codec.encode(mail, foout);
             if (sync) foout.getFD().sync();
             out = new FileOutputStream(item.getMessageFile());
 
@@ -185,27 +235,7 @@ public class FileMailQueue implements ManageableMailQueue {
             out.flush();
             if (sync) out.getFD().sync();
 
-            keyMappings.put(key, item);
-
-            if (delay > 0) {
-                // The message should get delayed so schedule it for later
-                scheduler.schedule(new Runnable() {
-
-                    @Override
-                    public void run() {
-                        try {
-                            inmemoryQueue.put(key);
-
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                            throw new RuntimeException("Unable to init", e);
-                        }
-                    }
-                }, delay, unit);
-
-            } else {
-                inmemoryQueue.put(key);
-            }
+            return item;
 
             //TODO: Think about exception handling in detail
         } catch (FileNotFoundException e) {
@@ -215,9 +245,6 @@ public class FileMailQueue implements ManageableMailQueue {
 
         } catch (MessagingException e) {
             throw new MailQueueException("Unable to enqueue mail", e);
-        } catch (InterruptedException e) {
-            throw new MailQueueException("Unable to enqueue mail", e);
-
         } finally {
             if (out != null) {
                 try {
@@ -226,13 +253,6 @@ public class FileMailQueue implements ManageableMailQueue {
                     // ignore on close
                 }
             }
-            if (oout != null) {
-                try {
-                    oout.close();
-                } catch (IOException e) {
-                    // ignore on close
-                }
-            }
             if (foout != null) {
                 try {
                     foout.close();
@@ -244,15 +264,85 @@ public class FileMailQueue implements ManageableMailQueue {
 
     }
 
+    private void enQueueInJournal(Mail mail, long delay, TimeUnit unit) throws MailQueueException {
+        String key = mail.getName() + "-" + COUNTER.incrementAndGet();
+        long nextDelivery = 0;
+        if (delay > 0) {
+            nextDelivery = System.currentTimeMillis() + unit.toMillis(delay);
+            mail.setAttribute(NEXT_DELIVERY, nextDelivery);
+        }
+        try {
+            byte[] envelope = codec.encode(mail);
+            ByteArrayOutputStream message = new ByteArrayOutputStream();
+            mail.getMessage().writeTo(message);
+
+            FileMailQueueJournal.Entry entry = journal.append(key, nextDelivery, envelope, message.toByteArray());
+            keyMappings.put(key, new JournalItem(entry));
+            schedule(key, delay > 0 ? unit.toMillis(delay) : 0);
+        } catch (IOException e) {
+            throw new MailQueueException("Unable to enqueue mail", e);
+        } catch (MessagingException e) {
+            throw new MailQueueException("Unable to enqueue mail", e);
+        }
+    }
+
     @Override
     public void enQueue(Mail mail) throws MailQueueException {
         enQueue(mail, 0, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * In group commit mode all the mails are appended to the journal before waiting for a single sync. Otherwise
+     * they are stored one by one, and only made visible to the consumers once all of them are stored.
+     */
+    @Override
+    public void enQueue(Collection<Mail> mails) throws MailQueueException {
+        if (journal == null) {
+            Map<String, FileItem> items = new LinkedHashMap<String, FileItem>();
+            try {
+                for (Mail mail : mails) {
+                    String key = mail.getName() + "-" + COUNTER.incrementAndGet();
+                    items.put(key, store(key, mail, 0, TimeUnit.MILLISECONDS));
+                }
+            } catch (MailQueueException e) {
+                for (FileItem item : items.values()) {
+                    try {
+                        item.delete();
+                    } catch (MailQueueException e1) {
+                        log.info("Unable to delete files of a mail whose enqueue failed", e1);
+                    }
+                }
+                throw e;
+            }
+            for (Entry<String, FileItem> entry : items.entrySet()) {
+                keyMappings.put(entry.getKey(), entry.getValue());
+                schedule(entry.getKey(), 0);
+            }
+            return;
+        }
+        try {
+            List<FileMailQueueJournal.Record> records = new ArrayList<FileMailQueueJournal.Record>(mails.size());
+            for (Mail mail : mails) {
+                ByteArrayOutputStream message = new ByteArrayOutputStream();
+                mail.getMessage().writeTo(message);
+                records.add(new FileMailQueueJournal.Record(mail.getName() + "-" + COUNTER.incrementAndGet(), 0, codec.encode(mail), message.toByteArray()));
+            }
+
+            for (FileMailQueueJournal.Entry entry : journal.append(records)) {
+                keyMappings.put(entry.getKey(), new JournalItem(entry));
+                schedule(entry.getKey(), 0);
+            }
+        } catch (IOException e) {
+            throw new MailQueueException("Unable to enqueue mails", e);
+        } catch (MessagingException e) {
+            throw new MailQueueException("Unable to enqueue mails", e);
+        }
+    }
+
     @Override
     public MailQueueItem deQueue() throws MailQueueException {
         try {
-            FileItem item = null;
+            StoredMail item = null;
             String k = null;
             while (item == null) {
                 k = inmemoryQueue.take();
@@ -260,62 +350,79 @@ public class FileMailQueue implements ManageableMailQueue {
                 item = keyMappings.get(k);
 
             }
-            final String key = k;
-            final FileItem fitem = item;
-            ObjectInputStream oin = null;
-            try {
-                final File objectFile = new File(fitem.getObjectFile());
-                final File msgFile = new File(fitem.getMessageFile());
-                oin = new ObjectInputStream(new FileInputStream(objectFile));
-                final Mail mail = (Mail) oin.readObject();
-                mail.setMessage(new MimeMessageCopyOnWriteProxy(new FileMimeMessageSource(msgFile)));
-                return new MailQueueItem() {
-
-                    @Override
-                    public Mail getMail() {
-                        return mail;
-                    }
+            return createMailQueueItem(k, item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailQueueException("Unable to dequeue", e);
+        }
+    }
 
-                    @Override
-                    public void done(boolean success) throws MailQueueException {
-                        if (!success) {
-                            try {
-                                inmemoryQueue.put(key);
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                                throw new MailQueueException("Unable to rollback", e);
-                            }
-                        } else {
-                            fitem.delete();
-                            keyMappings.remove(key);
+    @Override
+    public List<MailQueueItem> deQueue(int max, long timeout, TimeUnit unit) throws MailQueueException {
+        List<MailQueueItem> items = new ArrayList<MailQueueItem>();
+        try {
+            String key = inmemoryQueue.poll(timeout, unit);
+            while (key != null) {
+                StoredMail item = keyMappings.get(key);
+                if (item != null) {
+                    try {
+                        items.add(createMailQueueItem(key, item));
+                    } catch (MailQueueException e) {
+                        if (items.isEmpty()) {
+                            throw e;
                         }
-
-                        LifecycleUtil.dispose(mail);
+                        log.error("Unable to dequeue mail " + key, e);
+                        // give the mail back, so that it is dequeued again
+                        inmemoryQueue.add(key);
+                        break;
                     }
-                };
+                }
+                key = items.size() < max ? inmemoryQueue.poll() : null;
+            }
+            return items;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailQueueException("Unable to dequeue", e);
+        }
+    }
 
-                // TODO: Think about exception handling in detail
-            } catch (FileNotFoundException e) {
-                throw new MailQueueException("Unable to dequeue", e);
-            } catch (IOException e) {
-                throw new MailQueueException("Unable to dequeue", e);
-            } catch (ClassNotFoundException e) {
-                throw new MailQueueException("Unable to dequeue", e);
-            } catch (MessagingException e) {
-                throw new MailQueueException("Unable to dequeue", e);
+    private MailQueueItem createMailQueueItem(final String key, final StoredMail fitem) throws MailQueueException {
+        try {
+            final Mail mail = fitem.loadMail();
+            mail.setMessage(new MimeMessageCopyOnWriteProxy(fitem.loadMessage()));
+            return new MailQueueItem() {
 
-            } finally {
-                if (oin != null) {
-                    try {
-                        oin.close();
-                    } catch (IOException e) {
-                        // ignore on close
+                @Override
+                public Mail getMail() {
+                    return mail;
+                }
+
+                @Override
+                public void done(boolean success) throws MailQueueException {
+                    if (!success) {
+                        try {
+                            inmemoryQueue.put(key);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new MailQueueException("Unable to rollback", e);
+                        }
+                    } else {
+                        fitem.delete();
+                        keyMappings.remove(key);
                     }
+
+                    LifecycleUtil.dispose(mail);
                 }
-            }
+            };
 
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            // TODO: Think about exception handling in detail
+        } catch (FileNotFoundException e) {
+            throw new MailQueueException("Unable to dequeue", e);
+        } catch (IOException e) {
+            throw new MailQueueException("Unable to dequeue", e);
+        } catch (ClassNotFoundException e) {
+            throw new MailQueueException("Unable to dequeue", e);
+        } catch (MessagingException e) {
             throw new MailQueueException("Unable to dequeue", e);
         }
     }
@@ -324,15 +431,26 @@ public class FileMailQueue implements ManageableMailQueue {
 
         private File file;
         private SharedFileInputStream in;
+        private final long start;
+        private final long size;
 
         public FileMimeMessageSource(File file) throws IOException {
+            this(file, 0, file.length());
+        }
+
+        /**
+         * Source for the <code>size</code> bytes of the given file starting at <code>start</code>
+         */
+        public FileMimeMessageSource(File file, long start, long size) throws IOException {
             this.file = file;
             this.in = new SharedFileInputStream(file);
+            this.start = start;
+            this.size = size;
         }
 
         @Override
         public String getSourceId() {
-            return file.getAbsolutePath();
+            return file.getAbsolutePath() + "#" + start;
         }
 
         /**
@@ -342,12 +460,12 @@ public class FileMailQueue implements ManageableMailQueue {
          */
         @Override
         public InputStream getInputStream() throws IOException {
-            return in.newStream(0, -1);
+            return in.newStream(start, start + size);
         }
 
         @Override
         public long getMessageSize() throws IOException {
-            return file.length();
+            return size;
         }
 
         @Override
@@ -358,10 +476,38 @@ public class FileMailQueue implements ManageableMailQueue {
 
     }
 
+    /**
+     * Read back a {@link Mail} envelope. Envelopes stored by older versions with java serialization are still supported.
+     */
+    private Mail readMail(InputStream in) throws IOException, ClassNotFoundException {
+        InputStream buffered = new BufferedInputStream(in);
+        if (MailImplCodec.isEncoded(buffered)) {
+            return codec.decode(buffered);
+        }
+        ObjectInputStream oin = new ObjectInputStream(buffered);
+        try {
+            return (Mail) oin.readObject();
+        } finally {
+            IOUtils.closeQuietly(oin);
+        }
+    }
+
+    /**
+     * A queued {@link Mail}, as stored on disk
+     */
+    private interface StoredMail {
+
+        Mail loadMail() throws IOException, ClassNotFoundException;
+
+        MimeMessageSource loadMessage() throws IOException;
+
+        void delete() throws MailQueueException;
+    }
+
     /**
      * Helper class which is used to reference the path to the object and msg file
      */
-    private final class FileItem {
+    private final class FileItem implements StoredMail {
         private final String objectfile;
         private final String messagefile;
 
@@ -378,6 +524,21 @@ public class FileMailQueue implements ManageableMailQueue {
             return messagefile;
         }
 
+        @Override
+        public Mail loadMail() throws IOException, ClassNotFoundException {
+            InputStream in = new FileInputStream(getObjectFile());
+            try {
+                return readMail(in);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+
+        @Override
+        public MimeMessageSource loadMessage() throws IOException {
+            return new FileMimeMessageSource(new File(getMessageFile()));
+        }
+
         public void delete() throws MailQueueException {
             try {
                 FileUtils.forceDelete(new File(getObjectFile()));
@@ -393,6 +554,36 @@ public class FileMailQueue implements ManageableMailQueue {
         }
     }
 
+    /**
+     * Helper class which is used to reference a mail stored in the {@link FileMailQueueJournal}
+     */
+    private final class JournalItem implements StoredMail {
+        private final FileMailQueueJournal.Entry entry;
+
+        public JournalItem(FileMailQueueJournal.Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Mail loadMail() throws IOException, ClassNotFoundException {
+            return readMail(new ByteArrayInputStream(entry.readMail()));
+        }
+
+        @Override
+        public MimeMessageSource loadMessage() throws IOException {
+            return new FileMimeMessageSource(entry.getFile(), entry.getMessageOffset(), entry.getMessageLength());
+        }
+
+        @Override
+        public void delete() throws MailQueueException {
+            try {
+                journal.remove(entry);
+            } catch (IOException e) {
+                throw new MailQueueException("Unable to delete mail", e);
+            }
+        }
+    }
+
     @Override
     public long getSize() throws MailQueueException {
         return keyMappings.size();
@@ -414,11 +605,11 @@ public class FileMailQueue implements ManageableMailQueue {
 
     @Override
     public long clear() throws MailQueueException {
-        final Iterator<Entry<String, FileItem>> items = keyMappings.entrySet().iterator();
+        final Iterator<Entry<String, StoredMail>> items = keyMappings.entrySet().iterator();
         long count = 0;
         while (items.hasNext()) {
-            Entry<String, FileItem> entry = items.next();
-            FileItem item = entry.getValue();
+            Entry<String, StoredMail> entry = items.next();
+            StoredMail item = entry.getValue();
             String key = entry.getKey();
 
             item.delete();
@@ -438,7 +629,7 @@ public class FileMailQueue implements ManageableMailQueue {
     public long remove(Type type, String value) throws MailQueueException {
         switch (type) {
             case Name:
-                FileItem item = keyMappings.remove(value);
+                StoredMail item = keyMappings.remove(value);
                 if (item != null) {
                     item.delete();
                     return 1;
@@ -455,7 +646,7 @@ public class FileMailQueue implements ManageableMailQueue {
 
     @Override
     public MailQueueIterator browse() throws MailQueueException {
-        final Iterator<FileItem> items = keyMappings.values().iterator();
+        final Iterator<StoredMail> items = keyMappings.values().iterator();
         return new MailQueueIterator() {
             private MailQueueItemView item = null;
 
@@ -480,10 +671,8 @@ public class FileMailQueue implements ManageableMailQueue {
             public boolean hasNext() {
                 if (item == null) {
                     while (items.hasNext()) {
-                        ObjectInputStream in = null;
                         try {
-                            in = new ObjectInputStream(new FileInputStream(items.next().getObjectFile()));
-                            final Mail mail = (Mail) in.readObject();
+                            final Mail mail = items.next().loadMail();
                             item = new MailQueueItemView() {
 
                                 @Override
@@ -504,14 +693,6 @@ public class FileMailQueue implements ManageableMailQueue {
 
                         } catch (ClassNotFoundException e) {
                             log.info("Unable to load mail", e);
-                        } finally {
-                            if (in != null) {
-                                try {
-                                    in.close();
-                                } catch (IOException e) {
-                                    // ignore on close
-                                }
-                            }
                         }
                     }
                     return false;
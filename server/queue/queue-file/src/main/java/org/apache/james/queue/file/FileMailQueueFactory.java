@@ -19,11 +19,13 @@
 package org.apache.james.queue.file;
 
 import org.apache.james.filesystem.api.FileSystem;
+import org.apache.james.lifecycle.api.LifecycleUtil;
 import org.apache.james.lifecycle.api.LogEnabled;
 import org.apache.james.queue.api.MailQueue;
 import org.apache.james.queue.api.MailQueueFactory;
 import org.slf4j.Logger;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.inject.Inject;
 
@@ -40,6 +42,9 @@ public class FileMailQueueFactory implements MailQueueFactory, LogEnabled {
     private FileSystem fs;
     private Logger log;
     private boolean sync = true;
+    private boolean groupCommit = false;
+    private long groupCommitWindow = FileMailQueueJournal.DEFAULT_BATCH_WINDOW;
+    private int groupCommitBatchSize = FileMailQueueJournal.DEFAULT_BATCH_SIZE;
 
     @Inject
     public void setFileSystem(FileSystem fs) {
@@ -58,13 +63,51 @@ public class FileMailQueueFactory implements MailQueueFactory, LogEnabled {
         this.sync = sync;
     }
 
+    /**
+     * If <code>true</code> the later created {@link FileMailQueue} will append mails to a journal and share one <code>fsync</code> between all
+     * the {@link FileMailQueue#enQueue(org.apache.mailet.Mail)} calls of a batch. Each call still returns only once its mail is on disk.
+     * <p/>
+     * The default is <code>false</code>
+     *
+     * @param groupCommit
+     */
+    public void setGroupCommit(boolean groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    /**
+     * Maximum time in milliseconds a group commit batch waits for more mails before being synced.
+     * <p/>
+     * The default is <code>5</code>
+     *
+     * @param groupCommitWindow
+     */
+    public void setGroupCommitWindow(long groupCommitWindow) {
+        this.groupCommitWindow = groupCommitWindow;
+    }
+
+    /**
+     * Number of mails after which a group commit batch is synced without waiting for the end of the window.
+     * <p/>
+     * The default is <code>100</code>
+     *
+     * @param groupCommitBatchSize
+     */
+    public void setGroupCommitBatchSize(int groupCommitBatchSize) {
+        this.groupCommitBatchSize = groupCommitBatchSize;
+    }
+
     @Override
     public MailQueue getQueue(String name) {
         MailQueue queue = queues.get(name);
         if (queue == null) {
             synchronized (queues) {
                 try {
-                    queue = new FileMailQueue(fs.getFile("file://var/store/queue"), name, sync, log);
+                    if (groupCommit) {
+                        queue = new FileMailQueue(fs.getFile("file://var/store/queue"), name, groupCommitWindow, groupCommitBatchSize, log);
+                    } else {
+                        queue = new FileMailQueue(fs.getFile("file://var/store/queue"), name, sync, log);
+                    }
                     queues.put(name, queue);
                 } catch (IOException e) {
                     throw new RuntimeException("Unable to access queue " + name, e);
@@ -74,6 +117,16 @@ public class FileMailQueueFactory implements MailQueueFactory, LogEnabled {
         return queue;
     }
 
+    @PreDestroy
+    public void destroy() {
+        synchronized (queues) {
+            for (MailQueue queue : queues.values()) {
+                LifecycleUtil.dispose(queue);
+            }
+            queues.clear();
+        }
+    }
+
     @Override
     public void setLog(Logger log) {
         this.log = log;
@@ -0,0 +1,598 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.queue.file;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+
+/**
+ * Append only journal storing the content of a {@link FileMailQueue} when group commit is enabled.
+ * <p/>
+ * Enqueuers append a record holding the serialized mail and its message, then wait for it to be durable. A single
+ * thread forces the journal to disk once per batch: when the batch window elapsed or when enough records are pending,
+ * so that concurrent enqueuers share the cost of a single fsync.
+ * <p/>
+ * The journal is split in segments. Removing a mail appends a removal record. Segments are deleted oldest first, once
+ * none of the mails they hold is still queued, so that a removal record is never lost while the mail it removes
+ * can still be replayed. Replaying the journal only indexes the records: mails are read back from the
+ * segments when they are dequeued.
+ * <p/>
+ * Each record is written as its length, the CRC32 of its payload, then the payload, so that a record torn by a crash
+ * is detected and ignored on replay.
+ */
+public class FileMailQueueJournal {
+
+    public static final long DEFAULT_BATCH_WINDOW = 5;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final static String SEGMENT_PREFIX = "journal-";
+    private final static byte ADD = 1;
+    private final static byte REMOVE = 2;
+    private final static int RECORD_HEADER_SIZE = 4 + 8;
+
+    /**
+     * A mail stored in the journal
+     */
+    public static final class Entry {
+        private final String key;
+        private final long nextDelivery;
+        private final int segment;
+        private final File file;
+        private final long mailOffset;
+        private final int mailLength;
+        private final long messageOffset;
+        private final long messageLength;
+        private boolean removed;
+
+        private Entry(String key, long nextDelivery, int segment, File file, long mailOffset, int mailLength, long messageOffset, long messageLength) {
+            this.key = key;
+            this.nextDelivery = nextDelivery;
+            this.segment = segment;
+            this.file = file;
+            this.mailOffset = mailOffset;
+            this.mailLength = mailLength;
+            this.messageOffset = messageOffset;
+            this.messageLength = messageLength;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public long getNextDelivery() {
+            return nextDelivery;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getMessageOffset() {
+            return messageOffset;
+        }
+
+        public long getMessageLength() {
+            return messageLength;
+        }
+
+        /**
+         * Read the serialized mail of this entry
+         */
+        public byte[] readMail() throws IOException {
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            try {
+                byte[] mail = new byte[mailLength];
+                in.seek(mailOffset);
+                in.readFully(mail);
+                return mail;
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+    }
+
+    private final File directory;
+    private final long batchWindow;
+    private final int batchSize;
+    private final long segmentSize;
+    private final Logger log;
+
+    private final Object lock = new Object();
+    private final TreeMap<Integer, Integer> liveEntriesBySegment = new TreeMap<Integer, Integer>();
+    private final List<Entry> replayedEntries;
+    private final Thread syncThread;
+
+    private int currentSegment;
+    private File currentFile;
+    private FileOutputStream currentOut;
+    private FileChannel currentChannel;
+    private long currentLength;
+
+    private long writtenSequence = 0;
+    private long syncedSequence = 0;
+    private int pendingCount = 0;
+    private IOException failure;
+    private boolean running = true;
+
+    public FileMailQueueJournal(File directory, long batchWindow, int batchSize, long segmentSize, Logger log) throws IOException {
+        this.directory = directory;
+        this.batchWindow = batchWindow;
+        this.batchSize = batchSize;
+        this.segmentSize = segmentSize;
+        this.log = log;
+
+        FileUtils.forceMkdir(directory);
+        this.replayedEntries = replay();
+        openSegment(currentSegment + 1);
+
+        this.syncThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                syncLoop();
+            }
+        }, "FileMailQueue journal sync " + directory.getName());
+        this.syncThread.setDaemon(true);
+        this.syncThread.start();
+    }
+
+    /**
+     * Return the mails which were still queued when the journal was opened, in their enqueue order
+     */
+    public List<Entry> getReplayedEntries() {
+        return replayedEntries;
+    }
+
+    /**
+     * A mail to append to the journal.
+     */
+    public static final class Record {
+        private final String key;
+        private final long nextDelivery;
+        private final byte[] mail;
+        private final byte[] message;
+
+        public Record(String key, long nextDelivery, byte[] mail, byte[] message) {
+            this.key = key;
+            this.nextDelivery = nextDelivery;
+            this.mail = mail;
+            this.message = message;
+        }
+    }
+
+    /**
+     * Append a mail to the journal. This returns once the batch holding the mail is durable.
+     */
+    public Entry append(String key, long nextDelivery, byte[] mail, byte[] message) throws IOException {
+        return append(Collections.singletonList(new Record(key, nextDelivery, mail, message))).get(0);
+    }
+
+    /**
+     * Append several mails to the journal. This returns once all of them are durable, which costs a single sync
+     * unless they do not fit in the current segment.
+     */
+    public List<Entry> append(List<Record> records) throws IOException {
+        if (records.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<byte[]> payloads = new ArrayList<byte[]>(records.size());
+        int[] mailPositions = new int[records.size()];
+        int[] messagePositions = new int[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            Record record = records.get(i);
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(record.mail.length + record.message.length + record.key.length() + 32);
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeByte(ADD);
+            out.writeUTF(record.key);
+            out.writeLong(record.nextDelivery);
+            out.writeInt(record.mail.length);
+            mailPositions[i] = out.size();
+            out.write(record.mail);
+            out.writeLong(record.message.length);
+            messagePositions[i] = out.size();
+            out.write(record.message);
+            out.flush();
+            payloads.add(payload.toByteArray());
+        }
+
+        synchronized (lock) {
+            checkUsable();
+            List<Entry> entries = new ArrayList<Entry>(records.size());
+            for (int i = 0; i < records.size(); i++) {
+                Record record = records.get(i);
+                long recordStart = currentLength;
+                writeRecord(payloads.get(i));
+                entries.add(new Entry(record.key, record.nextDelivery, currentSegment, currentFile,
+                    recordStart + RECORD_HEADER_SIZE + mailPositions[i], record.mail.length,
+                    recordStart + RECORD_HEADER_SIZE + messagePositions[i], record.message.length));
+                incrementLiveEntries(currentSegment);
+                if (currentLength >= segmentSize) {
+                    rollSegment();
+                }
+            }
+
+            long sequence = ++writtenSequence;
+            int pendingBefore = pendingCount;
+            pendingCount += records.size();
+            if (pendingBefore == 0 || pendingCount >= batchSize) {
+                lock.notifyAll();
+            }
+            while (syncedSequence < sequence && failure == null && running) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the journal to be synced");
+                }
+            }
+            if (syncedSequence < sequence) {
+                throw journalFailure();
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Record the removal of a mail. The removal is not synced: after a crash the mail may be delivered again.
+     */
+    public void remove(Entry entry) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(entry.getKey().length() + 8);
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(REMOVE);
+        out.writeUTF(entry.getKey());
+        out.flush();
+
+        synchronized (lock) {
+            if (entry.removed) {
+                return;
+            }
+            checkUsable();
+            entry.removed = true;
+            writeRecord(payload.toByteArray());
+            decrementLiveEntries(entry.segment);
+            deleteDeadSegments();
+        }
+    }
+
+    public void close() {
+        synchronized (lock) {
+            if (failure == null) {
+                sync();
+            }
+            running = false;
+            lock.notifyAll();
+            IOUtils.closeQuietly(currentOut);
+        }
+        try {
+            syncThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sync the appended batches. The fsync runs without holding the lock, so that the next batch is appended while
+     * the current one is made durable.
+     */
+    private void syncLoop() {
+        while (true) {
+            long sequence;
+            int batchCount;
+            FileChannel channel;
+            synchronized (lock) {
+                try {
+                    while (running && syncedSequence == writtenSequence) {
+                        lock.wait();
+                    }
+                    if (running && pendingCount < batchSize) {
+                        lock.wait(batchWindow);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (!running || failure != null) {
+                    return;
+                }
+                if (syncedSequence == writtenSequence) {
+                    continue;
+                }
+                sequence = writtenSequence;
+                batchCount = pendingCount;
+                channel = currentChannel;
+            }
+
+            IOException error = null;
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            synchronized (lock) {
+                // a segment roll or close may have synced the batch and closed the channel meanwhile
+                if (syncedSequence < sequence) {
+                    if (error == null) {
+                        syncedSequence = sequence;
+                        pendingCount = Math.max(0, pendingCount - batchCount);
+                    } else if (running) {
+                        log.error("Unable to sync mail queue journal " + currentFile, error);
+                        failure = error;
+                    }
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Force the current segment to disk and wake up the enqueuers waiting for it. Must be called holding the lock.
+     * This is only used when the segment is rolled or closed; the batches are synced by {@link #syncLoop()}.
+     */
+    private void sync() {
+        try {
+            currentChannel.force(false);
+            syncedSequence = writtenSequence;
+            pendingCount = 0;
+        } catch (IOException e) {
+            log.error("Unable to sync mail queue journal " + currentFile, e);
+            failure = e;
+        }
+        lock.notifyAll();
+    }
+
+    private void rollSegment() throws IOException {
+        sync();
+        checkUsable();
+        IOUtils.closeQuietly(currentOut);
+        openSegment(currentSegment + 1);
+        deleteDeadSegments();
+    }
+
+    private void openSegment(int segment) throws IOException {
+        currentSegment = segment;
+        currentFile = segmentFile(segment);
+        currentOut = new FileOutputStream(currentFile, true);
+        currentChannel = currentOut.getChannel();
+        currentLength = currentChannel.size();
+        if (!liveEntriesBySegment.containsKey(segment)) {
+            liveEntriesBySegment.put(segment, 0);
+        }
+    }
+
+    private void writeRecord(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(RECORD_HEADER_SIZE + payload.length);
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeInt(payload.length);
+        out.writeLong(crc.getValue());
+        out.write(payload);
+        out.flush();
+        try {
+            currentOut.write(record.toByteArray());
+        } catch (IOException e) {
+            failure = e;
+            lock.notifyAll();
+            throw e;
+        }
+        currentLength += record.size();
+    }
+
+    private void checkUsable() throws IOException {
+        if (failure != null || !running) {
+            throw journalFailure();
+        }
+    }
+
+    private IOException journalFailure() {
+        IOException e = new IOException("Mail queue journal " + directory + " is not usable");
+        if (failure != null) {
+            e.initCause(failure);
+        }
+        return e;
+    }
+
+    private List<Entry> replay() throws IOException {
+        LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>();
+        int[] segments = listSegments();
+        for (int segment : segments) {
+            liveEntriesBySegment.put(segment, 0);
+            replaySegment(segment, entries);
+            currentSegment = segment;
+        }
+        deleteDeadSegments();
+        return new ArrayList<Entry>(entries.values());
+    }
+
+    private void replaySegment(int segment, Map<String, Entry> entries) throws IOException {
+        File file = segmentFile(segment);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        long position = 0;
+        try {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                long checksum = in.readLong();
+                if (length < 0 || position + RECORD_HEADER_SIZE + length > file.length()) {
+                    log.warn("Ignoring truncated record at " + position + " in mail queue journal " + file);
+                    return;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (crc.getValue() != checksum) {
+                    log.warn("Ignoring corrupted record at " + position + " in mail queue journal " + file);
+                    return;
+                }
+                replayRecord(segment, file, position + RECORD_HEADER_SIZE, payload, entries);
+                position += RECORD_HEADER_SIZE + length;
+            }
+        } catch (EOFException e) {
+            log.warn("Ignoring truncated record at " + position + " in mail queue journal " + file);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private void replayRecord(int segment, File file, long payloadOffset, byte[] payload, Map<String, Entry> entries) throws IOException {
+        CountingInputStream counting = new CountingInputStream(new ByteArrayInputStream(payload));
+        DataInputStream in = new DataInputStream(counting);
+        byte type = in.readByte();
+        String key = in.readUTF();
+        if (type == ADD) {
+            long nextDelivery = in.readLong();
+            int mailLength = in.readInt();
+            long mailOffset = payloadOffset + counting.getCount();
+            in.skipBytes(mailLength);
+            long messageLength = in.readLong();
+            long messageOffset = payloadOffset + counting.getCount();
+            entries.put(key, new Entry(key, nextDelivery, segment, file, mailOffset, mailLength, messageOffset, messageLength));
+            incrementLiveEntries(segment);
+        } else if (type == REMOVE) {
+            Entry removed = entries.remove(key);
+            if (removed != null) {
+                decrementLiveEntries(removed.segment);
+            }
+        } else {
+            log.warn("Ignoring unknown record type " + type + " in mail queue journal " + file);
+        }
+    }
+
+    private int[] listSegments() {
+        String[] names = directory.list(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX);
+            }
+        });
+        int[] segments = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            segments[i] = Integer.parseInt(names[i].substring(SEGMENT_PREFIX.length()));
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private File segmentFile(int segment) {
+        return new File(directory, SEGMENT_PREFIX + segment);
+    }
+
+    /**
+     * Delete the oldest segments holding no queued mail, stopping at the first one still needed
+     */
+    private void deleteDeadSegments() {
+        Iterator<Map.Entry<Integer, Integer>> segments = liveEntriesBySegment.entrySet().iterator();
+        while (segments.hasNext()) {
+            Map.Entry<Integer, Integer> segment = segments.next();
+            if (segment.getValue() > 0 || segment.getKey() >= currentSegment) {
+                return;
+            }
+            segments.remove();
+            if (!segmentFile(segment.getKey()).delete()) {
+                log.warn("Unable to delete mail queue journal segment " + segmentFile(segment.getKey()));
+            }
+        }
+    }
+
+    private int liveEntries(int segment) {
+        Integer count = liveEntriesBySegment.get(segment);
+        return count == null ? 0 : count;
+    }
+
+    private void incrementLiveEntries(int segment) {
+        liveEntriesBySegment.put(segment, liveEntries(segment) + 1);
+    }
+
+    private void decrementLiveEntries(int segment) {
+        liveEntriesBySegment.put(segment, liveEntries(segment) - 1);
+    }
+
+    /**
+     * {@link InputStream} which counts the bytes read or skipped
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.queue.file;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class FileMailQueueJournalTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileMailQueueJournalTest.class);
+
+    private File directory;
+    private FileMailQueueJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("journal", "test");
+        FileUtils.forceDelete(directory);
+        journal = open(FileMailQueueJournal.DEFAULT_SEGMENT_SIZE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private FileMailQueueJournal open(long segmentSize) throws IOException {
+        return new FileMailQueueJournal(directory, 1, FileMailQueueJournal.DEFAULT_BATCH_SIZE, segmentSize, LOGGER);
+    }
+
+    private byte[] readMessage(FileMailQueueJournal.Entry entry) throws IOException {
+        FileInputStream in = new FileInputStream(entry.getFile());
+        try {
+            IOUtils.skipFully(in, entry.getMessageOffset());
+            byte[] message = new byte[(int) entry.getMessageLength()];
+            IOUtils.readFully(in, message);
+            return message;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    @Test
+    public void appendedEntriesShouldBeReadable() throws IOException {
+        FileMailQueueJournal.Entry entry = journal.append("key", 42, "mail".getBytes(), "message".getBytes());
+
+        assertArrayEquals("mail".getBytes(), entry.readMail());
+        assertArrayEquals("message".getBytes(), readMessage(entry));
+    }
+
+    @Test
+    public void appendedEntriesShouldBeReplayed() throws IOException {
+        journal.append("key1", 0, "mail1".getBytes(), "message1".getBytes());
+        journal.append("key2", 42, "mail2".getBytes(), "message2".getBytes());
+        journal.close();
+
+        journal = open(FileMailQueueJournal.DEFAULT_SEGMENT_SIZE);
+        List<FileMailQueueJournal.Entry> entries = journal.getReplayedEntries();
+
+        assertEquals(2, entries.size());
+        assertEquals("key1", entries.get(0).getKey());
+        assertEquals(0, entries.get(0).getNextDelivery());
+        assertArrayEquals("mail1".getBytes(), entries.get(0).readMail());
+        assertEquals("key2", entries.get(1).getKey());
+        assertEquals(42, entries.get(1).getNextDelivery());
+        assertArrayEquals("message2".getBytes(), readMessage(entries.get(1)));
+    }
+
+    @Test
+    public void batchAppendedEntriesShouldBeReadableAndReplayed() throws IOException {
+        List<FileMailQueueJournal.Entry> appended = journal.append(Arrays.asList(
+            new FileMailQueueJournal.Record("key1", 0, "mail1".getBytes(), "message1".getBytes()),
+            new FileMailQueueJournal.Record("key2", 42, "mail2".getBytes(), "message2".getBytes())));
+
+        assertEquals(2, appended.size());
+        assertArrayEquals("mail1".getBytes(), appended.get(0).readMail());
+        assertArrayEquals("message2".getBytes(), readMessage(appended.get(1)));
+        journal.close();
+
+        journal = open(FileMailQueueJournal.DEFAULT_SEGMENT_SIZE);
+        List<FileMailQueueJournal.Entry> entries = journal.getReplayedEntries();
+
+        assertEquals(2, entries.size());
+        assertEquals("key1", entries.get(0).getKey());
+        assertEquals("key2", entries.get(1).getKey());
+        assertEquals(42, entries.get(1).getNextDelivery());
+    }
+
+    @Test
+    public void removedEntriesShouldNotBeReplayed() throws IOException {
+        FileMailQueueJournal.Entry entry = journal.append("key1", 0, "mail1".getBytes(), "message1".getBytes());
+        journal.append("key2", 0, "mail2".getBytes(), "message2".getBytes());
+        journal.remove(entry);
+        journal.close();
+
+        journal = open(FileMailQueueJournal.DEFAULT_SEGMENT_SIZE);
+        List<FileMailQueueJournal.Entry> entries = journal.getReplayedEntries();
+
+        assertEquals(1, entries.size());
+        assertEquals("key2", entries.get(0).getKey());
+    }
+
+    @Test
+    public void tornRecordsShouldBeIgnoredOnReplay() throws IOException {
+        FileMailQueueJournal.Entry entry = journal.append("key1", 0, "mail1".getBytes(), "message1".getBytes());
+        FileMailQueueJournal.Entry torn = journal.append("key2", 0, "mail2".getBytes(), "message2".getBytes());
+        journal.close();
+
+        RandomAccessFile file = new RandomAccessFile(torn.getFile(), "rw");
+        try {
+            file.setLength(torn.getMessageOffset() + 2);
+        } finally {
+            file.close();
+        }
+
+        journal = open(FileMailQueueJournal.DEFAULT_SEGMENT_SIZE);
+        List<FileMailQueueJournal.Entry> entries = journal.getReplayedEntries();
+
+        assertEquals(1, entries.size());
+        assertEquals(entry.getKey(), entries.get(0).getKey());
+    }
+
+    @Test
+    public void segmentsShouldBeDeletedOnceAllTheirEntriesAreRemoved() throws IOException {
+        journal.close();
+        journal = open(10);
+
+        FileMailQueueJournal.Entry first = journal.append("key1", 0, "mail1".getBytes(), "message1".getBytes());
+        FileMailQueueJournal.Entry second = journal.append("key2", 0, "mail2".getBytes(), "message2".getBytes());
+        journal.append("key3", 0, "mail3".getBytes(), "message3".getBytes());
+
+        journal.remove(second);
+        assertTrue(first.getFile().exists());
+        assertTrue(second.getFile().exists());
+
+        journal.remove(first);
+        assertTrue(!first.getFile().exists());
+        assertTrue(!second.getFile().exists());
+
+        journal.close();
+        journal = open(10);
+        List<FileMailQueueJournal.Entry> entries = journal.getReplayedEntries();
+
+        assertEquals(1, entries.size());
+        assertEquals("key3", entries.get(0).getKey());
+    }
+
+    @Test
+    public void concurrentAppendsShouldAllBeDurableAcrossSegmentRolls() throws Exception {
+        journal.close();
+        journal = open(1024);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<FileMailQueueJournal.Entry>> appends = new ArrayList<Future<FileMailQueueJournal.Entry>>();
+            for (int i = 0; i < 200; i++) {
+                final String key = "key" + i;
+                appends.add(executor.submit(new Callable<FileMailQueueJournal.Entry>() {
+                    @Override
+                    public FileMailQueueJournal.Entry call() throws IOException {
+                        return journal.append(key, 0, key.getBytes(), "message".getBytes());
+                    }
+                }));
+            }
+            for (Future<FileMailQueueJournal.Entry> append : appends) {
+                assertArrayEquals("message".getBytes(), readMessage(append.get()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        journal.close();
+
+        journal = open(1024);
+        assertEquals(200, journal.getReplayedEntries().size());
+    }
+}
@@ -0,0 +1,113 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.queue.file;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.james.core.MailImpl;
+import org.apache.james.queue.api.MailQueue;
+import org.apache.mailet.Mail;
+import org.apache.mailet.MailAddress;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class FileMailQueueTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileMailQueueTest.class);
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("queue", "test");
+        FileUtils.forceDelete(directory);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private Mail createMail(String name) throws Exception {
+        MimeMessage message = new MimeMessage(Session.getDefaultInstance(new Properties()));
+        message.setText("content");
+        return new MailImpl(name, new MailAddress("sender@domain.tld"), Arrays.asList(new MailAddress("rcpt@domain.tld")), message);
+    }
+
+    @Test
+    public void mailsEnqueuedInGroupCommitModeShouldBeDequeuedAfterTheQueueIsDisposedAndReopened() throws Exception {
+        FileMailQueue queue = new FileMailQueue(directory, "spool", 1, 10, LOGGER);
+        queue.enQueue(createMail("name"));
+        queue.dispose();
+
+        FileMailQueue reopened = new FileMailQueue(directory, "spool", 1, 10, LOGGER);
+        try {
+            MailQueue.MailQueueItem item = reopened.deQueue();
+            assertEquals("name", item.getMail().getName());
+            item.done(true);
+        } finally {
+            reopened.dispose();
+        }
+    }
+
+    @Test
+    public void mailFailingToLoadInABatchShouldBeDequeuedAgain() throws Exception {
+        FileMailQueue queue = new FileMailQueue(directory, "spool", false, LOGGER);
+        try {
+            queue.enQueue(createMail("first"));
+            List<File> firstFiles = new ArrayList<File>(FileUtils.listFiles(directory, new String[] {"obj"}, true));
+            queue.enQueue(createMail("second"));
+            Collection<File> files = FileUtils.listFiles(directory, new String[] {"obj"}, true);
+            files.removeAll(firstFiles);
+            File secondFile = files.iterator().next();
+            File movedFile = new File(directory, "moved");
+            FileUtils.moveFile(secondFile, movedFile);
+
+            List<MailQueue.MailQueueItem> items = queue.deQueue(10, 1, TimeUnit.SECONDS);
+            assertEquals(1, items.size());
+            assertEquals("first", items.get(0).getMail().getName());
+            items.get(0).done(true);
+
+            FileUtils.moveFile(movedFile, secondFile);
+            items = queue.deQueue(10, 1, TimeUnit.SECONDS);
+            assertEquals(1, items.size());
+            assertEquals("second", items.get(0).getMail().getName());
+            items.get(0).done(true);
+        } finally {
+            queue.dispose();
+        }
+    }
+
+}
@@ -43,8 +43,10 @@ import javax.mail.internet.AddressException;
 import javax.mail.internet.MimeMessage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -65,6 +67,12 @@ import java.util.concurrent.TimeUnit;
  * It use {@link ObjectMessage} with a byte array as payload to store the
  * {@link Mail} objects.
  * </p>
+ * <p>
+ * Every operation gets its connection, session and producer from the
+ * {@link ConnectionFactory} and closes them once done, so a pooling
+ * {@link ConnectionFactory} (like Spring's <code>CachingConnectionFactory</code>)
+ * should be used to avoid opening a connection to the broker for each mail.
+ * </p>
  */
 public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPrioritySupport {
 
@@ -93,58 +101,70 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
      */
     @Override
     public MailQueueItem deQueue() throws MailQueueException {
+        while (true) {
+            MailQueueItem item = receive(10000);
+            if (item != null) {
+                return item;
+            }
+        }
+    }
+
+    /**
+     * Dequeues up to <code>max</code> mails. Each of them is received in its
+     * own transacted {@link Session}, so that it is committed or rolled back
+     * on its own once done: a failed mail goes back through the redelivery
+     * policy of the broker. Only the first receive waits for the given
+     * timeout, the others only take the mails which are ready.
+     */
+    @Override
+    public List<MailQueueItem> deQueue(int max, long timeout, TimeUnit unit) throws MailQueueException {
+        List<MailQueueItem> items = new ArrayList<MailQueueItem>();
+        MailQueueItem item = receive(Math.max(1, TimeUnit.MILLISECONDS.convert(timeout, unit)));
+        while (item != null) {
+            items.add(item);
+            if (items.size() >= max) {
+                break;
+            }
+            try {
+                item = receive(0);
+            } catch (MailQueueException e) {
+                // the mails already received must be handed out so that they get done
+                logger.error("Unable to dequeue next message of " + queueName, e);
+                break;
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Receive the next ready-to-process message in its own transacted
+     * {@link Session}
+     *
+     * @param timeout
+     *            the time to wait for the message in milliseconds, 0 to not
+     *            wait at all
+     * @return the item, or <code>null</code> if no message was ready in time
+     */
+    private MailQueueItem receive(long timeout) throws MailQueueException {
         Connection connection = null;
         Session session = null;
         Message message;
         MessageConsumer consumer = null;
 
-        while (true) {
-            try {
-                connection = connectionFactory.createConnection();
-                connection.start();
-
-                session = connection.createSession(true, Session.SESSION_TRANSACTED);
-                Queue queue = session.createQueue(queueName);
-                consumer = session.createConsumer(queue, getMessageSelector());
-
-                message = consumer.receive(10000);
-
-                if (message != null) {
-                    return createMailQueueItem(connection, session, consumer, message);
-                } else {
-                    session.commit();
-
-                    if (consumer != null) {
+        try {
+            connection = connectionFactory.createConnection();
+            connection.start();
 
-                        try {
-                            consumer.close();
-                        } catch (JMSException e1) {
-                            // ignore on rollback
-                        }
-                    }
-                    try {
-                        if (session != null)
-                            session.close();
-                    } catch (JMSException e1) {
-                        // ignore here
-                    }
+            session = connection.createSession(true, Session.SESSION_TRANSACTED);
+            Queue queue = session.createQueue(queueName);
+            consumer = session.createConsumer(queue, getMessageSelector());
 
-                    try {
-                        if (connection != null)
-                            connection.close();
-                    } catch (JMSException e1) {
-                        // ignore here
-                    }
-                }
+            message = timeout > 0 ? consumer.receive(timeout) : consumer.receiveNoWait();
 
-            } catch (Exception e) {
-                if (session != null) {
-                    try {
-                        session.rollback();
-                    } catch (JMSException e1) {
-                        // ignore on rollback
-                    }
-                }
+            if (message != null) {
+                return createMailQueueItem(connection, session, consumer, message);
+            } else {
+                session.commit();
 
                 if (consumer != null) {
 
@@ -167,10 +187,41 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
                 } catch (JMSException e1) {
                     // ignore here
                 }
-                throw new MailQueueException("Unable to dequeue next message", e);
+                return null;
+            }
+
+        } catch (Exception e) {
+            if (session != null) {
+                try {
+                    session.rollback();
+                } catch (JMSException e1) {
+                    // ignore on rollback
+                }
             }
-        }
 
+            if (consumer != null) {
+
+                try {
+                    consumer.close();
+                } catch (JMSException e1) {
+                    // ignore on rollback
+                }
+            }
+            try {
+                if (session != null)
+                    session.close();
+            } catch (JMSException e1) {
+                // ignore here
+            }
+
+            try {
+                if (connection != null)
+                    connection.close();
+            } catch (JMSException e1) {
+                // ignore here
+            }
+            throw new MailQueueException("Unable to dequeue next message", e);
+        }
     }
 
     @Override
@@ -190,15 +241,9 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
             connection.start();
             session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
 
-            int msgPrio = NORMAL_PRIORITY;
-            Object prio = mail.getAttribute(MAIL_PRIORITY);
-            if (prio instanceof Integer) {
-                msgPrio = (Integer) prio;
-            }
-
             Map<String, Object> props = getJMSProperties(mail, mydelay);
 
-            produceMail(session, props, msgPrio, mail);
+            produceMail(session, props, getPriority(mail), mail);
 
         } catch (Exception e) {
             if (session != null) {
@@ -232,6 +277,68 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
         enQueue(mail, NO_DELAY, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Produce all the mails in one transacted {@link Session}, so they are
+     * committed to the broker at once
+     */
+    @Override
+    public void enQueue(Collection<Mail> mails) throws MailQueueException {
+        if (mails.isEmpty()) {
+            return;
+        }
+        Connection connection = null;
+        Session session = null;
+
+        try {
+
+            connection = connectionFactory.createConnection();
+            connection.start();
+            session = connection.createSession(true, Session.SESSION_TRANSACTED);
+
+            for (Mail mail : mails) {
+                produceMail(session, getJMSProperties(mail, 0), getPriority(mail), mail);
+            }
+            session.commit();
+
+        } catch (Exception e) {
+            if (session != null) {
+                try {
+                    session.rollback();
+                } catch (JMSException e1) {
+                    // ignore on rollback
+                }
+            }
+            throw new MailQueueException("Unable to enqueue " + mails.size() + " mails", e);
+
+        } finally {
+            try {
+                if (session != null)
+                    session.close();
+            } catch (JMSException e) {
+                // ignore here
+            }
+
+            try {
+                if (connection != null)
+                    connection.close();
+            } catch (JMSException e) {
+                // ignore here
+            }
+        }
+    }
+
+    /**
+     * Return the JMS priority to use for the given mail
+     */
+    private int getPriority(Mail mail) {
+        int msgPrio = NORMAL_PRIORITY;
+        Object prio = mail.getAttribute(MAIL_PRIORITY);
+        if (prio instanceof Integer) {
+            msgPrio = (Integer) prio;
+        }
+        return msgPrio;
+    }
+
     /**
      * Produce the mail to the JMS Queue
      */
@@ -276,6 +383,57 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
 
     }
 
+    /**
+     * Produce the mail to the JMS Queue as a {@link BytesMessage}. The
+     * {@link MimeMessage} is written straight to the message body
+     */
+    protected void produceBytesMessage(Session session, Map<String, Object> props, int msgPrio, Mail mail) throws JMSException, MessagingException, IOException {
+        MessageProducer producer = null;
+
+        try {
+            Queue queue = session.createQueue(queueName);
+
+            producer = session.createProducer(queue);
+            final BytesMessage message = session.createBytesMessage();
+
+            for (Map.Entry<String, Object> entry : props.entrySet()) {
+                message.setObjectProperty(entry.getKey(), entry.getValue());
+            }
+
+            mail.getMessage().writeTo(new OutputStream() {
+
+                @Override
+                public void write(int b) throws IOException {
+                    try {
+                        message.writeByte((byte) b);
+                    } catch (JMSException e) {
+                        throw new IOException("Unable to write message body", e);
+                    }
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    try {
+                        message.writeBytes(b, off, len);
+                    } catch (JMSException e) {
+                        throw new IOException("Unable to write message body", e);
+                    }
+                }
+            });
+
+            producer.send(message, Message.DEFAULT_DELIVERY_MODE, msgPrio, Message.DEFAULT_TIME_TO_LIVE);
+
+        } finally {
+
+            try {
+                if (producer != null)
+                    producer.close();
+            } catch (JMSException e) {
+                // ignore here
+            }
+        }
+    }
+
     /**
      * Get JMS Message properties with values
      *
@@ -359,7 +517,7 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
     /**
      * Populat the given {@link Mail} instance with a {@link MimeMessage}. The
      * {@link MimeMessage} is read from the JMS Message. This implementation use
-     * a {@link BytesMessage}
+     * an {@link ObjectMessage} or a {@link BytesMessage}
      *
      * @param message
      * @param mail
@@ -368,6 +526,8 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
     protected void populateMailMimeMessage(Message message, Mail mail) throws MessagingException, JMSException {
         if (message instanceof ObjectMessage) {
             mail.setMessage(new MimeMessageCopyOnWriteProxy(new MimeMessageObjectMessageSource((ObjectMessage) message)));
+        } else if (message instanceof BytesMessage) {
+            mail.setMessage(new MimeMessageCopyOnWriteProxy(new MimeMessageBytesMessageSource((BytesMessage) message)));
         } else {
             throw new MailQueueException("Not supported JMS Message received " + message);
         }
@@ -700,13 +860,23 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
      */
     @SuppressWarnings("unchecked")
     protected Message copy(Session session, Message m) throws JMSException {
-        ObjectMessage message = (ObjectMessage) m;
-        ObjectMessage copy = session.createObjectMessage(message.getObject());
+        Message copy;
+        if (m instanceof BytesMessage) {
+            BytesMessage message = (BytesMessage) m;
+            byte[] content = new byte[(int) message.getBodyLength()];
+            message.reset();
+            message.readBytes(content);
+            BytesMessage bytesCopy = session.createBytesMessage();
+            bytesCopy.writeBytes(content);
+            copy = bytesCopy;
+        } else {
+            copy = session.createObjectMessage(((ObjectMessage) m).getObject());
+        }
 
-        Enumeration<String> properties = message.getPropertyNames();
+        Enumeration<String> properties = m.getPropertyNames();
         while (properties.hasMoreElements()) {
             String name = properties.nextElement();
-            copy.setObjectProperty(name, message.getObjectProperty(name));
+            copy.setObjectProperty(name, m.getObjectProperty(name));
         }
 
         return copy;
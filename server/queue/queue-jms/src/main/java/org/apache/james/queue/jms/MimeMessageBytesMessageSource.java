@@ -0,0 +1,97 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.queue.jms;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.mail.util.SharedByteArrayInputStream;
+
+import org.apache.james.core.MimeMessageSource;
+import org.apache.james.lifecycle.api.Disposable;
+
+/**
+ * {@link MimeMessageSource} implementation which reads the data from the body
+ * of a {@link BytesMessage}. The body is only read the first time a stream is
+ * requested, so that mails which are never parsed are never copied
+ */
+public class MimeMessageBytesMessageSource extends MimeMessageSource implements Disposable {
+
+    private final BytesMessage message;
+    private final String id;
+    private final long size;
+    private SharedByteArrayInputStream in;
+
+    public MimeMessageBytesMessageSource(BytesMessage message) throws JMSException {
+        this.message = message;
+        this.id = message.getJMSMessageID();
+        this.size = message.getBodyLength();
+    }
+
+    @Override
+    public long getMessageSize() throws IOException {
+        return size;
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        if (in == null) {
+            try {
+                byte[] content = new byte[(int) size];
+                message.reset();
+                message.readBytes(content);
+                in = new SharedByteArrayInputStream(content);
+            } catch (JMSException e) {
+                throw new IOException("Unable to read the body of message " + id, e);
+            }
+        }
+        return in.newStream(0, -1);
+    }
+
+    @Override
+    public String getSourceId() {
+        return id;
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e1) {
+                // ignore on dispose
+            }
+            in = null;
+        }
+
+        try {
+            message.clearBody();
+        } catch (JMSException e) {
+            // ignore on dispose
+        }
+        try {
+            message.clearProperties();
+        } catch (JMSException e) {
+            // ignore on dispose
+        }
+    }
+
+}
@@ -44,6 +44,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -116,6 +117,45 @@ public abstract class AbstractJMSMailQueueTest {
         assertEquals(0, queue.getSize());
     }
 
+    @Test
+    public void testBatchDeQueue() throws MessagingException, InterruptedException, IOException, MailAddressException {
+        final JMSMailQueue queue = getQueue();
+        // should be empty
+        assertEquals(0, queue.getSize());
+
+        Mail mail = createMail();
+        Mail mail2 = createMail();
+        Mail mail3 = createMail();
+
+        queue.enQueue(Arrays.asList(mail, mail2, mail3));
+
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        List<MailQueueItem> items = queue.deQueue(10, 1, TimeUnit.SECONDS);
+        assertEquals(3, items.size());
+        checkMail(mail, items.get(0).getMail());
+        checkMail(mail2, items.get(1).getMail());
+        checkMail(mail3, items.get(2).getMail());
+
+        // each item is committed or rolled back on its own, only the failed mail gets back to the queue
+        items.get(0).done(true);
+        items.get(1).done(false);
+        items.get(2).done(true);
+
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        assertEquals(1, queue.getSize());
+        MailQueueItem item = queue.deQueue();
+        checkMail(mail2, item.getMail());
+        item.done(true);
+
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        // should be empty
+        assertEquals(0, queue.getSize());
+        assertTrue(queue.deQueue(10, 100, TimeUnit.MILLISECONDS).isEmpty());
+    }
+
     @Test
     public void testDelayedDeQueue() throws MessagingException, InterruptedException, IOException, MailAddressException {
         final JMSMailQueue queue = getQueue();